@@ -8,6 +8,7 @@
 plugins {
     application
     id("com.gradleup.shadow") version "9.0.0"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 tasks.withType<com.github.jengelman.gradle.plugins.shadow.tasks.ShadowJar> {
@@ -102,6 +103,10 @@ dependencies {
     implementation("com.fasterxml.jackson.core:jackson-databind:2.19.0")
     implementation("com.fasterxml.jackson.core:jackson-core:2.19.0")
     implementation("com.fasterxml.jackson.core:jackson-annotations:2.19.0")
+
+    // Use JUnit Jupiter for testing.
+    testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
 java {
@@ -114,6 +119,20 @@ application {
     mainClass.set("me.hash.mediaroulette.Main")
 }
 
+tasks.named<Test>("test") {
+    // Use JUnit Platform for unit tests.
+    useJUnitPlatform()
+}
+
+// Benchmarks live in src/jmh; run with ./gradlew jmh
+jmh {
+    jmhVersion.set("1.37")
+    // Fixture payloads are shared with the tests
+    includeTests.set(true)
+    // Report allocation per operation next to time
+    profilers.set(listOf("gc"))
+}
+
 // Optional: Create a separate task for ultra-minimized JAR
 tasks.register<com.github.jengelman.gradle.plugins.shadow.tasks.ShadowJar>("shadowJarMinimal") {
     group = "shadow"
@@ -0,0 +1,81 @@
+package me.hash.mediaroulette.content.provider.impl.images;
+
+import me.hash.mediaroulette.content.provider.impl.images.FourChanProvider.CatalogThread;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading catalog.json into thread numbers and image URLs through an org.json tree against the
+ * streaming {@link FourChanProvider#parseCatalog}. Run with the gc profiler for allocation per catalog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FourChanCatalogBenchmark {
+    private byte[] catalog;
+
+    @Setup
+    public void load() throws IOException {
+        try (InputStream in = FourChanCatalogBenchmark.class.getResourceAsStream("/fixtures/fourchan_catalog.json")) {
+            if (in == null) throw new IOException("missing fixture fourchan_catalog.json");
+            catalog = in.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public List<CatalogThread> treeParse() {
+        JSONArray pages = new JSONArray(new String(catalog, StandardCharsets.UTF_8));
+        List<CatalogThread> threads = new ArrayList<>();
+        for (int i = 0; i < pages.length(); i++) {
+            JSONArray pageThreads = pages.getJSONObject(i).getJSONArray("threads");
+            for (int j = 0; j < pageThreads.length(); j++) {
+                JSONObject thread = pageThreads.getJSONObject(j);
+                int number = thread.optInt("no", -1);
+                if (number < 0) continue;
+                List<String> imageUrls = new ArrayList<>();
+                if (thread.has("tim") && thread.has("ext")) {
+                    imageUrls.add(imageUrl(thread));
+                }
+                JSONArray replies = thread.optJSONArray("last_replies");
+                for (int k = 0; replies != null && k < replies.length(); k++) {
+                    JSONObject reply = replies.getJSONObject(k);
+                    if (reply.has("tim") && reply.has("ext")) {
+                        imageUrls.add(imageUrl(reply));
+                    }
+                }
+                threads.add(new CatalogThread(number, imageUrls));
+            }
+        }
+        return threads;
+    }
+
+    @Benchmark
+    public List<CatalogThread> streamingParse() throws IOException {
+        return FourChanProvider.parseCatalog("wg", new ByteArrayInputStream(catalog));
+    }
+
+    private static String imageUrl(JSONObject post) {
+        return String.format("https://i.4cdn.org/wg/%d%s", post.getLong("tim"), post.getString("ext"));
+    }
+}
@@ -0,0 +1,78 @@
+package me.hash.mediaroulette.content.reddit;
+
+import me.hash.mediaroulette.model.content.MediaResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading one listing page the old way (whole body as a String, then an org.json tree) against
+ * {@link RedditListingParser} streaming the same bytes. Run with the gc profiler for allocation
+ * per listing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedditListingBenchmark {
+    private final RedditListingParser parser = new RedditListingParser();
+    private final RedditPostProcessor processor = new RedditPostProcessor();
+    private byte[] listing;
+
+    @Setup
+    public void load() throws IOException {
+        try (InputStream in = RedditListingBenchmark.class.getResourceAsStream("/fixtures/reddit_listing.json")) {
+            if (in == null) throw new IOException("missing fixture reddit_listing.json");
+            listing = in.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public void treeParse(Blackhole blackhole) {
+        JSONObject data = new JSONObject(new String(listing, StandardCharsets.UTF_8)).getJSONObject("data");
+        JSONArray children = data.getJSONArray("children");
+        blackhole.consume(data.optString("after", null));
+        for (int i = 0; i < children.length(); i++) {
+            blackhole.consume(children.getJSONObject(i).getJSONObject("data"));
+        }
+    }
+
+    @Benchmark
+    public void streamingParse(Blackhole blackhole) throws IOException {
+        blackhole.consume(parser.parse(new ByteArrayInputStream(listing), blackhole::consume));
+    }
+
+    @Benchmark
+    public List<MediaResult> treeParseAndProcess() {
+        JSONArray children = new JSONObject(new String(listing, StandardCharsets.UTF_8))
+                .getJSONObject("data").getJSONArray("children");
+        return processor.processPosts(children);
+    }
+
+    @Benchmark
+    public List<MediaResult> streamingParseAndProcess() throws IOException {
+        List<MediaResult> results = new ArrayList<>();
+        parser.parse(new ByteArrayInputStream(listing), post -> results.addAll(processor.processPost(post)));
+        return results;
+    }
+}
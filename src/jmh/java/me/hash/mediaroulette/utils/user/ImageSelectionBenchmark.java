@@ -0,0 +1,114 @@
+package me.hash.mediaroulette.utils.user;
+
+import me.hash.mediaroulette.model.ImageOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picking a source for one roll the old way, with a PriorityQueue of normalized chances rebuilt
+ * every call, against drawing from the alias table {@link ImageSelector} caches per user.
+ * The admin toggles and breaker checks are left out of both, as they cost the same either way.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageSelectionBenchmark {
+    private List<ImageOptions> defaults;
+    private Map<String, Double> weights;
+    private AliasSampler sampler;
+
+    @Setup
+    public void build() {
+        defaults = ImageOptions.getDefaultOptions();
+        weights = new LinkedHashMap<>();
+        for (ImageOptions option : defaults) {
+            weights.put(option.getImageType(), option.getChance());
+        }
+        sampler = AliasSampler.of(weights);
+    }
+
+    /**
+     * The old selection as shipped, which parsed the bundled defaults on every roll
+     */
+    @Benchmark
+    public String priorityQueueWithDefaults() {
+        return pickFromQueue(ImageOptions.getDefaultOptions(), ThreadLocalRandom.current());
+    }
+
+    /**
+     * The old queue, normalization and walk alone, on copies of already parsed defaults
+     */
+    @Benchmark
+    public String priorityQueue() {
+        List<ImageOptions> options = new ArrayList<>(defaults.size());
+        for (ImageOptions option : defaults) {
+            options.add(new ImageOptions(option.getImageType(), option.isEnabled(), option.getChance()));
+        }
+        return pickFromQueue(options, ThreadLocalRandom.current());
+    }
+
+    /**
+     * A roll whose user's table is already cached
+     */
+    @Benchmark
+    public String aliasCached() {
+        return sampler.sample(ThreadLocalRandom.current());
+    }
+
+    /**
+     * A roll right after the chances or toggles changed, which builds the table first
+     */
+    @Benchmark
+    public String aliasRebuilt() {
+        return AliasSampler.of(weights).sample(ThreadLocalRandom.current());
+    }
+
+    private static String pickFromQueue(List<ImageOptions> options, Random random) {
+        PriorityQueue<ImageOptions> queue = new PriorityQueue<>(Comparator.comparingDouble(ImageOptions::getChance));
+        double totalChance = 0;
+        for (ImageOptions option : options) {
+            if (option.isEnabled()) {
+                totalChance += option.getChance();
+                queue.add(option);
+            }
+        }
+        if (totalChance != 100) {
+            double additionalChance = (100 - totalChance) / queue.size();
+            for (ImageOptions option : queue) {
+                option.setChance(option.getChance() + additionalChance);
+            }
+        }
+
+        double rand = random.nextDouble() * 100;
+        double cumulativeProbability = 0;
+        while (!queue.isEmpty()) {
+            ImageOptions selectedOption = queue.poll();
+            cumulativeProbability += selectedOption.getChance();
+            if (rand <= cumulativeProbability) {
+                return selectedOption.getImageType();
+            }
+        }
+        return null;
+    }
+}
@@ -13,7 +13,14 @@ import com.mongodb.client.MongoCollection;
 import io.github.cdimascio.dotenv.Dotenv;
 import io.github.cdimascio.dotenv.DotenvEntry;
 import me.hash.mediaroulette.bot.Bot;
+import me.hash.mediaroulette.content.http.HttpTransport;
+import me.hash.mediaroulette.content.provider.PrefetchScheduler;
+import me.hash.mediaroulette.content.provider.ProviderExecutors;
+import me.hash.mediaroulette.content.provider.ProviderRegistry;
+import me.hash.mediaroulette.utils.browser.BrowserPool;
+import me.hash.mediaroulette.utils.media.ffmpeg.resolvers.ResolvedUrlCache;
 import me.hash.mediaroulette.plugins.PluginManager;
+import me.hash.mediaroulette.utils.CompactWordList;
 import me.hash.mediaroulette.utils.LocalConfig;
 import me.hash.mediaroulette.repository.MongoUserRepository;
 import me.hash.mediaroulette.repository.UserRepository;
@@ -121,12 +128,18 @@ public class Main {
         
         // Initialize default dictionaries
         initializeDefaultDictionaries();
+
+        // Load the bundled word lists once instead of on first fallback
+        System.out.println("Loaded " + CompactWordList.basicDictionary().size() + " fallback words and "
+                + CompactWordList.subreddits().size() + " subreddits");
     }
 
     private static void initializeMediaProcessing() {
         System.out.println("Initializing media processing capabilities...");
         try {
             MediaInitializer.initialize().get();
+            ProviderRegistry.getInstance().start();
+            PrefetchScheduler.getInstance().start();
             System.out.println("✅ Media processing initialization complete!");
         } catch (Exception e) {
             System.err.println("⚠️ Media processing initialization failed: " + e.getMessage());
@@ -235,6 +248,11 @@ public class Main {
         }
 
         // Shutdown services
+        if (userService != null) {
+            userService.shutdown();
+            System.out.println("User data flushed.");
+        }
+
         if (statsService != null) {
             statsService.shutdown();
             System.out.println("Stats service shutdown complete.");
@@ -245,6 +263,19 @@ public class Main {
             System.out.println("Bot shutdown complete.");
         }
 
+        // Stop media providers, persisting their queued results
+        try {
+            PrefetchScheduler.getInstance().stop();
+            ProviderRegistry.getInstance().stop();
+            ProviderExecutors.shutdown();
+            BrowserPool.shutdownIfStarted();
+            ResolvedUrlCache.shutdown();
+            HttpTransport.shutdown();
+            System.out.println("Media providers stopped.");
+        } catch (Exception e) {
+            System.err.println("Error stopping media providers: " + e.getMessage());
+        }
+
         // Cleanup media processing
         try {
             MediaInitializer.shutdown();
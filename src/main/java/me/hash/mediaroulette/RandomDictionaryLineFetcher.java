@@ -1,5 +1,6 @@
 package me.hash.mediaroulette;
 
+import me.hash.mediaroulette.content.http.HttpTransport;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -9,6 +10,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 import java.util.Random;
 import java.util.stream.Collectors;
@@ -27,7 +29,7 @@ public class RandomDictionaryLineFetcher {
      * @param isLocal True if the source is a local resource, false if it's an online URL.
      */
     public RandomDictionaryLineFetcher(String source, boolean isLocal) {
-        this.client = new OkHttpClient();
+        this.client = HttpTransport.client("dictionary", Duration.ofSeconds(10), Duration.ofSeconds(10));
         this.source = source;
         this.isLocal = isLocal;
         this.random = new Random();
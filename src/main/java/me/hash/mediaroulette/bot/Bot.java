@@ -14,6 +14,7 @@ import me.hash.mediaroulette.bot.commands.economy.QuestsCommand;
 import me.hash.mediaroulette.bot.commands.images.FavoritesCommand;
 import me.hash.mediaroulette.bot.commands.images.getRandomImage;
 import me.hash.mediaroulette.utils.Config;
+import me.hash.mediaroulette.utils.TaskExecutors;
 
 import net.dv8tion.jda.api.OnlineStatus;
 import net.dv8tion.jda.api.entities.Activity;
@@ -29,7 +30,7 @@ public class Bot {
     public static final long COOLDOWN_DURATION = 2500; // Cooldown duration in milliseconds
     public static final Map<Long, Long> COOLDOWNS = new HashMap<>(); // Cooldown management map
     public static Config config = null;
-    public static final ExecutorService executor = Executors.newCachedThreadPool(); // Executor for async tasks
+    public static final ExecutorService executor = TaskExecutors.newInteractionExecutor("interaction"); // Executor for async tasks
 
     public Bot(String token) {
         // Initialize ShardManager
@@ -1,6 +1,7 @@
 package me.hash.mediaroulette.bot;
 
 import me.hash.mediaroulette.Main;
+import me.hash.mediaroulette.content.http.HttpTransport;
 import me.hash.mediaroulette.model.User;
 import me.hash.mediaroulette.utils.media.image_generation.ImageGenerator;
 import me.hash.mediaroulette.utils.media.ffmpeg.FFmpegService;
@@ -44,7 +45,7 @@ import java.util.concurrent.CompletableFuture;
  */
 public class MediaContainerManager {
     private static final FFmpegService ffmpegService = new FFmpegService();
-    private static final HttpClient HTTP_CLIENT = HttpClient.newHttpClient();
+    private static final HttpClient HTTP_CLIENT = HttpTransport.javaNoRedirectClient();
     private static boolean ffmpegInitialized = false;
 
     // ===== COLOR CONSTANTS =====
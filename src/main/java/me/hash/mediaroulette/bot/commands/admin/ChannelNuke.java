@@ -4,7 +4,7 @@ import java.io.IOException;
 
 import me.hash.mediaroulette.bot.errorHandler;
 import me.hash.mediaroulette.bot.commands.CommandHandler;
-import me.hash.mediaroulette.content.factory.MediaServiceFactory;
+import me.hash.mediaroulette.content.provider.ProviderRegistry;
 import me.hash.mediaroulette.content.http.HttpClientWrapper;
 import net.dv8tion.jda.api.Permission;
 import me.hash.mediaroulette.bot.Bot;
@@ -67,7 +67,7 @@ public class ChannelNuke extends ListenerAdapter implements CommandHandler {
             EmbedBuilder embedBuilder = new EmbedBuilder();
             embedBuilder.setTitle("Channel Nuked");
             try {
-                embedBuilder.setImage(new MediaServiceFactory().createTenorProvider().getRandomMedia("nuke").toMap().get("image"));
+                embedBuilder.setImage(ProviderRegistry.getInstance().getTenor().getRandomMedia("nuke").toMap().get("image"));
             } catch (IOException e) {
                 e.printStackTrace();
             } catch (HttpClientWrapper.RateLimitException e) {
@@ -619,7 +619,7 @@ public class SettingsCommand extends ListenerAdapter implements CommandHandler {
                     org.json.JSONArray defaultValues = new org.json.JSONArray(jsonContent);
                     
                     // Clear existing image options
-                    user.getImageOptionsMap().clear();
+                    user.clearChances();
                     
                     // Set default values
                     for (int i = 0; i < defaultValues.length(); i++) {
@@ -4,9 +4,10 @@ import me.hash.mediaroulette.Main;
 import me.hash.mediaroulette.bot.Bot;
 import me.hash.mediaroulette.bot.errorHandler;
 import me.hash.mediaroulette.content.RandomText;
-import me.hash.mediaroulette.content.factory.MediaServiceFactory;
+import me.hash.mediaroulette.content.provider.ProviderExecutors;
+import me.hash.mediaroulette.content.provider.ProviderRegistry;
+import me.hash.mediaroulette.content.provider.RequestContext;
 import me.hash.mediaroulette.content.provider.impl.images.FourChanProvider;
-import me.hash.mediaroulette.content.provider.impl.images.RedditProvider;
 import me.hash.mediaroulette.model.content.MediaResult;
 import me.hash.mediaroulette.content.reddit.RedditClient;
 import me.hash.mediaroulette.content.reddit.SubredditManager;
@@ -17,6 +18,8 @@ import net.dv8tion.jda.api.interactions.Interaction;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public enum ImageSource {
     REDDIT("REDDIT"),
@@ -35,8 +38,11 @@ public enum ImageSource {
 
     private final String name;
 
-    public static final RedditClient redditClient = new RedditClient();
-    public static final SubredditManager subredditManager = new SubredditManager(redditClient);
+    // Urban Dictionary is not a registry provider but shares the per-source concurrency caps
+    static final String URBAN_SOURCE = "urban";
+
+    public static final RedditClient redditClient = ProviderRegistry.getInstance().getRedditClient();
+    public static final SubredditManager subredditManager = ProviderRegistry.getInstance().getSubredditManager();
 
     ImageSource(String name) {
         this.name = name;
@@ -46,109 +52,115 @@ public enum ImageSource {
         return name;
     }
 
-    public Map<String, String> handle(Interaction event, String option) throws Exception {
+    /**
+     * Fetch media for this source without blocking the calling thread. Validation failures send
+     * the error embed themselves and complete the future exceptionally, like provider failures do.
+     */
+    public CompletableFuture<Map<String, String>> handleAsync(Interaction event, String option) {
         User user = Main.userService.getOrCreateUser(event.getUser().getId());
+        RequestContext ctx = RequestContext.of(event.getUser().getId());
 
         // Check both old config system and new LocalConfig system
         if (isOptionDisabled(this.name) || !isSourceEnabledInLocalConfig(this)) {
             errorHandler.sendErrorEmbed(event, new Locale(user.getLocale()).get("error.no_images_title"), new Locale(user.getLocale()).get("error.no_images_description"));
-            throw new Exception("Command Disabled");
+            return CompletableFuture.failedFuture(new Exception("Command Disabled"));
         }
 
-        return switch (this) {
-            case REDDIT -> handleReddit(event, option);
-            case TENOR -> {
-                var provider = new MediaServiceFactory().createTenorProvider();
-                if (provider instanceof me.hash.mediaroulette.content.provider.impl.gifs.TenorProvider tenorProvider) {
-                    yield tenorProvider.getRandomMedia(option, event.getUser().getId()).toMap();
-                } else {
-                    yield provider.getRandomMedia(option).toMap();
-                }
-            }
-            case IMGUR -> new MediaServiceFactory().createImgurProvider().getRandomMedia(null).toMap();
-            case _4CHAN -> handle4Chan(event, option);
-            case GOOGLE -> {
-                var provider = new MediaServiceFactory().createGoogleProvider();
-                if (provider instanceof me.hash.mediaroulette.content.provider.impl.images.GoogleProvider googleProvider) {
-                    yield googleProvider.getRandomMedia(option, event.getUser().getId()).toMap();
-                } else {
-                    yield provider.getRandomMedia(option).toMap();
-                }
-            }
-            case PICSUM -> new MediaServiceFactory().createPicsumProvider().getRandomMedia(null).toMap();
-            case RULE34XXX -> new MediaServiceFactory().createRule34Provider().getRandomMedia(null).toMap();
-            case MOVIE -> new MediaServiceFactory().createTMDBMovieProvider().getRandomMedia(null).toMap();
-            case TVSHOW -> new MediaServiceFactory().createTMDBTvProvider().getRandomMedia(null).toMap();
-            case URBAN -> handleUrban(event, option);
-            case YOUTUBE -> new MediaServiceFactory().createYouTubeProvider().getRandomMedia(null).toMap();
-            case SHORT -> new MediaServiceFactory().createYouTubeShortsProvider().getRandomMedia(null).toMap();
-            case ALL -> user.getImage();
+        try {
+            return switch (this) {
+                case REDDIT -> handleReddit(event, option, user, ctx);
+                case TENOR -> fetch(ProviderRegistry.TENOR, option, ctx);
+                case IMGUR -> fetch(ProviderRegistry.IMGUR, null, ctx);
+                case _4CHAN -> handle4Chan(event, option, user, ctx);
+                case GOOGLE -> fetch(ProviderRegistry.GOOGLE, option, ctx);
+                case PICSUM -> fetch(ProviderRegistry.PICSUM, null, ctx);
+                case RULE34XXX -> fetch(ProviderRegistry.RULE34, null, ctx);
+                case MOVIE -> fetch(ProviderRegistry.TMDB_MOVIE, null, ctx);
+                case TVSHOW -> fetch(ProviderRegistry.TMDB_TV, null, ctx);
+                case URBAN -> providers().call(URBAN_SOURCE, ctx,
+                        () -> ProviderExecutors.supplyBlocking(() -> handleUrban(event, option)));
+                case YOUTUBE -> fetch(ProviderRegistry.YOUTUBE, null, ctx);
+                case SHORT -> fetch(ProviderRegistry.YOUTUBE_SHORTS, null, ctx);
+                case ALL -> user.getImageAsync();
+            };
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
-        };
+    private static CompletableFuture<Map<String, String>> fetch(String providerKey, String option, RequestContext ctx) {
+        return providers().fetchAsync(providerKey, option, ctx).thenApply(MediaResult::toMap);
     }
 
-    private Map<String, String> handleReddit(Interaction event, String option) throws Exception {
-        User user = Main.userService.getOrCreateUser(event.getUser().getId());
+    private CompletableFuture<Map<String, String>> handleReddit(Interaction event, String option, User user, RequestContext ctx) {
+        Locale locale = new Locale(user.getLocale());
 
         // Only use the option if explicitly provided, otherwise let RedditProvider handle dictionary logic
         String subreddit = option; // Don't set random subreddit here!
 
         // Only validate if a specific subreddit was requested
-        if (subreddit != null && !subredditManager.doesSubredditExist(subreddit)) {
-            String errorMessage = new Locale(user.getLocale()).get("error.invalid_subreddit_description").replace("{0}", subreddit);
-            errorHandler.sendErrorEmbed(event, new Locale(user.getLocale()).get("error.invalid_subreddit_title"), errorMessage);
-            throw new Exception("Subreddit doesn't exist: " + subreddit);
-        }
-
-        RedditProvider reddit = (RedditProvider) new MediaServiceFactory().createRedditProvider();
-
-        MediaResult redditPost;
-        try {
-            redditPost = reddit.getRandomReddit(subreddit, event.getUser().getId());
-        } catch (Exception e) {
-            // Check if it's a subreddit validation error
-            if (e.getMessage().contains("No valid subreddits found") || e.getMessage().contains("Unable to find a valid subreddit")) {
-                errorHandler.sendErrorEmbed(event, new Locale(user.getLocale()).get("error.title"), new Locale(user.getLocale()).get("error.reddit_no_valid_subreddit"));
-                throw new Exception("No valid subreddits available");
-            } else {
-                errorHandler.sendErrorEmbed(event, new Locale(user.getLocale()).get("error.title"), new Locale(user.getLocale()).get("error.reddit_fetch"));
-                throw new Exception("Error fetching Reddit data: " + e.getMessage());
+        CompletableFuture<Void> validated = subreddit == null
+                ? CompletableFuture.completedFuture(null)
+                : ProviderExecutors.supplyBlocking(() -> {
+                    if (!subredditManager.doesSubredditExist(subreddit)) {
+                        String errorMessage = locale.get("error.invalid_subreddit_description").replace("{0}", subreddit);
+                        errorHandler.sendErrorEmbed(event, locale.get("error.invalid_subreddit_title"), errorMessage);
+                        throw new Exception("Subreddit doesn't exist: " + subreddit);
+                    }
+                    return null;
+                });
+
+        return validated.thenCompose(ignored -> providers().fetchAsync(ProviderRegistry.REDDIT, subreddit, ctx).handle((redditPost, e) -> {
+            if (e != null) {
+                String message = String.valueOf(ProviderExecutors.unwrap(e).getMessage());
+                // Check if it's a subreddit validation error
+                if (message.contains("No valid subreddits found") || message.contains("Unable to find a valid subreddit")) {
+                    errorHandler.sendErrorEmbed(event, locale.get("error.title"), locale.get("error.reddit_no_valid_subreddit"));
+                    throw new CompletionException(new Exception("No valid subreddits available"));
+                }
+                errorHandler.sendErrorEmbed(event, locale.get("error.title"), locale.get("error.reddit_fetch"));
+                throw new CompletionException(new Exception("Error fetching Reddit data: " + message));
+            }
+            if (redditPost == null) {
+                errorHandler.sendErrorEmbed(event, locale.get("error.title"), locale.get("error.reddit_fetch"));
+                throw new CompletionException(new Exception("Error fetching Reddit data"));
             }
-        }
-
-        if (redditPost == null) {
-            errorHandler.sendErrorEmbed(event, new Locale(user.getLocale()).get("error.title"), new Locale(user.getLocale()).get("error.reddit_fetch"));
-            throw new Exception("Error fetching Reddit data");
-        }
 
-        System.out.println(redditPost.toMap().toString());
+            System.out.println(redditPost.toMap().toString());
 
-        return redditPost.toMap();
+            return redditPost.toMap();
+        }));
     }
 
-    private Map<String, String> handle4Chan(Interaction event, String option) throws Exception {
-        User user = Main.userService.getOrCreateUser(event.getUser().getId());
-
-        FourChanProvider provider = (FourChanProvider) new MediaServiceFactory().createFourChanProvider();
-
-        if (option != null && !provider.isValidBoard(option)) {
-            String errorMessage = new Locale(user.getLocale()).get("error.4chan_invalid_board_description").replace("{0}", option);
-            errorHandler.sendErrorEmbed(event, new Locale(user.getLocale()).get("error.4chan_invalid_board_title"), errorMessage);
-            throw new Exception("Board doesn't exist: " + option);
-        }
-        
-        try {
-            return provider.getRandomMedia(option, event.getUser().getId()).toMap();
-        } catch (Exception e) {
+    private CompletableFuture<Map<String, String>> handle4Chan(Interaction event, String option, User user, RequestContext ctx) {
+        Locale locale = new Locale(user.getLocale());
+
+        FourChanProvider provider = providers().getFourChan();
+
+        CompletableFuture<Void> validated = option == null
+                ? CompletableFuture.completedFuture(null)
+                : ProviderExecutors.supplyBlocking(() -> {
+                    if (!provider.isValidBoard(option)) {
+                        String errorMessage = locale.get("error.4chan_invalid_board_description").replace("{0}", option);
+                        errorHandler.sendErrorEmbed(event, locale.get("error.4chan_invalid_board_title"), errorMessage);
+                        throw new Exception("Board doesn't exist: " + option);
+                    }
+                    return null;
+                });
+
+        return validated.thenCompose(ignored -> providers().fetchAsync(ProviderRegistry.FOURCHAN, option, ctx).handle((result, e) -> {
+            if (e == null) {
+                return result.toMap();
+            }
+            String message = String.valueOf(ProviderExecutors.unwrap(e).getMessage());
             // Check if it's a board validation error
-            if (e.getMessage().contains("No valid 4chan boards found") || e.getMessage().contains("No images available for board")) {
-                errorHandler.sendErrorEmbed(event, new Locale(user.getLocale()).get("error.title"), "No valid 4chan boards available. Please use /support for help.");
-                throw new Exception("No valid 4chan boards available");
-            } else {
-                errorHandler.sendErrorEmbed(event, new Locale(user.getLocale()).get("error.title"), "Error fetching 4chan data. Please use /support for help.");
-                throw new Exception("Error fetching 4chan data: " + e.getMessage());
+            if (message.contains("No valid 4chan boards found") || message.contains("No images available for board")) {
+                errorHandler.sendErrorEmbed(event, locale.get("error.title"), "No valid 4chan boards available. Please use /support for help.");
+                throw new CompletionException(new Exception("No valid 4chan boards available"));
             }
-        }
+            errorHandler.sendErrorEmbed(event, locale.get("error.title"), "Error fetching 4chan data. Please use /support for help.");
+            throw new CompletionException(new Exception("Error fetching 4chan data: " + message));
+        }));
     }
 
     private Map<String, String> handleUrban(Interaction event, String option) throws Exception {
@@ -162,6 +174,10 @@ public enum ImageSource {
         return map;
     }
 
+    private static ProviderRegistry providers() {
+        return ProviderRegistry.getInstance();
+    }
+
     private static boolean isOptionDisabled(String option) {
         return !Bot.config.getOrDefault(option, true, Boolean.class);
     }
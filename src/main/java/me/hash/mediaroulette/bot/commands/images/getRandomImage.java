@@ -6,6 +6,7 @@ import me.hash.mediaroulette.bot.Emoji;
 import me.hash.mediaroulette.bot.MediaContainerManager;
 import me.hash.mediaroulette.bot.errorHandler;
 import me.hash.mediaroulette.bot.commands.CommandHandler;
+import me.hash.mediaroulette.content.provider.ProviderExecutors;
 import me.hash.mediaroulette.model.User;
 import me.hash.mediaroulette.utils.Locale;
 import me.hash.mediaroulette.utils.MaintenanceChecker;
@@ -26,6 +27,7 @@ import net.dv8tion.jda.api.interactions.commands.build.SubcommandData;
 import java.awt.Color;
 import java.time.Instant;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -127,43 +129,54 @@ public class getRandomImage extends ListenerAdapter implements CommandHandler {
         
         Main.userService.updateUser(user);
 
+        // Sources are fetched asynchronously, so the request only needs a thread while composing the chain;
+        // that part can still load the user, so it runs on our executor rather than JDA's callback pool
         event.getHook().sendMessageComponents(createLoadingContainer(event.getUser().getEffectiveAvatarUrl())).useComponentsV2().queue(hook ->
             Bot.executor.execute(() -> processImageRequest(event, user, subcommand, query, event.getHook())));
     }
 
     private void processImageRequest(SlashCommandInteractionEvent event, User user, String subcommand, String query, net.dv8tion.jda.api.interactions.InteractionHook hook) {
-        try {
-            boolean shouldContinue = event.getOption("shouldcontinue") != null && event.getOption("shouldcontinue").getAsBoolean();
-            
-            ImageSource.fromName(subcommand.toUpperCase()).ifPresentOrElse(source -> {
-                try {
-                    Map<String, String> image = source.handle(event, query);
-                    if (image == null || image.get("image") == null) {
-                        errorHandler.sendErrorEmbed(event, new Locale(user.getLocale()).get("error.no_images_title"), new Locale(user.getLocale()).get("error.no_images_description"));
-                        return;
-                    }
+        boolean shouldContinue = event.getOption("shouldcontinue") != null && event.getOption("shouldcontinue").getAsBoolean();
 
-                    trackStats(user.getUserId(), subcommand, user);
-                    
-                    MediaContainerManager.editLoadingToImageContainer(hook, image, shouldContinue)
-                            .thenAccept(msg -> {
-                                ACTIVE_MESSAGES.put(msg.getIdLong(), new MessageData(msg.getIdLong(), subcommand, query, shouldContinue, event.getUser().getIdLong(), event.getChannel().getIdLong()));
-                                QuestGenerator.onImageGenerated(user, subcommand);
-                                Main.userService.updateUser(user);
-                            })
-                            .exceptionally(ex -> {
-                                errorHandler.handleException(event, new Locale(user.getLocale()).get("error.unexpected_error"), new Locale(user.getLocale()).get("error.failed_to_send_image"), ex);
-                                return null;
-                            });
-                } catch (Exception e) {
-                    errorHandler.handleException(event, new Locale(user.getLocale()).get("error.source_error_title"), new Locale(user.getLocale()).get("error.source_error_description"), e);
-                }
-            }, () -> errorHandler.sendErrorEmbed(event, new Locale(user.getLocale()).get("error.unknown_subcommand_title"), new Locale(user.getLocale()).get("error.unknown_subcommand_description")));
-        } catch (Exception e) {
-            errorHandler.handleException(event, new Locale(user.getLocale()).get("error.unexpected_error"), e.getMessage(), e);
+        Optional<ImageSource> source = ImageSource.fromName(subcommand.toUpperCase());
+        if (source.isEmpty()) {
+            errorHandler.sendErrorEmbed(event, new Locale(user.getLocale()).get("error.unknown_subcommand_title"), new Locale(user.getLocale()).get("error.unknown_subcommand_description"));
+            user.incrementImagesGenerated();
+            Main.userService.updateUser(user);
+            return;
         }
-        user.incrementImagesGenerated();
-        Main.userService.updateUser(user);
+
+        // The fetch completes on an HTTP client or timer thread; the container and user work goes back to our executor
+        source.get().handleAsync(event, query).whenCompleteAsync((image, ex) -> {
+            try {
+                if (ex != null) {
+                    errorHandler.handleException(event, new Locale(user.getLocale()).get("error.source_error_title"), new Locale(user.getLocale()).get("error.source_error_description"), ProviderExecutors.unwrap(ex));
+                    return;
+                }
+                if (image == null || image.get("image") == null) {
+                    errorHandler.sendErrorEmbed(event, new Locale(user.getLocale()).get("error.no_images_title"), new Locale(user.getLocale()).get("error.no_images_description"));
+                    return;
+                }
+
+                trackStats(user.getUserId(), subcommand, user);
+
+                MediaContainerManager.editLoadingToImageContainer(hook, image, shouldContinue)
+                        .thenAccept(msg -> {
+                            ACTIVE_MESSAGES.put(msg.getIdLong(), new MessageData(msg.getIdLong(), subcommand, query, shouldContinue, event.getUser().getIdLong(), event.getChannel().getIdLong()));
+                            QuestGenerator.onImageGenerated(user, subcommand);
+                            Main.userService.updateUser(user);
+                        })
+                        .exceptionally(sendEx -> {
+                            errorHandler.handleException(event, new Locale(user.getLocale()).get("error.unexpected_error"), new Locale(user.getLocale()).get("error.failed_to_send_image"), sendEx);
+                            return null;
+                        });
+            } catch (Exception e) {
+                errorHandler.handleException(event, new Locale(user.getLocale()).get("error.unexpected_error"), e.getMessage(), e);
+            } finally {
+                user.incrementImagesGenerated();
+                Main.userService.updateUser(user);
+            }
+        }, Bot.executor);
     }
 
     @Override
@@ -230,25 +243,37 @@ public class getRandomImage extends ListenerAdapter implements CommandHandler {
         
         event.getHook().editOriginalComponents(createLoadingContainer(event.getUser().getEffectiveAvatarUrl()))
                 .useComponentsV2()
-                .queue(success -> {
-                    ImageSource.fromName(data.getSubcommand().toUpperCase()).ifPresentOrElse(source -> {
+                .queue(success -> Bot.executor.execute(() -> {
+                    Optional<ImageSource> source = ImageSource.fromName(data.getSubcommand().toUpperCase());
+                    if (source.isEmpty()) {
+                        showErrorContainer(event, new Locale(user.getLocale()).get("error.title"), 
+                                         new Locale(user.getLocale()).get("error.invalid_subcommand_description"));
+                        finishContinue(user, data);
+                        return;
+                    }
+                    source.get().handleAsync(event, data.getQuery()).whenCompleteAsync((image, ex) -> {
                         try {
-                            Map<String, String> image = source.handle(event, data.getQuery());
-                            if (image == null || image.get("image") == null) {
+                            if (ex != null) {
+                                showErrorContainer(event, new Locale(user.getLocale()).get("error.title"), ProviderExecutors.unwrap(ex).getMessage());
+                            } else if (image == null || image.get("image") == null) {
                                 showErrorContainer(event, new Locale(user.getLocale()).get("error.no_more_images_title"), 
                                                  new Locale(user.getLocale()).get("error.no_more_images_description"));
-                                return;
+                            } else {
+                                MediaContainerManager.editLoadingToImageContainerFromHook(event.getHook(), image, true);
                             }
-                            MediaContainerManager.editLoadingToImageContainerFromHook(event.getHook(), image, true);
                         } catch (Exception e) {
                             showErrorContainer(event, new Locale(user.getLocale()).get("error.title"), e.getMessage());
+                        } finally {
+                            finishContinue(user, data);
                         }
-                    }, () -> showErrorContainer(event, new Locale(user.getLocale()).get("error.title"), 
-                                         new Locale(user.getLocale()).get("error.invalid_subcommand_description")));
-                    user.incrementImagesGenerated();
-                    QuestGenerator.onImageGenerated(user, data.getSubcommand());
-                    Main.userService.updateUser(user);
-                });
+                    }, Bot.executor);
+                }));
+    }
+
+    private void finishContinue(User user, MessageData data) {
+        user.incrementImagesGenerated();
+        QuestGenerator.onImageGenerated(user, data.getSubcommand());
+        Main.userService.updateUser(user);
     }
 
     private void handleFavorite(ButtonInteractionEvent event) {
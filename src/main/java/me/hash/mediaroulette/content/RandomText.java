@@ -1,5 +1,6 @@
 package me.hash.mediaroulette.content;
 
+import me.hash.mediaroulette.content.http.HttpTransport;
 import me.hash.mediaroulette.utils.discord.DiscordTimestamp;
 import me.hash.mediaroulette.utils.discord.DiscordTimestampType;
 import okhttp3.OkHttpClient;
@@ -10,6 +11,7 @@ import org.json.JSONObject;
 import org.json.JSONArray;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -17,7 +19,8 @@ import java.util.regex.Pattern;
 public class RandomText {
 
     private static final String BASE_URL = "https://api.urbandictionary.com/v0";
-    private static final OkHttpClient client = new OkHttpClient();
+    private static final OkHttpClient client =
+            HttpTransport.cachingClient("urban_dictionary", Duration.ofSeconds(10), Duration.ofSeconds(10));
 
     public static Map<String, String> getRandomUrbanWord(String meaning) throws IOException {
         Request request;
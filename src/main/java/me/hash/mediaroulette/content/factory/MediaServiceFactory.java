@@ -23,6 +23,18 @@ public class MediaServiceFactory {
         this.subredditManager = new SubredditManager(redditClient);
     }
 
+    public HttpClientWrapper getHttpClient() {
+        return httpClient;
+    }
+
+    public RedditClient getRedditClient() {
+        return redditClient;
+    }
+
+    public SubredditManager getSubredditManager() {
+        return subredditManager;
+    }
+
     public MediaProvider createFourChanProvider() {
         return new FourChanProvider(httpClient);
     }
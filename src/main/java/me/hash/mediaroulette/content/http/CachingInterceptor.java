@@ -0,0 +1,76 @@
+package me.hash.mediaroulette.content.http;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+
+/**
+ * OkHttp interceptor that serves GET requests through the shared {@link HttpResponseCache}:
+ * fresh entries are answered locally, stale ones are revalidated with a conditional request.
+ */
+public class CachingInterceptor implements Interceptor {
+    private static final CachingInterceptor INSTANCE = new CachingInterceptor();
+
+    public static CachingInterceptor getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String url = request.url().toString();
+        // Requests that carry their own validators are the caller's business
+        if (!"GET".equals(request.method()) || request.header("If-None-Match") != null
+                || request.header("If-Modified-Since") != null) {
+            return chain.proceed(request);
+        }
+
+        HttpResponseCache cache = HttpResponseCache.getInstance();
+        HttpResponseCache.CachedResponse cached = cache.lookup(url);
+        if (cached != null && cached.fresh()) {
+            return fromCache(request, cached);
+        }
+
+        Request.Builder conditional = request.newBuilder();
+        if (cached != null) {
+            cached.validators().forEach(conditional::header);
+        }
+        Response response = chain.proceed(conditional.build());
+
+        if (response.code() == 304 && cached != null) {
+            cache.revalidated(cached, response::header);
+            response.close();
+            return fromCache(request, cached);
+        }
+        if (response.body() == null || !cache.isStorable(url, response.code(), response::header)) {
+            return response;
+        }
+
+        // Read the body once to store it, then hand the caller a copy
+        MediaType contentType = response.body().contentType();
+        String body = response.body().string();
+        cache.store(url, response.code(), response::header, body);
+        return response.newBuilder()
+                .body(ResponseBody.create(body, contentType))
+                .build();
+    }
+
+    private static Response fromCache(Request request, HttpResponseCache.CachedResponse cached) {
+        MediaType contentType = cached.contentType() != null ? MediaType.parse(cached.contentType()) : null;
+        Response.Builder builder = new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(cached.status())
+                .message("OK")
+                .body(ResponseBody.create(cached.body(), contentType));
+        if (cached.contentType() != null) builder.header("Content-Type", cached.contentType());
+        if (cached.etag() != null) builder.header("ETag", cached.etag());
+        if (cached.lastModified() != null) builder.header("Last-Modified", cached.lastModified());
+        return builder.build();
+    }
+}
@@ -0,0 +1,136 @@
+package me.hash.mediaroulette.content.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-host token bucket. Requests within the burst go straight through; further requests
+ * reserve a slot in the future and wait for it, up to a bounded queue depth and wait time,
+ * after which they are rejected with a RateLimitException.
+ * A host can be paused (e.g. from a 429 Retry-After), which pushes every new reservation back.
+ */
+public class HostRateLimiter {
+    private final double permitsPerSecond;
+    private final int burst;
+    private final int maxQueued;
+    private final long maxWaitMs;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private final AtomicLong immediate = new AtomicLong(0);
+    private final AtomicLong delayed = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+    private final AtomicLong serverLimited = new AtomicLong(0);
+
+    private final class Bucket {
+        private double tokens = burst;
+        // May lie in the future while the host is paused; tokens only refill after it
+        private long refillFromNanos = System.nanoTime();
+
+        /**
+         * Reserve one permit and return how long to wait for it, or -1 if the reservation would
+         * exceed the queue depth or the maximum wait.
+         */
+        synchronized long reserve() {
+            long now = System.nanoTime();
+            if (now > refillFromNanos) {
+                tokens = Math.min(burst, tokens + (now - refillFromNanos) / 1e9 * permitsPerSecond);
+                refillFromNanos = now;
+            }
+
+            double deficit = 1 - tokens;
+            long waitNanos = Math.max(0, refillFromNanos - now)
+                    + (deficit > 0 ? (long) (deficit / permitsPerSecond * 1e9) : 0);
+            if (deficit > maxQueued || waitNanos > TimeUnit.MILLISECONDS.toNanos(maxWaitMs)) {
+                return -1;
+            }
+            tokens -= 1;
+            return waitNanos;
+        }
+
+        synchronized void pause(long pauseMs) {
+            refillFromNanos = Math.max(refillFromNanos, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pauseMs));
+            tokens = Math.min(tokens, 0);
+        }
+
+        synchronized int queued() {
+            return tokens < 0 ? (int) Math.ceil(-tokens) : 0;
+        }
+    }
+
+    public HostRateLimiter(double permitsPerSecond, int burst, int maxQueued, long maxWaitMs) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.maxQueued = maxQueued;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    private Bucket bucket(String host) {
+        return buckets.computeIfAbsent(host, h -> new Bucket());
+    }
+
+    private long reserve(String host) throws HttpClientWrapper.RateLimitException {
+        long waitNanos = bucket(host).reserve();
+        if (waitNanos < 0) {
+            rejected.incrementAndGet();
+            throw new HttpClientWrapper.RateLimitException("Rate limit queue full for " + host);
+        }
+        (waitNanos == 0 ? immediate : delayed).incrementAndGet();
+        return waitNanos;
+    }
+
+    /**
+     * Block until a request to the host is allowed.
+     */
+    public void acquire(String host) throws HttpClientWrapper.RateLimitException, InterruptedException {
+        long waitNanos = reserve(host);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Completes once a request to the host is allowed, without holding a thread while waiting.
+     */
+    public CompletableFuture<Void> acquireAsync(String host) {
+        long waitNanos;
+        try {
+            waitNanos = reserve(host);
+        } catch (HttpClientWrapper.RateLimitException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (waitNanos == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Stop issuing permits for the host for the given time, e.g. after a 429 response.
+     */
+    public void pause(String host, long pauseMs) {
+        serverLimited.incrementAndGet();
+        bucket(host).pause(pauseMs);
+    }
+
+    /**
+     * Counters and per-host queue depth for monitoring
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("immediate", immediate.get());
+        stats.put("delayed", delayed.get());
+        stats.put("rejected", rejected.get());
+        stats.put("serverLimited", serverLimited.get());
+        Map<String, Integer> queued = new LinkedHashMap<>();
+        buckets.forEach((host, bucket) -> {
+            int depth = bucket.queued();
+            if (depth > 0) queued.put(host, depth);
+        });
+        stats.put("queuedByHost", queued);
+        return stats;
+    }
+}
@@ -1,40 +1,70 @@
 package me.hash.mediaroulette.content.http;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import javax.net.ssl.SSLSession;
+
+import me.hash.mediaroulette.utils.LocalConfig;
 
 /**
  * HTTP client wrapper with rate limiting and error handling
  */
 public class HttpClientWrapper {
-    
-    private final HttpClient httpClient;
-    private final ConcurrentHashMap<String, AtomicLong> rateLimitMap;
-    private static final long DEFAULT_RATE_LIMIT_DELAY = 2000; // 2 seconds between requests per domain
-    
-    public HttpClientWrapper() {
-        this.httpClient = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(30))
-            .followRedirects(HttpClient.Redirect.NORMAL)
-            .build();
-        this.rateLimitMap = new ConcurrentHashMap<>();
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36";
+    private static final long DEFAULT_RETRY_AFTER_MS = 5000; // pause after a 429 without Retry-After
+
+    // Shared by every wrapper so per-host limits hold across the whole process
+    private static final HostRateLimiter rateLimiter = createRateLimiter();
+    private static final HttpResponseCache responseCache = HttpResponseCache.getInstance();
+
+    private final HttpClient httpClient = HttpTransport.javaClient();
+    private final HttpClient noRedirectClient = HttpTransport.javaNoRedirectClient();
+
+    private static HostRateLimiter createRateLimiter() {
+        LocalConfig config = LocalConfig.getInstance();
+        return new HostRateLimiter(config.getHttpHostRatePerSecond(), config.getHttpHostBurst(),
+                config.getHttpHostMaxQueued(), config.getHttpHostMaxWaitMs());
+    }
+
+    public static HostRateLimiter getRateLimiter() {
+        return rateLimiter;
     }
     
     /**
      * Send a GET request with rate limiting
      */
     public HttpResponse<String> get(String url) throws IOException, InterruptedException, RateLimitException {
-        return sendRequest(HttpRequest.newBuilder()
+        HttpRequest request = HttpRequest.newBuilder()
             .uri(URI.create(url))
             .timeout(Duration.ofSeconds(30))
             .GET()
-            .build());
+            .build();
+        HttpResponseCache.CachedResponse cached = responseCache.lookup(url);
+        if (cached != null && cached.fresh()) {
+            return new CachedHttpResponse(request, cached);
+        }
+        HttpResponse<String> response = fromCacheOrStore(request, cached, send(httpClient, withValidators(request, cached)));
+        if (response.statusCode() >= 400) {
+            throw new IOException("HTTP " + response.statusCode() + " error for " + request.uri());
+        }
+        return response;
     }
     
     /**
@@ -44,6 +74,33 @@ public class HttpClientWrapper {
         return get(url).body();
     }
     
+    /**
+     * Send a GET request and leave the body as a stream, for parsing large documents without
+     * holding them in memory as a String. The caller must close the body.
+     */
+    public HttpResponse<InputStream> getStream(String url) throws IOException, InterruptedException, RateLimitException {
+        return getStream(url, Map.of());
+    }
+
+    /**
+     * {@link #getStream(String)} with extra request headers, e.g. If-Modified-Since. A 304 is
+     * returned like any other non-error status, with an empty body.
+     */
+    public HttpResponse<InputStream> getStream(String url, Map<String, String> headers) throws IOException, InterruptedException, RateLimitException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+            .uri(URI.create(url))
+            .timeout(Duration.ofSeconds(30))
+            .GET();
+        headers.forEach(builder::header);
+        HttpRequest request = builder.build();
+        HttpResponse<InputStream> response = send(httpClient, request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() >= 400) {
+            response.body().close();
+            throw new IOException("HTTP " + response.statusCode() + " error for " + request.uri());
+        }
+        return response;
+    }
+
     /**
      * Get response body as string (convenience method)
      */
@@ -51,6 +108,36 @@ public class HttpClientWrapper {
         return get(url).body();
     }
     
+    /**
+     * Send a GET request without blocking the calling thread. Fails with IOException on an HTTP
+     * error status and RateLimitException when the host's limit is exhausted.
+     */
+    public CompletableFuture<HttpResponse<String>> getAsync(String url) {
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(url))
+            .timeout(Duration.ofSeconds(30))
+            .GET()
+            .build();
+        HttpResponseCache.CachedResponse cached = responseCache.lookup(url);
+        if (cached != null && cached.fresh()) {
+            return CompletableFuture.completedFuture(new CachedHttpResponse(request, cached));
+        }
+        return sendAsync(httpClient, withValidators(request, cached)).thenApply(response -> {
+            response = fromCacheOrStore(request, cached, response);
+            if (response.statusCode() >= 400) {
+                throw new CompletionException(new IOException("HTTP " + response.statusCode() + " error for " + request.uri()));
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Get response body as string without blocking the calling thread
+     */
+    public CompletableFuture<String> getBodyAsync(String url) {
+        return getAsync(url).thenApply(HttpResponse::body);
+    }
+
     /**
      * Send a POST request with rate limiting
      */
@@ -62,45 +149,155 @@ public class HttpClientWrapper {
             .build());
     }
     
+    /**
+     * Add the cached entry's validators so an unchanged document comes back as a 304
+     */
+    private static HttpRequest withValidators(HttpRequest request, HttpResponseCache.CachedResponse cached) {
+        if (cached == null) return request;
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request, (name, value) -> true);
+        cached.validators().forEach(builder::setHeader);
+        return builder.build();
+    }
+
+    /**
+     * Answer a 304 from the cache, or store a fresh 200 for next time
+     */
+    private HttpResponse<String> fromCacheOrStore(HttpRequest request, HttpResponseCache.CachedResponse cached, HttpResponse<String> response) {
+        String url = request.uri().toString();
+        if (response.statusCode() == 304 && cached != null) {
+            responseCache.revalidated(cached, name -> response.headers().firstValue(name).orElse(null));
+            return new CachedHttpResponse(request, cached);
+        }
+        if (response.statusCode() == 200) {
+            responseCache.store(url, 200, name -> response.headers().firstValue(name).orElse(null), response.body());
+        }
+        return response;
+    }
+
     /**
      * Send HTTP request with rate limiting and redirect handling
      */
     private HttpResponse<String> sendRequest(HttpRequest request) throws IOException, InterruptedException, RateLimitException {
-        String domain = request.uri().getHost();
-        
-        // Check rate limit
-        AtomicLong lastRequest = rateLimitMap.computeIfAbsent(domain, k -> new AtomicLong(0));
-        long now = System.currentTimeMillis();
-        long timeSinceLastRequest = now - lastRequest.get();
+        HttpResponse<String> response = send(httpClient, request);
         
-        if (timeSinceLastRequest < DEFAULT_RATE_LIMIT_DELAY) {
-            long waitTime = DEFAULT_RATE_LIMIT_DELAY - timeSinceLastRequest;
-            throw new RateLimitException("Rate limit exceeded for " + domain + ". Wait " + waitTime + "ms");
+        // Handle HTTP error codes
+        if (response.statusCode() >= 400) {
+            throw new IOException("HTTP " + response.statusCode() + " error for " + request.uri());
         }
         
-        lastRequest.set(now);
+        return response;
+    }
+
+    /**
+     * Wait for the host's rate limiter, send the request, and pause the host if the server
+     * says we are going too fast.
+     */
+    private HttpResponse<String> send(HttpClient client, HttpRequest request) throws IOException, InterruptedException, RateLimitException {
+        return send(client, request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private <T> HttpResponse<T> send(HttpClient client, HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException, InterruptedException, RateLimitException {
+        String domain = request.uri().getHost();
+        rateLimiter.acquire(domain);
         
+        HttpResponse<T> response;
+        try {
+            response = client.send(withDefaultHeaders(request), bodyHandler);
+        } catch (IOException e) {
+            HttpTransport.metrics(domain).recordCall(0, true);
+            throw e;
+        }
+        recordCall(domain, response);
+        try {
+            checkServerLimits(domain, response);
+        } catch (RateLimitException e) {
+            if (response.body() instanceof Closeable body) {
+                body.close();
+            }
+            throw e;
+        }
+        return response;
+    }
+
+    /**
+     * Async counterpart of {@link #send}: waits for the rate limiter on a timer instead of a
+     * thread and uses the client's own async I/O.
+     */
+    private CompletableFuture<HttpResponse<String>> sendAsync(HttpClient client, HttpRequest request) {
+        String domain = request.uri().getHost();
+        return rateLimiter.acquireAsync(domain)
+            .thenCompose(ignored -> client.sendAsync(withDefaultHeaders(request), HttpResponse.BodyHandlers.ofString()))
+            .whenComplete((response, error) -> {
+                if (error != null) {
+                    HttpTransport.metrics(domain).recordCall(0, true);
+                } else {
+                    recordCall(domain, response);
+                }
+            })
+            .thenApply(response -> {
+                try {
+                    checkServerLimits(domain, response);
+                } catch (RateLimitException e) {
+                    throw new CompletionException(e);
+                }
+                return response;
+            });
+    }
+
+    /**
+     * Count the call against the host in {@link HttpTransport}'s per-source metrics
+     */
+    private static void recordCall(String domain, HttpResponse<?> response) {
+        long bytes = response.headers().firstValueAsLong("Content-Length").orElse(
+                response.body() instanceof String body ? body.length() : 0);
+        HttpTransport.metrics(domain).recordCall(bytes, response.statusCode() >= 500);
+    }
+
+    private static HttpRequest withDefaultHeaders(HttpRequest request) {
         // Add user agent to avoid 403 errors (excluding restricted headers)
-        HttpRequest requestWithHeaders = HttpRequest.newBuilder()
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
             .uri(request.uri())
             .timeout(request.timeout().orElse(Duration.ofSeconds(30)))
-            .header("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36")
+            .header("User-Agent", USER_AGENT)
             .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8")
             .header("Accept-Language", "en-US,en;q=0.5")
-            .method(request.method(), request.bodyPublisher().orElse(HttpRequest.BodyPublishers.noBody()))
-            .build();
-        
-        HttpResponse<String> response = httpClient.send(requestWithHeaders, HttpResponse.BodyHandlers.ofString());
-        
-        // Handle HTTP error codes
-        if (response.statusCode() >= 400) {
-            if (response.statusCode() == 429) {
-                throw new RateLimitException("Server rate limit exceeded for " + domain);
-            }
-            throw new IOException("HTTP " + response.statusCode() + " error for " + request.uri());
+            .method(request.method(), request.bodyPublisher().orElse(HttpRequest.BodyPublishers.noBody()));
+        // Keep headers the caller set on the original request, replacing defaults of the same name
+        request.headers().map().forEach((name, values) -> {
+            builder.setHeader(name, values.get(0));
+            values.stream().skip(1).forEach(value -> builder.header(name, value));
+        });
+        return builder.build();
+    }
+
+    private static void checkServerLimits(String domain, HttpResponse<?> response) throws RateLimitException {
+        long retryAfterMs = parseRetryAfter(response.headers().firstValue("Retry-After").orElse(null));
+        if (response.statusCode() == 429) {
+            rateLimiter.pause(domain, retryAfterMs > 0 ? retryAfterMs : DEFAULT_RETRY_AFTER_MS);
+            throw new RateLimitException("Server rate limit exceeded for " + domain);
+        }
+        if (response.statusCode() == 503 && retryAfterMs > 0) {
+            rateLimiter.pause(domain, retryAfterMs);
+        }
+    }
+
+    /**
+     * Retry-After is either a number of seconds or an HTTP date.
+     * @return the delay in milliseconds, or 0 if absent or unparseable
+     */
+    static long parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) return 0;
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException ignored) {
+            // Not a number of seconds, try the date form
+        }
+        try {
+            ZonedDateTime retryAt = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, retryAt.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return 0;
         }
-        
-        return response;
     }
     
     /**
@@ -115,38 +312,68 @@ public class HttpClientWrapper {
      * Get response with redirect information (without following redirects)
      */
     public HttpResponse<String> getWithoutRedirects(String url) throws IOException, InterruptedException, RateLimitException {
-        String domain = url.substring(url.indexOf("://") + 3, url.indexOf("/", url.indexOf("://") + 3));
-        
-        // Check rate limit
-        AtomicLong lastRequest = rateLimitMap.computeIfAbsent(domain, k -> new AtomicLong(0));
-        long now = System.currentTimeMillis();
-        long timeSinceLastRequest = now - lastRequest.get();
-        
-        if (timeSinceLastRequest < DEFAULT_RATE_LIMIT_DELAY) {
-            long waitTime = DEFAULT_RATE_LIMIT_DELAY - timeSinceLastRequest;
-            throw new RateLimitException("Rate limit exceeded for " + domain + ". Wait " + waitTime + "ms");
-        }
-        
-        lastRequest.set(now);
-        
-        // Create a client that doesn't follow redirects
-        HttpClient noRedirectClient = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(30))
-            .followRedirects(HttpClient.Redirect.NEVER)
-            .build();
-        
-        HttpRequest request = HttpRequest.newBuilder()
+        return send(noRedirectClient, HttpRequest.newBuilder()
             .uri(URI.create(url))
             .timeout(Duration.ofSeconds(30))
-            .header("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36")
-            .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8")
-            .header("Accept-Language", "en-US,en;q=0.5")
             .GET()
-            .build();
-        
-        return noRedirectClient.send(request, HttpResponse.BodyHandlers.ofString());
+            .build());
+    }
+    
+    /**
+     * Async form of {@link #getWithoutRedirects(String)}
+     */
+    public CompletableFuture<HttpResponse<String>> getWithoutRedirectsAsync(String url) {
+        return sendAsync(noRedirectClient, HttpRequest.newBuilder()
+            .uri(URI.create(url))
+            .timeout(Duration.ofSeconds(30))
+            .GET()
+            .build());
     }
     
+    /**
+     * A response answered from {@link HttpResponseCache} without (or after a 304 from) the network
+     */
+    private record CachedHttpResponse(HttpRequest request, HttpResponseCache.CachedResponse cached) implements HttpResponse<String> {
+        @Override
+        public int statusCode() {
+            return cached.status();
+        }
+
+        @Override
+        public Optional<HttpResponse<String>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            Map<String, List<String>> headers = new HashMap<>();
+            if (cached.contentType() != null) headers.put("Content-Type", List.of(cached.contentType()));
+            if (cached.etag() != null) headers.put("ETag", List.of(cached.etag()));
+            if (cached.lastModified() != null) headers.put("Last-Modified", List.of(cached.lastModified()));
+            return HttpHeaders.of(headers, (name, value) -> true);
+        }
+
+        @Override
+        public String body() {
+            return cached.body();
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return request.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+
     /**
      * Custom exception for rate limiting
      */
@@ -0,0 +1,466 @@
+package me.hash.mediaroulette.content.http;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import me.hash.mediaroulette.utils.LocalConfig;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Disk-backed cache of GET response bodies, shared by every HTTP client in the bot.
+ * <p>
+ * Responses are stored under {@code cache/http/} as a small metadata file plus the raw body.
+ * Freshness follows {@code Cache-Control} (max-age, no-cache, no-store) and {@code Expires},
+ * falling back to a fraction of the document's age when only {@code Last-Modified} is known.
+ * Stale entries with an {@code ETag} or {@code Last-Modified} are revalidated with a
+ * conditional request, so an unchanged document costs a 304 instead of a full download.
+ * <p>
+ * Per-source policies in {@code http_cache_policies} override the headers: keyed by
+ * {@code host/path} prefix (with {@code *} matching one path segment), a policy can turn
+ * storing off ({@code "store": false}) or fix the freshness lifetime ({@code "ttl_ms"}).
+ * Random endpoints are excluded by built-in policies that hold even without a config entry.
+ * The total size on disk is bounded; least recently used entries are evicted first.
+ */
+public final class HttpResponseCache {
+    private static final Path CACHE_DIR = Path.of("cache", "http");
+    private static final ObjectMapper mapper = new ObjectMapper();
+    // When over the size limit, evict down to this fraction so eviction is not paid on every store
+    private static final double EVICTION_TARGET_RATIO = 0.9;
+    // RFC 9111 heuristic: a document unchanged for N days is assumed fresh for N/10 days, capped
+    private static final double HEURISTIC_FRACTION = 0.1;
+    private static final long MAX_HEURISTIC_FRESHNESS_MS = 24 * 60 * 60 * 1000L;
+
+    // Endpoints whose whole point is a different answer each time; http_cache_policies can add to or override these
+    private static final Map<String, Object> BUILT_IN_POLICIES = Map.of(
+            "api.urbandictionary.com/v0/random", Map.of("store", false),
+            "picsum.photos", Map.of("store", false));
+
+    private static final HttpResponseCache INSTANCE = new HttpResponseCache();
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong(0);
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong revalidations = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    // Stale entries handed out for revalidation; those the server didn't answer with 304 were misses
+    private final AtomicLong staleLookups = new AtomicLong(0);
+    private final AtomicLong stores = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+    private final AtomicLong bytesSaved = new AtomicLong(0);
+
+    /**
+     * What is kept on disk next to each body. The URL itself is left out: the file name is its
+     * hash, and query strings often carry API keys.
+     *
+     * @param freshUntil epoch millis until which the body is served without asking the server
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Meta(int status, String contentType, String etag, String lastModified,
+                long storedAt, long freshUntil, long size) {}
+
+    private static final class Entry {
+        volatile Meta meta;
+        volatile long lastAccess;
+
+        Entry(Meta meta) {
+            this.meta = meta;
+            this.lastAccess = meta.storedAt();
+        }
+    }
+
+    /**
+     * A cached response handed to a transport
+     */
+    public record CachedResponse(String url, int status, String contentType, String etag, String lastModified,
+                                 boolean fresh, String body) {
+
+        /**
+         * Headers to add to the request so the server can answer 304 if nothing changed
+         */
+        public Map<String, String> validators() {
+            Map<String, String> headers = new LinkedHashMap<>();
+            if (etag != null) headers.put("If-None-Match", etag);
+            if (lastModified != null) headers.put("If-Modified-Since", lastModified);
+            return headers;
+        }
+    }
+
+    /**
+     * Per-source override. A negative ttlMs means "use the response headers".
+     */
+    record Policy(boolean store, long ttlMs) {
+        static final Policy DEFAULT = new Policy(true, -1);
+    }
+
+    private HttpResponseCache() {
+        load();
+    }
+
+    public static HttpResponseCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Whether requests to this URL go through the cache at all
+     */
+    public boolean isCacheable(String url) {
+        return LocalConfig.getInstance().getHttpCacheEnabled() && policyFor(url).store();
+    }
+
+    /**
+     * The cached response for a URL, fresh or stale, or null if there is none (or it cannot be read).
+     * A fresh result counts as a hit; callers should revalidate a stale one with {@link CachedResponse#validators()}.
+     */
+    public CachedResponse lookup(String url) {
+        if (!isCacheable(url)) return null;
+
+        String key = keyFor(url);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        Meta meta = entry.meta;
+        String body;
+        try {
+            body = Files.readString(bodyFile(key), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            // Body went missing or is unreadable; drop the entry and fetch it again
+            remove(key, entry);
+            misses.incrementAndGet();
+            return null;
+        }
+
+        entry.lastAccess = System.currentTimeMillis();
+        boolean fresh = entry.lastAccess < meta.freshUntil();
+        if (fresh) {
+            hits.incrementAndGet();
+            bytesSaved.addAndGet(meta.size());
+        } else if (meta.etag() == null && meta.lastModified() == null) {
+            // Stale and nothing to revalidate with: it's a plain miss
+            misses.incrementAndGet();
+            return null;
+        } else {
+            staleLookups.incrementAndGet();
+        }
+        return new CachedResponse(url, meta.status(), meta.contentType(), meta.etag(), meta.lastModified(),
+                fresh, body);
+    }
+
+    /**
+     * Record a 304 for a stale entry: the stored body is still good, with freshness from the new headers.
+     *
+     * @param header response header lookup by name, returning the first value or null
+     */
+    public void revalidated(CachedResponse cached, Function<String, String> header) {
+        String key = keyFor(cached.url());
+        Entry entry = entries.get(key);
+        revalidations.incrementAndGet();
+        if (entry == null) return;
+
+        Meta old = entry.meta;
+        long now = System.currentTimeMillis();
+        String etag = firstNonNull(header.apply("ETag"), old.etag());
+        String lastModified = firstNonNull(header.apply("Last-Modified"), old.lastModified());
+        long freshFor = freshnessLifetime(cached.url(), header, lastModified, now);
+        Meta meta = new Meta(old.status(), old.contentType(), etag, lastModified,
+                now, now + Math.max(0, freshFor), old.size());
+        entry.meta = meta;
+        entry.lastAccess = now;
+        bytesSaved.addAndGet(old.size());
+        writeMeta(key, meta);
+    }
+
+    /**
+     * Store a 200 response if its headers (or the source's policy) allow it.
+     *
+     * @param header response header lookup by name, returning the first value or null
+     */
+    public void store(String url, int status, Function<String, String> header, String body) {
+        if (body == null || !isStorable(url, status, header)) return;
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > LocalConfig.getInstance().getHttpCacheMaxEntryBytes()) return;
+
+        long now = System.currentTimeMillis();
+        String etag = header.apply("ETag");
+        String lastModified = header.apply("Last-Modified");
+        long freshFor = freshnessLifetime(url, header, lastModified, now);
+        String key = keyFor(url);
+        Meta meta = new Meta(status, header.apply("Content-Type"), etag, lastModified,
+                now, now + Math.max(0, freshFor), bytes.length);
+        try {
+            Files.createDirectories(CACHE_DIR);
+            writeAtomically(bodyFile(key), bytes);
+            writeAtomically(metaFile(key), mapper.writeValueAsBytes(meta));
+        } catch (IOException e) {
+            System.err.println("Failed to store HTTP cache entry " + key + ": " + e.getMessage());
+            return;
+        }
+
+        Entry previous = entries.put(key, new Entry(meta));
+        totalBytes.addAndGet(bytes.length - (previous != null ? previous.meta.size() : 0));
+        stores.incrementAndGet();
+        evictIfFull();
+    }
+
+    /**
+     * Whether {@link #store} would keep this response, judged from its status and headers alone,
+     * so transports can skip buffering bodies that won't be stored.
+     */
+    public boolean isStorable(String url, int status, Function<String, String> header) {
+        if (status != 200 || !isCacheable(url)) return false;
+        if (policyFor(url).ttlMs() < 0 && lower(header.apply("Cache-Control")).contains("no-store")) return false;
+
+        String contentLength = header.apply("Content-Length");
+        if (contentLength != null) {
+            try {
+                if (Long.parseLong(contentLength.trim()) > LocalConfig.getInstance().getHttpCacheMaxEntryBytes()) return false;
+            } catch (NumberFormatException ignored) {
+                // Size is checked again once the body has been read
+            }
+        }
+
+        // Nothing to gain from a body that is never fresh and can't be revalidated
+        String lastModified = header.apply("Last-Modified");
+        return header.apply("ETag") != null || lastModified != null
+                || freshnessLifetime(url, header, null, System.currentTimeMillis()) > 0;
+    }
+
+    /**
+     * How long a response stays fresh, in millis from now. 0 or less means "revalidate every time".
+     */
+    private long freshnessLifetime(String url, Function<String, String> header, String lastModified, long now) {
+        Policy policy = policyFor(url);
+        if (policy.ttlMs() >= 0) return policy.ttlMs();
+
+        String cacheControl = lower(header.apply("Cache-Control"));
+        if (cacheControl.contains("no-cache") || cacheControl.contains("no-store")) return 0;
+        for (String directive : cacheControl.split(",")) {
+            directive = directive.trim();
+            if (directive.startsWith("max-age=")) {
+                try {
+                    return Long.parseLong(directive.substring("max-age=".length()).replace("\"", "")) * 1000;
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+
+        long expires = parseDate(header.apply("Expires"));
+        if (expires > 0) {
+            long date = parseDate(header.apply("Date"));
+            return expires - (date > 0 ? date : now);
+        }
+        long modified = parseDate(lastModified);
+        if (modified > 0 && modified < now) {
+            return Math.min(MAX_HEURISTIC_FRESHNESS_MS, (long) ((now - modified) * HEURISTIC_FRACTION));
+        }
+        return 0;
+    }
+
+    /**
+     * The most specific policy whose pattern matches the start of host + path
+     */
+    private Policy policyFor(String url) {
+        Map<String, Object> configured = LocalConfig.getInstance().getHttpCachePolicies();
+        Map<String, Object> policies = BUILT_IN_POLICIES;
+        if (!configured.isEmpty()) {
+            policies = new LinkedHashMap<>(BUILT_IN_POLICIES);
+            policies.putAll(configured);
+        }
+
+        String target;
+        try {
+            URI uri = URI.create(url);
+            target = uri.getHost() + (uri.getRawPath() != null ? uri.getRawPath() : "");
+        } catch (IllegalArgumentException e) {
+            return Policy.DEFAULT;
+        }
+
+        String bestPattern = null;
+        Map<?, ?> best = null;
+        for (Map.Entry<String, Object> policy : policies.entrySet()) {
+            if (!(policy.getValue() instanceof Map<?, ?> settings)) continue;
+            String pattern = policy.getKey();
+            if ((bestPattern == null || pattern.length() > bestPattern.length()) && matches(pattern, target)) {
+                bestPattern = pattern;
+                best = settings;
+            }
+        }
+        if (best == null) return Policy.DEFAULT;
+
+        boolean store = !(best.get("store") instanceof Boolean value) || value;
+        long ttlMs = best.get("ttl_ms") instanceof Number value ? value.longValue() : -1;
+        return new Policy(store, ttlMs);
+    }
+
+    private static boolean matches(String pattern, String target) {
+        if (!pattern.contains("*")) return target.startsWith(pattern);
+        StringBuilder regex = new StringBuilder();
+        for (String part : pattern.split("\\*", -1)) {
+            if (!regex.isEmpty()) regex.append("[^/]*");
+            regex.append(Pattern.quote(part));
+        }
+        return Pattern.compile(regex.toString()).matcher(target).lookingAt();
+    }
+
+    /**
+     * Evict least recently used entries until the cache is back under its target size
+     */
+    private synchronized void evictIfFull() {
+        long maxBytes = LocalConfig.getInstance().getHttpCacheMaxBytes();
+        if (totalBytes.get() <= maxBytes) return;
+
+        long target = (long) (maxBytes * EVICTION_TARGET_RATIO);
+        List<Map.Entry<String, Entry>> candidates = new ArrayList<>(entries.entrySet());
+        candidates.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+        for (Map.Entry<String, Entry> candidate : candidates) {
+            if (totalBytes.get() <= target) break;
+            if (remove(candidate.getKey(), candidate.getValue())) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean remove(String key, Entry entry) {
+        if (!entries.remove(key, entry)) return false;
+        totalBytes.addAndGet(-entry.meta.size());
+        try {
+            Files.deleteIfExists(metaFile(key));
+            Files.deleteIfExists(bodyFile(key));
+        } catch (IOException e) {
+            System.err.println("Failed to delete HTTP cache entry " + key + ": " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Rebuild the index from the metadata files left by the last run
+     */
+    private void load() {
+        if (!Files.isDirectory(CACHE_DIR)) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(CACHE_DIR, "*.meta")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String key = name.substring(0, name.length() - ".meta".length());
+                try {
+                    JsonNode node = mapper.readTree(file.toFile());
+                    Meta meta = mapper.treeToValue(node, Meta.class);
+                    if (!Files.exists(bodyFile(key))) {
+                        Files.deleteIfExists(file);
+                        continue;
+                    }
+                    if (node.has("url")) {
+                        // Written before URLs were left out; rewrite without it
+                        writeMeta(key, meta);
+                    }
+                    entries.put(key, new Entry(meta));
+                    totalBytes.addAndGet(meta.size());
+                } catch (IOException e) {
+                    System.err.println("Skipping unreadable HTTP cache entry " + file + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to load HTTP cache from " + CACHE_DIR + ": " + e.getMessage());
+        }
+        if (!entries.isEmpty()) {
+            System.out.println("Loaded " + entries.size() + " HTTP cache entries (" + totalBytes.get() / 1024 + " KB)");
+        }
+        evictIfFull();
+    }
+
+    private void writeMeta(String key, Meta meta) {
+        try {
+            writeAtomically(metaFile(key), mapper.writeValueAsBytes(meta));
+        } catch (IOException e) {
+            System.err.println("Failed to update HTTP cache entry " + key + ": " + e.getMessage());
+        }
+    }
+
+    private static void writeAtomically(Path file, byte[] bytes) throws IOException {
+        Path temp = Files.createTempFile(CACHE_DIR, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, bytes);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static Path metaFile(String key) {
+        return CACHE_DIR.resolve(key + ".meta");
+    }
+
+    private static Path bodyFile(String key) {
+        return CACHE_DIR.resolve(key + ".body");
+    }
+
+    private static String keyFor(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static long parseDate(String value) {
+        if (value == null || value.isBlank()) return 0;
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    private static String lower(String value) {
+        return value != null ? value.toLowerCase() : "";
+    }
+
+    private static String firstNonNull(String first, String second) {
+        return first != null ? first : second;
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long revalidated = revalidations.get();
+        long missCount = misses.get() + Math.max(0, staleLookups.get() - revalidated);
+        long total = hitCount + revalidated + missCount;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("bytes", totalBytes.get());
+        stats.put("maxBytes", LocalConfig.getInstance().getHttpCacheMaxBytes());
+        stats.put("hits", hitCount);
+        stats.put("revalidated", revalidated);
+        stats.put("misses", missCount);
+        stats.put("stores", stores.get());
+        stats.put("evictions", evictions.get());
+        stats.put("bytesSaved", bytesSaved.get());
+        stats.put("hitRate", total > 0 ? (double) (hitCount + revalidated) / total * 100 : 0.0);
+        return stats;
+    }
+}
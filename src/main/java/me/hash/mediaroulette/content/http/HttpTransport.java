@@ -0,0 +1,274 @@
+package me.hash.mediaroulette.content.http;
+
+import me.hash.mediaroulette.utils.LocalConfig;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The one place HTTP clients are created. Every OkHttp client is derived from a single base
+ * client, so they all share one connection pool, one dispatcher and one TLS session cache;
+ * the java.net.http clients are likewise created once per redirect policy. Both negotiate
+ * HTTP/2 where the server offers it.
+ * <p>
+ * Clients are handed out per source, with and without the response cache. A source gets its
+ * own timeouts (defaults from the call site, overridable in {@code http_timeouts}) and its own
+ * traffic counters: calls, connection reuse, DNS and TLS time, and bytes in and out.
+ */
+public final class HttpTransport {
+    private static final ConnectionPool POOL;
+    private static final Dispatcher DISPATCHER;
+    private static final OkHttpClient BASE;
+    private static final HttpClient JAVA_CLIENT;
+    private static final HttpClient JAVA_NO_REDIRECT_CLIENT;
+
+    private static final Map<ClientKey, OkHttpClient> clients = new ConcurrentHashMap<>();
+    // Timeouts each source was first asked for; every call site of a source must agree on them
+    private static final Map<String, Timeouts> timeouts = new ConcurrentHashMap<>();
+    private static final Map<String, SourceMetrics> metrics = new ConcurrentHashMap<>();
+
+    static {
+        LocalConfig config = LocalConfig.getInstance();
+        POOL = new ConnectionPool(config.getHttpPoolMaxIdle(), config.getHttpPoolKeepAliveMs(), TimeUnit.MILLISECONDS);
+        DISPATCHER = new Dispatcher();
+        DISPATCHER.setMaxRequests(config.getHttpMaxRequests());
+        DISPATCHER.setMaxRequestsPerHost(config.getHttpMaxRequestsPerHost());
+        BASE = new OkHttpClient.Builder()
+                .connectionPool(POOL)
+                .dispatcher(DISPATCHER)
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .retryOnConnectionFailure(true)
+                .build();
+
+        JAVA_CLIENT = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(30))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        JAVA_NO_REDIRECT_CLIENT = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(30))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    private record ClientKey(String source, boolean caching) {}
+
+    private record Timeouts(Duration connect, Duration read) {}
+
+    private HttpTransport() {}
+
+    /**
+     * Shared OkHttp client for a source. The timeouts are the source's defaults, which
+     * {@code http_timeouts.<source>.connect_ms/read_ms} overrides.
+     * @throws IllegalArgumentException if the source was already asked for with other timeouts
+     */
+    public static OkHttpClient client(String source, Duration connectTimeout, Duration readTimeout) {
+        return client(source, connectTimeout, readTimeout, false);
+    }
+
+    /**
+     * Like {@link #client}, with responses going through {@link HttpResponseCache}.
+     * Only for text documents: the cache stores bodies as strings.
+     */
+    public static OkHttpClient cachingClient(String source, Duration connectTimeout, Duration readTimeout) {
+        return client(source, connectTimeout, readTimeout, true);
+    }
+
+    private static OkHttpClient client(String source, Duration connectTimeout, Duration readTimeout, boolean caching) {
+        Timeouts requested = new Timeouts(connectTimeout, readTimeout);
+        Timeouts existing = timeouts.putIfAbsent(source, requested);
+        if (existing != null && !existing.equals(requested)) {
+            throw new IllegalArgumentException(String.format(
+                    "HTTP source %s already uses connect %dms / read %dms, not connect %dms / read %dms",
+                    source, existing.connect().toMillis(), existing.read().toMillis(),
+                    connectTimeout.toMillis(), readTimeout.toMillis()));
+        }
+        return clients.computeIfAbsent(new ClientKey(source, caching),
+                key -> build(source, connectTimeout, readTimeout, caching));
+    }
+
+    private static OkHttpClient build(String source, Duration connectTimeout, Duration readTimeout, boolean caching) {
+        LocalConfig config = LocalConfig.getInstance();
+        long connectMs = config.getHttpTimeoutMs(source, "connect_ms", connectTimeout.toMillis());
+        long readMs = config.getHttpTimeoutMs(source, "read_ms", readTimeout.toMillis());
+        SourceMetrics sourceMetrics = metrics(source);
+
+        OkHttpClient.Builder builder = BASE.newBuilder()
+                .connectTimeout(connectMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(readMs, TimeUnit.MILLISECONDS)
+                .eventListenerFactory(call -> new MetricsListener(sourceMetrics));
+        if (caching) {
+            builder.addInterceptor(CachingInterceptor.getInstance());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Shared java.net.http client that follows redirects
+     */
+    public static HttpClient javaClient() {
+        return JAVA_CLIENT;
+    }
+
+    /**
+     * Shared java.net.http client that returns redirects to the caller
+     */
+    public static HttpClient javaNoRedirectClient() {
+        return JAVA_NO_REDIRECT_CLIENT;
+    }
+
+    /**
+     * Counters for a source. java.net.http callers record their own calls here, since that
+     * client has no event hooks; they report calls and bytes but no DNS/TLS timings.
+     */
+    public static SourceMetrics metrics(String source) {
+        return metrics.computeIfAbsent(source, key -> new SourceMetrics());
+    }
+
+    /**
+     * Traffic counters for one source
+     */
+    public static final class SourceMetrics {
+        private final AtomicLong calls = new AtomicLong(0);
+        private final AtomicLong failures = new AtomicLong(0);
+        private final AtomicLong connectionsAcquired = new AtomicLong(0);
+        private final AtomicLong connectionsOpened = new AtomicLong(0);
+        private final AtomicLong dnsLookups = new AtomicLong(0);
+        private final AtomicLong dnsNanos = new AtomicLong(0);
+        private final AtomicLong tlsHandshakes = new AtomicLong(0);
+        private final AtomicLong tlsNanos = new AtomicLong(0);
+        private final AtomicLong bytesIn = new AtomicLong(0);
+        private final AtomicLong bytesOut = new AtomicLong(0);
+
+        public void recordCall(long responseBytes, boolean failed) {
+            calls.incrementAndGet();
+            if (failed) failures.incrementAndGet();
+            if (responseBytes > 0) bytesIn.addAndGet(responseBytes);
+        }
+
+        public Map<String, Object> getStats() {
+            long acquired = connectionsAcquired.get();
+            long dns = dnsLookups.get();
+            long tls = tlsHandshakes.get();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("calls", calls.get());
+            stats.put("failures", failures.get());
+            stats.put("connectionsOpened", connectionsOpened.get());
+            stats.put("reuseRate", acquired > 0 ? (1.0 - (double) connectionsOpened.get() / acquired) * 100 : 0.0);
+            stats.put("avgDnsMs", dns > 0 ? dnsNanos.get() / 1_000_000.0 / dns : 0.0);
+            stats.put("avgTlsMs", tls > 0 ? tlsNanos.get() / 1_000_000.0 / tls : 0.0);
+            stats.put("bytesIn", bytesIn.get());
+            stats.put("bytesOut", bytesOut.get());
+            return stats;
+        }
+    }
+
+    /**
+     * Per-call listener; holds the start times of the call's DNS lookup and TLS handshake
+     */
+    private static final class MetricsListener extends EventListener {
+        private final SourceMetrics metrics;
+        private long dnsStart;
+        private long tlsStart;
+
+        MetricsListener(SourceMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void callStart(Call call) {
+            metrics.calls.incrementAndGet();
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            metrics.failures.incrementAndGet();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            metrics.dnsLookups.incrementAndGet();
+            metrics.dnsNanos.addAndGet(System.nanoTime() - dnsStart);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            metrics.connectionsOpened.incrementAndGet();
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            tlsStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            metrics.tlsHandshakes.incrementAndGet();
+            metrics.tlsNanos.addAndGet(System.nanoTime() - tlsStart);
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            metrics.connectionsAcquired.incrementAndGet();
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            metrics.bytesOut.addAndGet(byteCount);
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            metrics.bytesIn.addAndGet(byteCount);
+        }
+    }
+
+    /**
+     * Pool and dispatcher usage plus per-source counters, for the terminal stats command
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("connections", POOL.connectionCount());
+        stats.put("idleConnections", POOL.idleConnectionCount());
+        stats.put("runningCalls", DISPATCHER.runningCallsCount());
+        stats.put("queuedCalls", DISPATCHER.queuedCallsCount());
+        Map<String, Map<String, Object>> sources = new TreeMap<>();
+        metrics.forEach((source, sourceMetrics) -> sources.put(source, sourceMetrics.getStats()));
+        stats.put("sources", sources);
+        return stats;
+    }
+
+    /**
+     * Release idle connections and stop the dispatcher's threads
+     */
+    public static void shutdown() {
+        DISPATCHER.executorService().shutdown();
+        POOL.evictAll();
+    }
+}
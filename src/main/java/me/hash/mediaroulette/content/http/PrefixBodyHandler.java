@@ -0,0 +1,74 @@
+package me.hash.mediaroulette.content.http;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Body handler that keeps only the first bytes of a response and cancels the rest of the
+ * transfer, for reading file headers without downloading whole files.
+ */
+public class PrefixBodyHandler implements HttpResponse.BodyHandler<byte[]> {
+    private final int maxBytes;
+
+    public PrefixBodyHandler(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<byte[]> apply(HttpResponse.ResponseInfo responseInfo) {
+        return new PrefixSubscriber(maxBytes);
+    }
+
+    private static final class PrefixSubscriber implements HttpResponse.BodySubscriber<byte[]> {
+        private final int maxBytes;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        PrefixSubscriber(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            for (ByteBuffer item : items) {
+                int take = Math.min(item.remaining(), maxBytes - buffer.size());
+                byte[] chunk = new byte[take];
+                item.get(chunk);
+                buffer.write(chunk, 0, take);
+            }
+            if (buffer.size() >= maxBytes) {
+                subscription.cancel();
+                result.complete(buffer.toByteArray());
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(buffer.toByteArray());
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return result;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package me.hash.mediaroulette.content.provider;
+
+import me.hash.mediaroulette.utils.GlobalLogger;
+import me.hash.mediaroulette.utils.LocalConfig;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Circuit breaker for one upstream source. While closed, calls pass through and their
+ * outcomes go into a rolling time window. Once the window holds enough calls and either the
+ * error rate or the slow-call rate crosses its threshold, the breaker opens and calls fail at
+ * once with {@link OpenException}, without taking a thread or a connection. After the open
+ * period a few trial calls are let through (half-open): if they all succeed quickly the
+ * breaker closes, otherwise it opens again.
+ * <p>
+ * Only upstream trouble counts as a failure (I/O errors, HTTP errors and timeouts); our own
+ * rate limits and queue rejections are neither failures nor successes.
+ */
+public class CircuitBreaker {
+    private static final int BUCKETS = 10;
+    private static final int MAX_TRANSITIONS = 10;
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Thrown instead of calling a source whose breaker is open
+     */
+    public static class OpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public OpenException(String source) {
+            super("Source " + source + " is temporarily unavailable (circuit open)");
+        }
+    }
+
+    public record Transition(long at, State from, State to, String reason) {}
+
+    private static final class Bucket {
+        long start;
+        int calls;
+        int failures;
+        int slowCalls;
+    }
+
+    private final String source;
+    private final Bucket[] buckets = new Bucket[BUCKETS];
+    private final Deque<Transition> transitions = new ArrayDeque<>();
+
+    private State state = State.CLOSED;
+    private long openedAt = 0;
+    private int trialsInFlight = 0;
+    private int trialsSucceeded = 0;
+    private long rejected = 0;
+
+    public CircuitBreaker(String source) {
+        this.source = source;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * Run a call through the breaker: fail fast while open, otherwise time the call and record its outcome.
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> call) {
+        if (!tryAcquire()) {
+            return CompletableFuture.failedFuture(new OpenException(source));
+        }
+        long start = System.currentTimeMillis();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (Throwable t) {
+            future = CompletableFuture.failedFuture(t);
+        }
+        return future.whenComplete((value, error) -> {
+            long elapsed = System.currentTimeMillis() - start;
+            Throwable cause = error != null ? ProviderExecutors.unwrap(error) : null;
+            if (cause == null) {
+                onResult(false, elapsed);
+            } else if (cause instanceof IOException || cause instanceof TimeoutException) {
+                onResult(true, elapsed);
+            } else {
+                onIgnored();
+            }
+        });
+    }
+
+    /**
+     * Whether a call would be let through right now, without reserving a trial slot
+     */
+    public synchronized boolean isCallPermitted() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> System.currentTimeMillis() - openedAt >= LocalConfig.getInstance().getBreakerOpenMs();
+            case HALF_OPEN -> trialsInFlight < LocalConfig.getInstance().getBreakerHalfOpenTrials();
+        };
+    }
+
+    private synchronized boolean tryAcquire() {
+        LocalConfig config = LocalConfig.getInstance();
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < config.getBreakerOpenMs()) {
+                rejected++;
+                return false;
+            }
+            transition(State.HALF_OPEN, "open period elapsed");
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsInFlight >= config.getBreakerHalfOpenTrials()) {
+                rejected++;
+                return false;
+            }
+            trialsInFlight++;
+        }
+        return true;
+    }
+
+    private synchronized void onResult(boolean failed, long elapsedMs) {
+        LocalConfig config = LocalConfig.getInstance();
+        boolean slow = elapsedMs >= config.getBreakerSlowCallMs();
+
+        if (state == State.HALF_OPEN) {
+            trialsInFlight = Math.max(0, trialsInFlight - 1);
+            if (failed || slow) {
+                transition(State.OPEN, failed ? "trial call failed" : "trial call took " + elapsedMs + "ms");
+            } else if (++trialsSucceeded >= config.getBreakerHalfOpenTrials()) {
+                transition(State.CLOSED, trialsSucceeded + " trial calls succeeded");
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // A call admitted before the breaker opened; its outcome no longer matters
+            return;
+        }
+
+        Bucket bucket = currentBucket(System.currentTimeMillis(), config.getBreakerWindowMs());
+        bucket.calls++;
+        if (failed) bucket.failures++;
+        if (slow) bucket.slowCalls++;
+        checkThresholds(config);
+    }
+
+    private synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            trialsInFlight = Math.max(0, trialsInFlight - 1);
+        }
+    }
+
+    private void checkThresholds(LocalConfig config) {
+        long now = System.currentTimeMillis();
+        long windowMs = config.getBreakerWindowMs();
+        int calls = 0, failures = 0, slowCalls = 0;
+        for (Bucket bucket : buckets) {
+            if (now - bucket.start < windowMs) {
+                calls += bucket.calls;
+                failures += bucket.failures;
+                slowCalls += bucket.slowCalls;
+            }
+        }
+        if (calls < config.getBreakerMinCalls()) return;
+
+        double failureRate = 100.0 * failures / calls;
+        double slowRate = 100.0 * slowCalls / calls;
+        if (failureRate >= config.getBreakerFailureRate()) {
+            transition(State.OPEN, String.format("%.0f%% of %d calls failed", failureRate, calls));
+        } else if (slowRate >= config.getBreakerSlowCallRate()) {
+            transition(State.OPEN, String.format("%.0f%% of %d calls were slow", slowRate, calls));
+        }
+    }
+
+    private Bucket currentBucket(long now, long windowMs) {
+        long bucketMs = Math.max(1, windowMs / BUCKETS);
+        long bucketStart = now - now % bucketMs;
+        Bucket bucket = buckets[(int) ((now / bucketMs) % BUCKETS)];
+        if (bucket.start != bucketStart) {
+            bucket.start = bucketStart;
+            bucket.calls = 0;
+            bucket.failures = 0;
+            bucket.slowCalls = 0;
+        }
+        return bucket;
+    }
+
+    private void transition(State to, String reason) {
+        State from = state;
+        state = to;
+        trialsInFlight = 0;
+        trialsSucceeded = 0;
+        if (to == State.OPEN) {
+            openedAt = System.currentTimeMillis();
+        }
+        if (to == State.CLOSED) {
+            for (Bucket bucket : buckets) {
+                bucket.start = 0;
+            }
+        }
+
+        transitions.addLast(new Transition(System.currentTimeMillis(), from, to, reason));
+        while (transitions.size() > MAX_TRANSITIONS) {
+            transitions.removeFirst();
+        }
+        GlobalLogger.getLogger().log(to == State.OPEN ? Level.WARNING : Level.INFO,
+                "Circuit for {0}: {1} -> {2} ({3})", new Object[]{source, from, to, reason});
+    }
+
+    /**
+     * Close the breaker and forget the window, e.g. after fixing an upstream by hand
+     */
+    public synchronized void reset() {
+        if (state != State.CLOSED) {
+            transition(State.CLOSED, "manual reset");
+        } else {
+            for (Bucket bucket : buckets) {
+                bucket.start = 0;
+            }
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized List<Transition> getTransitions() {
+        return new ArrayList<>(transitions);
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        long now = System.currentTimeMillis();
+        long windowMs = LocalConfig.getInstance().getBreakerWindowMs();
+        int calls = 0, failures = 0, slowCalls = 0;
+        for (Bucket bucket : buckets) {
+            if (now - bucket.start < windowMs) {
+                calls += bucket.calls;
+                failures += bucket.failures;
+                slowCalls += bucket.slowCalls;
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state);
+        stats.put("calls", calls);
+        stats.put("failures", failures);
+        stats.put("slowCalls", slowCalls);
+        stats.put("rejected", rejected);
+        stats.put("openForMs", state == State.OPEN
+                ? Math.max(0, LocalConfig.getInstance().getBreakerOpenMs() - (now - openedAt)) : 0L);
+        return stats;
+    }
+}
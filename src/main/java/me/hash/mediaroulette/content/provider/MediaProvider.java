@@ -3,9 +3,35 @@ package me.hash.mediaroulette.content.provider;
 import me.hash.mediaroulette.content.http.HttpClientWrapper;
 import me.hash.mediaroulette.model.content.MediaResult;
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 public interface MediaProvider {
     MediaResult getRandomMedia(String query) throws IOException, HttpClientWrapper.RateLimitException, InterruptedException;
     boolean supportsQuery();
     String getProviderName();
+
+    /**
+     * Fetch a random result without tying up the caller's thread. Providers with an async HTTP
+     * path override this; the default runs {@link #getRandomMedia(String)} on the shared
+     * bounded blocking pool. Failures complete the future with the same exceptions the blocking
+     * call throws.
+     */
+    default CompletableFuture<MediaResult> getRandomMediaAsync(String query, RequestContext ctx) {
+        return ProviderExecutors.supplyBlocking(() -> getRandomMedia(query));
+    }
+
+    /**
+     * Called once by the ProviderRegistry before the provider serves requests.
+     */
+    default void start() {}
+
+    /**
+     * Persist in-memory state such as queued results so a following stop loses nothing.
+     */
+    default void drain() {}
+
+    /**
+     * Persist remaining state and release threads and connections. The provider is not used afterwards.
+     */
+    default void stop() {}
 }
\ No newline at end of file
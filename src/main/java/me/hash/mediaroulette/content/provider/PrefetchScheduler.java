@@ -0,0 +1,241 @@
+package me.hash.mediaroulette.content.provider;
+
+import me.hash.mediaroulette.utils.GlobalLogger;
+import me.hash.mediaroulette.utils.LocalConfig;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps provider ready pools topped up so user requests are served from memory instead of
+ * waiting on upstream fetches. Providers report every request with the key it was served for;
+ * a pool that drops below its low watermark is refilled in the background until it reaches
+ * the high watermark. Demand per key decays over time and only the most requested keys of
+ * each source are kept warm; when refill capacity is short, the busiest keys go first.
+ */
+public class PrefetchScheduler {
+    // Refill rounds per trigger, so a source returning tiny batches cannot loop forever
+    private static final int MAX_ROUNDS = 3;
+
+    private static PrefetchScheduler instance;
+
+    private final Logger logger = GlobalLogger.getLogger();
+    private final Map<String, Map<String, Demand>> demand = new ConcurrentHashMap<>();
+    private final Set<String> refilling = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger running = new AtomicInteger(0);
+    private volatile ScheduledExecutorService scheduler;
+
+    private final AtomicLong requests = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong prefetchesIssued = new AtomicLong(0);
+    private final AtomicLong prefetchesFailed = new AtomicLong(0);
+    private final AtomicLong skippedBusy = new AtomicLong(0);
+    private final AtomicLong skippedUnavailable = new AtomicLong(0);
+
+    private final boolean enabled;
+    private final long intervalMs;
+    private final int maxConcurrent;
+    private final int maxKeysPerSource;
+    private final double halfLifeNanos;
+
+    private final class Demand {
+        private double score = 0;
+        private long updatedNanos = System.nanoTime();
+
+        synchronized void hit(long now) {
+            score = decayed(now) + 1;
+            updatedNanos = now;
+        }
+
+        synchronized double decayed(long now) {
+            return score * Math.pow(0.5, (now - updatedNanos) / halfLifeNanos);
+        }
+    }
+
+    private PrefetchScheduler() {
+        LocalConfig config = LocalConfig.getInstance();
+        this.enabled = config.isPrefetchEnabled();
+        this.intervalMs = config.getPrefetchIntervalMs();
+        this.maxConcurrent = Math.max(1, config.getPrefetchMaxConcurrent());
+        this.maxKeysPerSource = Math.max(1, config.getPrefetchMaxKeysPerSource());
+        this.halfLifeNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, config.getPrefetchDemandHalfLifeMs()));
+    }
+
+    public static synchronized PrefetchScheduler getInstance() {
+        if (instance == null) {
+            instance = new PrefetchScheduler();
+        }
+        return instance;
+    }
+
+    public synchronized void start() {
+        if (!enabled || scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "prefetch-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::tick, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Called by a provider for every request it serves.
+     * @param readyBefore results that were ready for the key before this request took one
+     */
+    public void recordRequest(String source, String key, int readyBefore) {
+        if (key == null) return;
+        requests.incrementAndGet();
+        if (readyBefore <= 0) {
+            misses.incrementAndGet();
+        }
+        demand.computeIfAbsent(source, s -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, k -> new Demand())
+                .hit(System.nanoTime());
+
+        // Don't wait for the next tick when this request took the pool under its low watermark
+        if (enabled && scheduler != null && readyBefore - 1 < LocalConfig.getInstance().getPrefetchLowWatermark(source)) {
+            trigger(source, key);
+        }
+    }
+
+    /**
+     * Refill the pools that are under their low watermark, busiest keys first, and forget keys
+     * that have fallen out of each source's top list.
+     */
+    private void tick() {
+        try {
+            long now = System.nanoTime();
+            List<Candidate> candidates = new ArrayList<>();
+            for (Map.Entry<String, Map<String, Demand>> sourceEntry : demand.entrySet()) {
+                String source = sourceEntry.getKey();
+                List<Map.Entry<String, Demand>> ranked = new ArrayList<>(sourceEntry.getValue().entrySet());
+                ranked.sort(Comparator.comparingDouble((Map.Entry<String, Demand> e) -> e.getValue().decayed(now)).reversed());
+                for (int i = 0; i < ranked.size(); i++) {
+                    Map.Entry<String, Demand> entry = ranked.get(i);
+                    if (i >= maxKeysPerSource) {
+                        sourceEntry.getValue().remove(entry.getKey(), entry.getValue());
+                    } else {
+                        candidates.add(new Candidate(source, entry.getKey(), entry.getValue().decayed(now)));
+                    }
+                }
+            }
+
+            candidates.sort(Comparator.comparingDouble(Candidate::score).reversed());
+            for (Candidate candidate : candidates) {
+                PrefetchingProvider provider = provider(candidate.source());
+                if (provider != null && provider.readyCount(candidate.key()) < LocalConfig.getInstance().getPrefetchLowWatermark(candidate.source())) {
+                    trigger(candidate.source(), candidate.key());
+                }
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Prefetch tick failed: {0}", e.getMessage());
+        }
+    }
+
+    private record Candidate(String source, String key, double score) {}
+
+    private void trigger(String source, String key) {
+        // No point refilling from an upstream whose breaker is open
+        if (!ProviderRegistry.getInstance().isAvailable(source)) {
+            skippedUnavailable.incrementAndGet();
+            return;
+        }
+        String id = source + ":" + key;
+        if (!refilling.add(id)) return;
+        if (running.incrementAndGet() > maxConcurrent) {
+            running.decrementAndGet();
+            refilling.remove(id);
+            skippedBusy.incrementAndGet();
+            return;
+        }
+        PrefetchingProvider provider = provider(source);
+        if (provider == null) {
+            finish(id);
+            return;
+        }
+        refill(provider, source, key, id, 1);
+    }
+
+    private void refill(PrefetchingProvider provider, String source, String key, String id, int round) {
+        int before = provider.readyCount(key);
+        prefetchesIssued.incrementAndGet();
+        // Refills go through the source's breaker like user calls, so their failures count too
+        ProviderRegistry.getInstance().getBreaker(source).execute(() -> provider.prefetch(key)).whenComplete((ignored, error) -> {
+            if (error != null) {
+                prefetchesFailed.incrementAndGet();
+                logger.log(Level.FINE, "Prefetch for {0} failed: {1}", new Object[]{id, ProviderExecutors.unwrap(error).getMessage()});
+                finish(id);
+                return;
+            }
+            int after = provider.readyCount(key);
+            // Keep going toward the high watermark while refills are still adding results
+            if (after > before && after < LocalConfig.getInstance().getPrefetchHighWatermark(source) && round < MAX_ROUNDS) {
+                refill(provider, source, key, id, round + 1);
+            } else {
+                finish(id);
+            }
+        });
+    }
+
+    private void finish(String id) {
+        refilling.remove(id);
+        running.decrementAndGet();
+    }
+
+    private PrefetchingProvider provider(String source) {
+        try {
+            return ProviderRegistry.getInstance().get(source) instanceof PrefetchingProvider p ? p : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Ready-pool hit rate, prefetch counters and the hottest keys per source
+     */
+    public Map<String, Object> getStats() {
+        long requestCount = requests.get();
+        long missCount = misses.get();
+        long now = System.nanoTime();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled && scheduler != null);
+        stats.put("requests", requestCount);
+        stats.put("misses", missCount);
+        stats.put("readyHitRate", requestCount > 0 ? (double) (requestCount - missCount) / requestCount * 100 : 0.0);
+        stats.put("prefetchesIssued", prefetchesIssued.get());
+        stats.put("prefetchesFailed", prefetchesFailed.get());
+        stats.put("skippedBusy", skippedBusy.get());
+        stats.put("skippedUnavailable", skippedUnavailable.get());
+        stats.put("refilling", running.get());
+
+        Map<String, List<String>> hotKeys = new TreeMap<>();
+        demand.forEach((source, keys) -> hotKeys.put(source, keys.entrySet().stream()
+                .sorted(Comparator.comparingDouble((Map.Entry<String, Demand> e) -> e.getValue().decayed(now)).reversed())
+                .limit(3)
+                .map(Map.Entry::getKey)
+                .toList()));
+        stats.put("hotKeys", hotKeys);
+        return stats;
+    }
+}
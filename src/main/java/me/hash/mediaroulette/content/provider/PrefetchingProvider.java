@@ -0,0 +1,24 @@
+package me.hash.mediaroulette.content.provider;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A provider that keeps a ready pool of results per key (subreddit, board, query, ...) and can
+ * top it up in the background for the {@link PrefetchScheduler}.
+ * <p>
+ * Since most calls are served from the pool, {@link ProviderRegistry} charges them only to the
+ * user's quota; implementations admit each upstream request they send against the source's
+ * quota themselves (e.g. through a {@link SingleFlight} with a quota source).
+ */
+public interface PrefetchingProvider {
+    /**
+     * Results that can be served for the key without an upstream call.
+     */
+    int readyCount(String key);
+
+    /**
+     * Fetch one more batch for the key into its ready pool. Should share in-flight refills with
+     * user requests for the same key.
+     */
+    CompletableFuture<Void> prefetch(String key);
+}
@@ -0,0 +1,81 @@
+package me.hash.mediaroulette.content.provider;
+
+import me.hash.mediaroulette.utils.LocalConfig;
+import me.hash.mediaroulette.utils.TaskExecutors;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * Executor for provider work that cannot be made non-blocking. Async provider calls that have
+ * no async I/O path run here. In platform mode it is a bounded pool that fails fast when its
+ * queue is full; in virtual mode each task gets a virtual thread and the per-source caps in
+ * {@link SourceConcurrencyLimiter} bound the load instead.
+ */
+public final class ProviderExecutors {
+    private static final ExecutorService BLOCKING = TaskExecutors.newProviderExecutor("provider-blocking",
+            LocalConfig.getInstance().getProviderBlockingThreads(), LocalConfig.getInstance().getProviderBlockingQueue());
+
+    private ProviderExecutors() {}
+
+    /**
+     * Run a blocking call on the shared pool. Checked exceptions complete the future exceptionally
+     * as they are, and a full queue completes it with a RejectedExecutionException.
+     */
+    public static <T> CompletableFuture<T> supplyBlocking(Callable<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return task.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, BLOCKING);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * A step of a future chain that may throw a checked exception.
+     */
+    @FunctionalInterface
+    public interface CheckedFunction<T, R> {
+        R apply(T value) throws Exception;
+    }
+
+    /**
+     * Adapt a throwing step for thenApply/thenCompose; checked exceptions fail the chain as they are.
+     */
+    public static <T, R> Function<T, R> checked(CheckedFunction<T, R> function) {
+        return value -> {
+            try {
+                return function.apply(value);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        };
+    }
+
+    /**
+     * Strip the CompletionException wrapper added by future chaining.
+     */
+    public static Throwable unwrap(Throwable throwable) {
+        while (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        return throwable;
+    }
+
+    public static void shutdown() {
+        BLOCKING.shutdown();
+    }
+}
@@ -0,0 +1,219 @@
+package me.hash.mediaroulette.content.provider;
+
+import me.hash.mediaroulette.content.factory.MediaServiceFactory;
+import me.hash.mediaroulette.content.provider.impl.gifs.TenorProvider;
+import me.hash.mediaroulette.content.provider.impl.images.FourChanProvider;
+import me.hash.mediaroulette.content.provider.impl.images.GoogleProvider;
+import me.hash.mediaroulette.content.provider.impl.images.RedditProvider;
+import me.hash.mediaroulette.content.reddit.RedditClient;
+import me.hash.mediaroulette.content.reddit.SubredditManager;
+import me.hash.mediaroulette.model.content.MediaResult;
+import me.hash.mediaroulette.utils.GlobalLogger;
+import me.hash.mediaroulette.utils.LocalConfig;
+import me.hash.mediaroulette.utils.browser.RateLimiter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Owns one instance of every media provider for the lifetime of the process, so their queues,
+ * caches, thread pools and the shared HTTP client survive between requests.
+ * Providers are keyed by the image type names used in user image options.
+ */
+public class ProviderRegistry {
+    public static final String REDDIT = "reddit";
+    public static final String FOURCHAN = "4chan";
+    public static final String PICSUM = "picsum";
+    public static final String IMGUR = "imgur";
+    public static final String RULE34 = "rule34xxx";
+    public static final String TENOR = "tenor";
+    public static final String GOOGLE = "google";
+    public static final String TMDB_MOVIE = "movies";
+    public static final String TMDB_TV = "tvshow";
+    public static final String YOUTUBE = "youtube";
+    public static final String YOUTUBE_SHORTS = "short";
+
+    private static ProviderRegistry instance;
+
+    private final Logger logger = GlobalLogger.getLogger();
+    private final MediaServiceFactory factory = new MediaServiceFactory();
+    private final Map<String, Supplier<MediaProvider>> suppliers = new LinkedHashMap<>();
+    private final Map<String, MediaProvider> providers = new ConcurrentHashMap<>();
+    private final SourceConcurrencyLimiter limiter =
+            new SourceConcurrencyLimiter(LocalConfig.getInstance().getSourceMaxQueued());
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private volatile boolean stopped = false;
+
+    private ProviderRegistry() {
+        suppliers.put(REDDIT, factory::createRedditProvider);
+        suppliers.put(FOURCHAN, factory::createFourChanProvider);
+        suppliers.put(PICSUM, factory::createPicsumProvider);
+        suppliers.put(IMGUR, factory::createImgurProvider);
+        suppliers.put(RULE34, factory::createRule34Provider);
+        suppliers.put(TENOR, factory::createTenorProvider);
+        suppliers.put(GOOGLE, factory::createGoogleProvider);
+        suppliers.put(TMDB_MOVIE, factory::createTMDBMovieProvider);
+        suppliers.put(TMDB_TV, factory::createTMDBTvProvider);
+        suppliers.put(YOUTUBE, factory::createYouTubeProvider);
+        suppliers.put(YOUTUBE_SHORTS, factory::createYouTubeShortsProvider);
+    }
+
+    public static synchronized ProviderRegistry getInstance() {
+        if (instance == null) {
+            instance = new ProviderRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Create and start every provider up front instead of on first use.
+     */
+    public void start() {
+        for (String key : suppliers.keySet()) {
+            try {
+                get(key);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Failed to start provider {0}: {1}", new Object[]{key, e.getMessage()});
+            }
+        }
+    }
+
+    /**
+     * Returns the shared provider for an image type, creating and starting it on first use.
+     */
+    public MediaProvider get(String key) {
+        if (stopped) {
+            throw new IllegalStateException("Provider registry has been stopped");
+        }
+        Supplier<MediaProvider> supplier = suppliers.get(key);
+        if (supplier == null) {
+            throw new IllegalArgumentException("Unknown provider: " + key);
+        }
+        return providers.computeIfAbsent(key, k -> {
+            MediaProvider provider = supplier.get();
+            provider.start();
+            return provider;
+        });
+    }
+
+    /**
+     * Fetch from a provider through its source's circuit breaker and concurrency cap.
+     */
+    public CompletableFuture<MediaResult> fetchAsync(String key, String query, RequestContext ctx) {
+        MediaProvider provider = get(key);
+        return call(key, ctx, () -> provider.getRandomMediaAsync(query, ctx));
+    }
+
+    /**
+     * Run a fetch against a source through its rate limits, circuit breaker and concurrency cap;
+     * also used for sources that aren't registered providers (e.g. Urban Dictionary). Fails fast
+     * with {@link CircuitBreaker.OpenException} while the source's breaker is open, and with a
+     * RateLimitException when the global, source or user quota turns the request away.
+     */
+    public <T> CompletableFuture<T> call(String source, RequestContext ctx, Supplier<CompletableFuture<T>> fetch) {
+        CircuitBreaker breaker = getBreaker(source);
+        if (!breaker.isCallPermitted()) {
+            // Don't spend quota on a call the breaker would refuse
+            return CompletableFuture.failedFuture(new CircuitBreaker.OpenException(source));
+        }
+        // Pooled sources charge the upstream quotas when they actually go upstream; here only the user pays
+        CompletableFuture<Void> admitted = admitsOwnUpstream(source)
+                ? RateLimiter.acquireUserAsync(ctx.getUserId())
+                : RateLimiter.acquireAsync(source, ctx.getUserId());
+        // The breaker sits inside the concurrency cap so it only times the upstream call, not the queue
+        return admitted.thenCompose(ignored -> limiter.submit(source, () -> breaker.execute(fetch)));
+    }
+
+    /**
+     * Providers with ready pools serve most calls from memory and admit each upstream request themselves
+     */
+    private boolean admitsOwnUpstream(String source) {
+        return suppliers.containsKey(source) && get(source) instanceof PrefetchingProvider;
+    }
+
+    public CircuitBreaker getBreaker(String source) {
+        return breakers.computeIfAbsent(source, CircuitBreaker::new);
+    }
+
+    /**
+     * False while the source's breaker is open and would reject a call
+     */
+    public boolean isAvailable(String source) {
+        CircuitBreaker breaker = breakers.get(source);
+        return breaker == null || breaker.isCallPermitted();
+    }
+
+    /**
+     * Every breaker created so far, keyed by source
+     */
+    public Map<String, CircuitBreaker> getBreakers() {
+        return new TreeMap<>(breakers);
+    }
+
+    public SourceConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    public RedditProvider getReddit() {
+        return (RedditProvider) get(REDDIT);
+    }
+
+    public FourChanProvider getFourChan() {
+        return (FourChanProvider) get(FOURCHAN);
+    }
+
+    public TenorProvider getTenor() {
+        return (TenorProvider) get(TENOR);
+    }
+
+    public GoogleProvider getGoogle() {
+        return (GoogleProvider) get(GOOGLE);
+    }
+
+    public RedditClient getRedditClient() {
+        return factory.getRedditClient();
+    }
+
+    public SubredditManager getSubredditManager() {
+        return factory.getSubredditManager();
+    }
+
+    /**
+     * Persist in-memory provider state without stopping anything.
+     */
+    public void drain() {
+        for (MediaProvider provider : providers.values()) {
+            try {
+                provider.drain();
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Failed to drain provider {0}: {1}",
+                        new Object[]{provider.getProviderName(), e.getMessage()});
+            }
+        }
+    }
+
+    /**
+     * Stop every provider, letting each persist its remaining state. Called once at shutdown.
+     */
+    public void stop() {
+        stopped = true;
+        List<MediaProvider> started = new ArrayList<>(providers.values());
+        providers.clear();
+        for (MediaProvider provider : started) {
+            try {
+                provider.stop();
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Failed to stop provider {0}: {1}",
+                        new Object[]{provider.getProviderName(), e.getMessage()});
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package me.hash.mediaroulette.content.provider;
+
+/**
+ * Who a media request is made for. Providers use it for per-user choices such as dictionary words;
+ * requests without a user (background work, legacy callers) use {@link #anonymous()}.
+ */
+public final class RequestContext {
+    private static final RequestContext ANONYMOUS = new RequestContext(null);
+
+    private final String userId;
+
+    private RequestContext(String userId) {
+        this.userId = userId;
+    }
+
+    public static RequestContext of(String userId) {
+        return userId == null ? ANONYMOUS : new RequestContext(userId);
+    }
+
+    public static RequestContext anonymous() {
+        return ANONYMOUS;
+    }
+
+    /** The requesting user's id, or null for anonymous requests */
+    public String getUserId() {
+        return userId;
+    }
+
+    public boolean hasUser() {
+        return userId != null;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestContext{userId=" + userId + "}";
+    }
+}
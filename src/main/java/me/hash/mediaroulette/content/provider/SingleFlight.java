@@ -0,0 +1,135 @@
+package me.hash.mediaroulette.content.provider;
+
+import me.hash.mediaroulette.content.http.HttpClientWrapper;
+import me.hash.mediaroulette.utils.browser.RateLimiter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent calls for the same key into one upstream call. The first caller issues
+ * it; callers arriving while it is in flight get the same future. The key is released as soon
+ * as the call completes, so the next caller after that issues a fresh one.
+ * Each provider owns one instance, named after it for the stats output. When the calls are
+ * upstream requests, the instance can charge each issued call (not the coalesced ones) against
+ * the source's rate limit quota.
+ */
+public final class SingleFlight {
+    private static final Map<String, SingleFlight> instances = new ConcurrentHashMap<>();
+
+    private final String quotaSource;
+    private final Map<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong issued = new AtomicLong(0);
+    private final AtomicLong coalesced = new AtomicLong(0);
+
+    public SingleFlight(String name) {
+        this(name, null);
+    }
+
+    /**
+     * @param quotaSource rate limit source each issued call is admitted against, or null for none
+     */
+    public SingleFlight(String name, String quotaSource) {
+        this.quotaSource = quotaSource;
+        instances.put(name, this);
+    }
+
+    /**
+     * Join the in-flight call for the key, or start one with the supplier.
+     */
+    public <T> CompletableFuture<T> execute(String key, Supplier<CompletableFuture<T>> call) {
+        if (quotaSource == null) {
+            return issue(key, call);
+        }
+        return issue(key, () -> RateLimiter.acquireUpstreamAsync(quotaSource).thenCompose(ignored -> call.get()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> issue(String key, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> mine = new CompletableFuture<>();
+        CompletableFuture<?> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return (CompletableFuture<T>) existing;
+        }
+
+        issued.incrementAndGet();
+        CompletableFuture<T> upstream;
+        try {
+            upstream = call.get();
+        } catch (Throwable t) {
+            upstream = CompletableFuture.failedFuture(t);
+        }
+        upstream.whenComplete((value, error) -> {
+            // Release the key first so callers woken by the result can start a new call if needed
+            inFlight.remove(key, mine);
+            if (error != null) {
+                mine.completeExceptionally(ProviderExecutors.unwrap(error));
+            } else {
+                mine.complete(value);
+            }
+        });
+        return mine;
+    }
+
+    /**
+     * Blocking form: the first caller runs the call on its own thread, the others wait for it.
+     */
+    public <T> T executeBlocking(String key, Callable<T> call) throws IOException, InterruptedException, HttpClientWrapper.RateLimitException {
+        return await(issue(key, () -> {
+            try {
+                if (quotaSource != null) {
+                    RateLimiter.acquireUpstream(quotaSource);
+                }
+                return CompletableFuture.completedFuture(call.call());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return CompletableFuture.failedFuture(e);
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }));
+    }
+
+    /**
+     * Wait for a future and rethrow its failure as the checked exceptions providers declare.
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException, InterruptedException, HttpClientWrapper.RateLimitException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = ProviderExecutors.unwrap(e.getCause() != null ? e.getCause() : e);
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof HttpClientWrapper.RateLimitException rl) throw rl;
+            if (cause instanceof InterruptedException ie) throw ie;
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("issued", issued.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("inFlight", inFlight.size());
+        return stats;
+    }
+
+    /**
+     * Issued vs coalesced calls for every provider
+     */
+    public static Map<String, Map<String, Object>> getAllStats() {
+        Map<String, Map<String, Object>> stats = new TreeMap<>();
+        instances.forEach((name, flight) -> stats.put(name, flight.getStats()));
+        return stats;
+    }
+}
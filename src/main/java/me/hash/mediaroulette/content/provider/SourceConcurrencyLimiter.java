@@ -0,0 +1,122 @@
+package me.hash.mediaroulette.content.provider;
+
+import me.hash.mediaroulette.utils.LocalConfig;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Caps how many fetches run against each source at once, across all users. Works on futures
+ * rather than threads: a fetch over the cap waits in the source's queue without holding a
+ * thread and starts when a running one completes. Once the queue is full new fetches fail
+ * with a RejectedExecutionException.
+ */
+public class SourceConcurrencyLimiter {
+    private final Map<String, Gate> gates = new ConcurrentHashMap<>();
+    private final int maxQueued;
+
+    private static final class Gate {
+        private final int limit;
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+        private int running = 0;
+        private long admitted = 0;
+        private long rejected = 0;
+
+        Gate(int limit) {
+            this.limit = Math.max(1, limit);
+        }
+    }
+
+    public SourceConcurrencyLimiter(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    private Gate gate(String source) {
+        return gates.computeIfAbsent(source, s -> new Gate(LocalConfig.getInstance().getSourceMaxConcurrency(s)));
+    }
+
+    /**
+     * Start the fetch now if the source is under its cap, otherwise queue it.
+     */
+    public <T> CompletableFuture<T> submit(String source, Supplier<CompletableFuture<T>> fetch) {
+        Gate gate = gate(source);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            CompletableFuture<T> future;
+            try {
+                future = fetch.get();
+            } catch (Throwable t) {
+                future = CompletableFuture.failedFuture(t);
+            }
+            future.whenComplete((value, error) -> {
+                release(gate);
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        };
+
+        boolean runNow;
+        synchronized (gate) {
+            if (gate.running < gate.limit) {
+                gate.running++;
+                gate.admitted++;
+                runNow = true;
+            } else if (gate.waiting.size() < maxQueued) {
+                gate.waiting.add(start);
+                gate.admitted++;
+                runNow = false;
+            } else {
+                gate.rejected++;
+                return CompletableFuture.failedFuture(
+                        new RejectedExecutionException("Too many pending requests for " + source));
+            }
+        }
+        if (runNow) {
+            start.run();
+        }
+        return result;
+    }
+
+    private void release(Gate gate) {
+        Runnable next;
+        synchronized (gate) {
+            next = gate.waiting.poll();
+            // The slot passes straight to the next waiting fetch
+            if (next == null) {
+                gate.running--;
+            }
+        }
+        if (next != null) {
+            next.run();
+        }
+    }
+
+    /**
+     * Running, queued and rejected fetches per source
+     */
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new TreeMap<>();
+        gates.forEach((source, gate) -> {
+            Map<String, Object> sourceStats = new LinkedHashMap<>();
+            synchronized (gate) {
+                sourceStats.put("limit", gate.limit);
+                sourceStats.put("running", gate.running);
+                sourceStats.put("queued", gate.waiting.size());
+                sourceStats.put("admitted", gate.admitted);
+                sourceStats.put("rejected", gate.rejected);
+            }
+            stats.put(source, sourceStats);
+        });
+        return stats;
+    }
+}
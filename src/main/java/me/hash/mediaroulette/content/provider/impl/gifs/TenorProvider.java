@@ -5,6 +5,8 @@ import me.hash.mediaroulette.utils.DictionaryIntegration;
 import me.hash.mediaroulette.model.content.MediaResult;
 import me.hash.mediaroulette.model.content.MediaSource;
 import me.hash.mediaroulette.content.provider.MediaProvider;
+import me.hash.mediaroulette.content.provider.ProviderExecutors;
+import me.hash.mediaroulette.content.provider.RequestContext;
 import me.hash.mediaroulette.content.http.HttpClientWrapper;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -14,6 +16,7 @@ import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 public class TenorProvider implements MediaProvider {
     private final HttpClientWrapper httpClient;
@@ -39,11 +42,25 @@ public class TenorProvider implements MediaProvider {
             }
         }
 
+        return pickResult(httpClient.getBody(searchUrl(query)), query);
+    }
+
+    @Override
+    public CompletableFuture<MediaResult> getRandomMediaAsync(String query, RequestContext ctx) {
+        CompletableFuture<String> resolvedQuery = query == null || query.isEmpty()
+                ? DictionaryIntegration.getRandomWordForSourceAsync(ctx, "tenor")
+                : CompletableFuture.completedFuture(query);
+        return resolvedQuery.thenCompose(q -> httpClient.getBodyAsync(searchUrl(q))
+                .thenApply(ProviderExecutors.checked(response -> pickResult(response, q))));
+    }
+
+    private String searchUrl(String query) {
         String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
-        String url = String.format("https://tenor.googleapis.com/v2/search?key=%s&q=%s&limit=50",
+        return String.format("https://tenor.googleapis.com/v2/search?key=%s&q=%s&limit=50",
                 apiKey, encodedQuery);
+    }
 
-        String response = httpClient.getBody(url);
+    private MediaResult pickResult(String response, String query) throws IOException {
         JSONObject jsonObject = new JSONObject(response);
 
         if (!jsonObject.has("results")) {
@@ -3,32 +3,70 @@ package me.hash.mediaroulette.content.provider.impl.images;
 import me.hash.mediaroulette.model.content.MediaResult;
 import me.hash.mediaroulette.model.content.MediaSource;
 import me.hash.mediaroulette.content.provider.MediaProvider;
+import me.hash.mediaroulette.content.provider.PrefetchScheduler;
+import me.hash.mediaroulette.content.provider.PrefetchingProvider;
+import me.hash.mediaroulette.content.provider.ProviderExecutors;
+import me.hash.mediaroulette.content.provider.ProviderRegistry;
+import me.hash.mediaroulette.content.provider.RequestContext;
+import me.hash.mediaroulette.content.provider.SingleFlight;
 import me.hash.mediaroulette.content.http.HttpClientWrapper;
 import me.hash.mediaroulette.utils.ErrorReporter;
 import me.hash.mediaroulette.utils.GlobalLogger;
+import me.hash.mediaroulette.utils.LocalConfig;
+import me.hash.mediaroulette.utils.browser.RateLimiter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-public class FourChanProvider implements MediaProvider {
+public class FourChanProvider implements MediaProvider, PrefetchingProvider {
     private static final List<String> BOARDS = Arrays.asList("a", "c", "w", "m", "cgl", "cm", "n", "jp", "vp", "v", "vg",
             "vr", "co", "g", "tv", "k", "o", "an", "tg", "sp", "asp", "sci", "int", "out", "toy", "biz", "i", "po", "p", "ck", "ic",
             "wg", "mu", "fa", "3", "gd", "diy", "wsg", "s", "hc", "hm", "h", "e", "u", "d", "y", "t", "hr", "gif",
             "trv", "fit", "x", "lit", "adv", "lgbt", "mlp", "b", "r", "r9k", "pol", "soc", "s4s");
 
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    // A refill yielding fewer catalog images than this also downloads one of the sampled threads
+    private static final int MIN_CATALOG_IMAGES = 5;
+
     // Cache to track board validation results
     private static final Map<String, Boolean> BOARD_VALIDATION_CACHE = new ConcurrentHashMap<>();
     
     private final Map<String, Queue<MediaResult>> imageCache = new ConcurrentHashMap<>();
+    // Latest catalog per board; validation, thread selection and image sampling all read from it
+    private final Map<String, CatalogSnapshot> catalogs = new ConcurrentHashMap<>();
+    private final SingleFlight refills = new SingleFlight("4chan");
+    private final SingleFlight catalogFetches = new SingleFlight("4chan_catalog", ProviderRegistry.FOURCHAN);
     private final HttpClientWrapper httpClient;
     private final Random random = new Random();
     private final Logger logger = GlobalLogger.getLogger();
 
+    /**
+     * One thread from the catalog with the image URLs the catalog already lists for it
+     */
+    record CatalogThread(int number, List<String> imageUrls) {}
+
+    /**
+     * @param lastModified the catalog's Last-Modified header, sent back as If-Modified-Since
+     */
+    private record CatalogSnapshot(List<CatalogThread> threads, String lastModified, long fetchedAt) {
+        boolean isFresh(long ttlMs) {
+            return System.currentTimeMillis() - fetchedAt < ttlMs;
+        }
+    }
+
     public FourChanProvider(HttpClientWrapper httpClient) {
         this.httpClient = httpClient;
     }
@@ -43,10 +81,16 @@ public class FourChanProvider implements MediaProvider {
             board = getValidRandomBoard(userId);
         }
 
-        Queue<MediaResult> cache = imageCache.computeIfAbsent(board, k -> new LinkedList<>());
+        Queue<MediaResult> cache = imageCache.computeIfAbsent(board, k -> new ConcurrentLinkedQueue<>());
+        PrefetchScheduler.getInstance().recordRequest(ProviderRegistry.FOURCHAN, board, cache.size());
 
         if (cache.isEmpty()) {
-            populateCache(board, userId);
+            // Concurrent misses for the same board share one catalog and thread fetch
+            String refillBoard = board;
+            refills.executeBlocking(board, () -> {
+                populateCache(refillBoard, userId);
+                return null;
+            });
         }
 
         MediaResult result = cache.poll();
@@ -59,6 +103,29 @@ public class FourChanProvider implements MediaProvider {
         return result;
     }
     
+    @Override
+    public CompletableFuture<MediaResult> getRandomMediaAsync(String board, RequestContext ctx) {
+        // Board validation and refills still go through the blocking client, so run on the bounded pool
+        return ProviderExecutors.supplyBlocking(() -> getRandomMedia(board, ctx.getUserId()));
+    }
+
+    @Override
+    public int readyCount(String board) {
+        Queue<MediaResult> cache = imageCache.get(board);
+        return cache == null ? 0 : cache.size();
+    }
+
+    @Override
+    public CompletableFuture<Void> prefetch(String board) {
+        return ProviderExecutors.supplyBlocking(() -> {
+            imageCache.computeIfAbsent(board, k -> new ConcurrentLinkedQueue<>());
+            return refills.<Void>executeBlocking(board, () -> {
+                populateCache(board, null);
+                return null;
+            });
+        });
+    }
+    
     /**
      * Get a valid random board with validation
      */
@@ -104,12 +171,8 @@ public class FourChanProvider implements MediaProvider {
         }
         
         try {
-            String url = String.format("https://a.4cdn.org/%s/catalog.json", board);
-            String response = httpClient.get(url, "4chan", null);
-            
-            // If we can parse the response as JSON array, the board exists
-            JSONArray data = new JSONArray(response);
-            boolean exists = data.length() > 0;
+            // The catalog fetched here is kept, so the refill that follows doesn't download it again
+            boolean exists = !getCatalog(board).threads().isEmpty();
             
             // Cache the result
             BOARD_VALIDATION_CACHE.put(board, exists);
@@ -127,24 +190,40 @@ public class FourChanProvider implements MediaProvider {
         }
     }
 
+    /**
+     * Fill the board's queue from several random threads. Their images come straight from the
+     * catalog snapshot; a thread is only downloaded when the sampled threads list too few images.
+     */
     private void populateCache(String board, String userId) throws IOException, HttpClientWrapper.RateLimitException, InterruptedException {
         try {
-            List<Integer> threadNumbers = fetchThreadNumbers(board);
-            if (threadNumbers.isEmpty()) {
+            List<CatalogThread> threads = new ArrayList<>(getCatalog(board).threads());
+            if (threads.isEmpty()) {
                 String errorMsg = "No threads found for board: " + board;
                 logger.log(Level.WARNING, errorMsg);
                 ErrorReporter.reportFailed4ChanBoard(board, errorMsg, userId);
                 return;
             }
 
-            int selectedThread = threadNumbers.get(random.nextInt(threadNumbers.size()));
-            List<MediaResult> images = fetchImagesFromThread(board, selectedThread);
+            Collections.shuffle(threads, random);
+            List<CatalogThread> sampled = threads.subList(0, Math.min(threads.size(),
+                    Math.max(1, LocalConfig.getInstance().getFourChanThreadsPerRefill())));
+
+            List<MediaResult> images = new ArrayList<>();
+            for (CatalogThread thread : sampled) {
+                for (String imageUrl : thread.imageUrls()) {
+                    images.add(toResult(board, thread.number(), imageUrl));
+                }
+            }
+            if (images.size() < MIN_CATALOG_IMAGES) {
+                images.addAll(fetchImagesFromThread(board, sampled.get(0).number()));
+            }
+            Collections.shuffle(images, random);
 
             Queue<MediaResult> cache = imageCache.get(board);
             cache.addAll(images);
             
-            logger.log(Level.INFO, "Populated cache for board {0} with {1} images", 
-                new Object[]{board, images.size()});
+            logger.log(Level.INFO, "Populated cache for board {0} with {1} images from {2} threads", 
+                new Object[]{board, images.size(), sampled.size()});
         } catch (IOException | HttpClientWrapper.RateLimitException | InterruptedException e) {
             String errorMsg = "Failed to populate cache for board " + board + ": " + e.getMessage();
             logger.log(Level.SEVERE, errorMsg);
@@ -153,26 +232,128 @@ public class FourChanProvider implements MediaProvider {
         }
     }
 
-    private List<Integer> fetchThreadNumbers(String board) throws IOException, HttpClientWrapper.RateLimitException, InterruptedException {
+    /**
+     * The board's catalog, downloaded at most once per TTL. An expired snapshot is revalidated
+     * with If-Modified-Since, so an unchanged catalog costs a 304 instead of a full download.
+     */
+    private CatalogSnapshot getCatalog(String board) throws IOException, HttpClientWrapper.RateLimitException, InterruptedException {
+        CatalogSnapshot snapshot = catalogs.get(board);
+        if (snapshot != null && snapshot.isFresh(LocalConfig.getInstance().getFourChanCatalogTtlMs())) {
+            return snapshot;
+        }
+        return catalogFetches.executeBlocking(board, () -> fetchCatalog(board, catalogs.get(board)));
+    }
+
+    private CatalogSnapshot fetchCatalog(String board, CatalogSnapshot previous) throws IOException, HttpClientWrapper.RateLimitException, InterruptedException {
         String url = String.format("https://a.4cdn.org/%s/catalog.json", board);
-        String response = httpClient.get(url, "4chan", null);
+        Map<String, String> headers = previous != null && previous.lastModified() != null
+                ? Map.of("If-Modified-Since", previous.lastModified())
+                : Map.of();
+        HttpResponse<InputStream> response = httpClient.getStream(url, headers);
+
+        try (InputStream body = response.body()) {
+            CatalogSnapshot snapshot;
+            if (response.statusCode() == 304 && previous != null) {
+                snapshot = new CatalogSnapshot(previous.threads(), previous.lastModified(), System.currentTimeMillis());
+            } else {
+                snapshot = new CatalogSnapshot(parseCatalog(board, body),
+                        response.headers().firstValue("Last-Modified").orElse(null), System.currentTimeMillis());
+            }
+            catalogs.put(board, snapshot);
+            return snapshot;
+        }
+    }
+
+    /**
+     * Collect each thread's number and the images the catalog lists for it. The catalog runs to
+     * hundreds of KB, so it is streamed and every other field is skipped.
+     */
+    static List<CatalogThread> parseCatalog(String board, InputStream body) throws IOException {
+        List<CatalogThread> threads = new ArrayList<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Unexpected catalog format for board: " + board);
+            }
+            // [{"page": 1, "threads": [{"no": 123, "tim": ..., "ext": ..., "last_replies": [...]}, ...]}, ...]
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    if (parser.nextToken() != JsonToken.START_ARRAY || !"threads".equals(field)) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        CatalogThread thread = parseCatalogThread(board, parser);
+                        if (thread != null) {
+                            threads.add(thread);
+                        }
+                    }
+                }
+            }
+        }
+        return threads;
+    }
 
-        JSONArray data = new JSONArray(response);
-        List<Integer> threadNumbers = new ArrayList<>();
+    private static CatalogThread parseCatalogThread(String board, JsonParser parser) throws IOException {
+        int number = -1;
+        List<String> imageUrls = new ArrayList<>();
+        long tim = -1;
+        String ext = null;
 
-        for (int i = 0; i < data.length(); i++) {
-            JSONObject page = data.getJSONObject(i);
-            JSONArray threads = page.getJSONArray("threads");
-            for (int j = 0; j < threads.length(); j++) {
-                JSONObject thread = threads.getJSONObject(j);
-                threadNumbers.add(thread.getInt("no"));
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("no".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                number = parser.getIntValue();
+            } else if ("tim".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                tim = parser.getLongValue();
+            } else if ("ext".equals(field) && value == JsonToken.VALUE_STRING) {
+                ext = parser.getText();
+            } else if ("last_replies".equals(field) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    long replyTim = -1;
+                    String replyExt = null;
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String replyField = parser.currentName();
+                        JsonToken replyValue = parser.nextToken();
+                        if ("tim".equals(replyField) && replyValue == JsonToken.VALUE_NUMBER_INT) {
+                            replyTim = parser.getLongValue();
+                        } else if ("ext".equals(replyField) && replyValue == JsonToken.VALUE_STRING) {
+                            replyExt = parser.getText();
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    if (replyTim >= 0 && replyExt != null) {
+                        imageUrls.add(imageUrl(board, replyTim, replyExt));
+                    }
+                }
+            } else {
+                parser.skipChildren();
             }
         }
-        return threadNumbers;
+
+        if (number < 0) return null;
+        if (tim >= 0 && ext != null) {
+            imageUrls.add(0, imageUrl(board, tim, ext));
+        }
+        return new CatalogThread(number, imageUrls);
+    }
+
+    private static String imageUrl(String board, long tim, String ext) {
+        return String.format("https://i.4cdn.org/%s/%d%s", board, tim, ext);
+    }
+
+    private static MediaResult toResult(String board, int threadId, String imageUrl) {
+        String description = String.format("Source: 4Chan\nBoard: %s\nThread: <%s>",
+                board,
+                String.format("https://boards.4chan.org/%s/thread/%d", board, threadId));
+        return new MediaResult(imageUrl, "Here is your random 4Chan image!", description, MediaSource.CHAN_4);
     }
 
     private List<MediaResult> fetchImagesFromThread(String board, int threadId) throws IOException, HttpClientWrapper.RateLimitException, InterruptedException {
         String url = String.format("https://a.4cdn.org/%s/thread/%d.json", board, threadId);
+        RateLimiter.acquireUpstream(ProviderRegistry.FOURCHAN);
         String response = httpClient.get(url, "4chan", null);
 
         JSONObject postData = new JSONObject(response);
@@ -182,14 +363,7 @@ public class FourChanProvider implements MediaProvider {
         for (int i = 0; i < posts.length(); i++) {
             JSONObject post = posts.getJSONObject(i);
             if (post.has("tim") && post.has("ext")) {
-                String imageUrl = String.format("https://i.4cdn.org/%s/%d%s",
-                        board, post.getLong("tim"), post.getString("ext"));
-
-                String description = String.format("Source: 4Chan\nBoard: %s\nThread: <%s>",
-                        board,
-                        String.format("https://boards.4chan.org/%s/thread/%d", board, threadId));
-
-                images.add(new MediaResult(imageUrl, "Here is your random 4Chan image!", description, MediaSource.CHAN_4));
+                images.add(toResult(board, threadId, imageUrl(board, post.getLong("tim"), post.getString("ext"))));
             }
         }
         return images;
@@ -5,6 +5,12 @@ import me.hash.mediaroulette.utils.DictionaryIntegration;
 import me.hash.mediaroulette.model.content.MediaResult;
 import me.hash.mediaroulette.model.content.MediaSource;
 import me.hash.mediaroulette.content.provider.MediaProvider;
+import me.hash.mediaroulette.content.provider.PrefetchScheduler;
+import me.hash.mediaroulette.content.provider.PrefetchingProvider;
+import me.hash.mediaroulette.content.provider.ProviderExecutors;
+import me.hash.mediaroulette.content.provider.ProviderRegistry;
+import me.hash.mediaroulette.content.provider.RequestContext;
+import me.hash.mediaroulette.content.provider.SingleFlight;
 import me.hash.mediaroulette.content.http.HttpClientWrapper;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -13,10 +19,13 @@ import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
-public class GoogleProvider implements MediaProvider {
+public class GoogleProvider implements MediaProvider, PrefetchingProvider {
     private final Map<String, Queue<MediaResult>> imageCache = new ConcurrentHashMap<>();
+    private final SingleFlight refills = new SingleFlight("google", ProviderRegistry.GOOGLE);
     private final HttpClientWrapper httpClient;
     private final Random random = new Random();
     private final String apiKey;
@@ -42,12 +51,54 @@ public class GoogleProvider implements MediaProvider {
             }
         }
 
-        Queue<MediaResult> cache = imageCache.computeIfAbsent(query, k -> new LinkedList<>());
+        Queue<MediaResult> cache = imageCache.computeIfAbsent(query, k -> new ConcurrentLinkedQueue<>());
+        PrefetchScheduler.getInstance().recordRequest(ProviderRegistry.GOOGLE, query, cache.size());
 
         if (cache.isEmpty()) {
-            populateCache(query);
+            String refillQuery = query;
+            refills.executeBlocking(query, () -> {
+                cache.addAll(parseResults(httpClient.getBody(searchUrl(refillQuery)), refillQuery));
+                return null;
+            });
         }
 
+        return pollResult(cache, query);
+    }
+
+    @Override
+    public CompletableFuture<MediaResult> getRandomMediaAsync(String query, RequestContext ctx) {
+        CompletableFuture<String> resolvedQuery = query == null || query.isEmpty()
+                ? DictionaryIntegration.getRandomWordForSourceAsync(ctx, "google")
+                : CompletableFuture.completedFuture(query);
+        return resolvedQuery.thenCompose(q -> {
+            Queue<MediaResult> cache = imageCache.computeIfAbsent(q, k -> new ConcurrentLinkedQueue<>());
+            PrefetchScheduler.getInstance().recordRequest(ProviderRegistry.GOOGLE, q, cache.size());
+            MediaResult cached = cache.poll();
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+            return prefetch(q).thenApply(ProviderExecutors.checked(ignored -> pollResult(cache, q)));
+        });
+    }
+
+    @Override
+    public int readyCount(String query) {
+        Queue<MediaResult> cache = imageCache.get(query);
+        return cache == null ? 0 : cache.size();
+    }
+
+    @Override
+    public CompletableFuture<Void> prefetch(String query) {
+        Queue<MediaResult> cache = imageCache.computeIfAbsent(query, k -> new ConcurrentLinkedQueue<>());
+        // Concurrent misses and background refills for the same query share one search request
+        return refills.execute(query, () -> httpClient.getBodyAsync(searchUrl(query))
+                .thenApply(ProviderExecutors.<String, Void>checked(response -> {
+                    cache.addAll(parseResults(response, query));
+                    return null;
+                })));
+    }
+
+    private MediaResult pollResult(Queue<MediaResult> cache, String query) throws IOException {
         MediaResult result = cache.poll();
         if (result == null) {
             throw new IOException("No images available for query: " + query);
@@ -55,14 +106,15 @@ public class GoogleProvider implements MediaProvider {
         return result;
     }
 
-    private void populateCache(String query) throws IOException, HttpClientWrapper.RateLimitException, InterruptedException {
+    private String searchUrl(String query) {
         int start = random.nextInt(5) + 1;
         String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
-        String url = String.format(
+        return String.format(
                 "https://www.googleapis.com/customsearch/v1?key=%s&cx=%s&q=%s&searchType=image&start=%d",
                 apiKey, cseId, encodedQuery, start);
+    }
 
-        String response = httpClient.getBody(url);
+    private List<MediaResult> parseResults(String response, String query) throws IOException {
         JSONObject json = new JSONObject(response);
 
         if (!json.has("items")) {
@@ -83,9 +135,7 @@ public class GoogleProvider implements MediaProvider {
 
             images.add(new MediaResult(imageUrl, title, description, MediaSource.GOOGLE));
         }
-
-        Queue<MediaResult> cache = imageCache.get(query);
-        cache.addAll(images);
+        return images;
     }
 
     @Override
@@ -1,57 +1,329 @@
 package me.hash.mediaroulette.content.provider.impl.images;
 
+import me.hash.mediaroulette.content.http.HttpClientWrapper;
+import me.hash.mediaroulette.content.http.HttpTransport;
+import me.hash.mediaroulette.content.http.PrefixBodyHandler;
+import me.hash.mediaroulette.content.provider.PrefetchScheduler;
+import me.hash.mediaroulette.content.provider.PrefetchingProvider;
+import me.hash.mediaroulette.content.provider.ProviderRegistry;
+import me.hash.mediaroulette.content.provider.RequestContext;
+import me.hash.mediaroulette.content.provider.SingleFlight;
 import me.hash.mediaroulette.model.content.MediaResult;
 import me.hash.mediaroulette.model.content.MediaSource;
 import me.hash.mediaroulette.content.provider.MediaProvider;
+import me.hash.mediaroulette.utils.BloomFilter;
+import me.hash.mediaroulette.utils.GlobalLogger;
+import me.hash.mediaroulette.utils.LocalConfig;
+import me.hash.mediaroulette.utils.PersistentCache;
+import me.hash.mediaroulette.utils.browser.RateLimiter;
+import com.fasterxml.jackson.core.type.TypeReference;
 
 import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Dimension;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-public class ImgurProvider implements MediaProvider {
+public class ImgurProvider implements MediaProvider, PrefetchingProvider {
     private static final String[] IMAGE_FORMATS = {"jpg", "png", "gif"};
     private static final String IMGUR_ID_CHARACTERS = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
     private static final int[] IMGUR_ID_LENGTH_RANGE = {5, 6};
     private static final int MAX_ATTEMPTS = 120;
+    // Enough for PNG and GIF headers and most JPEG start-of-frame markers
+    private static final int PROBE_BYTES = 8 * 1024;
+    // Retry size for JPEGs whose EXIF block pushes the frame header further in
+    private static final int PROBE_BYTES_EXTENDED = 64 * 1024;
+    // The only prefetch key: there is one pool of verified ids for all rolls
+    private static final String POOL_KEY = "random";
+    private static final Path DEAD_IDS_FILE = Path.of("cache", "imgur_dead_ids.bloom");
+    // Tries to draw an id the dead-id filter hasn't seen before settling for one it has
+    private static final int MAX_FILTERED_DRAWS = 20;
+    // Past this the filter is mostly noise, so it is started over
+    private static final double MAX_FILTER_FALSE_POSITIVE_RATE = 0.05;
+    private static final long LIVE_ID_TTL = 7L * 24 * 60 * 60 * 1000; // 7 days
 
+    // Probes only read a few KB each, so they share one client and its pooled connections
+    private final HttpClient probeClient = HttpTransport.javaNoRedirectClient();
     private final Random random = new Random();
+    private final Logger logger = GlobalLogger.getLogger();
+
+    // Ids that 404'd, redirected to the removed image, or were a placeholder
+    private volatile BloomFilter deadIds;
+    // Verified image URLs not served yet, mirrored to disk so a restart keeps them
+    private final Queue<String> livePool = new ConcurrentLinkedQueue<>();
+    private final PersistentCache<Boolean> livePoolCache =
+            new PersistentCache<>("imgur_live_ids.json", new TypeReference<Map<String, Boolean>>() {},
+                    LIVE_ID_TTL, 0);
+
+    private final AtomicLong poolHits = new AtomicLong(0);
+    private final AtomicLong poolMisses = new AtomicLong(0);
+    private final AtomicLong draws = new AtomicLong(0);
+    private final AtomicLong filteredDraws = new AtomicLong(0);
+    private final AtomicLong probes = new AtomicLong(0);
+    private final AtomicLong liveFound = new AtomicLong(0);
+    private final AtomicLong deadFound = new AtomicLong(0);
+
+    @Override
+    public void start() {
+        BloomFilter loaded = BloomFilter.readFrom(DEAD_IDS_FILE);
+        deadIds = loaded != null ? loaded : newDeadIdFilter();
+        livePool.addAll(livePoolCache.getAll().keySet());
+        logger.log(Level.INFO, "Imgur: {0} known dead ids, {1} verified ids pooled",
+                new Object[]{deadIds.getInsertions(), livePool.size()});
+
+        if (livePool.size() < LocalConfig.getInstance().getPrefetchLowWatermark(ProviderRegistry.IMGUR)) {
+            ProviderRegistry.getInstance().getBreaker(ProviderRegistry.IMGUR).execute(() -> prefetch(POOL_KEY));
+        }
+    }
+
+    private BloomFilter newDeadIdFilter() {
+        LocalConfig config = LocalConfig.getInstance();
+        return new BloomFilter(config.getImgurDeadIdCapacity(), config.getImgurDeadIdFalsePositiveRate());
+    }
 
     @Override
-    public MediaResult getRandomMedia(String query) throws IOException {
-        int attempts = 0;
+    public MediaResult getRandomMedia(String query) throws IOException, HttpClientWrapper.RateLimitException, InterruptedException {
+        return SingleFlight.await(getRandomMediaAsync(query, RequestContext.anonymous()));
+    }
+
+    /**
+     * Serve a verified id from the pool without touching the network. Only when the pool is
+     * empty does the roll probe random ids itself, in parallel batches where the first valid
+     * image wins and any other hits go to the pool.
+     */
+    @Override
+    public CompletableFuture<MediaResult> getRandomMediaAsync(String query, RequestContext ctx) {
+        PrefetchScheduler.getInstance().recordRequest(ProviderRegistry.IMGUR, POOL_KEY, livePool.size());
+        String pooled = takeFromPool();
+        if (pooled != null) {
+            poolHits.incrementAndGet();
+            return CompletableFuture.completedFuture(toResult(pooled, 0));
+        }
+
+        poolMisses.incrementAndGet();
+        CompletableFuture<MediaResult> winner = new CompletableFuture<>();
+        AtomicInteger failed = new AtomicInteger(0);
+        probeIds(url -> {
+            if (!winner.complete(toResult(url, failed.get()))) {
+                addToPool(url);
+            }
+        }, winner::isDone, failed).whenComplete((failedCount, error) -> {
+            if (error != null) {
+                winner.completeExceptionally(error);
+            } else if (!winner.isDone()) {
+                winner.completeExceptionally(new IOException("Could not find valid Imgur image after " + MAX_ATTEMPTS + " attempts"));
+            }
+        });
+        return winner;
+    }
 
-        while (attempts < MAX_ATTEMPTS) {
-            String imgurId = generateRandomImgurId();
+    @Override
+    public int readyCount(String key) {
+        return livePool.size();
+    }
+
+    /**
+     * Probe until at least one new verified id reaches the pool, or the attempt budget runs out.
+     * Fails if nothing was found, so an unreachable Imgur shows up in its circuit breaker.
+     */
+    @Override
+    public CompletableFuture<Void> prefetch(String key) {
+        AtomicInteger found = new AtomicInteger(0);
+        return probeIds(url -> {
+            addToPool(url);
+            found.incrementAndGet();
+        }, () -> found.get() > 0, new AtomicInteger(0)).thenCompose(failed -> found.get() > 0
+                ? CompletableFuture.<Void>completedFuture(null)
+                : CompletableFuture.<Void>failedFuture(new IOException("No valid Imgur image found in " + failed + " probes")));
+    }
+
+    private MediaResult toResult(String imageUrl, int failedProbes) {
+        String description = String.format("🌐 Source: Imgur\n🔁 Failed Image Count: %s", failedProbes);
+        return new MediaResult(imageUrl, "Here is your random Imgur picture!", description, MediaSource.IMGUR);
+    }
+
+    private String takeFromPool() {
+        String url = livePool.poll();
+        if (url != null) {
+            livePoolCache.remove(url);
+        }
+        return url;
+    }
+
+    private void addToPool(String url) {
+        if (livePool.size() >= LocalConfig.getInstance().getImgurLivePoolSize()) return;
+        livePool.offer(url);
+        livePoolCache.put(url, Boolean.TRUE);
+    }
+
+    /**
+     * Probe random ids in parallel batches, handing every live one to onLive, until done says
+     * to stop or MAX_ATTEMPTS ids have been tried. Completes with the number of failed probes.
+     */
+    private CompletableFuture<Integer> probeIds(Consumer<String> onLive, BooleanSupplier done, AtomicInteger failed) {
+        int batchSize = Math.max(1, LocalConfig.getInstance().getImgurProbeParallelism());
+        CompletableFuture<Integer> finished = new CompletableFuture<>();
+        probeBatch(onLive, done, batchSize, 0, failed, finished);
+        return finished;
+    }
+
+    private void probeBatch(Consumer<String> onLive, BooleanSupplier done, int batchSize, int started,
+                            AtomicInteger failed, CompletableFuture<Integer> finished) {
+        if (done.getAsBoolean() || started >= MAX_ATTEMPTS) {
+            finished.complete(failed.get());
+            return;
+        }
+
+        int count = Math.min(batchSize, MAX_ATTEMPTS - started);
+        List<CompletableFuture<Void>> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String imgurId = drawImgurId();
             String imageUrl = "https://i.imgur.com/" + imgurId + "." +
                     IMAGE_FORMATS[random.nextInt(IMAGE_FORMATS.length)];
+            probes.incrementAndGet();
+            batch.add(probe(imageUrl).handle((valid, error) -> {
+                if (Boolean.TRUE.equals(valid)) {
+                    liveFound.incrementAndGet();
+                    onLive.accept(imageUrl);
+                } else {
+                    failed.incrementAndGet();
+                    // Network errors, throttling and server errors say nothing about the id; only a definite miss is remembered
+                    if (error == null) {
+                        markDead(imgurId);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        CompletableFuture.allOf(batch.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((ignored, error) -> probeBatch(onLive, done, batchSize, started + count, failed, finished));
+    }
+
+    /**
+     * A random id the dead-id filter has not seen, if one turns up within a few draws
+     */
+    private String drawImgurId() {
+        BloomFilter filter = deadIds;
+        String id = generateRandomImgurId();
+        draws.incrementAndGet();
+        for (int i = 1; filter != null && filter.mightContain(id) && i < MAX_FILTERED_DRAWS; i++) {
+            filteredDraws.incrementAndGet();
+            id = generateRandomImgurId();
+            draws.incrementAndGet();
+        }
+        return id;
+    }
+
+    private void markDead(String imgurId) {
+        BloomFilter filter = deadIds;
+        if (filter == null) return;
+        deadFound.incrementAndGet();
+        filter.put(imgurId);
+        if (filter.expectedFalsePositiveRate() > MAX_FILTER_FALSE_POSITIVE_RATE) {
+            logger.log(Level.INFO, "Imgur dead-id filter is full ({0} ids), starting a new one", filter.getInsertions());
+            deadIds = newDeadIdFilter();
+        }
+    }
+
+    /**
+     * Whether the URL is a real image: removed ids redirect to a placeholder, and some serve a
+     * known placeholder size, both of which are rejected from the header alone.
+     */
+    private CompletableFuture<Boolean> probe(String imageUrl) {
+        return fetchHeader(imageUrl, PROBE_BYTES).thenCompose(header -> {
+            if (header == null) {
+                return CompletableFuture.completedFuture(false);
+            }
+            Dimension size = readDimensions(header);
+            if (size == null && header.length >= PROBE_BYTES) {
+                return fetchHeader(imageUrl, PROBE_BYTES_EXTENDED)
+                        .thenApply(extended -> extended != null && isValidImage(readDimensions(extended)));
+            }
+            return CompletableFuture.completedFuture(isValidImage(size));
+        });
+    }
+
+    /**
+     * First bytes of the image, or null if the id doesn't exist (404, or a redirect to the
+     * removed-image placeholder). Any other status, such as a 429 or a 5xx, says nothing about
+     * the id and fails the future instead, so it is never recorded as dead.
+     */
+    private CompletableFuture<byte[]> fetchHeader(String imageUrl, int bytes) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(imageUrl))
+                .timeout(Duration.ofSeconds(10))
+                .header("Range", "bytes=0-" + (bytes - 1))
+                .GET()
+                .build();
+        return RateLimiter.acquireUpstreamAsync(ProviderRegistry.IMGUR)
+                .thenCompose(ignored -> probeClient.sendAsync(request, new PrefixBodyHandler(bytes)))
+                .thenApply(response -> {
+                    int status = response.statusCode();
+                    if (status == 200 || status == 206) {
+                        return response.body();
+                    }
+                    if (status == 404 || isRemovedRedirect(status, response.headers().firstValue("Location").orElse(null))) {
+                        return null;
+                    }
+                    throw new CompletionException(new IOException("HTTP " + status + " probing " + imageUrl));
+                });
+    }
+
+    private static boolean isRemovedRedirect(int status, String location) {
+        return status >= 300 && status < 400 && location != null && location.contains("/removed.");
+    }
 
+    /**
+     * Read width and height from the image header without decoding any pixels
+     */
+    private Dimension readDimensions(byte[] header) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(header))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
             try {
-                BufferedImage image = ImageIO.read(new URI(imageUrl).toURL());
-                if (isValidImage(image)) {
-                    String description = String.format("🌐 Source: Imgur\n🔁 Failed Image Count: %s", attempts);
-                    return new MediaResult(imageUrl, "Here is your random Imgur picture!", description, MediaSource.IMGUR);
-                }
-            } catch (IOException e) {
-                // Continue to next attempt
-            } catch (URISyntaxException e) {
-                throw new RuntimeException(e);
+                reader.setInput(input, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
             }
-            attempts++;
+        } catch (IOException | RuntimeException e) {
+            // Truncated before the size was reached, or not an image at all
+            return null;
         }
-
-        throw new IOException("Could not find valid Imgur image after " + MAX_ATTEMPTS + " attempts");
     }
 
-    private boolean isValidImage(BufferedImage image) {
-        return image != null &&
-                !(image.getWidth() == 198 && image.getHeight() == 160) &&
-                !(image.getWidth() == 161 && image.getHeight() == 81) &&
-                image.getWidth() >= 64 &&
-                image.getHeight() >= 64;
+    private boolean isValidImage(Dimension size) {
+        return size != null &&
+                !(size.width == 198 && size.height == 160) &&
+                !(size.width == 161 && size.height == 81) &&
+                size.width >= 64 &&
+                size.height >= 64;
     }
 
     private String generateRandomImgurId() {
@@ -64,6 +336,45 @@ public class ImgurProvider implements MediaProvider {
         return idBuilder.toString();
     }
 
+    /**
+     * Dead-id filter size and false-positive rate, and how often rolls avoided the network
+     */
+    public Map<String, Object> getStats() {
+        long hits = poolHits.get();
+        long rolls = hits + poolMisses.get();
+        long drawCount = draws.get();
+        BloomFilter filter = deadIds;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pooled", livePool.size());
+        stats.put("poolHits", hits);
+        stats.put("poolHitRate", rolls > 0 ? (double) hits / rolls * 100 : 0.0);
+        stats.put("probes", probes.get());
+        stats.put("liveFound", liveFound.get());
+        stats.put("deadFound", deadFound.get());
+        stats.put("filterSkipRate", drawCount > 0 ? (double) filteredDraws.get() / drawCount * 100 : 0.0);
+        stats.put("deadIds", filter != null ? filter.getInsertions() : 0L);
+        stats.put("filterBits", filter != null ? filter.getBitCount() : 0);
+        stats.put("filterFalsePositiveRate", filter != null ? filter.expectedFalsePositiveRate() * 100 : 0.0);
+        return stats;
+    }
+
+    @Override
+    public void drain() {
+        BloomFilter filter = deadIds;
+        if (filter == null) return;
+        try {
+            filter.writeTo(DEAD_IDS_FILE);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to save Imgur dead-id filter: {0}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void stop() {
+        drain();
+    }
+
     @Override
     public boolean supportsQuery() {
         return false;
@@ -73,4 +384,4 @@ public class ImgurProvider implements MediaProvider {
     public String getProviderName() {
         return "Imgur";
     }
-}
\ No newline at end of file
+}
@@ -4,11 +4,18 @@ package me.hash.mediaroulette.content.provider.impl.images;
 import me.hash.mediaroulette.model.content.MediaResult;
 import me.hash.mediaroulette.model.content.MediaSource;
 import me.hash.mediaroulette.content.provider.MediaProvider;
+import me.hash.mediaroulette.content.provider.ProviderExecutors;
+import me.hash.mediaroulette.content.provider.RequestContext;
 import me.hash.mediaroulette.content.http.HttpClientWrapper;
 
 import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
 
 public class PicsumProvider implements MediaProvider {
+    private static final String RANDOM_URL = "https://picsum.photos/1920/1080";
+    private static final String FALLBACK_URL = "https://picsum.photos/id/1/1920/1080";
+
     private final HttpClientWrapper httpClient;
 
     public PicsumProvider(HttpClientWrapper httpClient) {
@@ -18,8 +25,26 @@ public class PicsumProvider implements MediaProvider {
     @Override
     public MediaResult getRandomMedia(String query) throws IOException {
         // Try different approaches to get a random Picsum image
-        String imageUrl = getRandomPicsumImage();
+        return toResult(getRandomPicsumImage());
+    }
+
+    @Override
+    public CompletableFuture<MediaResult> getRandomMediaAsync(String query, RequestContext ctx) {
+        // Same fallback order as the blocking path: random image, random ID, then a fixed image
+        String byIdUrl = "https://picsum.photos/id/" + ((int) (Math.random() * 1000) + 1) + "/1920/1080";
+        return resolveRedirectAsync(RANDOM_URL)
+                .exceptionallyCompose(e -> {
+                    System.err.println("Method 1 failed: " + ProviderExecutors.unwrap(e).getMessage());
+                    return resolveRedirectAsync(byIdUrl);
+                })
+                .exceptionallyCompose(e -> {
+                    System.err.println("Method 2 failed: " + ProviderExecutors.unwrap(e).getMessage());
+                    return resolveRedirectAsync(FALLBACK_URL).exceptionally(ignored -> FALLBACK_URL);
+                })
+                .thenApply(this::toResult);
+    }
 
+    private MediaResult toResult(String imageUrl) {
         return new MediaResult(
                 imageUrl,
                 "Here is your random Picsum image!",
@@ -28,6 +53,30 @@ public class PicsumProvider implements MediaProvider {
         );
     }
 
+    /**
+     * Follow Picsum's redirect to the concrete image URL, reading the Location header when there is one.
+     */
+    private CompletableFuture<String> resolveRedirectAsync(String url) {
+        return httpClient.getWithoutRedirectsAsync(url).thenCompose(response -> {
+            String redirectUrl = redirectLocation(response);
+            if (redirectUrl != null) {
+                return CompletableFuture.completedFuture(redirectUrl);
+            }
+            return httpClient.getAsync(url).thenApply(followed -> followed.uri().toString());
+        });
+    }
+
+    private static String redirectLocation(HttpResponse<?> response) {
+        // Check if it's a redirect response (3xx status codes)
+        if (response.statusCode() < 300 || response.statusCode() >= 400) {
+            return null;
+        }
+        return response.headers().firstValue("Location")
+                // Make sure it's an absolute URL
+                .map(location -> location.startsWith("/") ? "https://picsum.photos" + location : location)
+                .orElse(null);
+    }
+
     private String getRandomPicsumImage() throws IOException {
         try {
             return getRandomImageDirect();
@@ -54,17 +103,9 @@ public class PicsumProvider implements MediaProvider {
             // Get response without following redirects to capture the Location header
             var response = httpClient.getWithoutRedirects(url);
             
-            // Check if it's a redirect response (3xx status codes)
-            if (response.statusCode() >= 300 && response.statusCode() < 400) {
-                var locationHeader = response.headers().firstValue("Location");
-                if (locationHeader.isPresent()) {
-                    String redirectUrl = locationHeader.get();
-                    // Make sure it's an absolute URL
-                    if (redirectUrl.startsWith("/")) {
-                        redirectUrl = "https://picsum.photos" + redirectUrl;
-                    }
-                    return redirectUrl;
-                }
+            String redirectUrl = redirectLocation(response);
+            if (redirectUrl != null) {
+                return redirectUrl;
             }
             
             // If no redirect or redirect failed, try the normal method
@@ -76,23 +117,15 @@ public class PicsumProvider implements MediaProvider {
     }
 
     private String getRandomImageDirect() throws IOException {
-        String url = "https://picsum.photos/1920/1080";
+        String url = RANDOM_URL;
         
         try {
             // Get response without following redirects to capture the Location header
             var response = httpClient.getWithoutRedirects(url);
             
-            // Check if it's a redirect response (3xx status codes)
-            if (response.statusCode() >= 300 && response.statusCode() < 400) {
-                var locationHeader = response.headers().firstValue("Location");
-                if (locationHeader.isPresent()) {
-                    String redirectUrl = locationHeader.get();
-                    // Make sure it's an absolute URL
-                    if (redirectUrl.startsWith("/")) {
-                        redirectUrl = "https://picsum.photos" + redirectUrl;
-                    }
-                    return redirectUrl;
-                }
+            String redirectUrl = redirectLocation(response);
+            if (redirectUrl != null) {
+                return redirectUrl;
             }
             
             // If no redirect or redirect failed, try the normal method
@@ -106,25 +139,17 @@ public class PicsumProvider implements MediaProvider {
     private String getFallbackImage() {
         // Fallback to a known working image - use direct image URL
         try {
-            var response = httpClient.getWithoutRedirects("https://picsum.photos/id/1/1920/1080");
+            var response = httpClient.getWithoutRedirects(FALLBACK_URL);
             
-            // Check if it's a redirect response (3xx status codes)
-            if (response.statusCode() >= 300 && response.statusCode() < 400) {
-                var locationHeader = response.headers().firstValue("Location");
-                if (locationHeader.isPresent()) {
-                    String redirectUrl = locationHeader.get();
-                    // Make sure it's an absolute URL
-                    if (redirectUrl.startsWith("/")) {
-                        redirectUrl = "https://picsum.photos" + redirectUrl;
-                    }
-                    return redirectUrl;
-                }
+            String redirectUrl = redirectLocation(response);
+            if (redirectUrl != null) {
+                return redirectUrl;
             }
             
-            return httpClient.getFinalUrl("https://picsum.photos/id/1/1920/1080");
+            return httpClient.getFinalUrl(FALLBACK_URL);
         } catch (Exception e) {
             // Ultimate fallback - return the redirect URL
-            return "https://picsum.photos/id/1/1920/1080";
+            return FALLBACK_URL;
         }
     }
 
@@ -1,18 +1,28 @@
 package me.hash.mediaroulette.content.provider.impl.images;
 
+import me.hash.mediaroulette.content.http.HttpClientWrapper;
 import me.hash.mediaroulette.model.content.MediaResult;
 import me.hash.mediaroulette.model.content.CachedMediaResult;
 import me.hash.mediaroulette.content.provider.MediaProvider;
+import me.hash.mediaroulette.content.provider.PrefetchScheduler;
+import me.hash.mediaroulette.content.provider.PrefetchingProvider;
+import me.hash.mediaroulette.content.provider.ProviderExecutors;
+import me.hash.mediaroulette.content.provider.ProviderRegistry;
+import me.hash.mediaroulette.content.provider.RequestContext;
+import me.hash.mediaroulette.content.provider.SingleFlight;
 import me.hash.mediaroulette.utils.DictionaryIntegration;
+import me.hash.mediaroulette.content.reddit.ListingCursor;
 import me.hash.mediaroulette.content.reddit.RedditClient;
+import me.hash.mediaroulette.content.reddit.RedditListingParser;
 import me.hash.mediaroulette.content.reddit.SubredditManager;
 import me.hash.mediaroulette.content.reddit.RedditPostProcessor;
 import me.hash.mediaroulette.utils.GlobalLogger;
 import me.hash.mediaroulette.utils.ErrorReporter;
 import me.hash.mediaroulette.utils.PersistentCache;
+import me.hash.mediaroulette.utils.TaskExecutors;
+import me.hash.mediaroulette.utils.browser.RateLimiter;
+import me.hash.mediaroulette.utils.media.ffmpeg.resolvers.UrlResolverFactory;
 import okhttp3.Response;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import com.fasterxml.jackson.core.type.TypeReference;
 
 import java.io.IOException;
@@ -21,29 +31,43 @@ import java.util.concurrent.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-public class RedditProvider implements MediaProvider {
+public class RedditProvider implements MediaProvider, PrefetchingProvider {
     private static final long CACHE_EXPIRATION_TIME = 10 * 60 * 1000; // 10 minutes
     private static final int POST_LIMIT = 50;
     private static final int MAX_RESULTS_PER_SUBREDDIT = 200;
     private static final int MIN_QUEUE_SIZE = 10;
+    // Pages walked down a listing before the next refill starts again from the front page
+    private static final int MAX_LISTING_DEPTH = 10;
+    private static final long CURSOR_TTL = 24 * 60 * 60 * 1000; // 24 hours
+    private static final int MAX_PROCESSED_IDS = MAX_RESULTS_PER_SUBREDDIT * 5;
 
     // In-memory queues for active use
     private final Map<String, Queue<MediaResult>> imageQueues = new ConcurrentHashMap<>();
     private final Map<String, Long> lastUpdated = new ConcurrentHashMap<>();
     private final Map<String, Set<String>> processedPostIds = new ConcurrentHashMap<>();
     
-    // Persistent cache for Reddit media results
+    // Persistent cache for Reddit media results; entries are useless once older than the refresh window
+    private static final int MAX_CACHED_SUBREDDITS = 500;
     private final PersistentCache<List<CachedMediaResult>> persistentCache = 
-        new PersistentCache<>("reddit_media_cache.json", new TypeReference<Map<String, List<CachedMediaResult>>>() {});
+        new PersistentCache<>("reddit_media_cache.json", new TypeReference<Map<String, List<CachedMediaResult>>>() {},
+                CACHE_EXPIRATION_TIME, MAX_CACHED_SUBREDDITS);
     private final PersistentCache<Long> timestampCache = 
-        new PersistentCache<>("reddit_timestamps.json", new TypeReference<Map<String, Long>>() {});
+        new PersistentCache<>("reddit_timestamps.json", new TypeReference<Map<String, Long>>() {},
+                CACHE_EXPIRATION_TIME, MAX_CACHED_SUBREDDITS);
+    // Listing position per subreddit and sort, keyed "subreddit/sort"
+    private final PersistentCache<ListingCursor> cursorCache =
+        new PersistentCache<>("reddit_cursors.json", new TypeReference<Map<String, ListingCursor>>() {},
+                CURSOR_TTL, MAX_CACHED_SUBREDDITS * 3);
     
-    private final ExecutorService executorService = Executors.newFixedThreadPool(6);
+    private final SingleFlight refills = new SingleFlight("reddit");
+    private final ExecutorService executorService = TaskExecutors.newProviderExecutor("reddit-provider", 6, 256);
     private final Logger logger = GlobalLogger.getLogger();
 
     private final RedditClient redditClient;
     private final SubredditManager subredditManager;
     private final RedditPostProcessor postProcessor;
+    private final RedditListingParser listingParser = new RedditListingParser();
+    private final UrlResolverFactory urlResolverFactory = new UrlResolverFactory();
 
     public RedditProvider(RedditClient redditClient, SubredditManager subredditManager) {
         this.redditClient = redditClient;
@@ -52,14 +76,17 @@ public class RedditProvider implements MediaProvider {
     }
 
     @Override
-    public MediaResult getRandomMedia(String subreddit) throws IOException {
+    public MediaResult getRandomMedia(String subreddit) throws IOException, HttpClientWrapper.RateLimitException {
         return getRandomMedia(subreddit, null);
     }
     
-    public MediaResult getRandomMedia(String subreddit, String userId) throws IOException {
+    public MediaResult getRandomMedia(String subreddit, String userId) throws IOException, HttpClientWrapper.RateLimitException {
         try {
             return getRandomReddit(subreddit, userId);
-        } catch (ExecutionException | InterruptedException e) {
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof HttpClientWrapper.RateLimitException rl) throw rl;
+            throw new IOException("Error fetching Reddit media", e);
+        } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new IOException("Error fetching Reddit media", e);
         }
@@ -70,6 +97,29 @@ public class RedditProvider implements MediaProvider {
     }
     
     public MediaResult getRandomReddit(String subreddit, String userId) throws IOException, ExecutionException, InterruptedException {
+        subreddit = resolveSubreddit(subreddit, userId);
+
+        initializeCacheIfNeeded(subreddit);
+        PrefetchScheduler.getInstance().recordRequest(ProviderRegistry.REDDIT, subreddit, readyCount(subreddit));
+        refreshCacheIfNeeded(subreddit);
+
+        return takeResult(subreddit);
+    }
+
+    @Override
+    public CompletableFuture<MediaResult> getRandomMediaAsync(String subreddit, RequestContext ctx) {
+        // Subreddit validation may hit the database or Reddit's about endpoint, so it runs on the
+        // bounded blocking pool; the listing fetches themselves go through OkHttp's async calls.
+        return ProviderExecutors.supplyBlocking(() -> resolveSubreddit(subreddit, ctx.getUserId()))
+                .thenCompose(resolved -> {
+                    initializeCacheIfNeeded(resolved);
+                    PrefetchScheduler.getInstance().recordRequest(ProviderRegistry.REDDIT, resolved, readyCount(resolved));
+                    return refreshCacheIfNeededAsync(resolved)
+                            .thenApply(ProviderExecutors.checked(ignored -> takeResult(resolved)));
+                });
+    }
+
+    private String resolveSubreddit(String subreddit, String userId) throws IOException {
         logger.log(Level.INFO, "Fetching random Reddit image from subreddit: {0}", subreddit);
 
         // Always try dictionary first if userId is provided and no specific subreddit requested
@@ -97,10 +147,10 @@ public class RedditProvider implements MediaProvider {
                 throw new IOException("Unable to find a valid subreddit. " + e.getMessage());
             }
         }
+        return subreddit;
+    }
 
-        initializeCacheIfNeeded(subreddit);
-        refreshCacheIfNeeded(subreddit);
-
+    private MediaResult takeResult(String subreddit) throws IOException {
         Queue<MediaResult> queue = imageQueues.get(subreddit);
         MediaResult result = queue.poll();
 
@@ -112,6 +162,12 @@ public class RedditProvider implements MediaProvider {
         // Update persistent cache to reflect the consumed item
         saveToPersistentCache(subreddit, queue);
 
+        // External links (RedGifs, Gfycat) are resolved only for results that are actually served,
+        // starting now so the lookup overlaps with building the reply
+        if (urlResolverFactory.needsResolution(result.getImageUrl())) {
+            urlResolverFactory.resolve(result.getImageUrl());
+        }
+
         logger.log(Level.INFO, "Successfully retrieved media from subreddit {0}. Queue size: {1}",
                 new Object[]{subreddit, queue.size()});
         return result;
@@ -119,7 +175,7 @@ public class RedditProvider implements MediaProvider {
 
     private void initializeCacheIfNeeded(String subreddit) {
         imageQueues.computeIfAbsent(subreddit, k -> new ConcurrentLinkedQueue<>());
-        processedPostIds.computeIfAbsent(subreddit, k -> ConcurrentHashMap.newKeySet());
+        processedPostIds.computeIfAbsent(subreddit, k -> newProcessedIdSet());
         
         // Load from persistent cache if available
         Long cachedTimestamp = timestampCache.get(subreddit);
@@ -150,47 +206,80 @@ public class RedditProvider implements MediaProvider {
     }
 
     private void refreshCacheIfNeeded(String subreddit) throws ExecutionException, InterruptedException {
+        refreshCacheIfNeededAsync(subreddit).get();
+    }
+
+    private CompletableFuture<Void> refreshCacheIfNeededAsync(String subreddit) {
         Queue<MediaResult> imageQueue = imageQueues.get(subreddit);
         long lastUpdateTime = lastUpdated.get(subreddit);
         boolean needsRefresh = imageQueue.size() < MIN_QUEUE_SIZE ||
                 System.currentTimeMillis() - lastUpdateTime > CACHE_EXPIRATION_TIME;
 
-        if (needsRefresh) {
+        if (!needsRefresh) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return refillAsync(subreddit);
+    }
+
+    @Override
+    public int readyCount(String subreddit) {
+        Queue<MediaResult> queue = imageQueues.get(subreddit);
+        return queue == null ? 0 : queue.size();
+    }
+
+    @Override
+    public CompletableFuture<Void> prefetch(String subreddit) {
+        if (!imageQueues.containsKey(subreddit)) {
+            initializeCacheIfNeeded(subreddit);
+        }
+        return refillAsync(subreddit);
+    }
+
+    private CompletableFuture<Void> refillAsync(String subreddit) {
+        Queue<MediaResult> imageQueue = imageQueues.get(subreddit);
+        // Every caller that sees a low queue at the same time, and the background prefetch, waits
+        // on one refill instead of each firing its own three listing requests
+        return refills.execute(subreddit, () -> {
             logger.log(Level.INFO, "Updating image queue for subreddit: {0} (current size: {1})",
                     new Object[]{subreddit, imageQueue.size()});
-            updateImageQueue(subreddit);
-            long currentTime = System.currentTimeMillis();
-            lastUpdated.put(subreddit, currentTime);
-            timestampCache.put(subreddit, currentTime);
-        }
+            return updateImageQueueAsync(subreddit).thenRun(() -> {
+                long currentTime = System.currentTimeMillis();
+                lastUpdated.put(subreddit, currentTime);
+                timestampCache.put(subreddit, currentTime);
+            });
+        });
     }
 
-    private void updateImageQueue(String subreddit) throws ExecutionException, InterruptedException {
+    private CompletableFuture<Void> updateImageQueueAsync(String subreddit) {
         List<CompletableFuture<List<MediaResult>>> futures = new ArrayList<>();
         String[] sortMethods = {"hot", "top", "new"}; // Mix different sorting methods
 
         for (String sortMethod : sortMethods) {
-            CompletableFuture<List<MediaResult>> future = CompletableFuture.supplyAsync(() -> {
-                try {
-                    return fetchImagesFromSubreddit(subreddit, sortMethod);
-                } catch (IOException | InterruptedException | ExecutionException e) {
-                    logger.log(Level.SEVERE, "Error fetching images for subreddit {0} with sort {1}: {2}",
-                            new Object[]{subreddit, sortMethod, e.getMessage()});
-                    Thread.currentThread().interrupt();
-                    return Collections.emptyList();
-                }
-            }, executorService);
-            futures.add(future);
+            futures.add(fetchImagesFromSubredditAsync(subreddit, sortMethod));
         }
 
-        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        // Pages that did come back are kept even if our rate limiter turned another away. The
+        // refill only fails when that leaves nothing to serve, so callers see the rate limit
+        // rather than an empty queue the breaker would count against Reddit.
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .handle((ignored, error) -> {
+                    mergeIntoQueue(subreddit, futures.stream()
+                            .filter(future -> !future.isCompletedExceptionally())
+                            .map(CompletableFuture::join)
+                            .toList());
+                    if (error != null && readyCount(subreddit) == 0) {
+                        throw new CompletionException(ProviderExecutors.unwrap(error));
+                    }
+                    return null;
+                });
+    }
 
+    private void mergeIntoQueue(String subreddit, List<List<MediaResult>> fetched) {
         Queue<MediaResult> queue = imageQueues.get(subreddit);
         Set<String> processedIds = processedPostIds.get(subreddit);
         List<MediaResult> allNewResults = new ArrayList<>();
 
-        for (CompletableFuture<List<MediaResult>> future : futures) {
-            List<MediaResult> results = future.get();
+        for (List<MediaResult> results : fetched) {
             allNewResults.addAll(results);
         }
 
@@ -205,9 +294,8 @@ public class RedditProvider implements MediaProvider {
                 }
 
                 String resultId = generateResultId(result);
-                if (!processedIds.contains(resultId)) {
+                if (processedIds.add(resultId)) {
                     queue.offer(result);
-                    processedIds.add(resultId);
                     addedCount++;
                 }
             }
@@ -221,42 +309,126 @@ public class RedditProvider implements MediaProvider {
             logger.log(Level.WARNING, "No valid images found for subreddit: {0}", subreddit);
         }
 
-        // Clean up old processed IDs if the set gets too large
-        if (processedIds.size() > MAX_RESULTS_PER_SUBREDDIT * 2) {
-            processedIds.clear();
-        }
     }
 
-    private List<MediaResult> fetchImagesFromSubreddit(String subreddit, String sortMethod)
-            throws IOException, ExecutionException, InterruptedException {
-        String accessToken = redditClient.getAccessToken();
-        String timeParam = "top".equals(sortMethod) ? "&t=week" : ""; // For top posts, use weekly
-        String url = String.format("https://oauth.reddit.com/r/%s/%s?limit=%d%s",
-                subreddit, sortMethod, POST_LIMIT, timeParam);
-
-        Response response = redditClient.sendGetRequestAsync(url, accessToken).get();
-        if (!response.isSuccessful()) {
-            logger.log(Level.SEVERE, "Failed to fetch posts for subreddit: {0} with sort: {1}",
-                    new Object[]{subreddit, sortMethod});
-            return Collections.emptyList();
-        }
+    /**
+     * Ids of results already queued for a subreddit. Drops the oldest ids once full rather than
+     * forgetting all of them, so pages read shortly before aren't queued again.
+     */
+    private static Set<String> newProcessedIdSet() {
+        return Collections.synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > MAX_PROCESSED_IDS;
+            }
+        }));
+    }
 
-        String responseBody = response.body().string();
-        response.close();
+    private record ListingPage(List<MediaResult> results, String after, String firstFullname) {
+        static final ListingPage EMPTY = new ListingPage(Collections.emptyList(), null, null);
+    }
 
+    /**
+     * Fetch the next unread page of one listing and move its cursor. Refills walk deeper pages
+     * with Reddit's after token; they go back to the front page when the cursor runs out, or when
+     * a periodic check finds that the listing's first post has changed.
+     */
+    private CompletableFuture<List<MediaResult>> fetchImagesFromSubredditAsync(String subreddit, String sortMethod) {
+        String accessToken;
         try {
-            JSONObject json = new JSONObject(responseBody);
-            JSONArray posts = json.getJSONObject("data").getJSONArray("children");
+            accessToken = redditClient.getAccessToken();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error fetching images for subreddit {0} with sort {1}: {2}",
+                    new Object[]{subreddit, sortMethod, e.getMessage()});
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        String cursorKey = subreddit + "/" + sortMethod;
+        ListingCursor cursor = cursorCache.get(cursorKey);
+        CompletableFuture<ListingCursor> position;
+        if (cursor == null || cursor.isExhausted(MAX_LISTING_DEPTH)) {
+            position = CompletableFuture.completedFuture(null);
+        } else if (cursor.isFrontCheckDue(CACHE_EXPIRATION_TIME)) {
+            // A one-post request is enough to tell whether the front page moved on
+            position = fetchPageAsync(subreddit, sortMethod, null, 1, accessToken).thenApply(front -> {
+                if (front.firstFullname() == null || front.firstFullname().equals(cursor.getFrontFullname())) {
+                    ListingCursor checked = cursor.frontChecked();
+                    cursorCache.put(cursorKey, checked);
+                    return checked;
+                }
+                logger.log(Level.INFO, "Front page of {0} changed, restarting its cursor", cursorKey);
+                return null;
+            });
+        } else {
+            position = CompletableFuture.completedFuture(cursor);
+        }
+
+        return position.thenCompose(current -> fetchPageAsync(subreddit, sortMethod,
+                        current != null ? current.getAfter() : null, POST_LIMIT, accessToken)
+                .thenApply(page -> {
+                    if (current == null) {
+                        if (page.firstFullname() != null) {
+                            cursorCache.put(cursorKey, ListingCursor.fromFrontPage(page.firstFullname(), page.after()));
+                        }
+                    } else if (page != ListingPage.EMPTY) {
+                        // An empty page past the end has no after token, which exhausts the cursor
+                        cursorCache.put(cursorKey, current.advance(page.after()));
+                    }
+                    return page.results();
+                }));
+    }
+
+    /**
+     * Fetch one listing page without holding a thread during the request. Upstream failures are
+     * logged and yield an empty page so the other sort methods can still fill the queue; a
+     * RateLimitException from our own limiter is passed on instead.
+     */
+    private CompletableFuture<ListingPage> fetchPageAsync(String subreddit, String sortMethod, String after, int limit, String accessToken) {
+        String timeParam = "top".equals(sortMethod) ? "&t=week" : ""; // For top posts, use weekly
+        String afterParam = after != null ? "&after=" + after : "";
+        String url = String.format("https://oauth.reddit.com/r/%s/%s?limit=%d%s%s",
+                subreddit, sortMethod, limit, timeParam, afterParam);
+
+        return RateLimiter.acquireUpstreamAsync(ProviderRegistry.REDDIT)
+                .thenCompose(ignored -> redditClient.sendGetRequestAsync(url, accessToken))
+                // Body reading and post processing run on the provider's own pool, not OkHttp's dispatcher
+                .thenApplyAsync(response -> parseListing(response, subreddit, sortMethod), executorService)
+                .exceptionally(e -> {
+                    Throwable cause = ProviderExecutors.unwrap(e);
+                    if (cause instanceof HttpClientWrapper.RateLimitException) {
+                        throw new CompletionException(cause);
+                    }
+                    logger.log(Level.SEVERE, "Error fetching images for subreddit {0} with sort {1}: {2}",
+                            new Object[]{subreddit, sortMethod, cause.getMessage()});
+                    return ListingPage.EMPTY;
+                });
+    }
 
-            List<MediaResult> results = postProcessor.processPosts(posts);
+    private ListingPage parseListing(Response response, String subreddit, String sortMethod) {
+        try (response) {
+            if (!response.isSuccessful()) {
+                logger.log(Level.SEVERE, "Failed to fetch posts for subreddit: {0} with sort: {1}",
+                        new Object[]{subreddit, sortMethod});
+                return ListingPage.EMPTY;
+            }
+
+            // Posts are processed as they stream in rather than after building the whole document
+            List<MediaResult> results = new ArrayList<>();
+            RedditListingParser.Listing listing = listingParser.parse(response.body().byteStream(), post -> {
+                try {
+                    results.addAll(postProcessor.processPost(post));
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, "Error processing post: {0}", e.getMessage());
+                }
+            });
             logger.log(Level.INFO, "Processed {0} posts from {1}/{2}, got {3} media results",
-                    new Object[]{posts.length(), subreddit, sortMethod, results.size()});
+                    new Object[]{listing.postCount(), subreddit, sortMethod, results.size()});
 
-            return results;
+            return new ListingPage(results, listing.after(), listing.firstFullname());
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error parsing Reddit response for {0}/{1}: {2}",
                     new Object[]{subreddit, sortMethod, e.getMessage()});
-            return Collections.emptyList();
+            return ListingPage.EMPTY;
         }
     }
 
@@ -291,12 +463,22 @@ public class RedditProvider implements MediaProvider {
         }
     }
 
-    // Cleanup method to prevent memory leaks
-    public void cleanup() {
-        // Save all current caches before shutdown
+    @Override
+    public void drain() {
         for (Map.Entry<String, Queue<MediaResult>> entry : imageQueues.entrySet()) {
             saveToPersistentCache(entry.getKey(), entry.getValue());
         }
+    }
+
+    @Override
+    public void stop() {
+        cleanup();
+    }
+
+    // Cleanup method to prevent memory leaks
+    public void cleanup() {
+        // Save all current caches before shutdown
+        drain();
         
         executorService.shutdown();
         try {
@@ -3,19 +3,28 @@ package me.hash.mediaroulette.content.provider.impl.videos;
 import me.hash.mediaroulette.model.content.MediaResult;
 import me.hash.mediaroulette.model.content.MediaSource;
 import me.hash.mediaroulette.content.provider.MediaProvider;
+import me.hash.mediaroulette.content.provider.PrefetchScheduler;
+import me.hash.mediaroulette.content.provider.PrefetchingProvider;
+import me.hash.mediaroulette.content.provider.ProviderExecutors;
+import me.hash.mediaroulette.content.provider.ProviderRegistry;
+import me.hash.mediaroulette.content.provider.RequestContext;
+import me.hash.mediaroulette.content.provider.SingleFlight;
 import me.hash.mediaroulette.content.http.HttpClientWrapper;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
-public class TMDBMovieProvider implements MediaProvider {
+public class TMDBMovieProvider implements MediaProvider, PrefetchingProvider {
     private static final String BASE_URL = "https://api.themoviedb.org/3";
     private static final String BASE_IMAGE_URL = "https://image.tmdb.org/t/p/w500";
 
     private final Map<Integer, Queue<MediaResult>> yearCache = new ConcurrentHashMap<>();
+    private final SingleFlight refills = new SingleFlight("tmdb_movie", ProviderRegistry.TMDB_MOVIE);
     private final HttpClientWrapper httpClient;
     private final Random random = new Random();
     private final String apiKey;
@@ -28,12 +37,59 @@ public class TMDBMovieProvider implements MediaProvider {
     @Override
     public MediaResult getRandomMedia(String query) throws IOException, HttpClientWrapper.RateLimitException, InterruptedException {
         int year = random.nextInt(2023 - 1900) + 1900;
-        Queue<MediaResult> cache = yearCache.computeIfAbsent(year, k -> new LinkedList<>());
+        Queue<MediaResult> cache = yearCache.computeIfAbsent(year, key -> new ConcurrentLinkedQueue<>());
+        PrefetchScheduler.getInstance().recordRequest(ProviderRegistry.TMDB_MOVIE, String.valueOf(year), cache.size());
 
         if (cache.isEmpty()) {
-            populateCache(year);
+            refills.executeBlocking(String.valueOf(year), () -> {
+                cache.addAll(parseResults(httpClient.getBody(discoverUrl(year))));
+                return null;
+            });
         }
 
+        return pollResult(cache, year);
+    }
+
+    @Override
+    public CompletableFuture<MediaResult> getRandomMediaAsync(String query, RequestContext ctx) {
+        int year = random.nextInt(2023 - 1900) + 1900;
+        Queue<MediaResult> cache = yearCache.computeIfAbsent(year, key -> new ConcurrentLinkedQueue<>());
+        PrefetchScheduler.getInstance().recordRequest(ProviderRegistry.TMDB_MOVIE, String.valueOf(year), cache.size());
+
+        MediaResult cached = cache.poll();
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return refill(year).thenApply(ProviderExecutors.checked(ignored -> pollResult(cache, year)));
+    }
+
+    @Override
+    public int readyCount(String key) {
+        try {
+            Queue<MediaResult> cache = yearCache.get(Integer.parseInt(key));
+            return cache == null ? 0 : cache.size();
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> prefetch(String key) {
+        try {
+            return refill(Integer.parseInt(key));
+        } catch (NumberFormatException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<Void> refill(int year) {
+        Queue<MediaResult> cache = yearCache.computeIfAbsent(year, key -> new ConcurrentLinkedQueue<>());
+        // Concurrent misses and background refills for the same year share one upstream request
+        return refills.execute(String.valueOf(year), () -> httpClient.getBodyAsync(discoverUrl(year))
+                .thenAccept(response -> cache.addAll(parseResults(response))));
+    }
+
+    private MediaResult pollResult(Queue<MediaResult> cache, int year) throws IOException {
         MediaResult result = cache.poll();
         if (result == null) {
             throw new IOException("No movies available for year: " + year);
@@ -41,11 +97,12 @@ public class TMDBMovieProvider implements MediaProvider {
         return result;
     }
 
-    private void populateCache(int year) throws IOException, HttpClientWrapper.RateLimitException, InterruptedException {
-        String url = String.format("%s/discover/movie?primary_release_year=%d&api_key=%s",
+    private String discoverUrl(int year) {
+        return String.format("%s/discover/movie?primary_release_year=%d&api_key=%s",
                 BASE_URL, year, apiKey);
+    }
 
-        String response = httpClient.getBody(url);
+    private List<MediaResult> parseResults(String response) {
         JSONObject jsonObject = new JSONObject(response);
         JSONArray results = jsonObject.getJSONArray("results");
 
@@ -55,8 +112,7 @@ public class TMDBMovieProvider implements MediaProvider {
             movies.add(parseMedia(item));
         }
 
-        Queue<MediaResult> cache = yearCache.get(year);
-        cache.addAll(movies);
+        return movies;
     }
 
     private MediaResult parseMedia(JSONObject item) {
@@ -3,6 +3,12 @@ package me.hash.mediaroulette.content.provider.impl.videos;
 import me.hash.mediaroulette.model.content.MediaResult;
 import me.hash.mediaroulette.model.content.MediaSource;
 import me.hash.mediaroulette.content.provider.MediaProvider;
+import me.hash.mediaroulette.content.provider.PrefetchScheduler;
+import me.hash.mediaroulette.content.provider.PrefetchingProvider;
+import me.hash.mediaroulette.content.provider.ProviderExecutors;
+import me.hash.mediaroulette.content.provider.ProviderRegistry;
+import me.hash.mediaroulette.content.provider.RequestContext;
+import me.hash.mediaroulette.content.provider.SingleFlight;
 import me.hash.mediaroulette.content.http.HttpClientWrapper;
 import me.hash.mediaroulette.utils.discord.DiscordTimestamp;
 import me.hash.mediaroulette.utils.discord.DiscordTimestampType;
@@ -11,13 +17,16 @@ import org.json.JSONObject;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
-public class YouTubeProvider implements MediaProvider {
+public class YouTubeProvider implements MediaProvider, PrefetchingProvider {
     private static final String[] FILTERS = {"music", "sports", "gaming", "movies", "news", "live", "learning"};
     private static final String[] ORDERS = {"date", "rating", "relevance", "title", "viewCount"};
 
     private final Map<String, Queue<MediaResult>> topicCache = new ConcurrentHashMap<>();
+    private final SingleFlight refills = new SingleFlight("youtube", ProviderRegistry.YOUTUBE);
     private final HttpClientWrapper httpClient;
     private final Random random = new Random();
     private final String apiKey;
@@ -32,13 +41,58 @@ public class YouTubeProvider implements MediaProvider {
         String topic = FILTERS[random.nextInt(FILTERS.length)];
         String order = ORDERS[random.nextInt(ORDERS.length)];
         String cacheKey = topic + "_" + order;
-
-        Queue<MediaResult> cache = topicCache.computeIfAbsent(cacheKey, k -> new LinkedList<>());
+        Queue<MediaResult> cache = topicCache.computeIfAbsent(cacheKey, k -> new ConcurrentLinkedQueue<>());
+        PrefetchScheduler.getInstance().recordRequest(ProviderRegistry.YOUTUBE, cacheKey, cache.size());
 
         if (cache.isEmpty()) {
-            populateCache(topic, order);
+            refills.executeBlocking(cacheKey, () -> {
+                cache.addAll(parseResults(httpClient.getBody(searchUrl(topic, order))));
+                return null;
+            });
+        }
+
+        return pollResult(cache, topic);
+    }
+
+    @Override
+    public CompletableFuture<MediaResult> getRandomMediaAsync(String query, RequestContext ctx) {
+        String topic = FILTERS[random.nextInt(FILTERS.length)];
+        String order = ORDERS[random.nextInt(ORDERS.length)];
+        String cacheKey = topic + "_" + order;
+        Queue<MediaResult> cache = topicCache.computeIfAbsent(cacheKey, k -> new ConcurrentLinkedQueue<>());
+        PrefetchScheduler.getInstance().recordRequest(ProviderRegistry.YOUTUBE, cacheKey, cache.size());
+
+        MediaResult cached = cache.poll();
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
         }
+        return prefetch(cacheKey).thenApply(ProviderExecutors.checked(ignored -> pollResult(cache, topic)));
+    }
 
+    @Override
+    public int readyCount(String cacheKey) {
+        Queue<MediaResult> cache = topicCache.get(cacheKey);
+        return cache == null ? 0 : cache.size();
+    }
+
+    /**
+     * @param cacheKey topic and order joined with an underscore
+     */
+    @Override
+    public CompletableFuture<Void> prefetch(String cacheKey) {
+        int separator = cacheKey.indexOf('_');
+        if (separator < 0) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid YouTube cache key: " + cacheKey));
+        }
+        String topic = cacheKey.substring(0, separator);
+        String order = cacheKey.substring(separator + 1);
+        Queue<MediaResult> cache = topicCache.computeIfAbsent(cacheKey, k -> new ConcurrentLinkedQueue<>());
+        // Concurrent misses and background refills for the same key share one upstream request
+        return refills.execute(cacheKey, () -> httpClient.getBodyAsync(searchUrl(topic, order))
+                .thenAccept(response -> cache.addAll(parseResults(response))));
+    }
+
+    private MediaResult pollResult(Queue<MediaResult> cache, String topic) throws IOException {
         MediaResult result = cache.poll();
         if (result == null) {
             throw new IOException("No YouTube videos available for topic: " + topic);
@@ -46,12 +100,13 @@ public class YouTubeProvider implements MediaProvider {
         return result;
     }
 
-    private void populateCache(String topic, String order) throws IOException, HttpClientWrapper.RateLimitException, InterruptedException {
-        String url = String.format(
+    private String searchUrl(String topic, String order) {
+        return String.format(
                 "https://www.googleapis.com/youtube/v3/search?part=snippet&type=video&maxResults=25&key=%s&topicId=%s&order=%s",
                 apiKey, topic, order);
+    }
 
-        String response = httpClient.getBody(url);
+    private List<MediaResult> parseResults(String response) {
         JSONObject jsonObject = new JSONObject(response);
         JSONArray itemsArray = jsonObject.getJSONArray("items");
 
@@ -60,10 +115,7 @@ public class YouTubeProvider implements MediaProvider {
             JSONObject video = itemsArray.getJSONObject(i);
             videos.add(parseVideo(video));
         }
-
-        String cacheKey = topic + "_" + order;
-        Queue<MediaResult> cache = topicCache.get(cacheKey);
-        cache.addAll(videos);
+        return videos;
     }
 
     private MediaResult parseVideo(JSONObject video) {
@@ -3,6 +3,12 @@ package me.hash.mediaroulette.content.provider.impl.videos;
 import me.hash.mediaroulette.model.content.MediaResult;
 import me.hash.mediaroulette.model.content.MediaSource;
 import me.hash.mediaroulette.content.provider.MediaProvider;
+import me.hash.mediaroulette.content.provider.PrefetchScheduler;
+import me.hash.mediaroulette.content.provider.PrefetchingProvider;
+import me.hash.mediaroulette.content.provider.ProviderExecutors;
+import me.hash.mediaroulette.content.provider.ProviderRegistry;
+import me.hash.mediaroulette.content.provider.RequestContext;
+import me.hash.mediaroulette.content.provider.SingleFlight;
 import me.hash.mediaroulette.content.http.HttpClientWrapper;
 import me.hash.mediaroulette.utils.discord.DiscordTimestamp;
 import me.hash.mediaroulette.utils.discord.DiscordTimestampType;
@@ -11,12 +17,15 @@ import org.json.JSONObject;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
-public class YouTubeShortsProvider implements MediaProvider {
+public class YouTubeShortsProvider implements MediaProvider, PrefetchingProvider {
     private static final String[] ORDERS = {"date", "rating", "relevance", "title", "viewCount"};
 
     private final Map<String, Queue<MediaResult>> orderCache = new ConcurrentHashMap<>();
+    private final SingleFlight refills = new SingleFlight("youtube_shorts", ProviderRegistry.YOUTUBE_SHORTS);
     private final HttpClientWrapper httpClient;
     private final Random random = new Random();
     private final String apiKey;
@@ -29,12 +38,47 @@ public class YouTubeShortsProvider implements MediaProvider {
     @Override
     public MediaResult getRandomMedia(String query) throws IOException, HttpClientWrapper.RateLimitException, InterruptedException {
         String order = ORDERS[random.nextInt(ORDERS.length)];
-        Queue<MediaResult> cache = orderCache.computeIfAbsent(order, k -> new LinkedList<>());
+        Queue<MediaResult> cache = orderCache.computeIfAbsent(order, key -> new ConcurrentLinkedQueue<>());
+        PrefetchScheduler.getInstance().recordRequest(ProviderRegistry.YOUTUBE_SHORTS, order, cache.size());
 
         if (cache.isEmpty()) {
-            populateCache(order);
+            refills.executeBlocking(order, () -> {
+                cache.addAll(parseResults(httpClient.getBody(searchUrl(order))));
+                return null;
+            });
         }
 
+        return pollResult(cache, order);
+    }
+
+    @Override
+    public CompletableFuture<MediaResult> getRandomMediaAsync(String query, RequestContext ctx) {
+        String order = ORDERS[random.nextInt(ORDERS.length)];
+        Queue<MediaResult> cache = orderCache.computeIfAbsent(order, key -> new ConcurrentLinkedQueue<>());
+        PrefetchScheduler.getInstance().recordRequest(ProviderRegistry.YOUTUBE_SHORTS, order, cache.size());
+
+        MediaResult cached = cache.poll();
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return prefetch(order).thenApply(ProviderExecutors.checked(ignored -> pollResult(cache, order)));
+    }
+
+    @Override
+    public int readyCount(String order) {
+        Queue<MediaResult> cache = orderCache.get(order);
+        return cache == null ? 0 : cache.size();
+    }
+
+    @Override
+    public CompletableFuture<Void> prefetch(String order) {
+        Queue<MediaResult> cache = orderCache.computeIfAbsent(order, key -> new ConcurrentLinkedQueue<>());
+        // Concurrent misses and background refills for the same order share one upstream request
+        return refills.execute(order, () -> httpClient.getBodyAsync(searchUrl(order))
+                .thenAccept(response -> cache.addAll(parseResults(response))));
+    }
+
+    private MediaResult pollResult(Queue<MediaResult> cache, String order) throws IOException {
         MediaResult result = cache.poll();
         if (result == null) {
             throw new IOException("No YouTube shorts available for order: " + order);
@@ -42,12 +86,13 @@ public class YouTubeShortsProvider implements MediaProvider {
         return result;
     }
 
-    private void populateCache(String order) throws IOException, HttpClientWrapper.RateLimitException, InterruptedException {
-        String url = String.format(
+    private String searchUrl(String order) {
+        return String.format(
                 "https://www.googleapis.com/youtube/v3/search?part=snippet&type=video&maxResults=25&key=%s&videoDuration=short&q=%%23shorts&order=%s",
                 apiKey, order);
+    }
 
-        String response = httpClient.getBody(url);
+    private List<MediaResult> parseResults(String response) {
         JSONObject jsonObject = new JSONObject(response);
         JSONArray itemsArray = jsonObject.getJSONArray("items");
 
@@ -57,8 +102,7 @@ public class YouTubeShortsProvider implements MediaProvider {
             shorts.add(parseVideo(video));
         }
 
-        Queue<MediaResult> cache = orderCache.get(order);
-        cache.addAll(shorts);
+        return shorts;
     }
 
     private MediaResult parseVideo(JSONObject video) {
@@ -0,0 +1,66 @@
+package me.hash.mediaroulette.content.reddit;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * How far refills have walked one subreddit listing (hot, top or new). Persisted so a restart
+ * continues from the same page instead of downloading the front page again.
+ */
+public class ListingCursor {
+    private final String after;
+    private final int depth;
+    private final String frontFullname;
+    private final long frontCheckedAt;
+
+    @JsonCreator
+    public ListingCursor(
+            @JsonProperty("after") String after,
+            @JsonProperty("depth") int depth,
+            @JsonProperty("frontFullname") String frontFullname,
+            @JsonProperty("frontCheckedAt") long frontCheckedAt) {
+        this.after = after;
+        this.depth = depth;
+        this.frontFullname = frontFullname;
+        this.frontCheckedAt = frontCheckedAt;
+    }
+
+    /**
+     * Cursor after reading the front page of a listing
+     */
+    public static ListingCursor fromFrontPage(String frontFullname, String after) {
+        return new ListingCursor(after, 1, frontFullname, System.currentTimeMillis());
+    }
+
+    /**
+     * Cursor after reading the page this one pointed at
+     */
+    public ListingCursor advance(String nextAfter) {
+        return new ListingCursor(nextAfter, depth + 1, frontFullname, frontCheckedAt);
+    }
+
+    /**
+     * Same position, with the front page confirmed unchanged just now
+     */
+    public ListingCursor frontChecked() {
+        return new ListingCursor(after, depth, frontFullname, System.currentTimeMillis());
+    }
+
+    // No further page, or deep enough that the next refill should start over
+    @JsonIgnore
+    public boolean isExhausted(int maxDepth) {
+        return after == null || depth >= maxDepth;
+    }
+
+    @JsonIgnore
+    public boolean isFrontCheckDue(long intervalMs) {
+        return System.currentTimeMillis() - frontCheckedAt > intervalMs;
+    }
+
+    // Getters for Jackson serialization
+    public String getAfter() { return after; }
+    public int getDepth() { return depth; }
+    public String getFrontFullname() { return frontFullname; }
+    public long getFrontCheckedAt() { return frontCheckedAt; }
+}
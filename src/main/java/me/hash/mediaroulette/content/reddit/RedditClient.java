@@ -1,13 +1,14 @@
 package me.hash.mediaroulette.content.reddit;
 
 import me.hash.mediaroulette.Main;
+import me.hash.mediaroulette.content.http.HttpTransport;
 import okhttp3.*;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Base64;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
 
 public class RedditClient {
 
@@ -16,12 +17,8 @@ public class RedditClient {
     private static volatile String accessToken = null;
     private static volatile long accessTokenExpirationTime = 0;
 
-    public static final OkHttpClient HTTP_CLIENT = new OkHttpClient.Builder()
-            .connectTimeout(10, TimeUnit.SECONDS)
-            .readTimeout(10, TimeUnit.SECONDS)
-            .writeTimeout(10, TimeUnit.SECONDS)
-            .connectionPool(new ConnectionPool(10, 5, TimeUnit.MINUTES))
-            .build();
+    public static final OkHttpClient HTTP_CLIENT =
+            HttpTransport.cachingClient("reddit", Duration.ofSeconds(10), Duration.ofSeconds(10));
 
     public String getAccessToken() throws IOException {
         if (accessToken == null || System.currentTimeMillis() > accessTokenExpirationTime) {
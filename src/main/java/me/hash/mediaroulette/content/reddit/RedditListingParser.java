@@ -0,0 +1,142 @@
+package me.hash.mediaroulette.content.reddit;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Streams a Reddit listing straight off the response body. Each post is handed over as soon as
+ * it has been read, holding only the fields {@link RedditPostProcessor} looks at; everything
+ * else (awards, flair, media embeds, ...) is skipped without being materialized.
+ */
+public class RedditListingParser {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    // Post fields read by RedditPostProcessor, plus name for the listing cursor
+    private static final Set<String> POST_FIELDS = Set.of(
+            "id", "name", "title", "subreddit", "permalink", "url", "selftext", "thumbnail",
+            "post_hint", "preview", "is_gallery", "gallery_data", "media_metadata");
+
+    /**
+     * Paging details of a parsed listing
+     */
+    public record Listing(String after, String firstFullname, int postCount) {}
+
+    public Listing parse(InputStream in, Consumer<JSONObject> onPost) throws IOException {
+        String after = null;
+        String firstFullname = null;
+        int postCount = 0;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                if (parser.nextToken() != JsonToken.START_OBJECT || !"data".equals(field)) {
+                    parser.skipChildren();
+                    continue;
+                }
+
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String dataField = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if ("after".equals(dataField)) {
+                        after = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    } else if ("children".equals(dataField) && value == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            JSONObject post = readChild(parser);
+                            if (post == null) continue;
+                            if (postCount++ == 0) {
+                                firstFullname = post.optString("name", null);
+                            }
+                            onPost.accept(post);
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+        return new Listing(after, firstFullname, postCount);
+    }
+
+    /**
+     * Read one {"kind": ..., "data": {...}} child, keeping only the post fields we use
+     */
+    private JSONObject readChild(JsonParser parser) throws IOException {
+        JSONObject post = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            if (parser.nextToken() != JsonToken.START_OBJECT || !"data".equals(field)) {
+                parser.skipChildren();
+                continue;
+            }
+
+            post = new JSONObject();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String postField = parser.currentName();
+                parser.nextToken();
+                if (POST_FIELDS.contains(postField)) {
+                    post.put(postField, readValue(parser));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return post;
+    }
+
+    /**
+     * Read the value at the current token as the org.json types the post processor expects
+     */
+    private Object readValue(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case START_OBJECT -> {
+                JSONObject object = new JSONObject();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    parser.nextToken();
+                    object.put(name, readValue(parser));
+                }
+                return object;
+            }
+            case START_ARRAY -> {
+                JSONArray array = new JSONArray();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    array.put(readValue(parser));
+                }
+                return array;
+            }
+            case VALUE_STRING -> {
+                return parser.getText();
+            }
+            case VALUE_NUMBER_INT -> {
+                return parser.getNumberValue();
+            }
+            case VALUE_NUMBER_FLOAT -> {
+                return parser.getDoubleValue();
+            }
+            case VALUE_TRUE -> {
+                return Boolean.TRUE;
+            }
+            case VALUE_FALSE -> {
+                return Boolean.FALSE;
+            }
+            default -> {
+                return JSONObject.NULL;
+            }
+        }
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Unexpected Reddit listing format: expected " + expected + " but got " + actual);
+        }
+    }
+}
@@ -3,13 +3,9 @@ package me.hash.mediaroulette.content.reddit;
 import me.hash.mediaroulette.model.content.MediaResult;
 import me.hash.mediaroulette.model.content.MediaSource;
 import me.hash.mediaroulette.utils.GlobalLogger;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.IOException;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -18,7 +14,6 @@ import java.util.regex.Pattern;
 
 public class RedditPostProcessor {
     private final Logger logger = GlobalLogger.getLogger();
-    private final OkHttpClient httpClient = new OkHttpClient();
 
     // RedGifs API patterns
     private static final Pattern REDGIFS_URL_PATTERN = Pattern.compile(
@@ -2,20 +2,27 @@ package me.hash.mediaroulette.content.reddit;
 
 import okhttp3.Response;
 import org.json.JSONObject;
+import me.hash.mediaroulette.utils.CompactWordList;
 import me.hash.mediaroulette.utils.ErrorReporter;
 import me.hash.mediaroulette.utils.PersistentCache;
 import com.fasterxml.jackson.core.type.TypeReference;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 public class SubredditManager {
 
-    // Persistent cache to avoid repeatedly checking for subreddit existence
-    private static final PersistentCache<Boolean> SUBREDDIT_EXISTS_CACHE = 
-        new PersistentCache<>("subreddit_exists.json", new TypeReference<Map<String, Boolean>>() {});
+    private static final long EXISTS_TTL_MS = TimeUnit.DAYS.toMillis(7);
+    private static final long NOT_EXISTS_TTL_MS = TimeUnit.HOURS.toMillis(6);
+    private static final int MAX_CACHED_SUBREDDITS = 5000;
+
+    // Persistent cache to avoid repeatedly checking for subreddit existence.
+    // Misses expire sooner so a subreddit that comes back (or failed a transient check) is retried.
+    private static final PersistentCache<Boolean> SUBREDDIT_EXISTS_CACHE =
+        new PersistentCache<>("subreddit_exists.json", new TypeReference<Map<String, Boolean>>() {},
+                EXISTS_TTL_MS, MAX_CACHED_SUBREDDITS, exists -> !exists, NOT_EXISTS_TTL_MS);
     private final RedditClient redditClient;
 
     public SubredditManager(RedditClient redditClient) {
@@ -23,8 +30,9 @@ public class SubredditManager {
     }
 
     public boolean doesSubredditExist(String subreddit) throws IOException {
-        if (SUBREDDIT_EXISTS_CACHE.containsKey(subreddit)) {
-            return SUBREDDIT_EXISTS_CACHE.get(subreddit);
+        Boolean cached = SUBREDDIT_EXISTS_CACHE.get(subreddit);
+        if (cached != null) {
+            return cached;
         }
 
         String url = "https://oauth.reddit.com/r/" + subreddit + "/about";
@@ -36,56 +44,40 @@ public class SubredditManager {
         // If an error key exists, then the subreddit likely does not exist.
         boolean exists = !json.has("error");
         SUBREDDIT_EXISTS_CACHE.put(subreddit, exists);
-
-        // Simple cache eviction policy - clear old entries if cache gets too large
-        if (SUBREDDIT_EXISTS_CACHE.size() > 1000) {
-            System.out.println("Subreddit cache size exceeded 1000, clearing cache");
-            SUBREDDIT_EXISTS_CACHE.clear();
-        }
         return exists;
     }
 
     public String getRandomSubreddit() throws IOException {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
-                Objects.requireNonNull(getClass().getClassLoader().getResourceAsStream("subreddits.txt"))
-        ))) {
-            List<String> subreddits = new ArrayList<>();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                subreddits.add(line.trim());
-            }
-            if (subreddits.isEmpty()) {
-                throw new IOException("No subreddits available in the list.");
-            }
-            Collections.shuffle(subreddits);
-            
-            // Try to find a valid subreddit, with a maximum of 10 attempts to avoid infinite loops
-            int attempts = 0;
-            int maxAttempts = Math.min(10, subreddits.size());
-            
-            for (String subreddit : subreddits) {
-                if (attempts >= maxAttempts) {
-                    break;
-                }
-                attempts++;
-                
-                try {
-                    if (doesSubredditExist(subreddit)) {
-                        return subreddit;
-                    } else {
-                        // Report invalid subreddit for monitoring
-                        ErrorReporter.reportFailedSubreddit(subreddit, "Subreddit validation failed - does not exist", null);
-                    }
-                } catch (IOException e) {
-                    // Report validation error
-                    ErrorReporter.reportFailedSubreddit(subreddit, "Subreddit validation error: " + e.getMessage(), null);
-                    // Continue to next subreddit if validation fails
-                    continue;
+        CompactWordList subreddits = CompactWordList.subreddits();
+        if (subreddits.isEmpty()) {
+            throw new IOException("No subreddits available in the list.");
+        }
+
+        // Try distinct random picks, with a maximum of 10 attempts to avoid infinite loops
+        int maxAttempts = Math.min(10, subreddits.size());
+        Set<Integer> tried = new HashSet<>();
+        int attempts = 0;
+
+        while (attempts < maxAttempts) {
+            int index = ThreadLocalRandom.current().nextInt(subreddits.size());
+            if (!tried.add(index)) continue;
+            attempts++;
+
+            String subreddit = subreddits.get(index);
+            try {
+                if (doesSubredditExist(subreddit)) {
+                    return subreddit;
+                } else {
+                    // Report invalid subreddit for monitoring
+                    ErrorReporter.reportFailedSubreddit(subreddit, "Subreddit validation failed - does not exist", null);
                 }
+            } catch (IOException e) {
+                // Report validation error and continue to next subreddit
+                ErrorReporter.reportFailedSubreddit(subreddit, "Subreddit validation error: " + e.getMessage(), null);
             }
-            
-            // If no valid subreddit found after attempts, throw an exception with helpful message
-            throw new IOException("No valid subreddits found after " + attempts + " attempts. Please use /support for help.");
         }
+
+        // If no valid subreddit found after attempts, throw an exception with helpful message
+        throw new IOException("No valid subreddits found after " + attempts + " attempts. Please use /support for help.");
     }
-}
\ No newline at end of file
+}
@@ -6,10 +6,16 @@ import me.hash.mediaroulette.utils.user.ImageSelector;
 
 import java.util.*;
 import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class User {
     public static final int DEFAULT_FAVORITE_LIMIT = 25;
     public static final int MAX_CUSTOM_SUBREDDITS = 50;
+    public static final int MAX_TRANSACTION_HISTORY = 100;
+
+    // Shared across instances so a reloaded user never reuses an earlier version
+    private static final AtomicLong OPTIONS_VERSIONS = new AtomicLong(0);
 
     private String userId;
     private long imagesGenerated;
@@ -18,6 +24,7 @@ public class User {
     private boolean admin;
     private List<Favorite> favorites;
     private Map<String, ImageOptions> imageOptions;
+    private volatile long imageOptionsVersion = OPTIONS_VERSIONS.incrementAndGet(); // Identifies the current chances for cached samplers
     private String locale; // locale support
     private String theme;
     private long coins; // User's currency balance
@@ -41,6 +48,12 @@ public class User {
     private java.time.LocalDateTime lastActiveDate; // Last time user was active
     private java.time.LocalDateTime accountCreatedDate; // When the user account was created
 
+    // Change tracking since the last save, keyed by stored document field names
+    private boolean fullReplace;
+    private final Set<String> dirtyFields = new HashSet<>();
+    private final Map<String, Long> pendingIncrements = new HashMap<>();
+    private final Map<String, List<Object>> pendingAppends = new HashMap<>();
+
     public User(String userId) {
         this.userId = userId;
         this.imagesGenerated = 0;
@@ -72,46 +85,104 @@ public class User {
         this.inventory = new ArrayList<>();
     }
 
+    // --- Change Tracking ---
+    // Methods that change tracked lists and maps hold the user's lock, which the repository also
+    // holds while draining and mapping them, so a flush never sees a list mid-update.
+
+    /**
+     * Mark a stored field as changed so its current value is written on the next save.
+     */
+    private synchronized void markDirty(String field) {
+        if (fullReplace) return;
+        dirtyFields.add(field);
+        // A $set of the field supersedes any pending $inc/$push on it or its children
+        pendingIncrements.keySet().removeIf(path -> path.equals(field) || path.startsWith(field + "."));
+        pendingAppends.remove(field);
+    }
+
+    private synchronized void recordIncrement(String field, String key, long amount) {
+        if (fullReplace || dirtyFields.contains(field)) return;
+        if (key != null && (key.contains(".") || key.startsWith("$"))) {
+            // Not addressable with dot notation, write the whole map instead
+            markDirty(field);
+            return;
+        }
+        pendingIncrements.merge(key != null ? field + "." + key : field, amount, Long::sum);
+    }
+
+    private synchronized void recordAppend(String field, Object element) {
+        if (fullReplace || dirtyFields.contains(field)) return;
+        pendingAppends.computeIfAbsent(field, k -> new ArrayList<>()).add(element);
+    }
+
+    /**
+     * Force the next save to write the whole document.
+     */
+    public synchronized void markAllDirty() {
+        fullReplace = true;
+        dirtyFields.clear();
+        pendingIncrements.clear();
+        pendingAppends.clear();
+    }
+
+    public synchronized boolean hasChanges() {
+        return fullReplace || !dirtyFields.isEmpty() || !pendingIncrements.isEmpty() || !pendingAppends.isEmpty();
+    }
+
+    /**
+     * Return the changes made since the last call and reset tracking.
+     */
+    public synchronized UserDelta drainChanges() {
+        UserDelta delta = new UserDelta(userId, fullReplace, new HashSet<>(dirtyFields),
+                new HashMap<>(pendingIncrements), new HashMap<>(pendingAppends));
+        fullReplace = false;
+        dirtyFields.clear();
+        pendingIncrements.clear();
+        pendingAppends.clear();
+        return delta;
+    }
+
     // --- Getters and Setters ---
     public String getUserId() { return userId; }
     public long getImagesGenerated() { return imagesGenerated; }
-    public void setImagesGenerated(long imagesGenerated) { this.imagesGenerated = imagesGenerated; }
+    public void setImagesGenerated(long imagesGenerated) { this.imagesGenerated = imagesGenerated; markDirty("imagesGenerated"); }
     public boolean isNsfw() { return nsfw; }
-    public void setNsfw(boolean nsfw) { this.nsfw = nsfw; }
+    public void setNsfw(boolean nsfw) { this.nsfw = nsfw; markDirty("nsfw"); }
     public boolean isPremium() { return premium; }
-    public void setPremium(boolean premium) { this.premium = premium; }
+    public void setPremium(boolean premium) { this.premium = premium; markDirty("premium"); }
     public boolean isAdmin() { return admin; }
-    public void setAdmin(boolean admin) { this.admin = admin; }
+    public void setAdmin(boolean admin) { this.admin = admin; markDirty("admin"); }
     public List<Favorite> getFavorites() { return favorites; }
     public Map<String, ImageOptions> getImageOptionsMap() { return imageOptions; }
     public String getLocale() { return locale; }
-    public void setLocale(String locale) { this.locale = locale; }
+    public void setLocale(String locale) { this.locale = locale; markDirty("locale"); }
     public String getTheme() { return theme; }
-    public void setTheme(String theme) { this.theme = theme; }
+    public void setTheme(String theme) { this.theme = theme; markDirty("theme"); }
     public long getCoins() { return coins; }
-    public void setCoins(long coins) { this.coins = coins; }
+    public void setCoins(long coins) { this.coins = coins; markDirty("coins"); }
     public long getTotalCoinsEarned() { return totalCoinsEarned; }
-    public void setTotalCoinsEarned(long totalCoinsEarned) { this.totalCoinsEarned = totalCoinsEarned; }
+    public void setTotalCoinsEarned(long totalCoinsEarned) { this.totalCoinsEarned = totalCoinsEarned; markDirty("totalCoinsEarned"); }
     public long getTotalCoinsSpent() { return totalCoinsSpent; }
-    public void setTotalCoinsSpent(long totalCoinsSpent) { this.totalCoinsSpent = totalCoinsSpent; }
+    public void setTotalCoinsSpent(long totalCoinsSpent) { this.totalCoinsSpent = totalCoinsSpent; markDirty("totalCoinsSpent"); }
     public List<Quest> getDailyQuests() { return dailyQuests; }
-    public void setDailyQuests(List<Quest> dailyQuests) { this.dailyQuests = dailyQuests; }
+    public void setDailyQuests(List<Quest> dailyQuests) { this.dailyQuests = dailyQuests; markDirty("dailyQuests"); }
     public List<Transaction> getTransactionHistory() { return transactionHistory; }
-    public void setTransactionHistory(List<Transaction> transactionHistory) { this.transactionHistory = transactionHistory; }
+    public void setTransactionHistory(List<Transaction> transactionHistory) { this.transactionHistory = transactionHistory; markDirty("transactionHistory"); }
     public java.time.LocalDate getLastQuestReset() { return lastQuestReset; }
-    public void setLastQuestReset(java.time.LocalDate lastQuestReset) { this.lastQuestReset = lastQuestReset; }
+    public void setLastQuestReset(java.time.LocalDate lastQuestReset) { this.lastQuestReset = lastQuestReset; markDirty("lastQuestReset"); }
     public long getTotalQuestsCompleted() { return totalQuestsCompleted; }
-    public void setTotalQuestsCompleted(long totalQuestsCompleted) { this.totalQuestsCompleted = totalQuestsCompleted; }
+    public void setTotalQuestsCompleted(long totalQuestsCompleted) { this.totalQuestsCompleted = totalQuestsCompleted; markDirty("totalQuestsCompleted"); }
     public long getQuestsCompletedToday() { return questsCompletedToday; }
-    public void setQuestsCompletedToday(long questsCompletedToday) { this.questsCompletedToday = questsCompletedToday; }
+    public void setQuestsCompletedToday(long questsCompletedToday) { this.questsCompletedToday = questsCompletedToday; markDirty("questsCompletedToday"); }
     public java.time.LocalDate getLastQuestCompletionDate() { return lastQuestCompletionDate; }
-    public void setLastQuestCompletionDate(java.time.LocalDate lastQuestCompletionDate) { this.lastQuestCompletionDate = lastQuestCompletionDate; }
+    public void setLastQuestCompletionDate(java.time.LocalDate lastQuestCompletionDate) { this.lastQuestCompletionDate = lastQuestCompletionDate; markDirty("lastQuestCompletionDate"); }
     public List<InventoryItem> getInventory() { return inventory; }
-    public void setInventory(List<InventoryItem> inventory) { this.inventory = inventory; }
+    public void setInventory(List<InventoryItem> inventory) { this.inventory = inventory; markDirty("inventory"); }
 
     // --- Business Logic Methods ---
     public void incrementImagesGenerated() {
         this.imagesGenerated++;
+        recordIncrement("imagesGenerated", null, 1);
         // Note: Coins are now earned through quests, not automatic generation
     }
 
@@ -120,12 +191,14 @@ public class User {
         return addCoins(amount, type, description, null);
     }
 
-    public Transaction addCoins(long amount, Transaction.TransactionType type, String description, String adminId) {
+    public synchronized Transaction addCoins(long amount, Transaction.TransactionType type, String description, String adminId) {
         if (amount <= 0) return null;
         
         long balanceBefore = this.coins;
         this.coins += amount;
         this.totalCoinsEarned += amount;
+        recordIncrement("coins", null, amount);
+        recordIncrement("totalCoinsEarned", null, amount);
         
         Transaction transaction = new Transaction(this.userId, type, amount, balanceBefore, description);
         if (adminId != null) {
@@ -140,12 +213,14 @@ public class User {
         return spendCoins(amount, type, description, null);
     }
 
-    public Transaction spendCoins(long amount, Transaction.TransactionType type, String description, String adminId) {
+    public synchronized Transaction spendCoins(long amount, Transaction.TransactionType type, String description, String adminId) {
         if (amount <= 0 || this.coins < amount) return null;
         
         long balanceBefore = this.coins;
         this.coins -= amount;
         this.totalCoinsSpent += amount;
+        recordIncrement("coins", null, -amount);
+        recordIncrement("totalCoinsSpent", null, amount);
         
         Transaction transaction = new Transaction(this.userId, type, -amount, balanceBefore, description);
         if (adminId != null) {
@@ -166,9 +241,10 @@ public class User {
 
     private void addTransaction(Transaction transaction) {
         this.transactionHistory.add(transaction);
+        recordAppend("transactionHistory", transaction);
         
         // Keep only last 100 transactions to prevent memory issues
-        if (this.transactionHistory.size() > 100) {
+        if (this.transactionHistory.size() > MAX_TRANSACTION_HISTORY) {
             this.transactionHistory.remove(0);
         }
         
@@ -194,16 +270,23 @@ public class User {
     }
 
     // --- Quest Management Methods ---
-    public void addQuest(Quest quest) {
+    public synchronized void addQuest(Quest quest) {
         this.dailyQuests.add(quest);
+        markDirty("dailyQuests");
     }
 
-    public void updateQuestProgress(Quest.QuestType questType, int amount) {
+    public synchronized void updateQuestProgress(Quest.QuestType questType, int amount) {
+        boolean changed = false;
         for (Quest quest : dailyQuests) {
             if (quest.getType() == questType && !quest.isCompleted()) {
                 quest.addProgress(amount);
+                changed = true;
             }
         }
+        // Most actions match no open quest; don't rewrite the quest list for those
+        if (changed) {
+            markDirty("dailyQuests");
+        }
     }
 
     public List<Quest> getCompletedQuests() {
@@ -223,9 +306,11 @@ public class User {
                !lastQuestReset.equals(java.time.LocalDate.now(java.time.ZoneOffset.UTC));
     }
 
-    public void resetDailyQuests() {
+    public synchronized void resetDailyQuests() {
         this.dailyQuests.clear();
         this.lastQuestReset = java.time.LocalDate.now(java.time.ZoneOffset.UTC);
+        markDirty("dailyQuests");
+        markDirty("lastQuestReset");
     }
 
     public int getQuestLimit() {
@@ -233,12 +318,16 @@ public class User {
         return isPremium() ? 3 : 2;
     }
 
-    public Transaction claimQuestReward(Quest quest) {
+    public synchronized Transaction claimQuestReward(Quest quest) {
         if (quest.canClaim()) {
             quest.claim();
             
             // Update quest completion tracking
             this.totalQuestsCompleted++;
+            markDirty("dailyQuests");
+            recordIncrement("totalQuestsCompleted", null, 1);
+            markDirty("questsCompletedToday");
+            markDirty("lastQuestCompletionDate");
             
             java.time.LocalDate today = java.time.LocalDate.now(java.time.ZoneOffset.UTC);
             if (this.lastQuestCompletionDate == null || !this.lastQuestCompletionDate.equals(today)) {
@@ -260,18 +349,21 @@ public class User {
         return premium ? DEFAULT_FAVORITE_LIMIT * 2 : DEFAULT_FAVORITE_LIMIT;
     }
 
-    public void addFavorite(String description, String image, String type) {
+    public synchronized void addFavorite(String description, String image, String type) {
         if (favorites.size() >= getFavoriteLimit()) {
             // Log warning as needed – favorite limit reached.
             return;
         }
         int id = favorites.size();
-        favorites.add(new Favorite(id, description, image, type));
+        Favorite favorite = new Favorite(id, description, image, type);
+        favorites.add(favorite);
+        recordAppend("favorites", favorite);
     }
 
-    public void removeFavorite(int id) {
+    public synchronized void removeFavorite(int id) {
         if (id < 0 || id >= favorites.size()) return;
         favorites.remove(id);
+        markDirty("favorites");
         // Reassign IDs so they remain sequential.
         for (int i = id; i < favorites.size(); i++) {
             favorites.get(i).setId(i);
@@ -281,10 +373,28 @@ public class User {
     /**
      * Update (or set) image options with new chances.
      */
-    public void setChances(ImageOptions... options) {
+    public synchronized void setChances(ImageOptions... options) {
         for (ImageOptions option : options) {
             imageOptions.put(option.getImageType(), option);
         }
+        imageOptionsVersion = OPTIONS_VERSIONS.incrementAndGet();
+        markDirty("images");
+    }
+
+    /**
+     * Remove every image option so the defaults apply again.
+     */
+    public synchronized void clearChances() {
+        imageOptions.clear();
+        imageOptionsVersion = OPTIONS_VERSIONS.incrementAndGet();
+        markDirty("images");
+    }
+
+    /**
+     * Changes whenever the chances are updated through {@link #setChances} or {@link #clearChances}
+     */
+    public long getImageOptionsVersion() {
+        return imageOptionsVersion;
     }
 
     public ImageOptions getImageOptions(String imageType) {
@@ -298,10 +408,18 @@ public class User {
      * @throws InvalidChancesException if the chance values are invalid.
      */
     public Map<String, String> getImage() throws NoEnabledOptionsException, InvalidChancesException, me.hash.mediaroulette.exceptions.InvalidChancesException, me.hash.mediaroulette.exceptions.NoEnabledOptionsException {
-        ImageSelector selector = new ImageSelector(imageOptions);
+        ImageSelector selector = new ImageSelector(imageOptions, userId, imageOptionsVersion);
         return selector.selectImage(this.userId);
     }
 
+    /**
+     * Non-blocking form of {@link #getImage()}; only the source choice happens on the calling thread.
+     */
+    public CompletableFuture<Map<String, String>> getImageAsync() throws NoEnabledOptionsException, InvalidChancesException {
+        ImageSelector selector = new ImageSelector(imageOptions, userId, imageOptionsVersion);
+        return selector.selectImageAsync(this.userId);
+    }
+
     // --- Inventory Management Methods ---
     public static final int MAX_INVENTORY_SIZE = 100;
     
@@ -310,7 +428,7 @@ public class User {
      * @param item The item to add
      * @return true if added successfully, false if inventory is full
      */
-    public boolean addInventoryItem(InventoryItem item) {
+    public synchronized boolean addInventoryItem(InventoryItem item) {
         if (inventory.size() >= MAX_INVENTORY_SIZE) {
             return false; // Inventory full
         }
@@ -320,6 +438,7 @@ public class User {
             for (InventoryItem existingItem : inventory) {
                 if (existingItem.getId().equals(item.getId())) {
                     existingItem.addQuantity(item.getQuantity());
+                    markDirty("inventory");
                     return true;
                 }
             }
@@ -327,6 +446,7 @@ public class User {
         
         // Add as new item
         inventory.add(item);
+        markDirty("inventory");
         return true;
     }
     
@@ -336,10 +456,11 @@ public class User {
      * @param quantity The quantity to remove (for stackable items)
      * @return true if removed successfully
      */
-    public boolean removeInventoryItem(String itemId, int quantity) {
+    public synchronized boolean removeInventoryItem(String itemId, int quantity) {
         for (int i = 0; i < inventory.size(); i++) {
             InventoryItem item = inventory.get(i);
             if (item.getId().equals(itemId)) {
+                markDirty("inventory");
                 if (item.getQuantity() <= quantity) {
                     // Remove entire item
                     inventory.remove(i);
@@ -436,7 +557,7 @@ public class User {
      * Sort inventory by a specific criteria
      * @param sortBy "name", "type", "rarity", "quantity", "acquired"
      */
-    public void sortInventory(String sortBy) {
+    public synchronized void sortInventory(String sortBy) {
         switch (sortBy.toLowerCase()) {
             case "name" -> inventory.sort(Comparator.comparing(InventoryItem::getName));
             case "type" -> inventory.sort(Comparator.comparing(InventoryItem::getType));
@@ -445,13 +566,15 @@ public class User {
             case "acquired" -> inventory.sort(Comparator.comparing(InventoryItem::getAcquiredAt).reversed());
             default -> inventory.sort(Comparator.comparing(InventoryItem::getName));
         }
+        markDirty("inventory");
     }
     
     /**
      * Clear all items from inventory
      */
-    public void clearInventory() {
+    public synchronized void clearInventory() {
         inventory.clear();
+        markDirty("inventory");
     }
     
     // ===== USAGE STATISTICS METHODS =====
@@ -462,11 +585,13 @@ public class User {
     
     public void setSourceUsageCount(Map<String, Long> sourceUsageCount) {
         this.sourceUsageCount = sourceUsageCount;
+        markDirty("sourceUsageCount");
     }
     
-    public void incrementSourceUsage(String source) {
+    public synchronized void incrementSourceUsage(String source) {
         if (sourceUsageCount == null) sourceUsageCount = new HashMap<>();
         sourceUsageCount.put(source, sourceUsageCount.getOrDefault(source, 0L) + 1);
+        recordIncrement("sourceUsageCount", source, 1);
         updateLastActive();
     }
     
@@ -476,12 +601,15 @@ public class User {
     
     public void setCommandUsageCount(Map<String, Long> commandUsageCount) {
         this.commandUsageCount = commandUsageCount;
+        markDirty("commandUsageCount");
     }
     
-    public void incrementCommandUsage(String command) {
+    public synchronized void incrementCommandUsage(String command) {
         if (commandUsageCount == null) commandUsageCount = new HashMap<>();
         commandUsageCount.put(command, commandUsageCount.getOrDefault(command, 0L) + 1);
         totalCommandsUsed++;
+        recordIncrement("commandUsageCount", command, 1);
+        recordIncrement("totalCommandsUsed", null, 1);
         updateLastActive();
     }
     
@@ -491,9 +619,10 @@ public class User {
     
     public void setCustomSubreddits(List<String> customSubreddits) {
         this.customSubreddits = customSubreddits;
+        markDirty("customSubreddits");
     }
     
-    public void addCustomSubreddit(String subreddit) {
+    public synchronized void addCustomSubreddit(String subreddit) {
         if (customSubreddits == null) customSubreddits = new ArrayList<>();
         
         // Remove if already exists to avoid duplicates
@@ -506,6 +635,7 @@ public class User {
         if (customSubreddits.size() > MAX_CUSTOM_SUBREDDITS) {
             customSubreddits = customSubreddits.subList(0, MAX_CUSTOM_SUBREDDITS);
         }
+        markDirty("customSubreddits");
         
         // Track usage
         incrementSubredditUsage(subreddit);
@@ -517,11 +647,13 @@ public class User {
     
     public void setSubredditUsageCount(Map<String, Integer> subredditUsageCount) {
         this.subredditUsageCount = subredditUsageCount;
+        markDirty("subredditUsageCount");
     }
     
-    public void incrementSubredditUsage(String subreddit) {
+    public synchronized void incrementSubredditUsage(String subreddit) {
         if (subredditUsageCount == null) subredditUsageCount = new HashMap<>();
         subredditUsageCount.put(subreddit, subredditUsageCount.getOrDefault(subreddit, 0) + 1);
+        recordIncrement("subredditUsageCount", subreddit, 1);
     }
     
     public List<String> getTopSubreddits(int limit) {
@@ -540,6 +672,7 @@ public class User {
     
     public void setTotalCommandsUsed(long totalCommandsUsed) {
         this.totalCommandsUsed = totalCommandsUsed;
+        markDirty("totalCommandsUsed");
     }
     
     public java.time.LocalDateTime getLastActiveDate() {
@@ -548,10 +681,12 @@ public class User {
     
     public void setLastActiveDate(java.time.LocalDateTime lastActiveDate) {
         this.lastActiveDate = lastActiveDate;
+        markDirty("lastActiveDate");
     }
     
     public void updateLastActive() {
         this.lastActiveDate = java.time.LocalDateTime.now();
+        markDirty("lastActiveDate");
     }
     
     public java.time.LocalDateTime getAccountCreatedDate() {
@@ -560,6 +695,7 @@ public class User {
     
     public void setAccountCreatedDate(java.time.LocalDateTime accountCreatedDate) {
         this.accountCreatedDate = accountCreatedDate;
+        markDirty("accountCreatedDate");
     }
     
     public String getMostUsedSource() {
@@ -588,6 +724,7 @@ public class User {
     
     public void setCustomQueries(Map<String, List<String>> customQueries) {
         this.customQueries = customQueries;
+        markDirty("customQueries");
     }
     
     public List<String> getCustomQueries(String service) {
@@ -595,7 +732,7 @@ public class User {
         return customQueries.getOrDefault(service, new ArrayList<>());
     }
     
-    public void addCustomQuery(String service, String query) {
+    public synchronized void addCustomQuery(String service, String query) {
         if (customQueries == null) customQueries = new HashMap<>();
         
         List<String> serviceQueries = customQueries.computeIfAbsent(service, k -> new ArrayList<>());
@@ -611,6 +748,7 @@ public class User {
             serviceQueries = serviceQueries.subList(0, MAX_CUSTOM_SUBREDDITS);
             customQueries.put(service, serviceQueries);
         }
+        markDirty("customQueries");
         
         updateLastActive();
     }
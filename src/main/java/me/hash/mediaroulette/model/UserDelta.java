@@ -0,0 +1,51 @@
+package me.hash.mediaroulette.model;
+
+import java.util.*;
+
+/**
+ * Changes made to a {@link User} since it was last persisted.
+ * Field names match the keys of the stored user document; increment paths may use
+ * dot notation for map entries (e.g. "sourceUsageCount.reddit").
+ */
+public class UserDelta {
+    private final String userId;
+    private final boolean fullReplace;
+    private final Set<String> dirtyFields;
+    private final Map<String, Long> increments;
+    private final Map<String, List<Object>> appended;
+
+    public UserDelta(String userId, boolean fullReplace, Set<String> dirtyFields,
+                     Map<String, Long> increments, Map<String, List<Object>> appended) {
+        this.userId = userId;
+        this.fullReplace = fullReplace;
+        this.dirtyFields = dirtyFields;
+        this.increments = increments;
+        this.appended = appended;
+    }
+
+    public String getUserId() { return userId; }
+
+    /**
+     * True when the change could not be tracked field by field and the whole document must be written.
+     */
+    public boolean isFullReplace() { return fullReplace; }
+
+    /**
+     * Fields whose current value should be written as-is ($set)
+     */
+    public Set<String> getDirtyFields() { return dirtyFields; }
+
+    /**
+     * Numeric deltas to add to the stored value ($inc)
+     */
+    public Map<String, Long> getIncrements() { return increments; }
+
+    /**
+     * Elements appended to list fields since the last save ($push)
+     */
+    public Map<String, List<Object>> getAppended() { return appended; }
+
+    public boolean isEmpty() {
+        return !fullReplace && dirtyFields.isEmpty() && increments.isEmpty() && appended.isEmpty();
+    }
+}
@@ -3,7 +3,14 @@ package me.hash.mediaroulette.repository;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 import me.hash.mediaroulette.model.User;
+import me.hash.mediaroulette.model.UserDelta;
 import me.hash.mediaroulette.model.Favorite;
 import me.hash.mediaroulette.model.ImageOptions;
 import me.hash.mediaroulette.model.InventoryItem;
@@ -11,11 +18,22 @@ import org.bson.Document;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 
 public class MongoUserRepository implements UserRepository {
+    // Top-level fields of a stored user document, in write order
+    private static final List<String> DOCUMENT_FIELDS = List.of(
+            "imagesGenerated", "nsfw", "premium", "admin", "locale", "theme",
+            "coins", "totalCoinsEarned", "totalCoinsSpent", "lastQuestReset",
+            "totalQuestsCompleted", "questsCompletedToday", "lastQuestCompletionDate",
+            "favorites", "dailyQuests", "transactionHistory", "images", "inventory",
+            "sourceUsageCount", "commandUsageCount", "customSubreddits", "subredditUsageCount",
+            "customQueries", "totalCommandsUsed", "lastActiveDate", "accountCreatedDate");
+
     private final MongoCollection<Document> userCollection;
 
     public MongoUserRepository(MongoCollection<Document> userCollection) {
@@ -34,12 +52,83 @@ public class MongoUserRepository implements UserRepository {
 
     @Override
     public User save(User user) {
-        Document doc = mapUserToDocument(user);
+        Document doc;
+        synchronized (user) {
+            // Everything is about to be written, so pending field changes are covered
+            user.drainChanges();
+            doc = mapUserToDocument(user);
+        }
         userCollection.replaceOne(new Document("_id", user.getUserId()), doc,
                 new com.mongodb.client.model.ReplaceOptions().upsert(true));
         return user;
     }
 
+    @Override
+    public void applyDelta(User user) {
+        applyDeltas(List.of(user));
+    }
+
+    @Override
+    public void applyDeltas(Collection<User> users) {
+        List<WriteModel<Document>> writes = new ArrayList<>(users.size());
+        for (User user : users) {
+            WriteModel<Document> write = toWriteModel(user);
+            if (write != null) {
+                writes.add(write);
+            }
+        }
+        if (writes.isEmpty()) return;
+
+        // Unordered so one bad document does not hold back the rest of the batch
+        userCollection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    }
+
+    /**
+     * Turn the user's pending changes into a single write: a replace when the whole document
+     * is dirty, otherwise an update with $set for changed fields, $inc for counters and $push
+     * for appended list elements.
+     */
+    private WriteModel<Document> toWriteModel(User user) {
+        Document filter = new Document("_id", user.getUserId());
+        // Drain and map under the user's lock so a concurrent change lands in this write or the next
+        synchronized (user) {
+            UserDelta delta = user.drainChanges();
+            if (delta.isEmpty()) return null;
+            if (delta.isFullReplace()) {
+                return new ReplaceOneModel<>(filter, mapUserToDocument(user), new ReplaceOptions().upsert(true));
+            }
+
+            Document update = new Document();
+            if (!delta.getDirtyFields().isEmpty()) {
+                Document set = new Document();
+                for (String field : delta.getDirtyFields()) {
+                    set.append(field, fieldValue(user, field));
+                }
+                update.append("$set", set);
+            }
+            if (!delta.getIncrements().isEmpty()) {
+                update.append("$inc", new Document(delta.getIncrements()));
+            }
+            if (!delta.getAppended().isEmpty()) {
+                Document push = new Document();
+                for (Map.Entry<String, List<Object>> entry : delta.getAppended().entrySet()) {
+                    List<Object> elements = new ArrayList<>(entry.getValue().size());
+                    for (Object element : entry.getValue()) {
+                        elements.add(mapAppendedElement(entry.getKey(), element));
+                    }
+                    Document each = new Document("$each", elements);
+                    if ("transactionHistory".equals(entry.getKey())) {
+                        // Mirror the in-memory cap on transaction history
+                        each.append("$slice", -User.MAX_TRANSACTION_HISTORY);
+                    }
+                    push.append(entry.getKey(), each);
+                }
+                update.append("$push", push);
+            }
+            return new UpdateOneModel<>(filter, update, new UpdateOptions().upsert(true));
+        }
+    }
+
     @Override
     public boolean exists(String userId) {
         return userCollection.find(new Document("_id", userId)).first() != null;
@@ -127,75 +216,88 @@ public class MongoUserRepository implements UserRepository {
         
         // Map usage statistics
         mapUsageStatistics(doc, user);
+
+        // Loading is not a modification
+        user.drainChanges();
         
         return user;
     }
 
     private Document mapUserToDocument(User user) {
-        Document doc = new Document("_id", user.getUserId())
-                .append("imagesGenerated", user.getImagesGenerated())
-                .append("nsfw", user.isNsfw())
-                .append("premium", user.isPremium())
-                .append("admin", user.isAdmin())
-                .append("locale", user.getLocale())
-                .append("theme", user.getTheme())
-                .append("coins", user.getCoins())
-                .append("totalCoinsEarned", user.getTotalCoinsEarned())
-                .append("totalCoinsSpent", user.getTotalCoinsSpent())
-                .append("lastQuestReset", user.getLastQuestReset() != null ? user.getLastQuestReset().toString() : null)
-                .append("totalQuestsCompleted", user.getTotalQuestsCompleted())
-                .append("questsCompletedToday", user.getQuestsCompletedToday())
-                .append("lastQuestCompletionDate", user.getLastQuestCompletionDate() != null ? user.getLastQuestCompletionDate().toString() : null);
-
-        // Map favorites
-        List<Document> favDocs = new ArrayList<>();
-        for (Favorite fav : user.getFavorites()) {
-            Document favDoc = new Document("id", fav.getId())
-                    .append("description", fav.getDescription())
-                    .append("image", fav.getImage())
-                    .append("type", fav.getType());
-            favDocs.add(favDoc);
+        Document doc = new Document("_id", user.getUserId());
+        for (String field : DOCUMENT_FIELDS) {
+            doc.append(field, fieldValue(user, field));
         }
-        doc.append("favorites", favDocs);
+        return doc;
+    }
 
-        // Map quests
-        List<Document> questDocs = new ArrayList<>();
-        for (me.hash.mediaroulette.model.Quest quest : user.getDailyQuests()) {
-            Document questDoc = mapQuestToDocument(quest);
-            questDocs.add(questDoc);
-        }
-        doc.append("dailyQuests", questDocs);
-        
-        // Map transaction history
-        List<Document> transactionDocs = new ArrayList<>();
-        for (me.hash.mediaroulette.model.Transaction transaction : user.getTransactionHistory()) {
-            Document transactionDoc = mapTransactionToDocument(transaction);
-            transactionDocs.add(transactionDoc);
-        }
-        doc.append("transactionHistory", transactionDocs);
+    /**
+     * Stored value of a single top-level field, shared by full saves and field-level $set updates.
+     */
+    private Object fieldValue(User user, String field) {
+        return switch (field) {
+            case "imagesGenerated" -> user.getImagesGenerated();
+            case "nsfw" -> user.isNsfw();
+            case "premium" -> user.isPremium();
+            case "admin" -> user.isAdmin();
+            case "locale" -> user.getLocale();
+            case "theme" -> user.getTheme();
+            case "coins" -> user.getCoins();
+            case "totalCoinsEarned" -> user.getTotalCoinsEarned();
+            case "totalCoinsSpent" -> user.getTotalCoinsSpent();
+            case "lastQuestReset" -> user.getLastQuestReset() != null ? user.getLastQuestReset().toString() : null;
+            case "totalQuestsCompleted" -> user.getTotalQuestsCompleted();
+            case "questsCompletedToday" -> user.getQuestsCompletedToday();
+            case "lastQuestCompletionDate" -> user.getLastQuestCompletionDate() != null ? user.getLastQuestCompletionDate().toString() : null;
+            case "favorites" -> mapList(user.getFavorites(), this::mapFavoriteToDocument);
+            case "dailyQuests" -> mapList(user.getDailyQuests(), this::mapQuestToDocument);
+            case "transactionHistory" -> mapList(user.getTransactionHistory(), this::mapTransactionToDocument);
+            case "images" -> {
+                Document imagesDoc = new Document();
+                for (Map.Entry<String, ImageOptions> entry : user.getImageOptionsMap().entrySet()) {
+                    ImageOptions option = entry.getValue();
+                    imagesDoc.append(entry.getKey(), new Document("enabled", option.isEnabled())
+                            .append("chance", option.getChance()));
+                }
+                yield imagesDoc;
+            }
+            case "inventory" -> mapList(user.getInventory(), this::inventoryItemToDocument);
+            case "sourceUsageCount" -> new Document(user.getSourceUsageCount());
+            case "commandUsageCount" -> new Document(user.getCommandUsageCount());
+            case "customSubreddits" -> new ArrayList<>(user.getCustomSubreddits());
+            case "subredditUsageCount" -> new Document(user.getSubredditUsageCount());
+            case "customQueries" -> new Document(user.getCustomQueries());
+            case "totalCommandsUsed" -> user.getTotalCommandsUsed();
+            case "lastActiveDate" -> user.getLastActiveDate() != null ? user.getLastActiveDate().toString() : null;
+            case "accountCreatedDate" -> user.getAccountCreatedDate() != null ? user.getAccountCreatedDate().toString() : null;
+            default -> throw new IllegalArgumentException("Unknown user field: " + field);
+        };
+    }
 
-        // Map image options
-        Document imagesDoc = new Document();
-        for (Map.Entry<String, ImageOptions> entry : user.getImageOptionsMap().entrySet()) {
-            ImageOptions option = entry.getValue();
-            Document optionDoc = new Document("enabled", option.isEnabled())
-                    .append("chance", option.getChance());
-            imagesDoc.append(entry.getKey(), optionDoc);
-        }
-        doc.append("images", imagesDoc);
-        
-        // Map inventory
-        List<Document> inventoryDocs = new ArrayList<>();
-        for (InventoryItem item : user.getInventory()) {
-            Document itemDoc = inventoryItemToDocument(item);
-            inventoryDocs.add(itemDoc);
+    private <T> List<Document> mapList(List<T> items, Function<T, Document> mapper) {
+        List<Document> docs = new ArrayList<>(items.size());
+        for (T item : items) {
+            docs.add(mapper.apply(item));
         }
-        doc.append("inventory", inventoryDocs);
-        
-        // Map usage statistics
-        mapUsageStatisticsToDocument(doc, user);
-        
-        return doc;
+        return docs;
+    }
+
+    /**
+     * Map an appended list element using the same mapping as the full list.
+     */
+    private Object mapAppendedElement(String field, Object element) {
+        return switch (field) {
+            case "favorites" -> mapFavoriteToDocument((Favorite) element);
+            case "transactionHistory" -> mapTransactionToDocument((me.hash.mediaroulette.model.Transaction) element);
+            default -> throw new IllegalArgumentException("Field does not support appends: " + field);
+        };
+    }
+
+    private Document mapFavoriteToDocument(Favorite fav) {
+        return new Document("id", fav.getId())
+                .append("description", fav.getDescription())
+                .append("image", fav.getImage())
+                .append("type", fav.getType());
     }
     
     // Helper methods for Quest mapping
@@ -416,60 +518,4 @@ public class MongoUserRepository implements UserRepository {
             }
         }
     }
-    
-    private void mapUsageStatisticsToDocument(Document doc, User user) {
-        // Map source usage count
-        if (user.getSourceUsageCount() != null && !user.getSourceUsageCount().isEmpty()) {
-            Document sourceUsageDoc = new Document();
-            for (Map.Entry<String, Long> entry : user.getSourceUsageCount().entrySet()) {
-                sourceUsageDoc.append(entry.getKey(), entry.getValue());
-            }
-            doc.append("sourceUsageCount", sourceUsageDoc);
-        }
-        
-        // Map command usage count
-        if (user.getCommandUsageCount() != null && !user.getCommandUsageCount().isEmpty()) {
-            Document commandUsageDoc = new Document();
-            for (Map.Entry<String, Long> entry : user.getCommandUsageCount().entrySet()) {
-                commandUsageDoc.append(entry.getKey(), entry.getValue());
-            }
-            doc.append("commandUsageCount", commandUsageDoc);
-        }
-        
-        // Map custom subreddits
-        if (user.getCustomSubreddits() != null) {
-            doc.append("customSubreddits", user.getCustomSubreddits());
-        }
-        
-        // Map subreddit usage count
-        if (user.getSubredditUsageCount() != null && !user.getSubredditUsageCount().isEmpty()) {
-            Document subredditUsageDoc = new Document();
-            for (Map.Entry<String, Integer> entry : user.getSubredditUsageCount().entrySet()) {
-                subredditUsageDoc.append(entry.getKey(), entry.getValue());
-            }
-            doc.append("subredditUsageCount", subredditUsageDoc);
-        }
-        
-        // Map custom queries
-        if (user.getCustomQueries() != null && !user.getCustomQueries().isEmpty()) {
-            Document customQueriesDoc = new Document();
-            for (Map.Entry<String, List<String>> entry : user.getCustomQueries().entrySet()) {
-                customQueriesDoc.append(entry.getKey(), entry.getValue());
-            }
-            doc.append("customQueries", customQueriesDoc);
-        }
-        
-        // Map total commands used
-        doc.append("totalCommandsUsed", user.getTotalCommandsUsed());
-        
-        // Map last active date
-        if (user.getLastActiveDate() != null) {
-            doc.append("lastActiveDate", user.getLastActiveDate().toString());
-        }
-        
-        // Map account created date
-        if (user.getAccountCreatedDate() != null) {
-            doc.append("accountCreatedDate", user.getAccountCreatedDate().toString());
-        }
-    }
 }
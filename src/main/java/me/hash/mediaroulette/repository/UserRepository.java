@@ -1,11 +1,23 @@
 package me.hash.mediaroulette.repository;
 
 import me.hash.mediaroulette.model.User;
+import java.util.Collection;
 import java.util.Optional;
 
 public interface UserRepository {
     Optional<User> findById(String userId);
     User save(User user);
+
+    /**
+     * Persist only the changes tracked on the user since its last save.
+     */
+    void applyDelta(User user);
+
+    /**
+     * Persist tracked changes for several users in one round trip.
+     */
+    void applyDeltas(Collection<User> users);
+
     boolean exists(String userId);
     long getTotalUsers();
     long getTotalImagesGenerated();
@@ -0,0 +1,168 @@
+package me.hash.mediaroulette.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter over strings. Answers "definitely not added" or "probably added"
+ * in a fixed amount of memory, sized from the expected number of entries and the target
+ * false-positive rate. Can be saved to and loaded from a small binary file.
+ */
+public class BloomFilter {
+    private static final int FILE_VERSION = 1;
+
+    private final int numBits;
+    private final int numHashes;
+    private final AtomicLongArray bits;
+    private final AtomicLong insertions = new AtomicLong(0);
+
+    public BloomFilter(int expectedInsertions, double falsePositiveRate) {
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.numBits = (int) Math.max(64, Math.min(optimalBits, Integer.MAX_VALUE - 63));
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+        this.bits = new AtomicLongArray((numBits + 63) / 64);
+    }
+
+    private BloomFilter(int numBits, int numHashes, long insertions, long[] words) {
+        this.numBits = numBits;
+        this.numHashes = numHashes;
+        this.bits = new AtomicLongArray(words);
+        this.insertions.set(insertions);
+    }
+
+    public boolean mightContain(String key) {
+        long hash1 = hash(key);
+        long hash2 = mix(hash1 + 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < numHashes; i++) {
+            int bit = bitIndex(hash1, hash2, i);
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add a key. Only counts as an insertion if it changed at least one bit.
+     */
+    public void put(String key) {
+        long hash1 = hash(key);
+        long hash2 = mix(hash1 + 0x9E3779B97F4A7C15L);
+        boolean changed = false;
+        for (int i = 0; i < numHashes; i++) {
+            int bit = bitIndex(hash1, hash2, i);
+            long mask = 1L << bit;
+            int word = bit >>> 6;
+            long current;
+            while (((current = bits.get(word)) & mask) == 0) {
+                if (bits.compareAndSet(word, current, current | mask)) {
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        if (changed) {
+            insertions.incrementAndGet();
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < bits.length(); i++) {
+            bits.set(i, 0);
+        }
+        insertions.set(0);
+    }
+
+    /**
+     * False-positive rate expected for the number of keys added so far
+     */
+    public double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) numHashes * insertions.get() / numBits), numHashes);
+    }
+
+    public long getInsertions() {
+        return insertions.get();
+    }
+
+    public int getBitCount() {
+        return numBits;
+    }
+
+    public int getHashCount() {
+        return numHashes;
+    }
+
+    /**
+     * Write to a temporary file and move it into place, so a crash never leaves a torn filter
+     */
+    public void writeTo(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp);
+             DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out))) {
+            data.writeInt(FILE_VERSION);
+            data.writeInt(numBits);
+            data.writeInt(numHashes);
+            data.writeLong(insertions.get());
+            data.writeInt(bits.length());
+            for (int i = 0; i < bits.length(); i++) {
+                data.writeLong(bits.get(i));
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load a filter saved with {@link #writeTo}, or return null if the file is missing or unreadable
+     */
+    public static BloomFilter readFrom(Path file) {
+        if (!Files.exists(file)) return null;
+        try (InputStream in = Files.newInputStream(file);
+             DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            if (data.readInt() != FILE_VERSION) return null;
+            int numBits = data.readInt();
+            int numHashes = data.readInt();
+            long insertions = data.readLong();
+            long[] words = new long[data.readInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = data.readLong();
+            }
+            return new BloomFilter(numBits, numHashes, insertions, words);
+        } catch (IOException e) {
+            System.err.println("Failed to load Bloom filter " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private int bitIndex(long hash1, long hash2, int i) {
+        // Kirsch-Mitzenmacher: k indexes from two hashes
+        return (int) Math.floorMod(hash1 + i * hash2, (long) numBits);
+    }
+
+    // 64-bit FNV-1a over the UTF-8 bytes, finished with a mixer to spread the low bits
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
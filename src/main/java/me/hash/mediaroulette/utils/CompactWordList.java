@@ -0,0 +1,114 @@
+package me.hash.mediaroulette.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Read-only word list stored as one UTF-8 byte array plus an offset index, so large bundled
+ * lists cost two arrays instead of one String per line. Blank lines are skipped and each
+ * line is trimmed when loaded.
+ */
+public final class CompactWordList {
+    private final byte[] data;
+    // offsets[i] is where word i starts; offsets[size] is the end of the last word
+    private final int[] offsets;
+
+    private CompactWordList(byte[] data, int[] offsets) {
+        this.data = data;
+        this.offsets = offsets;
+    }
+
+    /** Bundled basic_dictionary.txt, loaded on first use */
+    public static CompactWordList basicDictionary() {
+        return BasicDictionaryHolder.INSTANCE;
+    }
+
+    /** Bundled subreddits.txt, loaded on first use */
+    public static CompactWordList subreddits() {
+        return SubredditsHolder.INSTANCE;
+    }
+
+    private static final class BasicDictionaryHolder {
+        static final CompactWordList INSTANCE = loadOrEmpty("basic_dictionary.txt");
+    }
+
+    private static final class SubredditsHolder {
+        static final CompactWordList INSTANCE = loadOrEmpty("subreddits.txt");
+    }
+
+    private static CompactWordList loadOrEmpty(String resource) {
+        try {
+            return fromResource(resource);
+        } catch (IOException e) {
+            System.err.println("Failed to load word list " + resource + ": " + e.getMessage());
+            return new CompactWordList(new byte[0], new int[]{0});
+        }
+    }
+
+    public static CompactWordList fromResource(String resource) throws IOException {
+        try (InputStream is = CompactWordList.class.getClassLoader().getResourceAsStream(resource)) {
+            if (is == null) {
+                throw new IOException("Resource not found: " + resource);
+            }
+            return fromBytes(is.readAllBytes());
+        }
+    }
+
+    /**
+     * Build a list from newline-separated UTF-8 text.
+     */
+    public static CompactWordList fromBytes(byte[] raw) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length);
+        int[] offsets = new int[64];
+        int count = 0;
+
+        int lineStart = 0;
+        for (int i = 0; i <= raw.length; i++) {
+            if (i < raw.length && raw[i] != '\n') continue;
+
+            // Trim ASCII whitespace (including \r) from both ends of the line
+            int start = lineStart;
+            int end = i;
+            while (start < end && (raw[start] & 0xFF) <= ' ') start++;
+            while (end > start && (raw[end - 1] & 0xFF) <= ' ') end--;
+            lineStart = i + 1;
+            if (start == end) continue;
+
+            if (count + 1 >= offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[count++] = out.size();
+            out.write(raw, start, end - start);
+        }
+        offsets[count] = out.size();
+
+        return new CompactWordList(out.toByteArray(), Arrays.copyOf(offsets, count + 1));
+    }
+
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public String get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size());
+        }
+        return new String(data, offsets[index], offsets[index + 1] - offsets[index], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a uniformly random word, or null if the list is empty.
+     */
+    public String random() {
+        int size = size();
+        return size == 0 ? null : get(ThreadLocalRandom.current().nextInt(size));
+    }
+}
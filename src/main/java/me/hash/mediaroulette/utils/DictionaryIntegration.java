@@ -1,7 +1,10 @@
 package me.hash.mediaroulette.utils;
 
 import me.hash.mediaroulette.Main;
-import me.hash.mediaroulette.RandomDictionaryLineFetcher;
+import me.hash.mediaroulette.content.provider.ProviderExecutors;
+import me.hash.mediaroulette.content.provider.RequestContext;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Utility class to integrate dictionary system with existing providers
@@ -28,6 +31,17 @@ public class DictionaryIntegration {
         return getDefaultRandomWord();
     }
     
+    /**
+     * Non-blocking form for async providers: user dictionaries live in the database, so those
+     * lookups run on the provider blocking pool while anonymous requests complete immediately.
+     */
+    public static CompletableFuture<String> getRandomWordForSourceAsync(RequestContext ctx, String source) {
+        if (ctx == null || !ctx.hasUser()) {
+            return CompletableFuture.completedFuture(getRandomWordForSource(source));
+        }
+        return ProviderExecutors.supplyBlocking(() -> getRandomWordForSource(ctx.getUserId(), source));
+    }
+    
     /**
      * Get a random word for a source without user context (fallback)
      */
@@ -39,11 +53,7 @@ public class DictionaryIntegration {
      * Fallback to the existing basic dictionary system
      */
     private static String getDefaultRandomWord() {
-        try {
-            RandomDictionaryLineFetcher fetcher = RandomDictionaryLineFetcher.getBasicDictionaryFetcher();
-            return fetcher.getRandomLine();
-        } catch (Exception e) {
-            return "random"; // Ultimate fallback
-        }
+        String word = CompactWordList.basicDictionary().random();
+        return word != null ? word : "random"; // Ultimate fallback
     }
 }
\ No newline at end of file
@@ -7,12 +7,15 @@ import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class LocalConfig {
     private static final String CONFIG_FILE = "config.json";
     private static final ObjectMapper mapper = new ObjectMapper();
     private static LocalConfig instance;
     private Map<String, Object> config; // Fixed: Added generic types
+    // Bumped whenever the source toggles may have changed, so derived state can be rebuilt
+    private final AtomicLong sourceTogglesVersion = new AtomicLong(0);
 
     static {
         mapper.enable(SerializationFeature.INDENT_OUTPUT);
@@ -31,6 +34,7 @@ public class LocalConfig {
 
     private void loadConfig() {
         File configFile = new File(CONFIG_FILE);
+        sourceTogglesVersion.incrementAndGet();
 
         if (configFile.exists()) {
             try {
@@ -77,6 +81,68 @@ public class LocalConfig {
         botConfig.put("cooldown_duration_ms", 2500);
         botConfig.put("max_favorites_per_user", 25);
         botConfig.put("max_inventory_size", 100);
+        botConfig.put("user_flush_interval_ms", 5000);
+        botConfig.put("user_cache_max_weight", 250000);
+        botConfig.put("user_cache_expire_after_access_ms", 1800000);
+        botConfig.put("http_host_rate_per_second", 0.5);
+        botConfig.put("http_host_burst", 3);
+        botConfig.put("http_host_max_queued", 20);
+        botConfig.put("http_host_max_wait_ms", 15000);
+        botConfig.put("provider_blocking_threads", 16);
+        botConfig.put("provider_blocking_queue", 256);
+        botConfig.put("execution_mode", "platform");
+        botConfig.put("source_max_concurrency", 8);
+        botConfig.put("source_max_queued", 64);
+        botConfig.put("source_concurrency_limits", new HashMap<String, Object>());
+        botConfig.put("browser_pool_size", 2);
+        botConfig.put("browser_context_max_requests", 50);
+        botConfig.put("browser_idle_timeout_ms", 300000);
+        botConfig.put("browser_borrow_timeout_ms", 20000);
+        botConfig.put("prefetch_enabled", true);
+        botConfig.put("prefetch_low_watermark", 10);
+        botConfig.put("prefetch_high_watermark", 40);
+        botConfig.put("prefetch_watermarks", new HashMap<String, Object>());
+        botConfig.put("prefetch_interval_ms", 15000);
+        botConfig.put("prefetch_max_concurrent", 4);
+        botConfig.put("prefetch_max_keys_per_source", 20);
+        botConfig.put("prefetch_demand_half_life_ms", 600000);
+        botConfig.put("url_resolve_threads", 4);
+        botConfig.put("url_resolve_ttl_ms", 1800000);
+        botConfig.put("url_resolve_max_entries", 2000);
+        botConfig.put("imgur_probe_parallelism", 8);
+        botConfig.put("imgur_live_pool_size", 50);
+        botConfig.put("imgur_dead_id_capacity", 2000000);
+        botConfig.put("imgur_dead_id_false_positive_rate", 0.01);
+        botConfig.put("fourchan_catalog_ttl_ms", 120000);
+        botConfig.put("fourchan_threads_per_refill", 4);
+        botConfig.put("http_pool_max_idle", 32);
+        botConfig.put("http_pool_keep_alive_ms", 300000);
+        botConfig.put("http_max_requests", 128);
+        botConfig.put("http_max_requests_per_host", 16);
+        botConfig.put("http_timeouts", new HashMap<String, Object>());
+        botConfig.put("breaker_window_ms", 60000);
+        botConfig.put("breaker_min_calls", 10);
+        botConfig.put("breaker_failure_rate", 50.0);
+        botConfig.put("breaker_slow_call_ms", 10000);
+        botConfig.put("breaker_slow_call_rate", 80.0);
+        botConfig.put("breaker_open_ms", 30000);
+        botConfig.put("breaker_half_open_trials", 3);
+        botConfig.put("rate_limit_enabled", true);
+        botConfig.put("rate_limit_global_per_min", 600);
+        botConfig.put("rate_limit_user_per_min", 30);
+        botConfig.put("rate_limit_policy", "queue");
+        botConfig.put("rate_limit_max_wait_ms", 3000);
+        // Per-source overrides: {source: {per_min, policy, max_wait_ms, cost}}
+        botConfig.put("rate_limits", new HashMap<String, Object>());
+        botConfig.put("roll_hedge_enabled", true);
+        botConfig.put("roll_hedge_delay_ms", 3000);
+        botConfig.put("roll_deadline_ms", 20000);
+        botConfig.put("roll_max_attempts", 4);
+        botConfig.put("http_cache_enabled", true);
+        botConfig.put("http_cache_max_bytes", 64L * 1024 * 1024);
+        botConfig.put("http_cache_max_entry_bytes", 2 * 1024 * 1024);
+        // Added to the built-in exclusions for random endpoints: {"host/path": {store, ttl_ms}}
+        botConfig.put("http_cache_policies", new HashMap<String, Object>());
         defaultConfig.put("bot_config", botConfig);
 
         return defaultConfig;
@@ -97,6 +163,9 @@ public class LocalConfig {
 
     public void set(String key, Object value) {
         config.put(key, value);
+        if ("enabled_sources".equals(key)) {
+            sourceTogglesVersion.incrementAndGet();
+        }
         saveConfig();
     }
 
@@ -126,6 +195,13 @@ public class LocalConfig {
         set("enabled_sources", sources);
     }
 
+    /**
+     * Changes whenever a source is toggled or the config is reloaded
+     */
+    public long getSourceTogglesVersion() {
+        return sourceTogglesVersion.get();
+    }
+
     @SuppressWarnings("unchecked")
     public Map<String, Object> getBotConfig() {
         return (Map<String, Object>) config.getOrDefault("bot_config", new HashMap<>());
@@ -146,6 +222,511 @@ public class LocalConfig {
         return (String) botConfig.getOrDefault("default_locale", "en_US");
     }
 
+    /**
+     * How often buffered user changes are written back to the database
+     */
+    public long getUserFlushIntervalMs() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("user_flush_interval_ms", 5000)).longValue();
+    }
+
+    /**
+     * Upper bound on the combined weight of cached users (roughly one unit per stored list element)
+     */
+    public long getUserCacheMaxWeight() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("user_cache_max_weight", 250000)).longValue();
+    }
+
+    /**
+     * How long a cached user may go unused before it is dropped from memory
+     */
+    public long getUserCacheExpireAfterAccessMs() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("user_cache_expire_after_access_ms", 1800000)).longValue();
+    }
+
+    /**
+     * Sustained outgoing request rate allowed per host
+     */
+    public double getHttpHostRatePerSecond() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("http_host_rate_per_second", 0.5)).doubleValue();
+    }
+
+    /**
+     * Requests a host may receive back to back before the sustained rate applies
+     */
+    public int getHttpHostBurst() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("http_host_burst", 3)).intValue();
+    }
+
+    /**
+     * Requests that may wait for a host's rate limit before new ones are rejected
+     */
+    public int getHttpHostMaxQueued() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("http_host_max_queued", 20)).intValue();
+    }
+
+    /**
+     * Longest a request will wait for a host's rate limit before it is rejected
+     */
+    public long getHttpHostMaxWaitMs() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("http_host_max_wait_ms", 15000)).longValue();
+    }
+
+    /**
+     * Threads available to providers that still have to block (scraping, image probing, database lookups)
+     */
+    public int getProviderBlockingThreads() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("provider_blocking_threads", 16)).intValue();
+    }
+
+    /**
+     * Blocking provider tasks that may wait for a thread before new ones are rejected
+     */
+    public int getProviderBlockingQueue() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("provider_blocking_queue", 256)).intValue();
+    }
+
+    /**
+     * "virtual" runs interaction handling and blocking provider work on virtual threads, "platform" on pooled threads
+     */
+    public String getExecutionMode() {
+        Map<String, Object> botConfig = getBotConfig();
+        return String.valueOf(botConfig.getOrDefault("execution_mode", "platform"));
+    }
+
+    public boolean isVirtualThreadMode() {
+        return "virtual".equalsIgnoreCase(getExecutionMode());
+    }
+
+    /**
+     * Fetches that may run against one source at once, unless overridden in source_concurrency_limits
+     */
+    public int getSourceMaxConcurrency(String source) {
+        Map<String, Object> botConfig = getBotConfig();
+        Object limits = botConfig.get("source_concurrency_limits");
+        if (limits instanceof Map<?, ?> map && map.get(source) instanceof Number limit) {
+            return limit.intValue();
+        }
+        return ((Number) botConfig.getOrDefault("source_max_concurrency", 8)).intValue();
+    }
+
+    /**
+     * Fetches that may wait for a source's concurrency cap before new ones are rejected
+     */
+    public int getSourceMaxQueued() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("source_max_queued", 64)).intValue();
+    }
+
+    /**
+     * Headless browsers kept for scraping fallbacks, each serving one page at a time
+     */
+    public int getBrowserPoolSize() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("browser_pool_size", 2)).intValue();
+    }
+
+    /**
+     * Pages a browser context serves before it is thrown away and recreated
+     */
+    public int getBrowserContextMaxRequests() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("browser_context_max_requests", 50)).intValue();
+    }
+
+    /**
+     * How long a pooled browser may sit unused before it is closed
+     */
+    public long getBrowserIdleTimeoutMs() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("browser_idle_timeout_ms", 300000)).longValue();
+    }
+
+    /**
+     * Longest a page request waits for a free pooled browser before giving up
+     */
+    public long getBrowserBorrowTimeoutMs() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("browser_borrow_timeout_ms", 20000)).longValue();
+    }
+
+    /**
+     * Whether provider ready pools are refilled in the background
+     */
+    public boolean isPrefetchEnabled() {
+        Map<String, Object> botConfig = getBotConfig();
+        return (Boolean) botConfig.getOrDefault("prefetch_enabled", true);
+    }
+
+    /**
+     * Ready results per key below which a background refill starts, unless overridden in prefetch_watermarks
+     */
+    public int getPrefetchLowWatermark(String source) {
+        return getPrefetchWatermark(source, "low", "prefetch_low_watermark", 10);
+    }
+
+    /**
+     * Ready results per key a background refill tries to reach, unless overridden in prefetch_watermarks
+     */
+    public int getPrefetchHighWatermark(String source) {
+        return getPrefetchWatermark(source, "high", "prefetch_high_watermark", 40);
+    }
+
+    private int getPrefetchWatermark(String source, String level, String key, int def) {
+        Map<String, Object> botConfig = getBotConfig();
+        Object watermarks = botConfig.get("prefetch_watermarks");
+        if (watermarks instanceof Map<?, ?> map && map.get(source) instanceof Map<?, ?> sourceMap
+                && sourceMap.get(level) instanceof Number value) {
+            return value.intValue();
+        }
+        return ((Number) botConfig.getOrDefault(key, def)).intValue();
+    }
+
+    /**
+     * How often ready pools are checked against their low watermark
+     */
+    public long getPrefetchIntervalMs() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("prefetch_interval_ms", 15000)).longValue();
+    }
+
+    /**
+     * Background refills that may run at once across all sources
+     */
+    public int getPrefetchMaxConcurrent() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("prefetch_max_concurrent", 4)).intValue();
+    }
+
+    /**
+     * Most requested keys per source that are kept warm
+     */
+    public int getPrefetchMaxKeysPerSource() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("prefetch_max_keys_per_source", 20)).intValue();
+    }
+
+    /**
+     * Time for a key's recent demand score to halve
+     */
+    public long getPrefetchDemandHalfLifeMs() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("prefetch_demand_half_life_ms", 600000)).longValue();
+    }
+
+    /**
+     * Threads resolving external media pages (RedGifs, Gfycat) to direct URLs
+     */
+    public int getUrlResolveThreads() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("url_resolve_threads", 4)).intValue();
+    }
+
+    /**
+     * How long a resolved direct media URL is reused
+     */
+    public long getUrlResolveTtlMs() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("url_resolve_ttl_ms", 1800000)).longValue();
+    }
+
+    /**
+     * Resolved media URLs kept before old ones are dropped
+     */
+    public int getUrlResolveMaxEntries() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("url_resolve_max_entries", 2000)).intValue();
+    }
+
+    /**
+     * Random Imgur ids probed at once per roll
+     */
+    public int getImgurProbeParallelism() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("imgur_probe_parallelism", 8)).intValue();
+    }
+
+    /**
+     * Verified Imgur ids kept ready for rolls
+     */
+    public int getImgurLivePoolSize() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("imgur_live_pool_size", 50)).intValue();
+    }
+
+    /**
+     * Dead Imgur ids the Bloom filter is sized for before it starts over
+     */
+    public int getImgurDeadIdCapacity() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("imgur_dead_id_capacity", 2000000)).intValue();
+    }
+
+    /**
+     * Target false-positive rate of the dead Imgur id filter at capacity
+     */
+    public double getImgurDeadIdFalsePositiveRate() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("imgur_dead_id_false_positive_rate", 0.01)).doubleValue();
+    }
+
+    /**
+     * How long a downloaded 4chan board catalog is used before it is revalidated
+     */
+    public long getFourChanCatalogTtlMs() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("fourchan_catalog_ttl_ms", 120000)).longValue();
+    }
+
+    /**
+     * 4chan threads sampled for images on each board refill
+     */
+    public int getFourChanThreadsPerRefill() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("fourchan_threads_per_refill", 4)).intValue();
+    }
+
+    /**
+     * Idle connections kept in the shared OkHttp pool
+     */
+    public int getHttpPoolMaxIdle() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("http_pool_max_idle", 32)).intValue();
+    }
+
+    /**
+     * How long an idle pooled connection is kept alive for reuse
+     */
+    public long getHttpPoolKeepAliveMs() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("http_pool_keep_alive_ms", 300000)).longValue();
+    }
+
+    /**
+     * Concurrent async OkHttp calls across all hosts
+     */
+    public int getHttpMaxRequests() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("http_max_requests", 128)).intValue();
+    }
+
+    /**
+     * Concurrent async OkHttp calls to any one host
+     */
+    public int getHttpMaxRequestsPerHost() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("http_max_requests_per_host", 16)).intValue();
+    }
+
+    /**
+     * A source's HTTP timeout from http_timeouts ({source: {connect_ms, read_ms}}), or the given default
+     */
+    public long getHttpTimeoutMs(String source, String kind, long def) {
+        Map<String, Object> botConfig = getBotConfig();
+        Object timeouts = botConfig.get("http_timeouts");
+        if (timeouts instanceof Map<?, ?> map && map.get(source) instanceof Map<?, ?> sourceMap
+                && sourceMap.get(kind) instanceof Number value) {
+            return value.longValue();
+        }
+        return def;
+    }
+
+    /**
+     * Whether GET responses are cached on disk and revalidated with ETag/Last-Modified
+     */
+    public boolean getHttpCacheEnabled() {
+        Map<String, Object> botConfig = getBotConfig();
+        return (Boolean) botConfig.getOrDefault("http_cache_enabled", true);
+    }
+
+    /**
+     * Total size of cached HTTP bodies on disk before least recently used ones are evicted
+     */
+    public long getHttpCacheMaxBytes() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("http_cache_max_bytes", 64L * 1024 * 1024)).longValue();
+    }
+
+    /**
+     * Largest single HTTP response body that is cached
+     */
+    public long getHttpCacheMaxEntryBytes() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("http_cache_max_entry_bytes", 2 * 1024 * 1024)).longValue();
+    }
+
+    /**
+     * Per-source HTTP cache overrides, keyed by host/path prefix: {"store": false} or {"ttl_ms": n}.
+     * These go on top of the cache's built-in policies.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getHttpCachePolicies() {
+        Map<String, Object> botConfig = getBotConfig();
+        Object policies = botConfig.get("http_cache_policies");
+        return policies instanceof Map<?, ?> map ? (Map<String, Object>) map : Map.of();
+    }
+
+    /**
+     * Rolling window a source's circuit breaker judges error and slow-call rates over
+     */
+    public long getBreakerWindowMs() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("breaker_window_ms", 60000)).longValue();
+    }
+
+    /**
+     * Calls a breaker's window must hold before it can open
+     */
+    public int getBreakerMinCalls() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("breaker_min_calls", 10)).intValue();
+    }
+
+    /**
+     * Percentage of failed calls in the window that opens a source's breaker
+     */
+    public double getBreakerFailureRate() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("breaker_failure_rate", 50.0)).doubleValue();
+    }
+
+    /**
+     * Calls taking at least this long count as slow
+     */
+    public long getBreakerSlowCallMs() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("breaker_slow_call_ms", 10000)).longValue();
+    }
+
+    /**
+     * Percentage of slow calls in the window that opens a source's breaker
+     */
+    public double getBreakerSlowCallRate() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("breaker_slow_call_rate", 80.0)).doubleValue();
+    }
+
+    /**
+     * How long an open breaker fails calls before letting trial calls through
+     */
+    public long getBreakerOpenMs() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("breaker_open_ms", 30000)).longValue();
+    }
+
+    /**
+     * Trial calls that must succeed for a half-open breaker to close
+     */
+    public int getBreakerHalfOpenTrials() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("breaker_half_open_trials", 3)).intValue();
+    }
+
+    /**
+     * Whether provider calls are checked against the global, source and user quotas
+     */
+    public boolean getRateLimitEnabled() {
+        Map<String, Object> botConfig = getBotConfig();
+        return (Boolean) botConfig.getOrDefault("rate_limit_enabled", true);
+    }
+
+    /**
+     * Weighted requests per minute across all sources, 0 for no limit
+     */
+    public int getRateLimitGlobalPerMinute() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("rate_limit_global_per_min", 600)).intValue();
+    }
+
+    /**
+     * Requests per minute one user may make across all sources, 0 for no limit
+     */
+    public int getRateLimitUserPerMinute() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("rate_limit_user_per_min", 30)).intValue();
+    }
+
+    /**
+     * A source's requests per minute from rate_limits, or the given default
+     */
+    public int getRateLimitPerMinute(String source, int def) {
+        Object value = getRateLimitSetting(source, "per_min");
+        return value instanceof Number number ? number.intValue() : def;
+    }
+
+    /**
+     * "queue" or "reject": what happens to a source's requests over its quota
+     */
+    public String getRateLimitPolicy(String source) {
+        Object value = getRateLimitSetting(source, "policy");
+        return value instanceof String policy ? policy : (String) getBotConfig().getOrDefault("rate_limit_policy", "queue");
+    }
+
+    /**
+     * Longest a queued request waits for quota before it is rejected
+     */
+    public long getRateLimitMaxWaitMs(String source) {
+        Object value = getRateLimitSetting(source, "max_wait_ms");
+        return value instanceof Number number ? number.longValue()
+                : ((Number) getBotConfig().getOrDefault("rate_limit_max_wait_ms", 3000)).longValue();
+    }
+
+    /**
+     * How many requests' worth of quota one call to the source uses, from rate_limits or the given default
+     */
+    public double getRateLimitCost(String source, double def) {
+        Object value = getRateLimitSetting(source, "cost");
+        return value instanceof Number number ? number.doubleValue() : def;
+    }
+
+    private Object getRateLimitSetting(String source, String setting) {
+        Object rateLimits = getBotConfig().get("rate_limits");
+        if (rateLimits instanceof Map<?, ?> map && map.get(source) instanceof Map<?, ?> sourceMap) {
+            return sourceMap.get(setting);
+        }
+        return null;
+    }
+
+    /**
+     * Whether a slow /random all roll starts a second source in parallel
+     */
+    public boolean getRollHedgeEnabled() {
+        Map<String, Object> botConfig = getBotConfig();
+        return (Boolean) botConfig.getOrDefault("roll_hedge_enabled", true);
+    }
+
+    /**
+     * How long the first source of a roll may take before a hedge source is started
+     */
+    public long getRollHedgeDelayMs() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("roll_hedge_delay_ms", 3000)).longValue();
+    }
+
+    /**
+     * Total time a roll may take across all of its attempts
+     */
+    public long getRollDeadlineMs() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("roll_deadline_ms", 20000)).longValue();
+    }
+
+    /**
+     * Most sources one roll may try, counting hedges and failovers; 1 turns both off
+     */
+    public int getRollMaxAttempts() {
+        Map<String, Object> botConfig = getBotConfig();
+        return ((Number) botConfig.getOrDefault("roll_max_attempts", 4)).intValue();
+    }
+
     // Reload config from file
     public void reload() {
         loadConfig();
@@ -1,96 +1,487 @@
 package me.hash.mediaroulette.utils;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 /**
- * Persistent cache utility that saves data to JSON files
+ * Persistent cache utility backed by an append-only journal.
+ * <p>
+ * Every put/remove appends one compact JSON line to {@code cache/<name>.journal.jsonl}, so a
+ * write costs the size of the entry rather than the size of the cache. A background task
+ * periodically compacts the journal into {@code cache/<name>.snapshot.jsonl}, written to a
+ * temporary file and atomically renamed into place. On load the snapshot is read and the
+ * journal replayed on top of it; a torn last line from a crash mid-append is skipped.
+ * Legacy single-file JSON caches are imported once and renamed to {@code .migrated}.
+ * <p>
+ * Entries may carry an expiry time (stored as {@code x} in the record) and the cache may be
+ * capped at a maximum entry count, evicting the least recently accessed entries when full.
+ * Expired entries are dropped lazily on read and by a background sweep.
  */
-public class PersistentCache<T> {
+public final class PersistentCache<T> {
     private static final ObjectMapper mapper = new ObjectMapper();
+    private static final String CACHE_DIR = "cache";
+    private static final long COMPACTION_CHECK_INTERVAL_SECONDS = 60;
+    private static final int MIN_JOURNAL_RECORDS_FOR_COMPACTION = 1000;
+    private static final long SWEEP_INTERVAL_SECONDS = 30;
+    // When over capacity, evict down to this fraction so eviction is not paid on every put
+    private static final double EVICTION_TARGET_RATIO = 0.9;
+
+    // Every live cache, for the terminal stats command
+    private static final List<PersistentCache<?>> instances = new CopyOnWriteArrayList<>();
+
+    // Shared by every cache instance; compaction is cheap and infrequent
+    private static final ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "PersistentCache-Compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final String cacheFile;
-    private final Map<String, T> cache;
+    private final Path legacyFile;
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private final Map<String, Entry<T>> cache;
     private final TypeReference<Map<String, T>> typeRef;
-    
-    static {
-        mapper.enable(SerializationFeature.INDENT_OUTPUT);
+    private final JavaType valueType;
+
+    private final long defaultTtlMs;
+    private final int maxEntries;
+    private final Predicate<T> isNegative;
+    private final long negativeTtlMs;
+
+    private final AtomicLong expirations = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    private static final class Entry<T> {
+        final T value;
+        final long expiresAt; // epoch millis, 0 = never
+        volatile long lastAccess;
+
+        Entry(T value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.lastAccess = System.currentTimeMillis();
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt > 0 && now >= expiresAt;
+        }
     }
-    
+
+    // Guards the journal writer so journal order always matches the order of map updates
+    private final Object journalLock = new Object();
+    private Writer journal;
+    private int journalRecords = 0;
+
     public PersistentCache(String filename, TypeReference<Map<String, T>> typeReference) {
-        this.cacheFile = "cache/" + filename;
+        this(filename, typeReference, 0, 0);
+    }
+
+    /**
+     * @param ttlMs default time to live for entries, 0 for no expiry
+     * @param maxEntries maximum number of entries before least recently used ones are evicted, 0 for unbounded
+     */
+    public PersistentCache(String filename, TypeReference<Map<String, T>> typeReference, long ttlMs, int maxEntries) {
+        this(filename, typeReference, ttlMs, maxEntries, null, 0);
+    }
+
+    /**
+     * Give values matching {@code isNegative} (e.g. "does not exist" results) their own, usually shorter, TTL.
+     * The predicate is known before loading, so entries imported from a legacy file get the right expiry.
+     * @param negativeTtlMs time to live for negative values, 0 for no expiry
+     */
+    public PersistentCache(String filename, TypeReference<Map<String, T>> typeReference, long ttlMs, int maxEntries,
+                           Predicate<T> isNegative, long negativeTtlMs) {
+        this.defaultTtlMs = ttlMs;
+        this.maxEntries = maxEntries;
+        this.isNegative = isNegative;
+        this.negativeTtlMs = negativeTtlMs;
+        this.cacheFile = CACHE_DIR + "/" + filename;
         this.typeRef = typeReference;
+        this.valueType = mapper.getTypeFactory().constructType(typeReference).getContentType();
         this.cache = new ConcurrentHashMap<>();
-        
+
+        String baseName = filename.endsWith(".json") ? filename.substring(0, filename.length() - 5) : filename;
+        this.legacyFile = Path.of(cacheFile);
+        this.snapshotFile = Path.of(CACHE_DIR, baseName + ".snapshot.jsonl");
+        this.journalFile = Path.of(CACHE_DIR, baseName + ".journal.jsonl");
+
         // Create cache directory if it doesn't exist
-        File cacheDir = new File("cache");
+        File cacheDir = new File(CACHE_DIR);
         if (!cacheDir.exists()) {
             cacheDir.mkdirs();
         }
-        
+
         loadCache();
+        compactor.scheduleWithFixedDelay(this::compactIfNeeded,
+                COMPACTION_CHECK_INTERVAL_SECONDS, COMPACTION_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        if (ttlMs > 0 || (isNegative != null && negativeTtlMs > 0)) {
+            compactor.scheduleWithFixedDelay(this::sweepExpired,
+                    SWEEP_INTERVAL_SECONDS, SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+        instances.add(this);
     }
-    
+
     private void loadCache() {
-        File file = new File(cacheFile);
-        if (file.exists()) {
-            try {
-                Map<String, T> loadedCache = mapper.readValue(file, typeRef);
-                cache.putAll(loadedCache);
+        boolean needsCompaction = false;
+        try {
+            if (Files.exists(legacyFile)) {
+                migrateLegacyFile();
+                needsCompaction = true;
+            }
+            if (Files.exists(snapshotFile)) {
+                replay(snapshotFile);
+            }
+            if (Files.exists(journalFile)) {
+                int applied = replay(journalFile);
+                journalRecords = applied;
+                // Fold a journal left over from the last run (possibly with a torn tail) into the snapshot
+                needsCompaction |= applied > 0 || Files.size(journalFile) > 0;
+            }
+            if (!cache.isEmpty()) {
                 System.out.println("Loaded " + cache.size() + " items from cache: " + cacheFile);
-            } catch (IOException e) {
-                System.err.println("Failed to load cache from " + cacheFile + ": " + e.getMessage());
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to load cache from " + cacheFile + ": " + e.getMessage());
+        }
+
+        synchronized (journalLock) {
+            if (needsCompaction) {
+                compactLocked();
+            } else {
+                openJournal(true);
             }
         }
     }
-    
-    public void saveCache() {
+
+    /**
+     * Import the old whole-map JSON file, then move it aside so it is not imported again.
+     */
+    private void migrateLegacyFile() throws IOException {
+        Map<String, T> legacy = mapper.readValue(legacyFile.toFile(), typeRef);
+        if (legacy != null) {
+            legacy.forEach((key, value) -> cache.put(key, new Entry<>(value, expiryFor(value))));
+        }
+        Path migrated = legacyFile.resolveSibling(legacyFile.getFileName() + ".migrated");
+        Files.move(legacyFile, migrated, StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("Migrated " + (legacy != null ? legacy.size() : 0) + " items from legacy cache " + legacyFile);
+    }
+
+    /**
+     * Apply every record in a JSON-lines file to the in-memory map.
+     * @return the number of records applied
+     */
+    private int replay(Path file) throws IOException {
+        int applied = 0;
+        int lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+                try {
+                    applyRecord(mapper.readTree(line));
+                    applied++;
+                } catch (IOException | IllegalArgumentException e) {
+                    // Usually the last line, cut short by a crash mid-append
+                    System.err.println("Skipping unreadable record at " + file + ":" + lineNumber + ": " + e.getMessage());
+                }
+            }
+        }
+        return applied;
+    }
+
+    private void applyRecord(JsonNode record) throws IOException {
+        if (record.path("c").asBoolean(false)) {
+            cache.clear();
+            return;
+        }
+        String key = record.path("k").asText(null);
+        if (key == null) {
+            throw new IllegalArgumentException("record has no key");
+        }
+        long expiresAt = record.path("x").asLong(0);
+        if (record.path("d").asBoolean(false) || (expiresAt > 0 && expiresAt <= System.currentTimeMillis())) {
+            cache.remove(key);
+        } else {
+            T value = mapper.readerFor(valueType).readValue(record.get("v"));
+            cache.put(key, new Entry<>(value, expiresAt));
+        }
+    }
+
+    private void openJournal(boolean append) {
+        try {
+            journal = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(journalFile.toFile(), append), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            journal = null;
+            System.err.println("Failed to open cache journal " + journalFile + ": " + e.getMessage());
+        }
+    }
+
+    private void appendLocked(ObjectNode record) {
+        if (journal == null) return;
+        try {
+            journal.write(mapper.writeValueAsString(record));
+            journal.write('\n');
+            journal.flush();
+            journalRecords++;
+        } catch (IOException e) {
+            System.err.println("Failed to append to cache journal " + journalFile + ": " + e.getMessage());
+        }
+    }
+
+    private void compactIfNeeded() {
+        synchronized (journalLock) {
+            if (journalRecords >= Math.max(MIN_JOURNAL_RECORDS_FOR_COMPACTION, cache.size() * 2)) {
+                compactLocked();
+            }
+        }
+    }
+
+    /**
+     * Write the current map to a fresh snapshot and start an empty journal.
+     * A crash before the rename leaves the old snapshot and journal intact; a crash after it
+     * replays the old journal over the new snapshot, which is harmless since records are idempotent.
+     */
+    private void compactLocked() {
+        Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(tmp.toFile());
+                 Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+                long now = System.currentTimeMillis();
+                for (Map.Entry<String, Entry<T>> entry : cache.entrySet()) {
+                    if (entry.getValue().isExpired(now)) continue;
+                    writer.write(mapper.writeValueAsString(putRecord(entry.getKey(), entry.getValue())));
+                    writer.write('\n');
+                }
+                writer.flush();
+                out.getFD().sync();
+            }
+            Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            closeJournal();
+            openJournal(false);
+            journalRecords = 0;
+        } catch (IOException e) {
+            System.err.println("Failed to compact cache " + cacheFile + ": " + e.getMessage());
+            if (journal == null) {
+                openJournal(true);
+            }
+        }
+    }
+
+    private void closeJournal() {
+        if (journal == null) return;
         try {
-            mapper.writeValue(new File(cacheFile), cache);
+            journal.close();
         } catch (IOException e) {
-            System.err.println("Failed to save cache to " + cacheFile + ": " + e.getMessage());
+            System.err.println("Failed to close cache journal " + journalFile + ": " + e.getMessage());
+        }
+        journal = null;
+    }
+
+    private ObjectNode putRecord(String key, Entry<T> entry) {
+        ObjectNode record = mapper.createObjectNode();
+        record.put("k", key);
+        record.set("v", mapper.valueToTree(entry.value));
+        if (entry.expiresAt > 0) {
+            record.put("x", entry.expiresAt);
+        }
+        return record;
+    }
+
+    private ObjectNode deleteRecord(String key) {
+        ObjectNode record = mapper.createObjectNode();
+        record.put("k", key);
+        record.put("d", true);
+        return record;
+    }
+
+    private long expiryFor(T value) {
+        long ttl = isNegative != null && isNegative.test(value) ? negativeTtlMs : defaultTtlMs;
+        return ttl > 0 ? System.currentTimeMillis() + ttl : 0;
+    }
+
+    /**
+     * Drop expired entries. Their records need no journal entry since replay skips expired records.
+     */
+    private void sweepExpired() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Entry<T>> entry : cache.entrySet()) {
+            if (entry.getValue().isExpired(now) && cache.remove(entry.getKey(), entry.getValue())) {
+                expirations.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Evict the least recently accessed entries until the cache is back under its target size.
+     */
+    private void evictLocked() {
+        if (maxEntries <= 0 || cache.size() <= maxEntries) return;
+
+        sweepExpired();
+        int target = (int) (maxEntries * EVICTION_TARGET_RATIO);
+        int excess = cache.size() - target;
+        if (excess <= 0) return;
+
+        List<Map.Entry<String, Entry<T>>> entries = new ArrayList<>(cache.entrySet());
+        entries.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+        for (int i = 0; i < excess && i < entries.size(); i++) {
+            String key = entries.get(i).getKey();
+            if (cache.remove(key, entries.get(i).getValue())) {
+                evictions.incrementAndGet();
+                appendLocked(deleteRecord(key));
+            }
         }
     }
-    
+
+    /**
+     * Live entry for a key, dropping it if it has expired.
+     */
+    private Entry<T> liveEntry(String key) {
+        Entry<T> entry = cache.get(key);
+        if (entry == null) return null;
+        if (entry.isExpired(System.currentTimeMillis())) {
+            if (cache.remove(key, entry)) {
+                expirations.incrementAndGet();
+            }
+            return null;
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return entry;
+    }
+
+    /**
+     * Compact the journal into a new snapshot now.
+     */
+    public void saveCache() {
+        synchronized (journalLock) {
+            compactLocked();
+        }
+    }
+
     public T get(String key) {
-        return cache.get(key);
+        Entry<T> entry = liveEntry(key);
+        return entry != null ? entry.value : null;
     }
-    
+
     public void put(String key, T value) {
-        cache.put(key, value);
-        saveCache(); // Auto-save on every update
+        put(key, new Entry<>(value, expiryFor(value)));
+    }
+
+    /**
+     * Store a value with its own time to live instead of the cache default.
+     */
+    public void put(String key, T value, long ttlMs) {
+        put(key, new Entry<>(value, ttlMs > 0 ? System.currentTimeMillis() + ttlMs : 0));
+    }
+
+    private void put(String key, Entry<T> entry) {
+        synchronized (journalLock) {
+            cache.put(key, entry);
+            appendLocked(putRecord(key, entry));
+            evictLocked();
+        }
     }
-    
+
     public boolean containsKey(String key) {
-        return cache.containsKey(key);
+        return liveEntry(key) != null;
     }
-    
+
     public void remove(String key) {
-        cache.remove(key);
-        saveCache();
+        synchronized (journalLock) {
+            if (cache.remove(key) == null) return;
+            appendLocked(deleteRecord(key));
+        }
     }
-    
+
     public void clear() {
-        cache.clear();
-        saveCache();
+        synchronized (journalLock) {
+            cache.clear();
+            ObjectNode record = mapper.createObjectNode();
+            record.put("c", true);
+            appendLocked(record);
+        }
     }
-    
+
     public int size() {
         return cache.size();
     }
-    
+
     public Map<String, T> getAll() {
-        return new HashMap<>(cache);
+        long now = System.currentTimeMillis();
+        Map<String, T> all = new HashMap<>();
+        for (Map.Entry<String, Entry<T>> entry : cache.entrySet()) {
+            if (!entry.getValue().isExpired(now)) {
+                all.put(entry.getKey(), entry.getValue().value);
+            }
+        }
+        return all;
+    }
+
+    public long getExpirationCount() {
+        return expirations.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Size and eviction counters for the terminal stats command
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", cache.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("expirations", expirations.get());
+        stats.put("evictions", evictions.get());
+        return stats;
     }
-    
+
+    /**
+     * Stats for every cache created in this process, keyed by cache file
+     */
+    public static Map<String, Map<String, Object>> getAllStats() {
+        Map<String, Map<String, Object>> all = new LinkedHashMap<>();
+        for (PersistentCache<?> instance : instances) {
+            all.put(instance.cacheFile, instance.getStats());
+        }
+        return all;
+    }
+
     // Manual save method for batch operations
     public void forceSave() {
         saveCache();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,159 @@
+package me.hash.mediaroulette.utils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates the bot's executors according to the configured execution mode. In virtual mode every
+ * task gets its own virtual thread, so a request waiting on I/O costs a few KB instead of a
+ * platform thread stack; in platform mode the previous pooled executors are used.
+ * Every executor created here is metered so queued and running tasks show up in stats.
+ */
+public final class TaskExecutors {
+    private static final boolean VIRTUAL = LocalConfig.getInstance().isVirtualThreadMode();
+    private static final Map<String, MeteredExecutorService> executors = new ConcurrentHashMap<>();
+
+    private TaskExecutors() {}
+
+    public static boolean isVirtual() {
+        return VIRTUAL;
+    }
+
+    /**
+     * Executor for Discord interaction handling. Unbounded either way; platform mode keeps the
+     * previous cached thread pool.
+     */
+    public static ExecutorService newInteractionExecutor(String name) {
+        ExecutorService delegate = VIRTUAL
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory())
+                : Executors.newCachedThreadPool(platformFactory(name, false));
+        return register(name, delegate);
+    }
+
+    /**
+     * Executor for provider work. Platform mode uses a fixed pool with a bounded queue that
+     * rejects when full; virtual mode starts a thread per task and leaves bounding to the
+     * per-source concurrency caps.
+     */
+    public static ExecutorService newProviderExecutor(String name, int platformThreads, int platformQueue) {
+        ExecutorService delegate;
+        if (VIRTUAL) {
+            delegate = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+        } else {
+            int threads = Math.max(1, platformThreads);
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, platformQueue)), platformFactory(name, true));
+            pool.allowCoreThreadTimeOut(true);
+            delegate = pool;
+        }
+        return register(name, delegate);
+    }
+
+    private static ThreadFactory platformFactory(String name, boolean daemon) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(daemon);
+            return thread;
+        };
+    }
+
+    private static ExecutorService register(String name, ExecutorService delegate) {
+        MeteredExecutorService metered = new MeteredExecutorService(delegate);
+        executors.put(name, metered);
+        return metered;
+    }
+
+    /**
+     * Queued, running and completed task counts for every executor, keyed by name
+     */
+    public static Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        executors.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> stats.put(entry.getKey(), entry.getValue().getStats()));
+        return stats;
+    }
+
+    /**
+     * Counts tasks as they are submitted, start and finish. Queued is submitted but not started,
+     * which covers both the pool queue and tasks waiting for a virtual thread to be scheduled.
+     */
+    private static final class MeteredExecutorService extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong started = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+
+        MeteredExecutorService(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            submitted.incrementAndGet();
+            try {
+                delegate.execute(() -> {
+                    started.incrementAndGet();
+                    try {
+                        command.run();
+                    } finally {
+                        completed.incrementAndGet();
+                    }
+                });
+            } catch (RuntimeException e) {
+                submitted.decrementAndGet();
+                rejected.incrementAndGet();
+                throw e;
+            }
+        }
+
+        Map<String, Object> getStats() {
+            long startedCount = started.get();
+            long completedCount = completed.get();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("queued", Math.max(0, submitted.get() - startedCount));
+            stats.put("running", Math.max(0, startedCount - completedCount));
+            stats.put("completed", completedCount);
+            stats.put("rejected", rejected.get());
+            return stats;
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
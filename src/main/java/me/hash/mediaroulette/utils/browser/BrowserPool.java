@@ -0,0 +1,350 @@
+package me.hash.mediaroulette.utils.browser;
+
+import com.microsoft.playwright.*;
+import com.microsoft.playwright.options.LoadState;
+import com.microsoft.playwright.options.WaitUntilState;
+import me.hash.mediaroulette.utils.LocalConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Long-lived pool of warm headless Chromium contexts.
+ * Playwright objects must only be used from the thread that created them, so each slot is a
+ * worker thread that owns its Playwright instance, browser and one reusable context. Callers
+ * queue page tasks and wait for a free worker up to the borrow timeout. A context is recycled
+ * after a fixed number of pages, and a worker closes its browser after sitting idle.
+ */
+public class BrowserPool {
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36";
+    private static final String STEALTH_SCRIPT = "() => {" +
+            "Object.defineProperty(navigator, 'webdriver', {get: () => undefined});" +
+            "window.chrome = {runtime: {}};" +
+            "Object.defineProperty(navigator, 'plugins', {get: () => [1, 2, 3, 4, 5]});" +
+            "Object.defineProperty(navigator, 'languages', {get: () => ['en-US', 'en']});" +
+            "}";
+    // Upper bound on a single page task once a worker has picked it up
+    private static final long MAX_PAGE_MS = 60000;
+
+    private static volatile BrowserPool instance;
+
+    private final int contextMaxRequests;
+    private final long idleTimeoutMs;
+    private final long borrowTimeoutMs;
+    private final BlockingQueue<PageTask<?>> tasks = new LinkedBlockingQueue<>();
+    private final List<Worker> workers = new ArrayList<>();
+    private volatile boolean stopped = false;
+
+    private final AtomicLong launches = new AtomicLong();
+    private final AtomicLong contextsCreated = new AtomicLong();
+    private final AtomicLong contextsRecycled = new AtomicLong();
+    private final AtomicLong idleEvictions = new AtomicLong();
+    private final AtomicLong pagesServed = new AtomicLong();
+    private final AtomicLong pageFailures = new AtomicLong();
+    private final AtomicLong borrowTimeouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong totalPageNanos = new AtomicLong();
+    private final AtomicLong maxPageNanos = new AtomicLong();
+
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int ABANDONED = 2;
+
+    private static final class PageTask<T> {
+        final String url;
+        final Function<Page, T> pageFunction;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final AtomicInteger state = new AtomicInteger(QUEUED);
+        final long enqueuedNanos = System.nanoTime();
+
+        PageTask(String url, Function<Page, T> pageFunction) {
+            this.url = url;
+            this.pageFunction = pageFunction;
+        }
+    }
+
+    private BrowserPool(int size, int contextMaxRequests, long idleTimeoutMs, long borrowTimeoutMs) {
+        this.contextMaxRequests = Math.max(1, contextMaxRequests);
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        for (int i = 0; i < Math.max(1, size); i++) {
+            Worker worker = new Worker(i + 1);
+            workers.add(worker);
+            worker.thread.start();
+        }
+    }
+
+    public static BrowserPool getInstance() {
+        if (instance == null) {
+            synchronized (BrowserPool.class) {
+                if (instance == null) {
+                    LocalConfig config = LocalConfig.getInstance();
+                    instance = new BrowserPool(config.getBrowserPoolSize(), config.getBrowserContextMaxRequests(),
+                            config.getBrowserIdleTimeoutMs(), config.getBrowserBorrowTimeoutMs());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Stats for the pool, or null if no page has been requested yet
+     */
+    public static Map<String, Object> getStatsIfStarted() {
+        BrowserPool pool = instance;
+        return pool != null ? pool.getStats() : null;
+    }
+
+    /**
+     * Stop the workers and close their browsers, if the pool was ever started
+     */
+    public static void shutdownIfStarted() {
+        BrowserPool pool = instance;
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Open the URL in a pooled context and apply the function to the loaded page.
+     * @throws TimeoutException if no worker picked the task up within the borrow timeout
+     */
+    public <T> T execute(String url, Function<Page, T> pageFunction) throws TimeoutException, ExecutionException, InterruptedException {
+        if (stopped) {
+            throw new IllegalStateException("Browser pool has been shut down");
+        }
+        PageTask<T> task = new PageTask<>(url, pageFunction);
+        tasks.add(task);
+        try {
+            return task.result.get(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (task.state.compareAndSet(QUEUED, ABANDONED)) {
+                tasks.remove(task);
+                borrowTimeouts.incrementAndGet();
+                throw new TimeoutException("No browser context available within " + borrowTimeoutMs + "ms");
+            }
+            // A worker is already on it; give the page its own time budget
+            return task.result.get(MAX_PAGE_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            task.state.compareAndSet(QUEUED, ABANDONED);
+            throw e;
+        }
+    }
+
+    public void shutdown() {
+        stopped = true;
+        for (Worker worker : workers) {
+            worker.thread.interrupt();
+        }
+        for (Worker worker : workers) {
+            try {
+                worker.thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        PageTask<?> task;
+        while ((task = tasks.poll()) != null) {
+            task.result.completeExceptionally(new IllegalStateException("Browser pool has been shut down"));
+        }
+    }
+
+    /**
+     * One pool slot. Only this worker's thread touches its Playwright objects.
+     */
+    private final class Worker {
+        private final Thread thread;
+        private Playwright playwright;
+        private Browser browser;
+        private BrowserContext context;
+        private int contextRequests = 0;
+        private long lastUsedNanos = System.nanoTime();
+
+        Worker(int id) {
+            thread = new Thread(this::run, "playwright-worker-" + id);
+            thread.setDaemon(true);
+        }
+
+        private void run() {
+            try {
+                while (!stopped) {
+                    PageTask<?> task;
+                    try {
+                        task = tasks.poll(Math.max(1000, idleTimeoutMs / 4), TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                    if (task == null) {
+                        evictIfIdle();
+                        continue;
+                    }
+                    if (task.state.compareAndSet(QUEUED, RUNNING)) {
+                        runTask(task);
+                    }
+                }
+            } finally {
+                closeBrowser();
+            }
+        }
+
+        private <T> void runTask(PageTask<T> task) {
+            long startNanos = System.nanoTime();
+            recordMax(totalWaitNanos, maxWaitNanos, startNanos - task.enqueuedNanos);
+
+            Page page = null;
+            try {
+                page = borrowContext().newPage();
+                // Navigate with timeout and proper error handling
+                page.navigate(task.url, new Page.NavigateOptions()
+                        .setWaitUntil(WaitUntilState.DOMCONTENTLOADED)
+                        .setTimeout(15000));
+
+                // Wait for page to be ready
+                page.waitForLoadState(LoadState.NETWORKIDLE, new Page.WaitForLoadStateOptions().setTimeout(10000));
+
+                task.result.complete(task.pageFunction.apply(page));
+                pagesServed.incrementAndGet();
+            } catch (Throwable t) {
+                pageFailures.incrementAndGet();
+                task.result.completeExceptionally(t);
+                // A crashed or disconnected browser is relaunched on the next task
+                if (browser != null && !browser.isConnected()) {
+                    closeBrowser();
+                }
+            } finally {
+                if (page != null) {
+                    try {
+                        page.close();
+                    } catch (Exception ignored) {}
+                }
+                lastUsedNanos = System.nanoTime();
+                recordMax(totalPageNanos, maxPageNanos, lastUsedNanos - startNanos);
+            }
+        }
+
+        private BrowserContext borrowContext() {
+            if (browser == null) {
+                launchBrowser();
+            }
+            if (context != null && contextRequests >= contextMaxRequests) {
+                closeContext();
+                contextsRecycled.incrementAndGet();
+            }
+            if (context == null) {
+                context = browser.newContext(new Browser.NewContextOptions()
+                        .setUserAgent(USER_AGENT)
+                        .setViewportSize(1920, 1080)
+                        .setLocale("en-US")
+                        .setTimezoneId("America/New_York")
+                        .setExtraHTTPHeaders(Map.of(
+                                "Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8",
+                                "Accept-Language", "en-US,en;q=0.5",
+                                "Accept-Encoding", "gzip, deflate, br",
+                                "DNT", "1",
+                                "Connection", "keep-alive",
+                                "Upgrade-Insecure-Requests", "1"
+                        )));
+                // Remove webdriver detection for every page in this context
+                context.addInitScript(STEALTH_SCRIPT);
+                contextRequests = 0;
+                contextsCreated.incrementAndGet();
+            }
+            contextRequests++;
+            return context;
+        }
+
+        private void launchBrowser() {
+            playwright = Playwright.create();
+            browser = playwright.chromium().launch(new BrowserType.LaunchOptions()
+                    .setHeadless(true) // Use headless for stability
+                    .setArgs(Arrays.asList(
+                            "--no-first-run",
+                            "--no-default-browser-check",
+                            "--disable-blink-features=AutomationControlled",
+                            "--disable-web-security",
+                            "--disable-features=VizDisplayCompositor",
+                            "--disable-dev-shm-usage",
+                            "--no-sandbox"
+                    )));
+            launches.incrementAndGet();
+        }
+
+        private void evictIfIdle() {
+            if (browser != null && System.nanoTime() - lastUsedNanos > TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs)) {
+                closeBrowser();
+                idleEvictions.incrementAndGet();
+            }
+        }
+
+        private void closeContext() {
+            if (context != null) {
+                try {
+                    context.close();
+                } catch (Exception ignored) {}
+                context = null;
+            }
+        }
+
+        private void closeBrowser() {
+            closeContext();
+            if (playwright != null) {
+                try {
+                    // Closing Playwright also closes the browser it launched
+                    playwright.close();
+                } catch (Exception e) {
+                    System.err.println("Failed to close pooled browser: " + e.getMessage());
+                }
+            }
+            playwright = null;
+            browser = null;
+        }
+
+        boolean isBrowserOpen() {
+            return browser != null;
+        }
+    }
+
+    private static void recordMax(AtomicLong total, AtomicLong max, long nanos) {
+        total.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Launch, recycling and timing counters for the terminal stats command
+     */
+    public Map<String, Object> getStats() {
+        long served = pagesServed.get() + pageFailures.get();
+        long openBrowsers = workers.stream().filter(Worker::isBrowserOpen).count();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workers", workers.size());
+        stats.put("openBrowsers", openBrowsers);
+        stats.put("queued", tasks.size());
+        stats.put("launches", launches.get());
+        stats.put("contextsCreated", contextsCreated.get());
+        stats.put("contextsRecycled", contextsRecycled.get());
+        stats.put("idleEvictions", idleEvictions.get());
+        stats.put("pagesServed", pagesServed.get());
+        stats.put("pageFailures", pageFailures.get());
+        stats.put("borrowTimeouts", borrowTimeouts.get());
+        stats.put("avgWaitMs", served > 0 ? totalWaitNanos.get() / 1e6 / served : 0.0);
+        stats.put("maxWaitMs", maxWaitNanos.get() / 1e6);
+        stats.put("avgPageMs", served > 0 ? totalPageNanos.get() / 1e6 / served : 0.0);
+        stats.put("maxPageMs", maxPageNanos.get() / 1e6);
+        return stats;
+    }
+}
@@ -3,6 +3,7 @@ package me.hash.mediaroulette.utils.browser;
 import com.microsoft.playwright.*;
 import com.microsoft.playwright.options.WaitUntilState;
 
+import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
 
 /**
@@ -11,65 +12,18 @@ import java.util.function.Function;
 public class PlaywrightBrowser {
     
     /**
-     * Execute a function with a stealth browser page
+     * Execute a function with a stealth browser page from the shared {@link BrowserPool}
      */
     public static <T> T executeWithPage(String url, Function<Page, T> pageFunction) {
-        try (Playwright playwright = Playwright.create()) {
-            Browser browser = playwright.chromium().launch(new BrowserType.LaunchOptions()
-                .setHeadless(true) // Use headless for stability
-                .setArgs(java.util.Arrays.asList(
-                    "--no-first-run",
-                    "--no-default-browser-check",
-                    "--disable-blink-features=AutomationControlled",
-                    "--disable-web-security",
-                    "--disable-features=VizDisplayCompositor",
-                    "--disable-dev-shm-usage",
-                    "--no-sandbox"
-                )));
-            
-            try (BrowserContext context = browser.newContext(new Browser.NewContextOptions()
-                .setUserAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36")
-                .setViewportSize(1920, 1080)
-                .setLocale("en-US")
-                .setTimezoneId("America/New_York")
-                .setExtraHTTPHeaders(java.util.Map.of(
-                    "Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8",
-                    "Accept-Language", "en-US,en;q=0.5",
-                    "Accept-Encoding", "gzip, deflate, br",
-                    "DNT", "1",
-                    "Connection", "keep-alive",
-                    "Upgrade-Insecure-Requests", "1"
-                )))) {
-                
-                Page page = context.newPage();
-                
-                try {
-                    // Remove webdriver detection
-                    page.addInitScript("() => {" +
-                        "Object.defineProperty(navigator, 'webdriver', {get: () => undefined});" +
-                        "window.chrome = {runtime: {}};" +
-                        "Object.defineProperty(navigator, 'plugins', {get: () => [1, 2, 3, 4, 5]});" +
-                        "Object.defineProperty(navigator, 'languages', {get: () => ['en-US', 'en']});" +
-                        "}");
-                    
-                    // Navigate with timeout and proper error handling
-                    page.navigate(url, new Page.NavigateOptions()
-                        .setWaitUntil(WaitUntilState.DOMCONTENTLOADED)
-                        .setTimeout(15000));
-                    
-                    // Wait for page to be ready
-                    page.waitForLoadState(com.microsoft.playwright.options.LoadState.NETWORKIDLE, 
-                        new Page.WaitForLoadStateOptions().setTimeout(10000));
-                    
-                    return pageFunction.apply(page);
-                    
-                } finally {
-                    try {
-                        page.close();
-                    } catch (Exception ignored) {}
-                }
-            }
-            
+        try {
+            return BrowserPool.getInstance().execute(url, pageFunction);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            System.err.println("Browser execution failed for URL: " + url + " - " + cause.getMessage());
+            throw new RuntimeException("Browser execution failed: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Browser execution interrupted", e);
         } catch (Exception e) {
             System.err.println("Browser execution failed for URL: " + url + " - " + e.getMessage());
             throw new RuntimeException("Browser execution failed: " + e.getMessage(), e);
@@ -77,7 +31,8 @@ public class PlaywrightBrowser {
     }
     
     /**
-     * Execute a function with a visible browser for debugging
+     * Execute a function with a visible browser for debugging. Launches its own browser since
+     * the pool only holds headless ones.
      */
     public static <T> T executeWithVisiblePage(String url, Function<Page, T> pageFunction) {
         try (Playwright playwright = Playwright.create()) {
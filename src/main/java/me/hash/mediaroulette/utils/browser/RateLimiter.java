@@ -1,25 +1,63 @@
 package me.hash.mediaroulette.utils.browser;
 
+import me.hash.mediaroulette.content.http.HttpClientWrapper;
 import me.hash.mediaroulette.utils.ErrorReporter;
 import me.hash.mediaroulette.utils.GlobalLogger;
+import me.hash.mediaroulette.utils.LocalConfig;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
 /**
- * Global rate limiter for all API sources
+ * Global rate limiter for all API sources.
+ * <p>
+ * Quotas are hierarchical: a request must fit the global quota, its source's quota and the
+ * requesting user's quota. The global and source quotas guard the upstream APIs, so they are
+ * charged where an upstream request is actually issued ({@link #acquireUpstreamAsync}); the
+ * user quota is charged per command ({@link #acquireUserAsync}). Sources that fetch on every
+ * command are charged both at once through {@link #acquireAsync}. Each quota is a GCRA (generic cell rate algorithm) bucket, which
+ * behaves like a sliding one-minute window but is a single atomic timestamp updated with
+ * compare-and-set, so hot sources never serialize on a lock.
+ * <p>
+ * Requests are weighted: a source's cost (e.g. a YouTube search) is charged against the global
+ * and source quotas, while a user's quota counts requests. Over quota, a source either queues
+ * the request for up to its max wait or rejects it right away, per its policy.
  */
 public class RateLimiter {
     private static final Logger logger = GlobalLogger.getLogger();
-    
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int MAX_TRACKED_USERS = 10_000;
+
+    public enum Policy { QUEUE, REJECT }
+
     // Rate limit tracking per source
-    private static final ConcurrentHashMap<String, SourceRateLimit> rateLimits = new ConcurrentHashMap<>();
-    
-    // Default rate limits per source (requests per minute)
+    private static final ConcurrentHashMap<String, Quota> rateLimits = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Quota> userLimits = new ConcurrentHashMap<>();
+    private static volatile Quota globalLimit;
+
+    // Default rate limits per source (requests per minute); 0 means no limit
     private static final ConcurrentHashMap<String, Integer> defaultLimits = new ConcurrentHashMap<>();
-    
+
+    // Requests' worth of quota one call uses; a YouTube search burns far more API quota than a page fetch,
+    // and an Imgur probe is only a small ranged read from the CDN
+    private static final Map<String, Double> defaultCosts = Map.of(
+            "youtube", 5.0,
+            "google", 2.0,
+            "imgur", 0.1);
+
+    // Provider registry keys that share another source's quota
+    private static final Map<String, String> SOURCE_ALIASES = Map.of(
+            "movies", "tmdb",
+            "tvshow", "tmdb",
+            "short", "youtube",
+            "rule34xxx", "rule34");
+
     static {
         // Initialize default rate limits for each source
         defaultLimits.put("reddit", 60);      // Reddit API limit
@@ -33,80 +71,318 @@ public class RateLimiter {
         defaultLimits.put("picsum", 100);     // Picsum has no strict limits
         defaultLimits.put("urban", 60);       // Urban Dictionary limit
     }
-    
+
+    /**
+     * GCRA bucket. tat is the theoretical arrival time: the moment the bucket would be empty
+     * again if nothing else came in. A request of cost c moves it c emission intervals later,
+     * and is allowed as long as tat stays within one window of now.
+     */
+    static final class Quota {
+        private final int limit;
+        private final long emissionNanos;
+        private final AtomicLong tat = new AtomicLong(System.nanoTime());
+        private volatile long manualLimitUntil = 0; // Manual rate limit override, epoch millis
+
+        private final AtomicLong admitted = new AtomicLong(0);
+        private final AtomicLong queued = new AtomicLong(0);
+        private final AtomicLong rejected = new AtomicLong(0);
+
+        Quota(int limit) {
+            this.limit = limit;
+            this.emissionNanos = WINDOW_NANOS / limit;
+        }
+
+        /**
+         * Reserve room for a request.
+         * @return nanos to wait before sending it, or -1 if that would be longer than maxWaitNanos
+         */
+        long reserve(long now, double cost, long maxWaitNanos) {
+            long increment = (long) (emissionNanos * cost);
+            while (true) {
+                long current = tat.get();
+                long next = Math.max(current, now) + increment;
+                long wait = Math.max(0, next - now - WINDOW_NANOS);
+                if (wait > maxWaitNanos) {
+                    rejected.incrementAndGet();
+                    return -1;
+                }
+                if (tat.compareAndSet(current, next)) {
+                    admitted.incrementAndGet();
+                    if (wait > 0) queued.incrementAndGet();
+                    return wait;
+                }
+            }
+        }
+
+        /**
+         * Give back a reservation, when a later level of the hierarchy rejected the request
+         */
+        void refund(double cost) {
+            tat.addAndGet(-(long) (emissionNanos * cost));
+            admitted.decrementAndGet();
+        }
+
+        boolean isManuallyLimited() {
+            return manualLimitUntil > System.currentTimeMillis();
+        }
+
+        /**
+         * Requests' worth of quota used in the current window
+         */
+        int getCurrentCount() {
+            long used = tat.get() - System.nanoTime();
+            return used <= 0 ? 0 : (int) Math.min(limit, (used + emissionNanos - 1) / emissionNanos);
+        }
+
+        /**
+         * Seconds until the quota has room for one more request
+         */
+        long getTimeUntilReset() {
+            long now = System.currentTimeMillis();
+            if (manualLimitUntil > now) {
+                return (manualLimitUntil - now) / 1000;
+            }
+            long wait = tat.get() + emissionNanos - System.nanoTime() - WINDOW_NANOS;
+            return wait > 0 ? TimeUnit.NANOSECONDS.toSeconds(wait) + 1 : 0;
+        }
+    }
+
     /**
-     * Check if a request is allowed for the given source
+     * The quota key for a provider registry key, e.g. "movies" and "tvshow" share "tmdb"
+     */
+    public static String sourceFor(String key) {
+        return SOURCE_ALIASES.getOrDefault(key, key);
+    }
+
+    /**
+     * Completes once the request fits every quota, without holding a thread while it is queued.
+     * Fails with a RateLimitException if the source rejects it or the wait would be too long.
+     */
+    public static CompletableFuture<Void> acquireAsync(String source, String userId) {
+        return delayAsync(source, userId, getPolicy(source));
+    }
+
+    /**
+     * Charge only the user's quota, for a command served by a source that admits its own
+     * upstream requests (e.g. from a ready pool).
+     */
+    public static CompletableFuture<Void> acquireUserAsync(String userId) {
+        return delayAsync(null, userId, Policy.QUEUE);
+    }
+
+    /**
+     * Charge the global and source quotas for one upstream request, whoever it is made for
+     * (a user's miss, a background refill, a probe).
+     */
+    public static CompletableFuture<Void> acquireUpstreamAsync(String source) {
+        return delayAsync(source, null, getPolicy(source));
+    }
+
+    /**
+     * Blocking form of {@link #acquireUpstreamAsync}, for upstream requests made on a blocking thread
+     */
+    public static void acquireUpstream(String source) throws HttpClientWrapper.RateLimitException, InterruptedException {
+        long waitNanos = admit(source, null, getPolicy(source));
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private static CompletableFuture<Void> delayAsync(String source, String userId, Policy policy) {
+        long waitNanos;
+        try {
+            waitNanos = admit(source, userId, policy);
+        } catch (HttpClientWrapper.RateLimitException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (waitNanos == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Check if a request is allowed for the given source right now, consuming quota if it is
      * @param source The API source name
      * @param userId The user making the request (for logging)
      * @return true if request is allowed, false if rate limited
      */
     public static boolean isRequestAllowed(String source, String userId) {
-        SourceRateLimit rateLimit = rateLimits.computeIfAbsent(source, 
-            k -> new SourceRateLimit(defaultLimits.getOrDefault(k, 60)));
-        
-        boolean allowed = rateLimit.tryRequest();
-        
-        if (!allowed) {
-            logger.log(Level.WARNING, "Rate limit exceeded for source: {0}, user: {1}", 
-                new Object[]{source, userId});
-            
+        try {
+            admit(source, userId, Policy.REJECT);
+            return true;
+        } catch (HttpClientWrapper.RateLimitException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reserve the request's cost at every level, global first. A null source charges only the
+     * user; a null user charges only the global and source quotas.
+     * @return nanos to wait before sending the request
+     */
+    private static long admit(String source, String userId, Policy policy) throws HttpClientWrapper.RateLimitException {
+        LocalConfig config = LocalConfig.getInstance();
+        if (!config.getRateLimitEnabled()) return 0;
+
+        Quota global = null;
+        Quota sourceQuota = null;
+        double cost = 0;
+        long globalWait = 0;
+        long sourceWait = 0;
+        long now = System.nanoTime();
+        long maxWaitNanos;
+        if (source != null) {
+            source = sourceFor(source);
+            sourceQuota = sourceQuota(source);
+            if (sourceQuota != null && sourceQuota.isManuallyLimited()) {
+                sourceQuota.rejected.incrementAndGet();
+                throw rejected(source, userId, "source", sourceQuota.getTimeUntilReset());
+            }
+
+            cost = getCost(source);
+            maxWaitNanos = policy == Policy.QUEUE ? TimeUnit.MILLISECONDS.toNanos(config.getRateLimitMaxWaitMs(source)) : 0;
+
+            global = globalQuota();
+            globalWait = global != null ? global.reserve(now, cost, maxWaitNanos) : 0;
+            if (globalWait < 0) {
+                throw rejected(source, userId, "global", global.getTimeUntilReset());
+            }
+
+            sourceWait = sourceQuota != null ? sourceQuota.reserve(now, cost, maxWaitNanos) : 0;
+            if (sourceWait < 0) {
+                if (global != null) global.refund(cost);
+                throw rejected(source, userId, "source", sourceQuota.getTimeUntilReset());
+            }
+        } else {
+            maxWaitNanos = policy == Policy.QUEUE ? TimeUnit.MILLISECONDS.toNanos(config.getRateLimitMaxWaitMs(null)) : 0;
+        }
+
+        Quota userQuota = userQuota(userId);
+        long userWait = userQuota != null ? userQuota.reserve(now, 1, maxWaitNanos) : 0;
+        if (userWait < 0) {
+            if (global != null) global.refund(cost);
+            if (sourceQuota != null) sourceQuota.refund(cost);
+            throw rejected(source, userId, "user", userQuota.getTimeUntilReset());
+        }
+
+        return Math.max(globalWait, Math.max(sourceWait, userWait));
+    }
+
+    private static HttpClientWrapper.RateLimitException rejected(String source, String userId, String level, long retryInSeconds) {
+        if ("user".equals(level)) {
+            // Users hitting their own quota is routine, not an operational problem
+            logger.log(Level.FINE, "User rate limit exceeded for source: {0}, user: {1}", new Object[]{source, userId});
+        } else {
+            logger.log(Level.WARNING, "Rate limit exceeded for source: {0} ({1} quota), user: {2}",
+                    new Object[]{source, level, userId});
+
             // Report rate limit hit to monitoring
-            ErrorReporter.reportProviderError(source, "rate limit", 
-                "Rate limit exceeded", userId);
+            ErrorReporter.reportProviderError(source, "rate limit",
+                    "Rate limit exceeded (" + level + " quota)", userId);
+        }
+        return new HttpClientWrapper.RateLimitException(String.format(
+                "Too many requests%s right now, try again in %ds", source != null ? " to " + source : "", Math.max(1, retryInSeconds)));
+    }
+
+    private static Quota globalQuota() {
+        int limit = LocalConfig.getInstance().getRateLimitGlobalPerMinute();
+        Quota quota = globalLimit;
+        if (limit <= 0) return null;
+        if (quota == null || quota.limit != limit) {
+            quota = new Quota(limit);
+            globalLimit = quota;
         }
-        
-        return allowed;
+        return quota;
     }
-    
+
+    private static Quota sourceQuota(String source) {
+        int limit = getRateLimit(source);
+        if (limit <= 0) return null;
+        Quota quota = rateLimits.computeIfAbsent(source, k -> new Quota(limit));
+        if (quota.limit != limit) {
+            // Limit changed in the config; start the source over with the new one
+            quota = rateLimits.compute(source, (k, existing) -> existing != null && existing.limit == limit ? existing : new Quota(limit));
+        }
+        return quota;
+    }
+
+    private static Quota userQuota(String userId) {
+        int limit = LocalConfig.getInstance().getRateLimitUserPerMinute();
+        if (userId == null || limit <= 0) return null;
+        if (userLimits.size() > MAX_TRACKED_USERS) {
+            // Users whose bucket has drained carry no state worth keeping
+            long now = System.nanoTime();
+            userLimits.values().removeIf(quota -> quota.tat.get() <= now);
+        }
+        Quota quota = userLimits.computeIfAbsent(userId, k -> new Quota(limit));
+        return quota.limit == limit ? quota : userLimits.compute(userId, (k, existing) -> new Quota(limit));
+    }
+
     /**
      * Get the time until the rate limit resets for a source
      * @param source The API source name
      * @return seconds until reset, or 0 if not rate limited
      */
     public static long getTimeUntilReset(String source) {
-        SourceRateLimit rateLimit = rateLimits.get(source);
+        Quota rateLimit = rateLimits.get(source);
         if (rateLimit == null) {
             return 0;
         }
         return rateLimit.getTimeUntilReset();
     }
-    
+
     /**
      * Get the current request count for a source
      * @param source The API source name
-     * @return current request count in the current window
+     * @return requests' worth of quota used in the current window
      */
     public static int getCurrentRequestCount(String source) {
-        SourceRateLimit rateLimit = rateLimits.get(source);
+        Quota rateLimit = rateLimits.get(source);
         if (rateLimit == null) {
             return 0;
         }
         return rateLimit.getCurrentCount();
     }
-    
+
     /**
      * Get the rate limit for a source
      * @param source The API source name
-     * @return the rate limit (requests per minute)
+     * @return the rate limit (requests per minute), 0 for none
      */
     public static int getRateLimit(String source) {
-        return defaultLimits.getOrDefault(source, 60);
+        return LocalConfig.getInstance().getRateLimitPerMinute(source, defaultLimits.getOrDefault(source, 60));
+    }
+
+    /**
+     * Requests' worth of quota one call to the source uses
+     */
+    public static double getCost(String source) {
+        return LocalConfig.getInstance().getRateLimitCost(source, defaultCosts.getOrDefault(source, 1.0));
     }
-    
+
+    /**
+     * Whether the source queues or rejects requests over its quota
+     */
+    public static Policy getPolicy(String source) {
+        return "reject".equalsIgnoreCase(LocalConfig.getInstance().getRateLimitPolicy(sourceFor(source)))
+                ? Policy.REJECT : Policy.QUEUE;
+    }
+
     /**
      * Manually trigger a rate limit for a source (for testing or emergency)
      * @param source The API source name
      * @param durationSeconds How long to rate limit for
      */
     public static void triggerRateLimit(String source, int durationSeconds) {
-        SourceRateLimit rateLimit = rateLimits.computeIfAbsent(source, 
-            k -> new SourceRateLimit(defaultLimits.getOrDefault(k, 60)));
-        rateLimit.triggerManualLimit(durationSeconds);
-        
-        logger.log(Level.WARNING, "Manual rate limit triggered for source: {0}, duration: {1}s", 
+        int limit = getRateLimit(source);
+        Quota rateLimit = rateLimits.computeIfAbsent(source, k -> new Quota(limit > 0 ? limit : 60));
+        rateLimit.manualLimitUntil = System.currentTimeMillis() + (durationSeconds * 1000L);
+
+        logger.log(Level.WARNING, "Manual rate limit triggered for source: {0}, duration: {1}s",
             new Object[]{source, durationSeconds});
     }
-    
+
     /**
      * Reset rate limits for a source (admin function)
      * @param source The API source name
@@ -115,103 +391,61 @@ public class RateLimiter {
         rateLimits.remove(source);
         logger.log(Level.INFO, "Rate limit reset for source: {0}", source);
     }
-    
+
     /**
      * Get rate limit status for all sources
      * @return Map of source -> status info
      */
     public static ConcurrentHashMap<String, String> getAllRateLimitStatus() {
         ConcurrentHashMap<String, String> status = new ConcurrentHashMap<>();
-        
+
         for (String source : defaultLimits.keySet()) {
-            SourceRateLimit rateLimit = rateLimits.get(source);
-            if (rateLimit == null) {
-                status.put(source, "OK (0/" + defaultLimits.get(source) + ")");
+            Quota rateLimit = rateLimits.get(source);
+            int limit = getRateLimit(source);
+            if (limit <= 0) {
+                status.put(source, "OK (no limit)");
+            } else if (rateLimit == null) {
+                status.put(source, "OK (0/" + limit + ")");
             } else {
                 int current = rateLimit.getCurrentCount();
-                int limit = defaultLimits.get(source);
                 long resetTime = rateLimit.getTimeUntilReset();
-                
-                if (current >= limit) {
+
+                if (rateLimit.isManuallyLimited() || current >= limit) {
                     status.put(source, String.format("RATE LIMITED (reset in %ds)", resetTime));
                 } else {
                     status.put(source, String.format("OK (%d/%d)", current, limit));
                 }
             }
         }
-        
+
         return status;
     }
-    
+
     /**
-     * Inner class to track rate limits for a specific source
+     * Admission counters for a source: admitted (of which queued) and rejected requests
      */
-    private static class SourceRateLimit {
-        private final int maxRequests;
-        private final long windowSizeMs = TimeUnit.MINUTES.toMillis(1); // 1 minute window
-        
-        private volatile int requestCount = 0;
-        private volatile long windowStart = System.currentTimeMillis();
-        private volatile long manualLimitUntil = 0; // Manual rate limit override
-        
-        public SourceRateLimit(int maxRequests) {
-            this.maxRequests = maxRequests;
-        }
-        
-        public synchronized boolean tryRequest() {
-            long now = System.currentTimeMillis();
-            
-            // Check manual rate limit first
-            if (manualLimitUntil > now) {
-                return false;
-            }
-            
-            // Reset window if needed
-            if (now - windowStart >= windowSizeMs) {
-                requestCount = 0;
-                windowStart = now;
-            }
-            
-            // Check if we can make the request
-            if (requestCount >= maxRequests) {
-                return false;
-            }
-            
-            requestCount++;
-            return true;
-        }
-        
-        public long getTimeUntilReset() {
-            long now = System.currentTimeMillis();
-            
-            // Check manual limit first
-            if (manualLimitUntil > now) {
-                return (manualLimitUntil - now) / 1000;
-            }
-            
-            // Check window reset
-            long windowEnd = windowStart + windowSizeMs;
-            if (now >= windowEnd) {
-                return 0; // Window has already reset
-            }
-            
-            return (windowEnd - now) / 1000;
-        }
-        
-        public int getCurrentCount() {
-            long now = System.currentTimeMillis();
-            
-            // Reset window if needed
-            if (now - windowStart >= windowSizeMs) {
-                requestCount = 0;
-                windowStart = now;
-            }
-            
-            return requestCount;
-        }
-        
-        public void triggerManualLimit(int durationSeconds) {
-            this.manualLimitUntil = System.currentTimeMillis() + (durationSeconds * 1000L);
-        }
+    public static Map<String, Object> getSourceStats(String source) {
+        Quota rateLimit = rateLimits.get(source);
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("policy", getPolicy(source));
+        stats.put("cost", getCost(source));
+        stats.put("admitted", rateLimit != null ? rateLimit.admitted.get() : 0L);
+        stats.put("queued", rateLimit != null ? rateLimit.queued.get() : 0L);
+        stats.put("rejected", rateLimit != null ? rateLimit.rejected.get() : 0L);
+        return stats;
+    }
+
+    /**
+     * Usage of the global quota and how many users are being tracked
+     */
+    public static Map<String, Object> getGlobalStats() {
+        Quota global = globalQuota();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("limit", global != null ? global.limit : 0);
+        stats.put("used", global != null ? global.getCurrentCount() : 0);
+        stats.put("rejected", global != null ? global.rejected.get() : 0L);
+        stats.put("userLimit", LocalConfig.getInstance().getRateLimitUserPerMinute());
+        stats.put("trackedUsers", userLimits.size());
+        return stats;
     }
-}
\ No newline at end of file
+}
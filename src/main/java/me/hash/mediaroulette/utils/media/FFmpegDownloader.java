@@ -1,9 +1,11 @@
 package me.hash.mediaroulette.utils.media;
 
+import me.hash.mediaroulette.content.http.HttpTransport;
 import okhttp3.*;
 import java.io.*;
 import java.net.URI;
 import java.nio.file.*;
+import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -15,13 +17,8 @@ import java.util.zip.ZipInputStream;
 public class FFmpegDownloader {
     private static final String FFMPEG_DIR = getJarDirectory() + File.separator + "ffmpeg";
     private static final String FFMPEG_EXECUTABLE_NAME = getExecutableName();
-    private static final OkHttpClient HTTP_CLIENT = new OkHttpClient.Builder()
-            .followRedirects(true)
-            .followSslRedirects(true)
-            .connectTimeout(30, java.util.concurrent.TimeUnit.SECONDS)
-            .readTimeout(60, java.util.concurrent.TimeUnit.SECONDS)
-            .writeTimeout(60, java.util.concurrent.TimeUnit.SECONDS)
-            .build();
+    private static final OkHttpClient HTTP_CLIENT =
+            HttpTransport.client("ffmpeg_download", Duration.ofSeconds(30), Duration.ofSeconds(60));
     
     // FFmpeg download URLs for different platforms and architectures
     private static final String WINDOWS_X64_URL    = "https://github.com/BtbN/FFmpeg-Builds/releases/download/latest/ffmpeg-master-latest-win64-gpl-shared.zip";
@@ -1,10 +1,11 @@
 package me.hash.mediaroulette.utils.media;
 
+import me.hash.mediaroulette.content.http.HttpTransport;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -13,11 +14,8 @@ import java.util.regex.Pattern;
  */
 public class M3u8Parser {
     
-    private static final OkHttpClient HTTP_CLIENT = new OkHttpClient.Builder()
-        .followRedirects(true)
-        .connectTimeout(10, TimeUnit.SECONDS)
-        .readTimeout(30, TimeUnit.SECONDS)
-        .build();
+    private static final OkHttpClient HTTP_CLIENT =
+        HttpTransport.cachingClient("m3u8", Duration.ofSeconds(10), Duration.ofSeconds(30));
     
     private static final Pattern M3U8_URL_PATTERN = Pattern.compile("^(https?://[^\\s]+\\.(m4s|mp4|ts))$", Pattern.MULTILINE);
     
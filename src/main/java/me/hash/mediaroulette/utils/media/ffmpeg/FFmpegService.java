@@ -45,7 +45,7 @@ public class FFmpegService {
      * Resolves a video URL to its direct media URL
      */
     public CompletableFuture<String> resolveVideoUrl(String url) {
-        return urlResolverFactory.getResolver(url).resolve(url);
+        return urlResolverFactory.resolve(url);
     }
 
     /**
@@ -1,9 +1,10 @@
 package me.hash.mediaroulette.utils.media.ffmpeg.config;
 
+import me.hash.mediaroulette.content.http.HttpTransport;
 import me.hash.mediaroulette.utils.media.ffmpeg.utils.FileManager;
 import okhttp3.OkHttpClient;
 
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
 
 /**
  * Configuration class for FFmpeg operations
@@ -50,12 +51,7 @@ public class FFmpegConfig {
         this.tempDirectory = "temp";
         this.fileManager = new FileManager(tempDirectory);
         
-        this.httpClient = new OkHttpClient.Builder()
-                .followRedirects(true)
-                .followSslRedirects(true)
-                .connectTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(60, TimeUnit.SECONDS)
-                .build();
+        this.httpClient = HttpTransport.client("ffmpeg", Duration.ofSeconds(30), Duration.ofSeconds(60));
     }
 
     // Getters
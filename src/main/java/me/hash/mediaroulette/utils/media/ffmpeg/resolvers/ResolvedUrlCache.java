@@ -0,0 +1,122 @@
+package me.hash.mediaroulette.utils.media.ffmpeg.resolvers;
+
+import me.hash.mediaroulette.utils.LocalConfig;
+import me.hash.mediaroulette.utils.TaskExecutors;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolved direct media URLs, keyed by the page URL they came from. Concurrent requests for the
+ * same URL share one resolution, and the result is reused until its TTL runs out. Resolutions
+ * that fell back to the original URL are kept only briefly so a flaky host gets retried soon.
+ * Resolver work runs on a bounded pool instead of the common fork-join pool.
+ */
+public final class ResolvedUrlCache {
+    private static final long UNRESOLVED_TTL_MS = 60_000;
+
+    private static final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private static final ExecutorService EXECUTOR = TaskExecutors.newProviderExecutor(
+            "url-resolver", LocalConfig.getInstance().getUrlResolveThreads(), 64);
+
+    private static final AtomicLong hits = new AtomicLong(0);
+    private static final AtomicLong misses = new AtomicLong(0);
+    private static final AtomicLong failures = new AtomicLong(0);
+
+    private record Entry(CompletableFuture<String> future, long createdAt) {}
+
+    private ResolvedUrlCache() {}
+
+    /**
+     * Pool that resolvers should run their blocking work on
+     */
+    public static ExecutorService executor() {
+        return EXECUTOR;
+    }
+
+    /**
+     * Resolve through the cache, starting the resolver only if no live entry exists.
+     */
+    public static CompletableFuture<String> resolve(String url, UrlResolver resolver) {
+        long now = System.currentTimeMillis();
+        Entry existing = entries.get(url);
+        if (existing != null && !isExpired(url, existing, now)) {
+            hits.incrementAndGet();
+            return existing.future();
+        }
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Entry mine = new Entry(future, now);
+        Entry current = entries.compute(url, (key, entry) -> entry == null || isExpired(key, entry, now) ? mine : entry);
+        if (current != mine) {
+            hits.incrementAndGet();
+            return current.future();
+        }
+
+        misses.incrementAndGet();
+        evictIfFull();
+        CompletableFuture<String> resolution;
+        try {
+            resolution = resolver.resolve(url);
+        } catch (Exception e) {
+            resolution = CompletableFuture.failedFuture(e);
+        }
+        resolution.whenComplete((resolved, error) -> {
+            if (error != null) {
+                failures.incrementAndGet();
+                // Don't cache failures; the next caller tries again
+                entries.remove(url, mine);
+                future.completeExceptionally(error);
+            } else {
+                future.complete(resolved);
+            }
+        });
+        return future;
+    }
+
+    private static boolean isExpired(String url, Entry entry, long now) {
+        CompletableFuture<String> future = entry.future();
+        if (!future.isDone()) {
+            return false;
+        }
+        boolean unresolved = !future.isCompletedExceptionally() && url.equals(future.getNow(null));
+        long ttl = unresolved ? UNRESOLVED_TTL_MS : LocalConfig.getInstance().getUrlResolveTtlMs();
+        return now - entry.createdAt() > ttl;
+    }
+
+    private static void evictIfFull() {
+        int maxEntries = LocalConfig.getInstance().getUrlResolveMaxEntries();
+        if (entries.size() <= maxEntries) return;
+
+        long now = System.currentTimeMillis();
+        entries.entrySet().removeIf(e -> isExpired(e.getKey(), e.getValue(), now));
+        // Still full of live entries: drop arbitrary completed ones, they are cheap to redo
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            if (iterator.next().getValue().future().isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public static Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", entries.size());
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.get());
+        stats.put("failures", failures.get());
+        stats.put("hitRate", total > 0 ? (double) hitCount / total * 100 : 0.0);
+        return stats;
+    }
+
+    public static void shutdown() {
+        EXECUTOR.shutdownNow();
+    }
+}
@@ -7,6 +7,7 @@ import me.hash.mediaroulette.utils.media.ffmpeg.resolvers.impl.DirectUrlResolver
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Factory for URL resolvers that manages different video platform resolvers
@@ -39,6 +40,24 @@ public class UrlResolverFactory {
                 .orElse(new DirectUrlResolver()); // Fallback to direct URL resolver
     }
 
+    /**
+     * Resolves a URL to its direct media URL, reusing a cached or in-flight resolution
+     */
+    public CompletableFuture<String> resolve(String url) {
+        UrlResolver resolver = getResolver(url);
+        if (resolver instanceof DirectUrlResolver) {
+            return resolver.resolve(url);
+        }
+        return ResolvedUrlCache.resolve(url, resolver);
+    }
+
+    /**
+     * Whether resolving the URL takes more than returning it unchanged
+     */
+    public boolean needsResolution(String url) {
+        return url != null && !(getResolver(url) instanceof DirectUrlResolver);
+    }
+
     /**
      * Checks if a URL is a video URL
      */
@@ -1,23 +1,21 @@
 package me.hash.mediaroulette.utils.media.ffmpeg.resolvers.impl;
 
+import me.hash.mediaroulette.content.http.HttpTransport;
+import me.hash.mediaroulette.utils.media.ffmpeg.resolvers.ResolvedUrlCache;
 import me.hash.mediaroulette.utils.media.ffmpeg.resolvers.UrlResolver;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
 
 /**
  * Resolver for Gfycat URLs with improved error handling
  */
 public class GfycatResolver implements UrlResolver {
-    private static final OkHttpClient HTTP_CLIENT = new OkHttpClient.Builder()
-            .followRedirects(true)
-            .followSslRedirects(true)
-            .connectTimeout(15, TimeUnit.SECONDS)
-            .readTimeout(30, TimeUnit.SECONDS)
-            .build();
+    private static final OkHttpClient HTTP_CLIENT =
+            HttpTransport.client("gfycat", Duration.ofSeconds(15), Duration.ofSeconds(30));
 
     @Override
     public boolean canResolve(String url) {
@@ -54,7 +52,7 @@ public class GfycatResolver implements UrlResolver {
                 System.err.println("Failed to resolve Gfycat URL: " + url + " - " + e.getMessage());
                 return url; // Return original URL as last resort
             }
-        });
+        }, ResolvedUrlCache.executor());
     }
 
     @Override
@@ -1,5 +1,6 @@
 package me.hash.mediaroulette.utils.media.ffmpeg.resolvers.impl;
 
+import me.hash.mediaroulette.utils.media.ffmpeg.resolvers.ResolvedUrlCache;
 import me.hash.mediaroulette.utils.media.ffmpeg.resolvers.UrlResolver;
 import me.hash.mediaroulette.utils.browser.PlaywrightBrowser;
 import me.hash.mediaroulette.utils.media.M3u8Parser;
@@ -86,7 +87,7 @@ public class RedGifsResolver implements UrlResolver {
                 System.err.println("Failed to resolve RedGifs URL: " + e.getMessage());
                 return url;
             }
-        });
+        }, ResolvedUrlCache.executor());
     }
     
     private String extractGifNameFromPoster(String posterUrl) {
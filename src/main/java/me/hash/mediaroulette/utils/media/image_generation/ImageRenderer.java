@@ -1,5 +1,6 @@
 package me.hash.mediaroulette.utils.media.image_generation;
 
+import me.hash.mediaroulette.content.http.HttpTransport;
 import me.hash.mediaroulette.utils.media.image_generation.components.TextComponent;
 import me.hash.mediaroulette.utils.media.image_generation.components.TextWrapper;
 import okhttp3.OkHttpClient;
@@ -12,13 +13,11 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
 
 public class ImageRenderer {
-    private static final OkHttpClient HTTP_CLIENT = new OkHttpClient.Builder()
-            .connectTimeout(10, TimeUnit.SECONDS)
-            .readTimeout(10, TimeUnit.SECONDS)
-            .build();
+    private static final OkHttpClient HTTP_CLIENT =
+            HttpTransport.client("image_renderer", Duration.ofSeconds(10), Duration.ofSeconds(10));
 
     private final Theme theme;
     private final int width;
@@ -1,14 +1,22 @@
 package me.hash.mediaroulette.utils.terminal.commands;
 
+import me.hash.mediaroulette.content.http.HttpClientWrapper;
+import me.hash.mediaroulette.content.provider.CircuitBreaker;
+import me.hash.mediaroulette.content.provider.ProviderRegistry;
 import me.hash.mediaroulette.utils.browser.RateLimiter;
 import me.hash.mediaroulette.utils.terminal.Command;
 import me.hash.mediaroulette.utils.terminal.CommandResult;
 
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class RateLimitCommand extends Command {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
 
     public RateLimitCommand() {
         super("ratelimit", "Manage rate limits for API sources", "ratelimit <action> [source] [duration]", List.of("rl"));
@@ -85,16 +93,51 @@ public class RateLimitCommand extends Command {
             StringBuilder result = new StringBuilder();
             result.append("=== RATE LIMIT STATUS ===\n");
             
+            Map<String, Object> global = RateLimiter.getGlobalStats();
+            result.append(String.format("GLOBAL    : %s/%s per min used, %s rejected | per user: %s/min (%s users tracked)\n",
+                global.get("used"), global.get("limit"), global.get("rejected"), global.get("userLimit"), global.get("trackedUsers")));
+
             for (String source : status.keySet()) {
                 String statusText = status.get(source);
                 int limit = RateLimiter.getRateLimit(source);
-                
-                result.append(String.format("%-10s: %s (Limit: %d/min)\n", 
-                    source.toUpperCase(), statusText, limit));
+                Map<String, Object> sourceStats = RateLimiter.getSourceStats(source);
+
+                result.append(String.format("%-10s: %s (Limit: %d/min, cost %s, %s) admitted: %s, queued: %s, rejected: %s\n",
+                    source.toUpperCase(), statusText, limit, sourceStats.get("cost"), sourceStats.get("policy"),
+                    sourceStats.get("admitted"), sourceStats.get("queued"), sourceStats.get("rejected")));
             }
             
+            Map<String, Object> hostStats = HttpClientWrapper.getRateLimiter().getStats();
+            result.append("\n=== PER-HOST HTTP LIMITER ===\n");
+            result.append(String.format("Immediate: %,d | Delayed: %,d | Rejected: %,d | Server 429s: %,d\n",
+                hostStats.get("immediate"), hostStats.get("delayed"), hostStats.get("rejected"), hostStats.get("serverLimited")));
+            Map<?, ?> queued = (Map<?, ?>) hostStats.get("queuedByHost");
+            for (Map.Entry<?, ?> entry : queued.entrySet()) {
+                result.append(String.format("  %s: %s waiting\n", entry.getKey(), entry.getValue()));
+            }
+
+            Map<String, CircuitBreaker> breakers = ProviderRegistry.getInstance().getBreakers();
+            result.append("\n=== CIRCUIT BREAKERS ===\n");
+            for (Map.Entry<String, CircuitBreaker> entry : breakers.entrySet()) {
+                Map<String, Object> stats = entry.getValue().getStats();
+                result.append(String.format("%-10s: %-9s (window: %s calls, %s failed, %s slow | fast-failed: %s",
+                        entry.getKey().toUpperCase(), stats.get("state"), stats.get("calls"), stats.get("failures"),
+                        stats.get("slowCalls"), stats.get("rejected")));
+                long openForMs = (Long) stats.get("openForMs");
+                if (openForMs > 0) {
+                    result.append(String.format(" | retry in %ds", openForMs / 1000));
+                }
+                result.append(")\n");
+                for (CircuitBreaker.Transition transition : entry.getValue().getTransitions()) {
+                    result.append(String.format("  %s %s -> %s: %s\n",
+                            TIME_FORMAT.format(Instant.ofEpochMilli(transition.at())),
+                            transition.from(), transition.to(), transition.reason()));
+                }
+            }
+
             result.append("=========================\n");
-            result.append("Legend: OK = Normal operation, RATE LIMITED = Currently limited");
+            result.append("Legend: OK = Normal operation, RATE LIMITED = Currently limited\n");
+            result.append("Breakers: CLOSED = normal, OPEN = failing fast, HALF_OPEN = trying trial calls");
             
             return CommandResult.success(result.toString());
         } catch (Exception e) {
@@ -105,6 +148,10 @@ public class RateLimitCommand extends Command {
     private CommandResult resetRateLimit(String source) {
         try {
             RateLimiter.resetRateLimit(source);
+            CircuitBreaker breaker = ProviderRegistry.getInstance().getBreakers().get(source.toLowerCase());
+            if (breaker != null) {
+                breaker.reset();
+            }
             return CommandResult.success("Rate limit reset for source: " + source.toUpperCase());
         } catch (Exception e) {
             return CommandResult.error("Failed to reset rate limit for " + source + ": " + e.getMessage());
@@ -1,11 +1,23 @@
 package me.hash.mediaroulette.utils.terminal.commands;
 
 import me.hash.mediaroulette.Main;
+import me.hash.mediaroulette.content.http.HttpResponseCache;
+import me.hash.mediaroulette.content.http.HttpTransport;
+import me.hash.mediaroulette.content.provider.PrefetchScheduler;
+import me.hash.mediaroulette.content.provider.ProviderRegistry;
+import me.hash.mediaroulette.content.provider.SingleFlight;
+import me.hash.mediaroulette.content.provider.impl.images.ImgurProvider;
+import me.hash.mediaroulette.utils.PersistentCache;
+import me.hash.mediaroulette.utils.TaskExecutors;
+import me.hash.mediaroulette.utils.browser.BrowserPool;
+import me.hash.mediaroulette.utils.media.ffmpeg.resolvers.ResolvedUrlCache;
 import me.hash.mediaroulette.utils.terminal.Command;
 import me.hash.mediaroulette.utils.terminal.CommandResult;
+import me.hash.mediaroulette.utils.user.ImageSelector;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class StatsCommand extends Command {
 
@@ -29,6 +41,168 @@ public class StatsCommand extends Command {
                 stats.append("Average Images per User: ").append(String.format("%.2f", avgImagesPerUser)).append("\n");
             }
             
+            Map<String, Object> writeBehind = Main.userService.getWriteBehindStats();
+            stats.append("\n=== USER WRITE-BEHIND ===\n");
+            stats.append("Writes Requested: ").append(String.format("%,d", (Long) writeBehind.get("writesRequested"))).append("\n");
+            stats.append("Writes Avoided: ").append(String.format("%,d", (Long) writeBehind.get("writesAvoided"))).append("\n");
+            stats.append("Users Flushed: ").append(String.format("%,d", (Long) writeBehind.get("usersFlushed"))).append("\n");
+            stats.append("Pending Users: ").append(writeBehind.get("pendingUsers")).append("\n");
+            stats.append("Flushes: ").append(writeBehind.get("flushCount"))
+                    .append(" (failed: ").append(writeBehind.get("flushFailures")).append(")\n");
+            stats.append("Flush Latency: ").append(String.format("last %.1fms, avg %.1fms, max %.1fms",
+                    writeBehind.get("lastFlushMs"), writeBehind.get("avgFlushMs"), writeBehind.get("maxFlushMs"))).append("\n");
+
+            Map<String, Object> userCache = Main.userService.getCacheStats();
+            stats.append("\n=== USER CACHE ===\n");
+            stats.append("Cached Users: ").append(String.format("%,d", (Integer) userCache.get("size"))).append("\n");
+            stats.append("Weighted Size: ").append(String.format("%,d / %,d",
+                    (Long) userCache.get("weightedSize"), (Long) userCache.get("maxWeight"))).append("\n");
+            stats.append("Hits / Misses: ").append(String.format("%,d / %,d (%.1f%% hit rate)",
+                    (Long) userCache.get("hits"), (Long) userCache.get("misses"), (Double) userCache.get("hitRate"))).append("\n");
+            stats.append("Evictions: ").append(String.format("%,d", (Long) userCache.get("evictions")))
+                    .append(" (expired: ").append(String.format("%,d", (Long) userCache.get("expirations"))).append(")\n");
+            stats.append("Awaiting Write-Back: ").append(userCache.get("pendingWriteBack")).append("\n");
+
+            Map<String, Map<String, Object>> persistentCaches = PersistentCache.getAllStats();
+            if (!persistentCaches.isEmpty()) {
+                stats.append("\n=== PERSISTENT CACHES ===\n");
+                for (Map.Entry<String, Map<String, Object>> entry : persistentCaches.entrySet()) {
+                    Map<String, Object> cache = entry.getValue();
+                    int maxEntries = (Integer) cache.get("maxEntries");
+                    stats.append(entry.getKey()).append(": ").append(String.format("%,d", (Integer) cache.get("size")))
+                            .append(maxEntries > 0 ? String.format(" / %,d", maxEntries) : "")
+                            .append(" entries, ").append(cache.get("expirations")).append(" expired, ")
+                            .append(cache.get("evictions")).append(" evicted\n");
+                }
+            }
+
+            stats.append("\n=== EXECUTION (").append(TaskExecutors.isVirtual() ? "virtual" : "platform").append(" threads) ===\n");
+            for (Map.Entry<String, Map<String, Object>> entry : TaskExecutors.getStats().entrySet()) {
+                Map<String, Object> executor = entry.getValue();
+                stats.append(entry.getKey()).append(": ").append(executor.get("running")).append(" running, ")
+                        .append(executor.get("queued")).append(" queued, ")
+                        .append(String.format("%,d", (Long) executor.get("completed"))).append(" completed, ")
+                        .append(executor.get("rejected")).append(" rejected\n");
+            }
+            for (Map.Entry<String, Map<String, Object>> entry : ProviderRegistry.getInstance().getLimiter().getStats().entrySet()) {
+                Map<String, Object> source = entry.getValue();
+                stats.append("source ").append(entry.getKey()).append(": ")
+                        .append(source.get("running")).append("/").append(source.get("limit")).append(" running, ")
+                        .append(source.get("queued")).append(" queued, ")
+                        .append(source.get("rejected")).append(" rejected\n");
+            }
+
+            Map<String, Map<String, Object>> refills = SingleFlight.getAllStats();
+            if (!refills.isEmpty()) {
+                stats.append("\n=== CACHE REFILLS ===\n");
+                for (Map.Entry<String, Map<String, Object>> entry : refills.entrySet()) {
+                    Map<String, Object> refill = entry.getValue();
+                    stats.append(entry.getKey()).append(": ")
+                            .append(String.format("%,d", (Long) refill.get("issued"))).append(" issued, ")
+                            .append(String.format("%,d", (Long) refill.get("coalesced"))).append(" coalesced, ")
+                            .append(refill.get("inFlight")).append(" in flight\n");
+                }
+            }
+
+            Map<String, Object> prefetch = PrefetchScheduler.getInstance().getStats();
+            stats.append("\n=== PREFETCH ===\n");
+            stats.append("Enabled: ").append(prefetch.get("enabled")).append("\n");
+            stats.append("Ready Pool Hits: ").append(String.format("%.1f%%", (Double) prefetch.get("readyHitRate")))
+                    .append(" (").append(String.format("%,d", (Long) prefetch.get("misses"))).append(" misses of ")
+                    .append(String.format("%,d", (Long) prefetch.get("requests"))).append(" requests)\n");
+            stats.append("Prefetches: ").append(String.format("%,d", (Long) prefetch.get("prefetchesIssued")))
+                    .append(" (failed: ").append(prefetch.get("prefetchesFailed"))
+                    .append(", skipped while busy: ").append(prefetch.get("skippedBusy"))
+                    .append(", skipped while circuit open: ").append(prefetch.get("skippedUnavailable"))
+                    .append(", running: ").append(prefetch.get("refilling")).append(")\n");
+            Map<?, ?> hotKeys = (Map<?, ?>) prefetch.get("hotKeys");
+            for (Map.Entry<?, ?> entry : hotKeys.entrySet()) {
+                stats.append("hot ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+            }
+
+            Map<String, Object> racing = ImageSelector.getRollStats();
+            stats.append("\n=== SOURCE RACING ===\n");
+            stats.append("Rolls: ").append(String.format("%,d", (Long) racing.get("rolls")))
+                    .append(" (failed: ").append(racing.get("failed"))
+                    .append(", timed out: ").append(racing.get("timedOut")).append(")\n");
+            stats.append("Hedged: ").append(String.format("%,d", (Long) racing.get("hedged")))
+                    .append(String.format(" (%.1f%% of rolls, hedge won %.1f%%)",
+                            (Double) racing.get("hedgeRate"), (Double) racing.get("hedgeWinRate")))
+                    .append(", failovers: ").append(racing.get("failovers")).append("\n");
+            @SuppressWarnings("unchecked")
+            Map<String, Map<String, Long>> racingSources = (Map<String, Map<String, Long>>) racing.get("sources");
+            racingSources.forEach((source, sourceStats) -> stats.append(source).append(": ")
+                    .append(sourceStats.get("wins")).append(" won, ")
+                    .append(sourceStats.get("failures")).append(" failed, ")
+                    .append(sourceStats.get("abandoned")).append(" abandoned\n"));
+
+            if (ProviderRegistry.getInstance().get(ProviderRegistry.IMGUR) instanceof ImgurProvider imgurProvider) {
+                Map<String, Object> imgur = imgurProvider.getStats();
+                stats.append("\n=== IMGUR ===\n");
+                stats.append("Verified Pool: ").append(imgur.get("pooled"))
+                        .append(" (served from pool: ").append(String.format("%.1f%%", (Double) imgur.get("poolHitRate"))).append(")\n");
+                stats.append("Probes: ").append(String.format("%,d", (Long) imgur.get("probes")))
+                        .append(" (live: ").append(imgur.get("liveFound"))
+                        .append(", dead: ").append(imgur.get("deadFound")).append(")\n");
+                stats.append("Dead-ID Filter: ").append(String.format("%,d", (Long) imgur.get("deadIds"))).append(" ids in ")
+                        .append(String.format("%,d", (Integer) imgur.get("filterBits") / 8 / 1024)).append(" KB, ")
+                        .append(String.format("est. false positives %.3f%%", (Double) imgur.get("filterFalsePositiveRate")))
+                        .append(", draws skipped: ").append(String.format("%.1f%%", (Double) imgur.get("filterSkipRate"))).append("\n");
+            }
+
+            Map<String, Object> resolved = ResolvedUrlCache.getStats();
+            stats.append("\n=== MEDIA URL RESOLUTION ===\n");
+            stats.append("Cached: ").append(resolved.get("size"))
+                    .append(", hit rate: ").append(String.format("%.1f%%", (Double) resolved.get("hitRate")))
+                    .append(" (").append(String.format("%,d", (Long) resolved.get("misses"))).append(" resolved, ")
+                    .append(resolved.get("failures")).append(" failed)\n");
+
+            Map<String, Object> httpCache = HttpResponseCache.getInstance().getStats();
+            stats.append("\n=== HTTP CACHE ===\n");
+            stats.append("Entries: ").append(httpCache.get("entries"))
+                    .append(" (").append(String.format("%,d", (Long) httpCache.get("bytes") / 1024)).append(" / ")
+                    .append(String.format("%,d", (Long) httpCache.get("maxBytes") / 1024)).append(" KB, ")
+                    .append(httpCache.get("evictions")).append(" evicted)\n");
+            stats.append("Hits: ").append(httpCache.get("hits"))
+                    .append(", revalidated: ").append(httpCache.get("revalidated"))
+                    .append(", misses: ").append(httpCache.get("misses"))
+                    .append(" (").append(String.format("%.1f%%", (Double) httpCache.get("hitRate"))).append(" served from cache)\n");
+            stats.append("Bytes saved: ").append(String.format("%,d KB", (Long) httpCache.get("bytesSaved") / 1024)).append("\n");
+
+            Map<String, Object> transport = HttpTransport.getStats();
+            stats.append("\n=== HTTP TRANSPORT ===\n");
+            stats.append("Pool: ").append(transport.get("connections")).append(" connections (")
+                    .append(transport.get("idleConnections")).append(" idle), calls running: ")
+                    .append(transport.get("runningCalls")).append(", queued: ").append(transport.get("queuedCalls")).append("\n");
+            @SuppressWarnings("unchecked")
+            Map<String, Map<String, Object>> transportSources = (Map<String, Map<String, Object>>) transport.get("sources");
+            transportSources.forEach((source, sourceStats) -> stats.append(source).append(": ")
+                    .append(sourceStats.get("calls")).append(" calls, ").append(sourceStats.get("failures")).append(" failed, reuse ")
+                    .append(String.format("%.0f%%", (Double) sourceStats.get("reuseRate")))
+                    .append(", dns ").append(String.format("%.1fms", (Double) sourceStats.get("avgDnsMs")))
+                    .append(", tls ").append(String.format("%.1fms", (Double) sourceStats.get("avgTlsMs")))
+                    .append(", in ").append(String.format("%,d KB", (Long) sourceStats.get("bytesIn") / 1024))
+                    .append(", out ").append(String.format("%,d KB", (Long) sourceStats.get("bytesOut") / 1024)).append("\n"));
+
+            Map<String, Object> browserPool = BrowserPool.getStatsIfStarted();
+            if (browserPool != null) {
+                stats.append("\n=== BROWSER POOL ===\n");
+                stats.append("Workers: ").append(browserPool.get("workers"))
+                        .append(" (browsers open: ").append(browserPool.get("openBrowsers"))
+                        .append(", queued: ").append(browserPool.get("queued")).append(")\n");
+                stats.append("Launches: ").append(browserPool.get("launches"))
+                        .append(", contexts created: ").append(browserPool.get("contextsCreated"))
+                        .append(", recycled: ").append(browserPool.get("contextsRecycled"))
+                        .append(", idle evictions: ").append(browserPool.get("idleEvictions")).append("\n");
+                stats.append("Pages: ").append(String.format("%,d", (Long) browserPool.get("pagesServed")))
+                        .append(" (failed: ").append(browserPool.get("pageFailures"))
+                        .append(", borrow timeouts: ").append(browserPool.get("borrowTimeouts")).append(")\n");
+                stats.append("Pool Wait: ").append(String.format("avg %.1fms, max %.1fms",
+                        browserPool.get("avgWaitMs"), browserPool.get("maxWaitMs"))).append("\n");
+                stats.append("Page Time: ").append(String.format("avg %.1fms, max %.1fms",
+                        browserPool.get("avgPageMs"), browserPool.get("maxPageMs"))).append("\n");
+            }
+
             stats.append("===========================");
             
             return CommandResult.success(stats.toString());
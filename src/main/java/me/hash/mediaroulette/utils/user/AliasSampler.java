@@ -0,0 +1,90 @@
+package me.hash.mediaroulette.utils.user;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Immutable weighted sampler using Vose's alias method: O(n) to build, O(1) per draw.
+ * Each of the n slots holds a primary outcome, an alias outcome and the probability of
+ * keeping the primary, so a draw is one random slot and one coin flip.
+ */
+public final class AliasSampler {
+    private final String[] outcomes;
+    private final double[] keep;
+    private final int[] alias;
+    private final Map<String, Double> weights;
+
+    private AliasSampler(String[] outcomes, double[] keep, int[] alias, Map<String, Double> weights) {
+        this.outcomes = outcomes;
+        this.keep = keep;
+        this.alias = alias;
+        this.weights = weights;
+    }
+
+    /**
+     * Build from outcome weights. Outcomes with a weight of zero or less are left out.
+     * @return the sampler, or null if no outcome has a positive weight
+     */
+    public static AliasSampler of(Map<String, Double> weights) {
+        Map<String, Double> positive = new LinkedHashMap<>();
+        double total = 0;
+        for (Map.Entry<String, Double> entry : weights.entrySet()) {
+            if (entry.getValue() > 0) {
+                positive.put(entry.getKey(), entry.getValue());
+                total += entry.getValue();
+            }
+        }
+        int n = positive.size();
+        if (n == 0) return null;
+
+        String[] outcomes = positive.keySet().toArray(new String[0]);
+        double[] scaled = new double[n];
+        for (int i = 0; i < n; i++) {
+            scaled[i] = positive.get(outcomes[i]) * n / total;
+        }
+
+        double[] keep = new double[n];
+        int[] alias = new int[n];
+        Deque<Integer> small = new ArrayDeque<>();
+        Deque<Integer> large = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            (scaled[i] < 1.0 ? small : large).push(i);
+        }
+        while (!small.isEmpty() && !large.isEmpty()) {
+            int less = small.pop();
+            int more = large.pop();
+            keep[less] = scaled[less];
+            alias[less] = more;
+            // The large outcome gives up what filled the small one's slot
+            scaled[more] = scaled[more] + scaled[less] - 1.0;
+            (scaled[more] < 1.0 ? small : large).push(more);
+        }
+        // Whatever is left is 1.0 up to rounding error
+        while (!large.isEmpty()) {
+            keep[large.pop()] = 1.0;
+        }
+        while (!small.isEmpty()) {
+            keep[small.pop()] = 1.0;
+        }
+        return new AliasSampler(outcomes, keep, alias, Map.copyOf(positive));
+    }
+
+    public String sample(Random random) {
+        int slot = random.nextInt(outcomes.length);
+        return random.nextDouble() < keep[slot] ? outcomes[slot] : outcomes[alias[slot]];
+    }
+
+    /**
+     * The positive weights this sampler was built from
+     */
+    public Map<String, Double> getWeights() {
+        return weights;
+    }
+
+    public int size() {
+        return outcomes.length;
+    }
+}
@@ -1,23 +1,75 @@
 package me.hash.mediaroulette.utils.user;
 
-import me.hash.mediaroulette.content.factory.MediaServiceFactory;
-import me.hash.mediaroulette.content.http.HttpClientWrapper;
+import me.hash.mediaroulette.content.provider.ProviderExecutors;
+import me.hash.mediaroulette.content.provider.ProviderRegistry;
+import me.hash.mediaroulette.content.provider.RequestContext;
+import me.hash.mediaroulette.model.content.MediaResult;
 import me.hash.mediaroulette.model.ImageOptions;
 import me.hash.mediaroulette.exceptions.InvalidChancesException;
 import me.hash.mediaroulette.exceptions.NoEnabledOptionsException;
 import me.hash.mediaroulette.content.RandomText;
+import me.hash.mediaroulette.utils.GlobalLogger;
 import me.hash.mediaroulette.utils.LocalConfig;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 
 public class ImageSelector {
+    private static final int MAX_CACHED_SAMPLERS = 10000;
+    // Draws to try before giving up on rejection and rebuilding without the unavailable sources
+    private static final int MAX_REDRAWS = 8;
+
+    // Alias tables per user, valid while both the user's chances and the admin toggles are unchanged
+    private static final Map<String, CachedSampler> samplers = new ConcurrentHashMap<>();
+    private static volatile List<ImageOptions> defaultOptions;
+
+    // Rolls between summary log lines
+    private static final int SUMMARY_EVERY = 500;
+
+    private static final AtomicLong rolls = new AtomicLong(0);
+    private static final AtomicLong finishedRolls = new AtomicLong(0);
+    private static final AtomicLong hedgedRolls = new AtomicLong(0);
+    private static final AtomicLong hedgeWins = new AtomicLong(0);
+    private static final AtomicLong failovers = new AtomicLong(0);
+    private static final AtomicLong failedRolls = new AtomicLong(0);
+    private static final AtomicLong timedOutRolls = new AtomicLong(0);
+    private static final Map<String, SourceOutcomes> outcomes = new ConcurrentHashMap<>();
+
+    private record CachedSampler(long optionsVersion, long togglesVersion, AliasSampler sampler) {}
+
+    private record SourceOutcomes(AtomicLong wins, AtomicLong failures, AtomicLong abandoned) {
+        SourceOutcomes() {
+            this(new AtomicLong(0), new AtomicLong(0), new AtomicLong(0));
+        }
+    }
+
     private final Map<String, ImageOptions> userImageOptions;
-    private final Random random = new Random();
+    private final String cacheKey;
+    private final long optionsVersion;
 
+    /**
+     * Selector whose sampler is built for this call only
+     */
     public ImageSelector(Map<String, ImageOptions> userImageOptions) {
+        this(userImageOptions, null, 0);
+    }
+
+    /**
+     * Selector whose sampler is cached under {@code cacheKey} until {@code optionsVersion}
+     * or the admin source toggles change.
+     */
+    public ImageSelector(Map<String, ImageOptions> userImageOptions, String cacheKey, long optionsVersion) {
         this.userImageOptions = userImageOptions;
+        this.cacheKey = cacheKey;
+        this.optionsVersion = optionsVersion;
     }
 
     public Map<String, String> selectImage() throws NoEnabledOptionsException, InvalidChancesException {
@@ -25,114 +77,360 @@ public class ImageSelector {
     }
     
     public Map<String, String> selectImage(String userId) throws NoEnabledOptionsException, InvalidChancesException {
-        List<ImageOptions> defaultImageOptions = ImageOptions.getDefaultOptions();
-        PriorityQueue<ImageOptions> queue = new PriorityQueue<>(Comparator.comparingDouble(ImageOptions::getChance));
-        LocalConfig config = LocalConfig.getInstance();
+        try {
+            return selectImageAsync(userId).join();
+        } catch (CompletionException e) {
+            Throwable cause = ProviderExecutors.unwrap(e);
+            if (cause instanceof InvalidChancesException ice) throw ice;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Pick a source by the user's chances and fetch from it asynchronously. Choosing the first
+     * source happens on the calling thread, so configuration errors are thrown directly. If the
+     * source fails, another is drawn from the remaining ones by the same weights; if it is slow,
+     * a second one is started alongside it and the first answer wins. When every attempt fails
+     * or the roll runs out of time, the future fails with an InvalidChancesException.
+     */
+    public CompletableFuture<Map<String, String>> selectImageAsync(String userId) throws NoEnabledOptionsException, InvalidChancesException {
+        AliasSampler sampler = getSampler();
+        if (sampler == null) {
+            throw new NoEnabledOptionsException("All image options are disabled");
+        }
+
+        String imageType = pickAvailable(sampler);
+        return new Roll(sampler, RequestContext.of(userId)).start(imageType);
+    }
+
+    AliasSampler getSampler() {
+        if (cacheKey == null) {
+            return AliasSampler.of(buildWeights());
+        }
+        long togglesVersion = LocalConfig.getInstance().getSourceTogglesVersion();
+        CachedSampler cached = samplers.get(cacheKey);
+        if (cached != null && cached.optionsVersion() == optionsVersion && cached.togglesVersion() == togglesVersion) {
+            return cached.sampler();
+        }
 
+        AliasSampler sampler = AliasSampler.of(buildWeights());
+        if (samplers.size() >= MAX_CACHED_SAMPLERS) {
+            samplers.clear();
+        }
+        samplers.put(cacheKey, new CachedSampler(optionsVersion, togglesVersion, sampler));
+        return sampler;
+    }
+
+    /**
+     * Draw until the pick is a source whose breaker lets calls through. Sources that are failing
+     * right now are rare, so this is almost always one draw; if the redraws run out, the
+     * remaining sources get a one-off table with the same relative weights.
+     */
+    private String pickAvailable(AliasSampler sampler) throws NoEnabledOptionsException {
+        ProviderRegistry providers = ProviderRegistry.getInstance();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < MAX_REDRAWS; i++) {
+            String imageType = sampler.sample(random);
+            if (providers.isAvailable(imageType)) {
+                return imageType;
+            }
+        }
+
+        Map<String, Double> available = new LinkedHashMap<>(sampler.getWeights());
+        available.keySet().removeIf(imageType -> !providers.isAvailable(imageType));
+        AliasSampler fallback = AliasSampler.of(available);
+        if (fallback == null) {
+            throw new NoEnabledOptionsException("All enabled image sources are temporarily unavailable");
+        }
+        return fallback.sample(random);
+    }
+
+    /**
+     * Weights of the sources the user and the admin config both allow. The user's chances are
+     * shifted by an equal share so they add up to 100, as before; shares that would go negative
+     * count as zero. Works on copies, never on the user's options.
+     */
+    private Map<String, Double> buildWeights() {
+        LocalConfig config = LocalConfig.getInstance();
+        Map<String, Double> weights = new LinkedHashMap<>();
         double totalChance = 0;
-        for (ImageOptions defaultOption : defaultImageOptions) {
+        for (ImageOptions defaultOption : getDefaultOptions()) {
             String imageType = defaultOption.getImageType();
-            
-            // Check if source is enabled in admin config first
             if (!isSourceEnabledInConfig(config, imageType)) {
-                continue; // Skip disabled sources
+                continue;
             }
-            
+            // An explicit user choice wins, including disabling the source
             ImageOptions userOption = userImageOptions.get(imageType);
-            
-            if (userOption != null) {
-                // User has explicitly set this option, respect their choice
-                if (userOption.isEnabled()) {
-                    totalChance += userOption.getChance();
-                    queue.add(userOption);
-                }
-                // If user disabled it, don't add it at all (no fallback to default)
-            } else if (defaultOption.isEnabled()) {
-                // User hasn't set this option, use default if enabled
-                totalChance += defaultOption.getChance();
-                queue.add(defaultOption);
+            ImageOptions option = userOption != null ? userOption : defaultOption;
+            if (option.isEnabled()) {
+                weights.put(imageType, option.getChance());
+                totalChance += option.getChance();
             }
         }
-
-        if (queue.isEmpty()) {
-            throw new NoEnabledOptionsException("All image options are disabled");
+        if (weights.isEmpty()) {
+            return weights;
         }
 
-        normalizeProbabilities(queue, totalChance);
+        double additionalChance = (100 - totalChance) / weights.size();
+        weights.replaceAll((imageType, chance) -> Math.max(0, chance + additionalChance));
+        if (weights.values().stream().allMatch(chance -> chance <= 0)) {
+            weights.replaceAll((imageType, chance) -> 1.0);
+        }
+        return weights;
+    }
 
-        return getRandomImageFromQueue(queue, userId);
+    /**
+     * The bundled default options, parsed once
+     */
+    private static List<ImageOptions> getDefaultOptions() {
+        List<ImageOptions> options = defaultOptions;
+        if (options == null) {
+            options = List.copyOf(ImageOptions.getDefaultOptions());
+            defaultOptions = options;
+        }
+        return options;
     }
 
-    private void normalizeProbabilities(PriorityQueue<ImageOptions> queue, double totalChance) {
-        if (totalChance != 100) {
-            double difference = 100 - totalChance;
-            double additionalChance = difference / queue.size();
-            for (ImageOptions option : queue) {
-                option.setChance(option.getChance() + additionalChance);
+    /**
+     * One /random all roll: the attempts it has started and how it ended. The first attempt
+     * to succeed completes the roll and the rest are abandoned; their requests finish in the
+     * background, but their results are dropped.
+     */
+    private final class Roll {
+        private final CompletableFuture<Map<String, String>> result = new CompletableFuture<>();
+        private final Map<String, CompletableFuture<Map<String, String>>> attempts = new LinkedHashMap<>();
+        private final AliasSampler sampler;
+        private final RequestContext ctx;
+        private final LocalConfig config = LocalConfig.getInstance();
+        private final long startedAt = System.currentTimeMillis();
+        private final long deadline = startedAt + config.getRollDeadlineMs();
+        private int running = 0;
+        private String hedgeType;
+        private String lastFailedType;
+        private Throwable lastError;
+
+        Roll(AliasSampler sampler, RequestContext ctx) {
+            this.sampler = sampler;
+            this.ctx = ctx;
+        }
+
+        CompletableFuture<Map<String, String>> start(String imageType) {
+            rolls.incrementAndGet();
+            CompletableFuture.delayedExecutor(config.getRollDeadlineMs(), TimeUnit.MILLISECONDS).execute(this::timeOut);
+            if (config.getRollHedgeEnabled()) {
+                CompletableFuture.delayedExecutor(config.getRollHedgeDelayMs(), TimeUnit.MILLISECONDS).execute(this::hedge);
             }
+            launch(imageType);
+            return result;
         }
-    }
 
-    private Map<String, String> getRandomImageFromQueue(PriorityQueue<ImageOptions> queue) throws InvalidChancesException {
-        return getRandomImageFromQueue(queue, null);
-    }
-    
-    private Map<String, String> getRandomImageFromQueue(PriorityQueue<ImageOptions> queue, String userId) throws InvalidChancesException {
-        double rand = random.nextDouble() * 100;
-        double cumulativeProbability = 0;
-        while (!queue.isEmpty()) {
-            ImageOptions selectedOption = queue.poll();
-            cumulativeProbability += selectedOption.getChance();
-            if (rand <= cumulativeProbability) {
-                try {
-                    return getImageByType(selectedOption.getImageType(), userId);
-                } catch (IOException e) {
-                    throw new InvalidChancesException("Failed to fetch image from source: " + selectedOption.getImageType());
-                } catch (ExecutionException | InterruptedException | HttpClientWrapper.RateLimitException e) {
-                    throw new RuntimeException(e);
-                }
+        private void launch(String imageType) {
+            synchronized (this) {
+                if (result.isDone()) return;
+                attempts.put(imageType, null);
+                running++;
+            }
+            CompletableFuture<Map<String, String>> attempt;
+            try {
+                attempt = getImageByTypeAsync(imageType, ctx);
+            } catch (RuntimeException e) {
+                attempt = CompletableFuture.failedFuture(e);
+            }
+            synchronized (this) {
+                attempts.put(imageType, attempt);
+            }
+            attempt.whenComplete((value, error) -> onAttemptDone(imageType, value, error));
+            if (result.isDone() && !attempt.isDone()) {
+                attempt.cancel(true);
             }
         }
-        throw new InvalidChancesException("Failed to select an image.");
-    }
 
-    private Map<String, String> getImageByType(String imageType, String userId) throws IOException, ExecutionException, InterruptedException, HttpClientWrapper.RateLimitException {
-        return switch (imageType) {
-            case "4chan" -> new MediaServiceFactory().createFourChanProvider().getRandomMedia(null).toMap();
-            case "picsum" -> new MediaServiceFactory().createPicsumProvider().getRandomMedia(null).toMap();
-            case "imgur" -> new MediaServiceFactory().createImgurProvider().getRandomMedia(null).toMap();
-            case "reddit" -> {
-                var provider = new MediaServiceFactory().createRedditProvider();
-                if (provider instanceof me.hash.mediaroulette.content.provider.impl.images.RedditProvider redditProvider && userId != null) {
-                    yield redditProvider.getRandomMedia(null, userId).toMap();
-                } else {
-                    yield provider.getRandomMedia(null).toMap();
+        /**
+         * The primary is still running after the hedge delay: start a second source next to it
+         */
+        private void hedge() {
+            String imageType;
+            String slowType;
+            synchronized (this) {
+                if (result.isDone() || running != 1 || hedgeType != null || !canAttemptMore()) return;
+                imageType = pickRemaining();
+                if (imageType == null) return;
+                hedgeType = imageType;
+                slowType = lastStarted();
+            }
+            hedgedRolls.incrementAndGet();
+            GlobalLogger.getLogger().log(Level.FINE, "Hedging roll for {0}: {1} slower than {2}ms, also trying {3}",
+                    new Object[]{ctx.getUserId(), slowType, config.getRollHedgeDelayMs(), imageType});
+            launch(imageType);
+        }
+
+        private void onAttemptDone(String imageType, Map<String, String> value, Throwable error) {
+            if (error == null) {
+                if (result.complete(value)) {
+                    won(imageType);
                 }
+                return;
             }
-            case "rule34xxx" -> new MediaServiceFactory().createRule34Provider().getRandomMedia(null).toMap();
-            case "tenor" -> {
-                var provider = new MediaServiceFactory().createTenorProvider();
-                if (provider instanceof me.hash.mediaroulette.content.provider.impl.gifs.TenorProvider tenorProvider && userId != null) {
-                    yield tenorProvider.getRandomMedia(null, userId).toMap();
-                } else {
-                    yield provider.getRandomMedia(null).toMap();
+            Throwable cause = ProviderExecutors.unwrap(error);
+            if (cause instanceof CancellationException) return;
+
+            String next = null;
+            boolean exhausted = false;
+            synchronized (this) {
+                running--;
+                lastFailedType = imageType;
+                lastError = cause;
+                if (result.isDone()) return;
+                if (canAttemptMore()) {
+                    next = pickRemaining();
                 }
+                exhausted = next == null && running == 0;
+            }
+            outcomes(imageType).failures().incrementAndGet();
+
+            if (next != null) {
+                failovers.incrementAndGet();
+                GlobalLogger.getLogger().log(Level.FINE, "Roll for {0}: {1} failed ({2}), failing over to {3}",
+                        new Object[]{ctx.getUserId(), imageType, cause.getMessage(), next});
+                launch(next);
+            } else if (exhausted) {
+                fail(failure());
+            }
+        }
+
+        private void timeOut() {
+            String tried;
+            synchronized (this) {
+                tried = String.join(", ", attempts.keySet());
+            }
+            if (result.completeExceptionally(new InvalidChancesException("Timed out fetching image from sources: " + tried))) {
+                timedOutRolls.incrementAndGet();
+                abandonOthers(null);
+                onRollFinished();
+            }
+        }
+
+        private void won(String imageType) {
+            outcomes(imageType).wins().incrementAndGet();
+            boolean hedgeWon;
+            int tried;
+            synchronized (this) {
+                hedgeWon = imageType.equals(hedgeType);
+                tried = attempts.size();
+            }
+            if (hedgeWon) hedgeWins.incrementAndGet();
+            abandonOthers(imageType);
+            GlobalLogger.getLogger().log(Level.FINE, "Roll for {0}: {1} won after {2}ms ({3} sources tried)",
+                    new Object[]{ctx.getUserId(), imageType, System.currentTimeMillis() - startedAt, tried});
+            onRollFinished();
+        }
+
+        private void fail(Throwable failure) {
+            if (result.completeExceptionally(failure)) {
+                failedRolls.incrementAndGet();
+                onRollFinished();
             }
-            case "google" -> {
-                var provider = new MediaServiceFactory().createGoogleProvider();
-                if (provider instanceof me.hash.mediaroulette.content.provider.impl.images.GoogleProvider googleProvider && userId != null) {
-                    yield googleProvider.getRandomMedia(null, userId).toMap();
-                } else {
-                    yield provider.getRandomMedia(null).toMap();
+        }
+
+        /**
+         * Same mapping as a single-source roll: I/O trouble becomes an InvalidChancesException
+         */
+        private synchronized Throwable failure() {
+            if (!(lastError instanceof IOException)) {
+                return lastError;
+            }
+            return attempts.size() == 1
+                    ? new InvalidChancesException("Failed to fetch image from source: " + lastFailedType)
+                    : new InvalidChancesException("Failed to fetch image from sources: " + String.join(", ", attempts.keySet()));
+        }
+
+        private void abandonOthers(String winner) {
+            List<Map.Entry<String, CompletableFuture<Map<String, String>>>> others;
+            synchronized (this) {
+                others = new ArrayList<>(attempts.entrySet());
+            }
+            for (Map.Entry<String, CompletableFuture<Map<String, String>>> entry : others) {
+                CompletableFuture<Map<String, String>> attempt = entry.getValue();
+                if (!entry.getKey().equals(winner) && attempt != null && attempt.cancel(true)) {
+                    outcomes(entry.getKey()).abandoned().incrementAndGet();
                 }
             }
-            case "movies" -> new MediaServiceFactory().createTMDBMovieProvider().getRandomMedia(null).toMap();
-            case "tvshow" -> new MediaServiceFactory().createTMDBTvProvider().getRandomMedia(null).toMap();
-            case "youtube" -> new MediaServiceFactory().createYouTubeProvider().getRandomMedia(null).toMap();
-            case "short" -> new MediaServiceFactory().createYouTubeShortsProvider().getRandomMedia(null).toMap();
-            case "urban" -> RandomText.getRandomUrbanWord(null);
-            default -> throw new IllegalArgumentException("Unknown image type: " + imageType);
-        };
+        }
+
+        private String lastStarted() {
+            String last = null;
+            for (String imageType : attempts.keySet()) {
+                last = imageType;
+            }
+            return last;
+        }
+
+        private boolean canAttemptMore() {
+            return attempts.size() < config.getRollMaxAttempts() && System.currentTimeMillis() < deadline;
+        }
+
+        /**
+         * Draw from the sources this roll hasn't tried, keeping the user's relative weights
+         */
+        private String pickRemaining() {
+            ProviderRegistry providers = ProviderRegistry.getInstance();
+            Map<String, Double> remaining = new LinkedHashMap<>(sampler.getWeights());
+            remaining.keySet().removeIf(imageType -> attempts.containsKey(imageType) || !providers.isAvailable(imageType));
+            AliasSampler rest = AliasSampler.of(remaining);
+            return rest != null ? rest.sample(ThreadLocalRandom.current()) : null;
+        }
+    }
+
+    private static SourceOutcomes outcomes(String imageType) {
+        return outcomes.computeIfAbsent(imageType, key -> new SourceOutcomes());
+    }
+
+    private static void onRollFinished() {
+        if (finishedRolls.incrementAndGet() % SUMMARY_EVERY != 0) return;
+        Map<String, Object> stats = getRollStats();
+        GlobalLogger.getLogger().log(Level.INFO,
+                "Rolls: {0}, hedged {1}% (hedge won {2}%), failovers {3}, failed {4}, timed out {5}",
+                new Object[]{stats.get("rolls"), String.format("%.1f", (Double) stats.get("hedgeRate")),
+                        String.format("%.1f", (Double) stats.get("hedgeWinRate")), stats.get("failovers"),
+                        stats.get("failed"), stats.get("timedOut")});
+    }
+
+    /**
+     * Hedge and failover counters for /random all, plus wins, failures and abandoned attempts per source
+     */
+    public static Map<String, Object> getRollStats() {
+        long total = rolls.get();
+        long hedged = hedgedRolls.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("rolls", total);
+        stats.put("hedged", hedged);
+        stats.put("hedgeRate", total > 0 ? 100.0 * hedged / total : 0.0);
+        stats.put("hedgeWins", hedgeWins.get());
+        stats.put("hedgeWinRate", hedged > 0 ? 100.0 * hedgeWins.get() / hedged : 0.0);
+        stats.put("failovers", failovers.get());
+        stats.put("failed", failedRolls.get());
+        stats.put("timedOut", timedOutRolls.get());
+        Map<String, Map<String, Long>> sources = new TreeMap<>();
+        outcomes.forEach((imageType, counts) -> {
+            Map<String, Long> sourceStats = new LinkedHashMap<>();
+            sourceStats.put("wins", counts.wins().get());
+            sourceStats.put("failures", counts.failures().get());
+            sourceStats.put("abandoned", counts.abandoned().get());
+            sources.put(imageType, sourceStats);
+        });
+        stats.put("sources", sources);
+        return stats;
+    }
+
+    private CompletableFuture<Map<String, String>> getImageByTypeAsync(String imageType, RequestContext ctx) {
+        ProviderRegistry providers = ProviderRegistry.getInstance();
+        if ("urban".equals(imageType)) {
+            return providers.call(imageType, ctx,
+                    () -> ProviderExecutors.supplyBlocking(() -> RandomText.getRandomUrbanWord(null)));
+        }
+        // Image types double as provider registry keys
+        return providers.fetchAsync(imageType, null, ctx).thenApply(MediaResult::toMap);
     }
     
     /**
@@ -0,0 +1,250 @@
+package me.hash.mediaroulette.utils.user;
+
+import me.hash.mediaroulette.model.User;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Weight-bounded LRU cache for loaded users with expire-after-access.
+ * Loads run outside the cache lock and concurrent loads of the same user are collapsed into one.
+ */
+public class UserCache {
+    private final long maxWeight;
+    private final long expireAfterAccessNanos;
+    private final BiConsumer<String, User> evictionListener;
+
+    // Kept in recency order (entries move to the tail on access), so iteration starts at the least recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256);
+    private final ConcurrentHashMap<String, CompletableFuture<User>> loading = new ConcurrentHashMap<>();
+    private long weightedSize = 0;
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+    private final AtomicLong expirations = new AtomicLong(0);
+
+    private static final class Entry {
+        final User user;
+        final int weight;
+        long lastAccessNanos;
+
+        Entry(User user, int weight, long now) {
+            this.user = user;
+            this.weight = weight;
+            this.lastAccessNanos = now;
+        }
+    }
+
+    /**
+     * @param evictionListener called outside the lock for every entry removed by size or expiry, and
+     *                         for a cached user replaced by a different instance of the same user
+     */
+    public UserCache(long maxWeight, long expireAfterAccessMs, BiConsumer<String, User> evictionListener) {
+        this.maxWeight = maxWeight;
+        this.expireAfterAccessNanos = expireAfterAccessMs * 1_000_000L;
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * Rough heap cost of a user: one unit for the user itself plus one per stored list element.
+     */
+    static int weigh(User user) {
+        return 1 + user.getFavorites().size()
+                + user.getTransactionHistory().size()
+                + user.getInventory().size()
+                + user.getDailyQuests().size()
+                + user.getCustomSubreddits().size()
+                + user.getSourceUsageCount().size()
+                + user.getCommandUsageCount().size()
+                + user.getSubredditUsageCount().size();
+    }
+
+    public User getIfPresent(String userId) {
+        List<Map.Entry<String, User>> removed = new ArrayList<>(1);
+        User user;
+        synchronized (this) {
+            user = lookup(userId, System.nanoTime(), removed);
+        }
+        notifyRemoved(removed);
+        if (user != null) {
+            hits.incrementAndGet();
+        }
+        return user;
+    }
+
+    /**
+     * Look up a user without counting a hit or refreshing its recency.
+     */
+    public synchronized User peek(String userId) {
+        Entry entry = entries.get(userId);
+        return entry != null ? entry.user : null;
+    }
+
+    /**
+     * Return the cached user or load it with the given function. Only one thread loads a given
+     * user at a time; others wait for its result.
+     */
+    public User get(String userId, Function<String, User> loader) {
+        User cached = getIfPresent(userId);
+        if (cached != null) return cached;
+        misses.incrementAndGet();
+
+        CompletableFuture<User> future = new CompletableFuture<>();
+        CompletableFuture<User> existing = loading.putIfAbsent(userId, future);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+
+        try {
+            User loaded = loader.apply(userId);
+            User result = putIfAbsent(userId, loaded);
+            future.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(userId, future);
+        }
+    }
+
+    /**
+     * Insert or replace a user, re-weighing it since its lists may have grown.
+     */
+    public void put(String userId, User user) {
+        List<Map.Entry<String, User>> removed = new ArrayList<>();
+        synchronized (this) {
+            insert(userId, user, removed);
+        }
+        notifyRemoved(removed);
+    }
+
+    private User putIfAbsent(String userId, User user) {
+        List<Map.Entry<String, User>> removed = new ArrayList<>();
+        User result;
+        synchronized (this) {
+            User current = lookup(userId, System.nanoTime(), removed);
+            if (current != null) {
+                result = current;
+            } else {
+                insert(userId, user, removed);
+                result = user;
+            }
+        }
+        notifyRemoved(removed);
+        return result;
+    }
+
+    /**
+     * Drop expired entries. Called periodically so idle users do not wait for the next insert.
+     */
+    public void cleanUp() {
+        List<Map.Entry<String, User>> removed = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Entry> mapEntry = iterator.next();
+                if (!isExpired(mapEntry.getValue(), now)) break;
+                iterator.remove();
+                weightedSize -= mapEntry.getValue().weight;
+                expirations.incrementAndGet();
+                removed.add(Map.entry(mapEntry.getKey(), mapEntry.getValue().user));
+            }
+        }
+        notifyRemoved(removed);
+    }
+
+    private User lookup(String userId, long now, List<Map.Entry<String, User>> removed) {
+        Entry entry = entries.get(userId);
+        if (entry == null) return null;
+        if (isExpired(entry, now)) {
+            entries.remove(userId);
+            weightedSize -= entry.weight;
+            expirations.incrementAndGet();
+            removed.add(Map.entry(userId, entry.user));
+            return null;
+        }
+        entry.lastAccessNanos = now;
+        entries.remove(userId);
+        entries.put(userId, entry);
+        return entry.user;
+    }
+
+    private void insert(String userId, User user, List<Map.Entry<String, User>> removed) {
+        Entry entry = new Entry(user, weigh(user), System.nanoTime());
+        Entry previous = entries.remove(userId);
+        entries.put(userId, entry);
+        if (previous != null) {
+            weightedSize -= previous.weight;
+            // Another copy of the user (e.g. loaded after this one was evicted) may hold changes of its own
+            if (previous.user != user) {
+                removed.add(Map.entry(userId, previous.user));
+            }
+        }
+        weightedSize += entry.weight;
+
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (weightedSize > maxWeight && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            // Never evict the entry that was just written
+            if (eldest.getKey().equals(userId)) continue;
+            iterator.remove();
+            weightedSize -= eldest.getValue().weight;
+            evictions.incrementAndGet();
+            removed.add(Map.entry(eldest.getKey(), eldest.getValue().user));
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.lastAccessNanos > expireAfterAccessNanos;
+    }
+
+    private void notifyRemoved(List<Map.Entry<String, User>> removed) {
+        for (Map.Entry<String, User> entry : removed) {
+            evictionListener.accept(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weightedSize() {
+        return weightedSize;
+    }
+
+    /**
+     * Cache counters for the terminal stats command
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long requests = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size());
+        stats.put("weightedSize", weightedSize());
+        stats.put("maxWeight", maxWeight);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", requests > 0 ? (double) hitCount / requests * 100 : 0.0);
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        return stats;
+    }
+}
@@ -3,25 +3,114 @@ package me.hash.mediaroulette.utils.user;
 import me.hash.mediaroulette.model.ImageOptions;
 import me.hash.mediaroulette.model.User;
 import me.hash.mediaroulette.repository.UserRepository;
+import me.hash.mediaroulette.utils.GlobalLogger;
+import me.hash.mediaroulette.utils.LocalConfig;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class UserService {
+    private static final Logger logger = GlobalLogger.getLogger();
+    private static final int FLUSH_BATCH_SIZE = 500;
 
-public class UserService {
     private final UserRepository userRepository;
-    // Simple in-memory cache; replace with a more robust solution if needed.
-    private final ConcurrentHashMap<String, User> cache = new ConcurrentHashMap<>();
+    private final UserCache cache;
+    // Dirty users dropped or replaced in the cache, kept until the next flush writes them back.
+    // A user can have more than one: a copy evicted while a command still held it may come back
+    // after a fresh copy was loaded, and each carries its own unsaved changes.
+    private final ConcurrentHashMap<String, List<User>> pendingWriteBack = new ConcurrentHashMap<>();
+
+    // Write-behind: users with unsaved changes, written back in batches by the flush scheduler
+    private final Set<String> dirtyUsers = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flushScheduler;
+    private final Object flushLock = new Object();
+
+    // Write-behind metrics
+    private final AtomicLong writesRequested = new AtomicLong(0);
+    private final AtomicLong writesCoalesced = new AtomicLong(0);
+    private final AtomicLong usersFlushed = new AtomicLong(0);
+    private final AtomicLong flushCount = new AtomicLong(0);
+    private final AtomicLong flushFailures = new AtomicLong(0);
+    private final AtomicLong totalFlushNanos = new AtomicLong(0);
+    private final AtomicLong maxFlushNanos = new AtomicLong(0);
+    private volatile long lastFlushNanos = 0;
 
     public UserService(UserRepository userRepository) {
+        this(userRepository, LocalConfig.getInstance().getUserCacheMaxWeight(),
+                LocalConfig.getInstance().getUserCacheExpireAfterAccessMs(),
+                LocalConfig.getInstance().getUserFlushIntervalMs());
+    }
+
+    UserService(UserRepository userRepository, long cacheMaxWeight, long expireAfterAccessMs, long flushInterval) {
         this.userRepository = userRepository;
+        this.cache = new UserCache(cacheMaxWeight, expireAfterAccessMs, this::onEvicted);
+
+        this.flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "User-Flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushScheduler.scheduleWithFixedDelay(this::flushSafely, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private void onEvicted(String userId, User user) {
+        if (dirtyUsers.contains(userId) || user.hasChanges()) {
+            addPending(userId, user);
+            dirtyUsers.add(userId);
+        }
+    }
+
+    private void addPending(String userId, User user) {
+        pendingWriteBack.compute(userId, (id, users) -> {
+            if (users == null) return List.of(user);
+            if (containsInstance(users, user)) return users;
+            List<User> updated = new ArrayList<>(users);
+            updated.add(user);
+            return List.copyOf(updated);
+        });
+    }
+
+    private void removePending(String userId, User user) {
+        pendingWriteBack.computeIfPresent(userId, (id, users) -> {
+            List<User> remaining = users.stream().filter(pending -> pending != user).toList();
+            return remaining.isEmpty() ? null : remaining;
+        });
+    }
+
+    private static boolean containsInstance(List<User> users, User user) {
+        for (User candidate : users) {
+            if (candidate == user) return true;
+        }
+        return false;
     }
 
     /**
      * Fetches an existing user or creates a new one if not found.
      */
     public User getOrCreateUser(String userId) {
-        return cache.computeIfAbsent(userId, id -> userRepository.findById(id)
+        return cache.get(userId, this::loadUser);
+    }
+
+    private User loadUser(String userId) {
+        // An evicted user with unsaved changes is newer than the stored copy
+        List<User> pending = pendingWriteBack.get(userId);
+        if (pending != null) {
+            return pending.get(pending.size() - 1);
+        }
+        return userRepository.findById(userId)
                 .orElseGet(() -> {
-                    User newUser = new User(id);
+                    User newUser = new User(userId);
                     User savedUser = userRepository.save(newUser);
                     
                     // Track new user registration in stats service
@@ -30,14 +119,16 @@ public class UserService {
                     }
                     
                     return savedUser;
-                }));
+                });
     }
 
     /**
      * Checks if a user exists.
      */
     public boolean userExists(String userId) {
-        return cache.containsKey(userId) || userRepository.exists(userId);
+        // peek, so existence checks don't count as cache hits
+        return cache.peek(userId) != null || pendingWriteBack.containsKey(userId)
+                || userRepository.exists(userId);
     }
 
     /**
@@ -46,15 +137,148 @@ public class UserService {
     public void updateLocale(String userId, String locale) {
         User user = getOrCreateUser(userId);
         user.setLocale(locale);
-        updateUser(user);
+        persistChanges(user);
     }
 
     /**
      * Generic update method for a user.
+     * The write is buffered and persisted by the next flush, so repeated updates collapse into one.
+     * Only the fields changed through User's methods are written; those methods mark what they edit.
      */
     public void updateUser(User user) {
-        userRepository.save(user);
+        persistChanges(user);
+    }
+
+    /**
+     * Queue the user's tracked changes for the next flush.
+     */
+    private void persistChanges(User user) {
         cache.put(user.getUserId(), user);
+        markDirty(user.getUserId());
+    }
+
+    private void markDirty(String userId) {
+        writesRequested.incrementAndGet();
+        if (!dirtyUsers.add(userId)) {
+            writesCoalesced.incrementAndGet();
+        }
+    }
+
+    /**
+     * Write every buffered user change to the repository.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            if (dirtyUsers.isEmpty()) return;
+
+            long start = System.nanoTime();
+            List<User> pending = new ArrayList<>();
+            List<User> cached = new ArrayList<>();
+            Iterator<String> iterator = dirtyUsers.iterator();
+            while (iterator.hasNext()) {
+                String userId = iterator.next();
+                // Remove before writing so changes made during the write mark the user dirty again
+                iterator.remove();
+                List<User> evicted = pendingWriteBack.getOrDefault(userId, List.of());
+                pending.addAll(evicted);
+                User current = cache.peek(userId);
+                if (current != null && !containsInstance(evicted, current)) {
+                    cached.add(current);
+                }
+            }
+            // Copies that left the cache hold the older changes, so they go first
+            writeAll(pending);
+            writeAll(cached);
+
+            long elapsed = System.nanoTime() - start;
+            flushCount.incrementAndGet();
+            totalFlushNanos.addAndGet(elapsed);
+            maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+            lastFlushNanos = elapsed;
+        }
+    }
+
+    private void writeAll(List<User> users) {
+        for (int from = 0; from < users.size(); from += FLUSH_BATCH_SIZE) {
+            writeBatch(users.subList(from, Math.min(users.size(), from + FLUSH_BATCH_SIZE)));
+        }
+    }
+
+    private void writeBatch(List<User> batch) {
+        if (batch.isEmpty()) return;
+        try {
+            userRepository.applyDeltas(batch);
+            usersFlushed.addAndGet(batch.size());
+            for (User user : batch) {
+                removePending(user.getUserId(), user);
+            }
+        } catch (Exception e) {
+            flushFailures.incrementAndGet();
+            logger.log(Level.SEVERE, "Failed to flush {0} users, retrying next cycle: {1}",
+                    new Object[]{batch.size(), e.getMessage()});
+            for (User user : batch) {
+                // The drained deltas are gone and some may have been applied, so rewrite the whole document
+                user.markAllDirty();
+                if (cache.peek(user.getUserId()) != user) {
+                    // Evicted or replaced while the write was in flight
+                    addPending(user.getUserId(), user);
+                }
+                dirtyUsers.add(user.getUserId());
+            }
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            cache.cleanUp();
+            flush();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Unexpected error during user flush", e);
+        }
+    }
+
+    /**
+     * Stop the flush scheduler and persist any remaining buffered changes.
+     */
+    public void shutdown() {
+        flushScheduler.shutdown();
+        try {
+            flushScheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Write-behind counters for the terminal stats command
+     */
+    public Map<String, Object> getWriteBehindStats() {
+        long flushes = flushCount.get();
+        long requested = writesRequested.get();
+        long flushed = usersFlushed.get();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("writesRequested", requested);
+        stats.put("writesCoalesced", writesCoalesced.get());
+        stats.put("writesAvoided", Math.max(0, requested - flushed - dirtyUsers.size()));
+        stats.put("usersFlushed", flushed);
+        stats.put("pendingUsers", dirtyUsers.size());
+        stats.put("flushCount", flushes);
+        stats.put("flushFailures", flushFailures.get());
+        stats.put("lastFlushMs", lastFlushNanos / 1_000_000.0);
+        stats.put("avgFlushMs", flushes > 0 ? totalFlushNanos.get() / 1_000_000.0 / flushes : 0.0);
+        stats.put("maxFlushMs", maxFlushNanos.get() / 1_000_000.0);
+        return stats;
+    }
+
+    /**
+     * User cache counters for the terminal stats command
+     */
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = cache.getStats();
+        stats.put("pendingWriteBack", pendingWriteBack.values().stream().mapToInt(List::size).sum());
+        return stats;
     }
 
     // --- Convenience Methods for Updating User Properties ---
@@ -62,43 +286,43 @@ public class UserService {
     public void incrementImagesGenerated(String userId) {
         User user = getOrCreateUser(userId);
         user.incrementImagesGenerated();
-        updateUser(user);
+        persistChanges(user);
     }
 
     public void setNsfwEnabled(String userId, boolean enabled) {
         User user = getOrCreateUser(userId);
         user.setNsfw(enabled);
-        updateUser(user);
+        persistChanges(user);
     }
 
     public void setPremium(String userId, boolean premium) {
         User user = getOrCreateUser(userId);
         user.setPremium(premium);
-        updateUser(user);
+        persistChanges(user);
     }
 
     public void setAdmin(String userId, boolean admin) {
         User user = getOrCreateUser(userId);
         user.setAdmin(admin);
-        updateUser(user);
+        persistChanges(user);
     }
 
     public void addFavorite(String userId, String description, String image, String type) {
         User user = getOrCreateUser(userId);
         user.addFavorite(description, image, type);
-        updateUser(user);
+        persistChanges(user);
     }
 
     public void removeFavorite(String userId, int favoriteId) {
         User user = getOrCreateUser(userId);
         user.removeFavorite(favoriteId);
-        updateUser(user);
+        persistChanges(user);
     }
 
     public void setChances(String userId, ImageOptions... options) {
         User user = getOrCreateUser(userId);
         user.setChances(options);
-        updateUser(user);
+        persistChanges(user);
     }
 
     /**
@@ -123,7 +347,7 @@ public class UserService {
     public void trackSourceUsage(String userId, String source) {
         User user = getOrCreateUser(userId);
         user.incrementSourceUsage(source);
-        updateUser(user);
+        persistChanges(user);
     }
 
     /**
@@ -132,7 +356,7 @@ public class UserService {
     public void trackCommandUsage(String userId, String command) {
         User user = getOrCreateUser(userId);
         user.incrementCommandUsage(command);
-        updateUser(user);
+        persistChanges(user);
     }
 
     /**
@@ -141,7 +365,7 @@ public class UserService {
     public void addCustomSubreddit(String userId, String subreddit) {
         User user = getOrCreateUser(userId);
         user.addCustomSubreddit(subreddit);
-        updateUser(user);
+        persistChanges(user);
     }
 
     /**
@@ -150,7 +374,7 @@ public class UserService {
     public void addCustomQuery(String userId, String service, String query) {
         User user = getOrCreateUser(userId);
         user.addCustomQuery(service, query);
-        updateUser(user);
+        persistChanges(user);
     }
 
     /**
@@ -159,7 +383,7 @@ public class UserService {
     public void updateLastActive(String userId) {
         User user = getOrCreateUser(userId);
         user.updateLastActive();
-        updateUser(user);
+        persistChanges(user);
     }
 
     /**
@@ -168,6 +392,6 @@ public class UserService {
     public void setTheme(String userId, String theme) {
         User user = getOrCreateUser(userId);
         user.setTheme(theme);
-        updateUser(user);
+        persistChanges(user);
     }
 }
@@ -0,0 +1,70 @@
+package me.hash.mediaroulette.content.http;
+
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpTransportTest {
+    private static final Path CONFIG_FILE = Path.of("config.json");
+    private static final Duration TEN_SECONDS = Duration.ofSeconds(10);
+    private static boolean createdConfig;
+
+    @BeforeAll
+    static void checkConfig() {
+        // HttpTransport reads its pool settings from LocalConfig, which writes its defaults on first use
+        createdConfig = !Files.exists(CONFIG_FILE);
+    }
+
+    @AfterAll
+    static void removeConfig() throws IOException {
+        if (createdConfig) {
+            Files.deleteIfExists(CONFIG_FILE);
+        }
+    }
+
+    @Test
+    void cachingAndPlainClientsOfASourceAreKeptApart() {
+        OkHttpClient caching = HttpTransport.cachingClient("transport-test-mixed", TEN_SECONDS, TEN_SECONDS);
+        OkHttpClient plain = HttpTransport.client("transport-test-mixed", TEN_SECONDS, TEN_SECONDS);
+
+        assertNotSame(caching, plain);
+        assertTrue(caching.interceptors().contains(CachingInterceptor.getInstance()));
+        assertFalse(plain.interceptors().contains(CachingInterceptor.getInstance()));
+        // Whichever was asked for first, each kind is created once
+        assertSame(plain, HttpTransport.client("transport-test-mixed", TEN_SECONDS, TEN_SECONDS));
+        assertSame(caching, HttpTransport.cachingClient("transport-test-mixed", TEN_SECONDS, TEN_SECONDS));
+        assertSame(caching.connectionPool(), plain.connectionPool());
+    }
+
+    @Test
+    void usesTheRequestedTimeouts() {
+        OkHttpClient client = HttpTransport.client("transport-test-timeouts", Duration.ofSeconds(3), Duration.ofSeconds(7));
+        assertEquals(3000, client.connectTimeoutMillis());
+        assertEquals(7000, client.readTimeoutMillis());
+    }
+
+    @Test
+    void conflictingTimeoutsForOneSourceAreRejected() {
+        HttpTransport.client("transport-test-conflict", TEN_SECONDS, TEN_SECONDS);
+        // The same values in another unit are not a conflict
+        HttpTransport.cachingClient("transport-test-conflict", Duration.ofMillis(10_000), TEN_SECONDS);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> HttpTransport.client("transport-test-conflict", TEN_SECONDS, Duration.ofSeconds(30)));
+        assertThrows(IllegalArgumentException.class,
+                () -> HttpTransport.cachingClient("transport-test-conflict", Duration.ofSeconds(5), TEN_SECONDS));
+    }
+}
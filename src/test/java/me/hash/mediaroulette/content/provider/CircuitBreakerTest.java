@@ -0,0 +1,190 @@
+package me.hash.mediaroulette.content.provider;
+
+import me.hash.mediaroulette.content.http.HttpClientWrapper;
+import me.hash.mediaroulette.utils.LocalConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+    private static final Path CONFIG_FILE = Path.of("config.json");
+    private static final long OPEN_MS = 100;
+    private static final long SLOW_CALL_MS = 40;
+    private static final Map<String, Object> saved = new HashMap<>();
+    private static boolean createdConfig;
+
+    @BeforeAll
+    static void shortenTimings() {
+        // LocalConfig writes its defaults to the working directory on first use
+        createdConfig = !Files.exists(CONFIG_FILE);
+        Map<String, Object> botConfig = LocalConfig.getInstance().getBotConfig();
+        Map<String, Object> settings = Map.of(
+                "breaker_window_ms", 60_000,
+                "breaker_min_calls", 4,
+                "breaker_failure_rate", 50.0,
+                "breaker_slow_call_ms", SLOW_CALL_MS,
+                "breaker_slow_call_rate", 75.0,
+                "breaker_open_ms", OPEN_MS,
+                "breaker_half_open_trials", 2);
+        // Changed in memory only, never saved
+        settings.forEach((key, value) -> {
+            saved.put(key, botConfig.get(key));
+            botConfig.put(key, value);
+        });
+    }
+
+    @AfterAll
+    static void restore() throws IOException {
+        Map<String, Object> botConfig = LocalConfig.getInstance().getBotConfig();
+        saved.forEach((key, value) -> {
+            if (value == null) {
+                botConfig.remove(key);
+            } else {
+                botConfig.put(key, value);
+            }
+        });
+        if (createdConfig) {
+            Files.deleteIfExists(CONFIG_FILE);
+        }
+    }
+
+    private static void succeed(CircuitBreaker breaker) {
+        breaker.execute(() -> CompletableFuture.completedFuture("ok")).join();
+    }
+
+    private static void fail(CircuitBreaker breaker, Throwable error) {
+        CompletableFuture<Object> call = breaker.execute(() -> CompletableFuture.failedFuture(error));
+        assertThrows(CompletionException.class, call::join);
+    }
+
+    private static CircuitBreaker opened() {
+        CircuitBreaker breaker = new CircuitBreaker("test");
+        for (int i = 0; i < 4; i++) {
+            fail(breaker, new IOException("upstream down"));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+
+    private static void waitOutOpenPeriod() throws InterruptedException {
+        TimeUnit.MILLISECONDS.sleep(OPEN_MS + 20);
+    }
+
+    @Test
+    void opensOnceTheFailureRateCrossesTheThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker("test");
+        succeed(breaker);
+        succeed(breaker);
+        fail(breaker, new IOException("upstream down"));
+        // Three calls are below the minimum, whatever their outcome
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        fail(breaker, new IOException("upstream down"));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        AtomicInteger invoked = new AtomicInteger();
+        CompletableFuture<Object> rejected = breaker.execute(() -> {
+            invoked.incrementAndGet();
+            return CompletableFuture.completedFuture("ok");
+        });
+        CompletionException e = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(CircuitBreaker.OpenException.class, e.getCause());
+        assertEquals(0, invoked.get());
+        assertFalse(breaker.isCallPermitted());
+        assertEquals(1L, breaker.getStats().get("rejected"));
+    }
+
+    @Test
+    void opensWhenTooManyCallsAreSlow() {
+        CircuitBreaker breaker = new CircuitBreaker("test");
+        succeed(breaker);
+        for (int i = 0; i < 3; i++) {
+            breaker.execute(() -> CompletableFuture.supplyAsync(() -> "late",
+                    CompletableFuture.delayedExecutor(SLOW_CALL_MS + 20, TimeUnit.MILLISECONDS))).join();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(3, breaker.getStats().get("slowCalls"));
+    }
+
+    @Test
+    void ownRateLimitsAreNeitherFailuresNorSuccesses() {
+        CircuitBreaker breaker = new CircuitBreaker("test");
+        for (int i = 0; i < 10; i++) {
+            fail(breaker, new CompletionException(new HttpClientWrapper.RateLimitException("Rate limited")));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getStats().get("calls"));
+    }
+
+    @Test
+    void halfOpenClosesAfterEnoughTrialsSucceed() throws InterruptedException {
+        CircuitBreaker breaker = opened();
+        waitOutOpenPeriod();
+        assertTrue(breaker.isCallPermitted());
+
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        CompletableFuture<String> firstCall = breaker.execute(() -> first);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        CompletableFuture<String> secondCall = breaker.execute(() -> second);
+        // Both trial slots are taken
+        assertFalse(breaker.isCallPermitted());
+        assertThrows(CompletionException.class, breaker.execute(() -> CompletableFuture.completedFuture("extra"))::join);
+
+        first.complete("ok");
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        second.complete("ok");
+        assertEquals("ok", firstCall.join());
+        assertEquals("ok", secondCall.join());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        List<CircuitBreaker.State> path = breaker.getTransitions().stream().map(CircuitBreaker.Transition::to).toList();
+        assertEquals(List.of(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED), path);
+    }
+
+    @Test
+    void failedTrialOpensTheBreakerAgain() throws InterruptedException {
+        CircuitBreaker breaker = opened();
+        waitOutOpenPeriod();
+
+        fail(breaker, new IOException("still down"));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.isCallPermitted());
+
+        List<CircuitBreaker.State> path = breaker.getTransitions().stream().map(CircuitBreaker.Transition::to).toList();
+        assertEquals(List.of(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.OPEN), path);
+    }
+
+    @Test
+    void rateLimitedTrialGivesItsSlotBack() throws InterruptedException {
+        CircuitBreaker breaker = opened();
+        waitOutOpenPeriod();
+
+        CompletableFuture<String> held = new CompletableFuture<>();
+        breaker.execute(() -> held);
+        fail(breaker, new HttpClientWrapper.RateLimitException("Rate limited"));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.isCallPermitted());
+
+        held.complete("ok");
+        succeed(breaker);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
@@ -0,0 +1,159 @@
+package me.hash.mediaroulette.content.provider;
+
+import me.hash.mediaroulette.content.http.HttpClientWrapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+    private final SingleFlight flight = new SingleFlight("test");
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private <T> CompletableFuture<T> call(String key, CompletableFuture<T> upstream) {
+        return flight.execute(key, () -> {
+            calls.incrementAndGet();
+            return upstream;
+        });
+    }
+
+    @Test
+    void concurrentCallersShareOneCall() {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> first = call("r/pics", upstream);
+        List<CompletableFuture<String>> joined = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            joined.add(call("r/pics", new CompletableFuture<>()));
+        }
+
+        assertEquals(1, calls.get());
+        joined.forEach(future -> assertSame(first, future));
+        assertEquals(1L, flight.getStats().get("issued"));
+        assertEquals(4L, flight.getStats().get("coalesced"));
+        assertEquals(1, flight.getStats().get("inFlight"));
+
+        upstream.complete("result");
+        joined.forEach(future -> assertEquals("result", future.join()));
+        assertEquals(0, flight.getStats().get("inFlight"));
+    }
+
+    @Test
+    void keysAreIndependent() {
+        call("r/pics", new CompletableFuture<String>());
+        call("r/aww", new CompletableFuture<String>());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void completedCallReleasesTheKey() {
+        call("r/pics", CompletableFuture.completedFuture("old")).join();
+        assertEquals("new", call("r/pics", CompletableFuture.completedFuture("new")).join());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void failedCallReleasesTheKeyAndFailsEveryWaiter() {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<String> first = call("r/pics", upstream);
+        CompletableFuture<String> second = call("r/pics", new CompletableFuture<>());
+
+        upstream.completeExceptionally(new IOException("upstream down"));
+        ExecutionException e = assertThrows(ExecutionException.class, first::get);
+        // Waiters see the cause itself, not a CompletionException around it
+        assertInstanceOf(IOException.class, e.getCause());
+        assertThrows(ExecutionException.class, second::get);
+        assertEquals(0, flight.getStats().get("inFlight"));
+
+        CompletableFuture<String> retry = call("r/pics", CompletableFuture.completedFuture("ok"));
+        assertNotSame(first, retry);
+        assertEquals("ok", retry.join());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void throwingSupplierReleasesTheKey() {
+        CompletableFuture<String> failed = flight.execute("r/pics", () -> {
+            throw new IllegalStateException("bad request");
+        });
+        ExecutionException e = assertThrows(ExecutionException.class, failed::get);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals("ok", call("r/pics", CompletableFuture.completedFuture("ok")).join());
+    }
+
+    @Test
+    void keyIsFreeByTheTimeWaitersAreWoken() {
+        CompletableFuture<String> upstream = new CompletableFuture<>();
+        CompletableFuture<CompletableFuture<String>> next = new CompletableFuture<>();
+        call("r/pics", upstream).whenComplete((value, error) ->
+                next.complete(call("r/pics", CompletableFuture.completedFuture("fresh"))));
+
+        upstream.complete("stale");
+        assertEquals("fresh", next.join().join());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void blockingCallersWaitForTheFirst() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> first = pool.submit(() -> flight.executeBlocking("board", () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+                return "catalog";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            List<Future<String>> waiters = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                waiters.add(pool.submit(() -> flight.executeBlocking("board", () -> {
+                    calls.incrementAndGet();
+                    return "duplicate";
+                })));
+            }
+            // Wait until every waiter has joined the call in flight
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((long) flight.getStats().get("coalesced") < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+
+            release.countDown();
+            assertEquals("catalog", first.get(5, TimeUnit.SECONDS));
+            for (Future<String> waiter : waiters) {
+                assertEquals("catalog", waiter.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, calls.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void blockingFailuresKeepTheirCheckedType() {
+        assertThrows(IOException.class, () -> flight.executeBlocking("board", () -> {
+            throw new IOException("catalog unavailable");
+        }));
+        assertThrows(HttpClientWrapper.RateLimitException.class, () -> flight.executeBlocking("board", () -> {
+            throw new HttpClientWrapper.RateLimitException("Rate limited");
+        }));
+        // The failures above released the key each time
+        assertEquals(0, flight.getStats().get("inFlight"));
+    }
+}
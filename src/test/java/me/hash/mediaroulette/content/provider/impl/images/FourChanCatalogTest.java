@@ -0,0 +1,63 @@
+package me.hash.mediaroulette.content.provider.impl.images;
+
+import me.hash.mediaroulette.content.provider.impl.images.FourChanProvider.CatalogThread;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FourChanCatalogTest {
+    private static List<CatalogThread> parseFixture() throws IOException {
+        try (InputStream in = FourChanCatalogTest.class.getResourceAsStream("/fixtures/fourchan_catalog.json")) {
+            assertNotNull(in, "missing fixture");
+            return FourChanProvider.parseCatalog("wg", in);
+        }
+    }
+
+    @Test
+    void readsEveryNumberedThreadAcrossPages() throws IOException {
+        List<Integer> numbers = parseFixture().stream().map(CatalogThread::number).toList();
+        // The thread without a "no" is dropped
+        assertEquals(List.of(7461000, 9123401, 9123502, 9123603, 9123704), numbers);
+    }
+
+    @Test
+    void collectsOpAndReplyImagesInOrder() throws IOException {
+        List<CatalogThread> threads = parseFixture();
+        assertEquals(List.of(
+                "https://i.4cdn.org/wg/1718020800123.jpg",
+                "https://i.4cdn.org/wg/1718022600111.png",
+                "https://i.4cdn.org/wg/1718022600222.jpg"), threads.get(1).imageUrls());
+        assertEquals(List.of("https://i.4cdn.org/wg/1718020800456.png"), threads.get(2).imageUrls());
+        assertEquals(List.of(
+                "https://i.4cdn.org/wg/1718020800789.webm",
+                "https://i.4cdn.org/wg/1718022600333.gif"), threads.get(3).imageUrls());
+    }
+
+    @Test
+    void threadsWithoutImagesHaveNone() throws IOException {
+        List<CatalogThread> threads = parseFixture();
+        assertTrue(threads.get(0).imageUrls().isEmpty(), "sticky");
+        assertTrue(threads.get(4).imageUrls().isEmpty());
+    }
+
+    @Test
+    void emptyCatalogHasNoThreads() throws IOException {
+        byte[] body = "[]".getBytes(StandardCharsets.UTF_8);
+        assertTrue(FourChanProvider.parseCatalog("wg", new ByteArrayInputStream(body)).isEmpty());
+    }
+
+    @Test
+    void rejectsANonCatalogBody() {
+        byte[] body = "{\"error\": \"board not found\"}".getBytes(StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> FourChanProvider.parseCatalog("wg", new ByteArrayInputStream(body)));
+    }
+}
@@ -0,0 +1,107 @@
+package me.hash.mediaroulette.content.reddit;
+
+import me.hash.mediaroulette.model.content.MediaResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RedditListingParserTest {
+    private final RedditListingParser parser = new RedditListingParser();
+    private final RedditPostProcessor processor = new RedditPostProcessor();
+
+    private static byte[] fixture(String name) throws IOException {
+        try (InputStream in = RedditListingParserTest.class.getResourceAsStream("/fixtures/" + name)) {
+            assertNotNull(in, "missing fixture " + name);
+            return in.readAllBytes();
+        }
+    }
+
+    private List<JSONObject> parse(String name, List<RedditListingParser.Listing> listing) throws IOException {
+        List<JSONObject> posts = new ArrayList<>();
+        listing.add(parser.parse(new ByteArrayInputStream(fixture(name)), posts::add));
+        return posts;
+    }
+
+    @Test
+    void readsAfterAndFirstFullname() throws IOException {
+        List<RedditListingParser.Listing> listing = new ArrayList<>();
+        List<JSONObject> posts = parse("reddit_listing.json", listing);
+
+        assertEquals(new RedditListingParser.Listing("t3_6s7t8u", "t3_1d2e3f", 6), listing.get(0));
+        assertEquals(6, posts.size());
+    }
+
+    @Test
+    void keepsOnlyTheFieldsThePostProcessorReads() throws IOException {
+        Set<String> used = Set.of("id", "name", "title", "subreddit", "permalink", "url", "selftext", "thumbnail",
+                "post_hint", "preview", "is_gallery", "gallery_data", "media_metadata");
+        for (JSONObject post : parse("reddit_listing.json", new ArrayList<>())) {
+            assertTrue(used.containsAll(post.keySet()), "unexpected fields in " + post.keySet());
+            assertFalse(post.has("all_awardings"));
+            assertFalse(post.has("media"));
+            assertFalse(post.has("author"));
+        }
+    }
+
+    @Test
+    void keepsGalleryDataIntact() throws IOException {
+        JSONObject gallery = parse("reddit_listing.json", new ArrayList<>()).get(1);
+        assertTrue(gallery.getBoolean("is_gallery"));
+        assertEquals(3, gallery.getJSONObject("gallery_data").getJSONArray("items").length());
+        assertEquals(Set.of("g1aaa", "g2bbb"), gallery.getJSONObject("media_metadata").keySet());
+
+        // The item whose media is missing from the metadata is dropped
+        List<MediaResult> results = processor.processPost(gallery);
+        assertEquals(2, results.size());
+        assertEquals("Three days in Patagonia (Image 1/3)", results.get(0).getTitle());
+        assertEquals("Three days in Patagonia (Image 3/3)", results.get(1).getTitle());
+        assertEquals("https://preview.redd.it/g1aaa.jpg?width=3024&format=pjpg&auto=webp&s=22", results.get(0).getImageUrl());
+    }
+
+    @Test
+    void producesTheSameResultsAsTheTreeParser() throws IOException {
+        List<Map<String, String>> streamed = new ArrayList<>();
+        parser.parse(new ByteArrayInputStream(fixture("reddit_listing.json")),
+                post -> processor.processPost(post).forEach(result -> streamed.add(result.toMap())));
+
+        JSONArray children = new JSONObject(new String(fixture("reddit_listing.json"), StandardCharsets.UTF_8))
+                .getJSONObject("data").getJSONArray("children");
+        List<Map<String, String>> tree = processor.processPosts(children).stream().map(MediaResult::toMap).toList();
+
+        assertEquals(tree, streamed);
+        assertEquals(7, streamed.size());
+    }
+
+    @Test
+    void emptyPageHasNoCursor() throws IOException {
+        List<RedditListingParser.Listing> listing = new ArrayList<>();
+        List<JSONObject> posts = parse("reddit_listing_empty.json", listing);
+
+        assertTrue(posts.isEmpty());
+        assertNull(listing.get(0).after());
+        assertNull(listing.get(0).firstFullname());
+        assertEquals(0, listing.get(0).postCount());
+    }
+
+    @Test
+    void rejectsANonListingBody() {
+        byte[] body = "[{\"error\": 404}]".getBytes(StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> parser.parse(new ByteArrayInputStream(body), post -> {}));
+    }
+}
@@ -0,0 +1,102 @@
+package me.hash.mediaroulette.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTest {
+    private static final int EXPECTED = 10_000;
+    private static final double TARGET_RATE = 0.01;
+
+    @TempDir
+    Path dir;
+
+    private static BloomFilter filled() {
+        BloomFilter filter = new BloomFilter(EXPECTED, TARGET_RATE);
+        for (int i = 0; i < EXPECTED; i++) {
+            filter.put("dead-" + i);
+        }
+        return filter;
+    }
+
+    @Test
+    void everyAddedKeyIsFound() {
+        BloomFilter filter = filled();
+        for (int i = 0; i < EXPECTED; i++) {
+            assertTrue(filter.mightContain("dead-" + i));
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheTargetAtCapacity() {
+        BloomFilter filter = filled();
+        int probes = 100_000;
+        int falsePositives = 0;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain("alive-" + i)) falsePositives++;
+        }
+
+        double measured = (double) falsePositives / probes;
+        assertTrue(measured < TARGET_RATE * 1.5, "measured false-positive rate " + measured);
+        assertEquals(TARGET_RATE, filter.expectedFalsePositiveRate(), TARGET_RATE * 0.2);
+    }
+
+    @Test
+    void repeatedKeysAreCountedOnce() {
+        BloomFilter filter = new BloomFilter(100, TARGET_RATE);
+        filter.put("abc123");
+        filter.put("abc123");
+        assertEquals(1, filter.getInsertions());
+
+        filter.clear();
+        assertFalse(filter.mightContain("abc123"));
+        assertEquals(0, filter.getInsertions());
+    }
+
+    @Test
+    void writeAndReadRoundTrip() throws IOException {
+        BloomFilter filter = filled();
+        Path file = dir.resolve("filters").resolve("imgur_dead.bloom");
+        filter.writeTo(file);
+        // Written through a temporary file that is moved into place
+        assertFalse(Files.exists(file.resolveSibling("imgur_dead.bloom.tmp")));
+
+        BloomFilter loaded = BloomFilter.readFrom(file);
+        assertNotNull(loaded);
+        assertEquals(filter.getBitCount(), loaded.getBitCount());
+        assertEquals(filter.getHashCount(), loaded.getHashCount());
+        assertEquals(filter.getInsertions(), loaded.getInsertions());
+        for (int i = 0; i < 20_000; i++) {
+            String key = (i % 2 == 0 ? "dead-" : "alive-") + i;
+            assertEquals(filter.mightContain(key), loaded.mightContain(key), key);
+        }
+    }
+
+    @Test
+    void unreadableFilesLoadAsNull() throws IOException {
+        assertNull(BloomFilter.readFrom(dir.resolve("missing.bloom")));
+
+        Path file = dir.resolve("filter.bloom");
+        filled().writeTo(file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        Path truncated = dir.resolve("truncated.bloom");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length / 2));
+        assertNull(BloomFilter.readFrom(truncated));
+
+        Path otherVersion = dir.resolve("other_version.bloom");
+        bytes[3]++;
+        Files.write(otherVersion, bytes);
+        assertNull(BloomFilter.readFrom(otherVersion));
+    }
+}
@@ -0,0 +1,125 @@
+package me.hash.mediaroulette.utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Crash recovery of the journal and snapshot files. Each test uses its own file names under
+ * {@code cache/} and reopens the cache the way a restarted bot would.
+ */
+class PersistentCacheTest {
+    private static final TypeReference<Map<String, String>> STRINGS = new TypeReference<>() {};
+    private static final TypeReference<Map<String, Boolean>> BOOLEANS = new TypeReference<>() {};
+
+    private String baseName;
+    private Path snapshot;
+    private Path journal;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.createDirectories(Path.of("cache"));
+        baseName = "test-" + UUID.randomUUID();
+        snapshot = Path.of("cache", baseName + ".snapshot.jsonl");
+        journal = Path.of("cache", baseName + ".journal.jsonl");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of("cache"))) {
+            for (Path file : files.filter(f -> f.getFileName().toString().startsWith(baseName)).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private PersistentCache<String> open() {
+        return new PersistentCache<>(baseName + ".json", STRINGS);
+    }
+
+    @Test
+    void tornLastJournalLineIsSkipped() throws IOException {
+        PersistentCache<String> cache = open();
+        cache.put("a", "1");
+        cache.put("b", "2");
+        // A crash mid-append leaves half a record with no newline
+        Files.writeString(journal, "{\"k\":\"c\",\"v\":\"3", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        PersistentCache<String> reopened = open();
+        assertEquals("1", reopened.get("a"));
+        assertEquals("2", reopened.get("b"));
+        assertNull(reopened.get("c"));
+        assertEquals(2, reopened.size());
+
+        // The torn tail was folded away, so new appends are not glued onto it
+        reopened.put("c", "3");
+        PersistentCache<String> again = open();
+        assertEquals("3", again.get("c"));
+        assertEquals(3, again.size());
+    }
+
+    @Test
+    void journalLeftAfterSnapshotRenameIsReplayedOverNewSnapshot() throws IOException {
+        PersistentCache<String> cache = open();
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.remove("a");
+        cache.put("b", "3");
+        byte[] oldJournal = Files.readAllBytes(journal);
+
+        cache.saveCache();
+        // Simulate a crash after the new snapshot was renamed in but before the journal was truncated
+        Files.write(journal, oldJournal);
+
+        PersistentCache<String> reopened = open();
+        assertNull(reopened.get("a"));
+        assertEquals("3", reopened.get("b"));
+        assertEquals(1, reopened.size());
+        assertEquals(0, Files.size(journal));
+    }
+
+    @Test
+    void legacyJsonFileIsMigratedOnce() throws IOException {
+        Path legacy = Path.of("cache", baseName + ".json");
+        Files.writeString(legacy, "{\"yes\":true,\"no\":false}", StandardCharsets.UTF_8);
+
+        PersistentCache<Boolean> cache = new PersistentCache<>(baseName + ".json", BOOLEANS);
+        assertEquals(Boolean.TRUE, cache.get("yes"));
+        assertEquals(Boolean.FALSE, cache.get("no"));
+        assertFalse(Files.exists(legacy));
+        assertTrue(Files.exists(Path.of("cache", baseName + ".json.migrated")));
+        assertTrue(Files.exists(snapshot));
+
+        // The data now comes from the snapshot; the renamed file is not imported again
+        Files.writeString(Path.of("cache", baseName + ".json.migrated"), "{\"stale\":true}", StandardCharsets.UTF_8);
+        PersistentCache<Boolean> reopened = new PersistentCache<>(baseName + ".json", BOOLEANS);
+        assertEquals(2, reopened.size());
+        assertNull(reopened.get("stale"));
+    }
+
+    @Test
+    void migratedNegativeEntriesGetTheNegativeTtl() throws Exception {
+        Files.writeString(Path.of("cache", baseName + ".json"), "{\"yes\":true,\"no\":false}", StandardCharsets.UTF_8);
+
+        PersistentCache<Boolean> cache = new PersistentCache<>(baseName + ".json", BOOLEANS,
+                60_000, 0, exists -> !exists, 1);
+        Thread.sleep(20);
+        assertEquals(Boolean.TRUE, cache.get("yes"));
+        assertNull(cache.get("no"));
+    }
+}
@@ -0,0 +1,115 @@
+package me.hash.mediaroulette.utils.browser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterQuotaTest {
+    // 60 a minute is one emission interval per second
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long NO_WAIT = 0;
+    private static final long LONG_WAIT = TimeUnit.MINUTES.toNanos(5);
+
+    private final RateLimiter.Quota quota = new RateLimiter.Quota(60);
+    // At or after the bucket's creation, so reservations don't depend on the clock moving
+    private final long start = System.nanoTime();
+
+    private int admitAll(long now, double cost, int attempts) {
+        int admitted = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (quota.reserve(now, cost, NO_WAIT) == 0) admitted++;
+        }
+        return admitted;
+    }
+
+    @Test
+    void fullBurstIsAdmittedAtOnceThenRejected() {
+        assertEquals(60, admitAll(start, 1, 60));
+        assertEquals(-1, quota.reserve(start, 1, NO_WAIT));
+        assertEquals(60, quota.getCurrentCount());
+        assertEquals(1, quota.getTimeUntilReset());
+    }
+
+    @Test
+    void roomComesBackOneIntervalAtATime() {
+        admitAll(start, 1, 60);
+        assertEquals(0, quota.reserve(start + SECOND, 1, NO_WAIT));
+        assertEquals(-1, quota.reserve(start + SECOND, 1, NO_WAIT));
+
+        assertEquals(30, admitAll(start + 31 * SECOND, 1, 60));
+    }
+
+    @Test
+    void idleTimeDoesNotBankMoreThanOneWindow() {
+        assertEquals(60, admitAll(start + TimeUnit.MINUTES.toNanos(10), 1, 100));
+    }
+
+    @Test
+    void queuedRequestsWaitForTheirSlot() {
+        admitAll(start, 1, 60);
+        assertEquals(SECOND, quota.reserve(start, 1, LONG_WAIT));
+        assertEquals(2 * SECOND, quota.reserve(start, 1, LONG_WAIT));
+
+        // A wait longer than allowed is rejected and reserves nothing
+        assertEquals(-1, quota.reserve(start, 1, SECOND * 2));
+        assertEquals(3 * SECOND, quota.reserve(start, 1, LONG_WAIT));
+    }
+
+    @Test
+    void costIsChargedInRequestsWorth() {
+        assertEquals(12, admitAll(start, 5, 20));
+
+        RateLimiter.Quota cheap = new RateLimiter.Quota(60);
+        long now = System.nanoTime();
+        int admitted = 0;
+        while (cheap.reserve(now, 0.1, NO_WAIT) == 0) admitted++;
+        // 600 tenth-requests, give or take the rounding of each charge
+        assertTrue(admitted >= 600 && admitted <= 601, "admitted " + admitted);
+    }
+
+    @Test
+    void refundGivesTheReservationBack() {
+        admitAll(start, 1, 59);
+        // Reserved here, then turned away by a later level of the hierarchy
+        assertEquals(4 * SECOND, quota.reserve(start, 5, LONG_WAIT));
+        quota.refund(5);
+
+        assertEquals(0, quota.reserve(start, 1, NO_WAIT));
+        assertEquals(-1, quota.reserve(start, 1, NO_WAIT));
+        quota.refund(1);
+        assertEquals(0, quota.reserve(start, 1, NO_WAIT));
+    }
+
+    @Test
+    void concurrentReservationsNeverOverAdmit() throws Exception {
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(pool.submit(() -> {
+                    go.await();
+                    return admitAll(start, 1, 50);
+                }));
+            }
+            go.countDown();
+            int admitted = 0;
+            for (Future<Integer> result : results) {
+                admitted += result.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(60, admitted);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
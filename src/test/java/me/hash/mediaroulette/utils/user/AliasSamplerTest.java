@@ -0,0 +1,93 @@
+package me.hash.mediaroulette.utils.user;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AliasSamplerTest {
+    private static final int DRAWS = 200_000;
+    // Several standard deviations of a 200k draw frequency, so a fixed seed can't flake
+    private static final double TOLERANCE = 0.006;
+
+    private static Map<String, Integer> draw(AliasSampler sampler, long seed) {
+        Random random = new Random(seed);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < DRAWS; i++) {
+            counts.merge(sampler.sample(random), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static void assertMatchesWeights(Map<String, Double> expected, Map<String, Integer> counts) {
+        double total = expected.values().stream().mapToDouble(Double::doubleValue).sum();
+        for (Map.Entry<String, Double> entry : expected.entrySet()) {
+            double frequency = counts.getOrDefault(entry.getKey(), 0) / (double) DRAWS;
+            assertEquals(entry.getValue() / total, frequency, TOLERANCE, entry.getKey());
+        }
+        assertEquals(expected.keySet(), counts.keySet());
+    }
+
+    @Test
+    void samplesInProportionToWeights() {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        weights.put("a", 1.0);
+        weights.put("b", 2.0);
+        weights.put("c", 7.0);
+        AliasSampler sampler = AliasSampler.of(weights);
+
+        assertNotNull(sampler);
+        assertEquals(3, sampler.size());
+        assertMatchesWeights(weights, draw(sampler, 42));
+    }
+
+    @Test
+    void samplesUnevenFractionalWeights() {
+        // Same shape as the bundled defaults after shifting, including a share just above zero
+        Map<String, Double> weights = new LinkedHashMap<>();
+        weights.put("reddit", 15.0);
+        weights.put("imgur", 8.0);
+        weights.put("4chan", 12.5);
+        weights.put("picsum", 0.25);
+        weights.put("google", 10.0);
+        weights.put("movies", 54.25);
+        assertMatchesWeights(weights, draw(AliasSampler.of(weights), 7));
+    }
+
+    @Test
+    void leavesOutZeroAndNegativeWeights() {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        weights.put("zero", 0.0);
+        weights.put("negative", -3.0);
+        weights.put("a", 5.0);
+        weights.put("b", 15.0);
+        AliasSampler sampler = AliasSampler.of(weights);
+
+        assertEquals(2, sampler.size());
+        assertEquals(Map.of("a", 5.0, "b", 15.0), sampler.getWeights());
+        Map<String, Integer> counts = draw(sampler, 3);
+        assertFalse(counts.containsKey("zero"));
+        assertFalse(counts.containsKey("negative"));
+        assertMatchesWeights(Map.of("a", 5.0, "b", 15.0), counts);
+    }
+
+    @Test
+    void nullWithoutAPositiveWeight() {
+        assertNull(AliasSampler.of(Map.of()));
+        assertNull(AliasSampler.of(Map.of("zero", 0.0, "negative", -1.0)));
+    }
+
+    @Test
+    void singleOutcomeIsAlwaysDrawn() {
+        AliasSampler sampler = AliasSampler.of(Map.of("only", 0.5, "off", 0.0));
+        assertEquals(1, sampler.size());
+        assertEquals(Map.of("only", DRAWS), draw(sampler, 11));
+    }
+}
@@ -0,0 +1,89 @@
+package me.hash.mediaroulette.utils.user;
+
+import me.hash.mediaroulette.model.ImageOptions;
+import me.hash.mediaroulette.model.User;
+import me.hash.mediaroulette.utils.LocalConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageSelectorTest {
+    private static final Path CONFIG_FILE = Path.of("config.json");
+    private static boolean createdConfig;
+
+    @BeforeAll
+    static void loadConfig() {
+        // LocalConfig writes its defaults to the working directory on first use
+        createdConfig = !Files.exists(CONFIG_FILE);
+        LocalConfig.getInstance();
+    }
+
+    @AfterAll
+    static void removeConfig() throws IOException {
+        if (createdConfig) {
+            Files.deleteIfExists(CONFIG_FILE);
+        }
+    }
+
+    private static AliasSampler samplerFor(User user) {
+        return new ImageSelector(user.getImageOptionsMap(), user.getUserId(), user.getImageOptionsVersion()).getSampler();
+    }
+
+    @Test
+    void reusesSamplerWhileNothingChanges() {
+        User user = new User("selector-reuse");
+        assertSame(samplerFor(user), samplerFor(user));
+    }
+
+    @Test
+    void rebuildsSamplerAfterSetChances() {
+        User user = new User("selector-chances");
+        AliasSampler before = samplerFor(user);
+        assertSame(before, samplerFor(user));
+
+        user.setChances(new ImageOptions("reddit", true, 60));
+        AliasSampler after = samplerFor(user);
+        assertNotSame(before, after);
+        assertTrue(after.getWeights().get("reddit") > before.getWeights().get("reddit"));
+
+        user.setChances(new ImageOptions("imgur", false, 0));
+        assertFalse(samplerFor(user).getWeights().containsKey("imgur"));
+    }
+
+    @Test
+    void rebuildsSamplerAfterSourceToggle() {
+        LocalConfig config = LocalConfig.getInstance();
+        User user = new User("selector-toggles");
+        AliasSampler before = samplerFor(user);
+        assertTrue(before.getWeights().containsKey("picsum"));
+
+        long version = config.getSourceTogglesVersion();
+        config.setSourceEnabled("picsum", false);
+        try {
+            assertTrue(config.getSourceTogglesVersion() > version);
+            AliasSampler after = samplerFor(user);
+            assertNotSame(before, after);
+            assertFalse(after.getWeights().containsKey("picsum"));
+            assertSame(after, samplerFor(user));
+        } finally {
+            config.setSourceEnabled("picsum", true);
+        }
+        assertTrue(samplerFor(user).getWeights().containsKey("picsum"));
+    }
+
+    @Test
+    void uncachedSelectorBuildsItsOwnSampler() {
+        User user = new User("selector-uncached");
+        ImageSelector selector = new ImageSelector(user.getImageOptionsMap());
+        assertNotSame(selector.getSampler(), selector.getSampler());
+    }
+}
@@ -0,0 +1,112 @@
+package me.hash.mediaroulette.utils.user;
+
+import me.hash.mediaroulette.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserCacheTest {
+    private final List<User> removed = new ArrayList<>();
+
+    private UserCache cache(long maxWeight, long expireAfterAccessMs) {
+        return new UserCache(maxWeight, expireAfterAccessMs, (userId, user) -> removed.add(user));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenOverWeight() {
+        UserCache cache = cache(3, 60_000);
+        User a = new User("a");
+        User b = new User("b");
+        cache.put("a", a);
+        cache.put("b", b);
+        cache.put("c", new User("c"));
+        // Touch a so b becomes the least recently used
+        assertSame(a, cache.getIfPresent("a"));
+
+        cache.put("d", new User("d"));
+        assertEquals(List.of(b), removed);
+        assertNull(cache.peek("b"));
+        assertNotNull(cache.peek("a"));
+        assertEquals(3, cache.weightedSize());
+        assertEquals(1L, cache.getStats().get("evictions"));
+    }
+
+    @Test
+    void neverEvictsTheEntryJustWritten() {
+        UserCache cache = cache(3, 60_000);
+        cache.put("a", new User("a"));
+        User heavy = new User("heavy");
+        for (int i = 0; i < 5; i++) {
+            heavy.addFavorite("favorite " + i, "https://example.com/" + i, "image");
+        }
+
+        cache.put("heavy", heavy);
+        assertSame(heavy, cache.peek("heavy"));
+        assertNull(cache.peek("a"));
+        assertEquals(1, cache.size());
+        assertEquals(UserCache.weigh(heavy), cache.weightedSize());
+    }
+
+    @Test
+    void expiresAfterAccess() throws InterruptedException {
+        UserCache cache = cache(100, 50);
+        User a = new User("a");
+        User b = new User("b");
+        cache.put("a", a);
+        cache.put("b", b);
+        Thread.sleep(100);
+
+        assertNull(cache.getIfPresent("a"));
+        cache.cleanUp();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weightedSize());
+        assertTrue(removed.containsAll(List.of(a, b)));
+        assertEquals(2L, cache.getStats().get("expirations"));
+    }
+
+    @Test
+    void replacingWithAnotherInstanceNotifiesTheListener() {
+        UserCache cache = cache(100, 60_000);
+        User first = new User("a");
+        User second = new User("a");
+        cache.put("a", first);
+        cache.put("a", first);
+        assertTrue(removed.isEmpty());
+
+        cache.put("a", second);
+        assertEquals(List.of(first), removed);
+        assertSame(second, cache.peek("a"));
+        assertEquals(1, cache.weightedSize());
+    }
+
+    @Test
+    void loadsOnceAndCountsHitsAndMisses() {
+        UserCache cache = cache(100, 60_000);
+        AtomicInteger loads = new AtomicInteger();
+        User first = cache.get("a", id -> {
+            loads.incrementAndGet();
+            return new User(id);
+        });
+        User second = cache.get("a", id -> {
+            loads.incrementAndGet();
+            return new User(id);
+        });
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+
+        // peek neither counts nor refreshes
+        cache.peek("a");
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+    }
+}
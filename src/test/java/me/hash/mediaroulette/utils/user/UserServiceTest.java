@@ -0,0 +1,164 @@
+package me.hash.mediaroulette.utils.user;
+
+import me.hash.mediaroulette.model.User;
+import me.hash.mediaroulette.model.UserDelta;
+import me.hash.mediaroulette.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Write-behind and write-back of evicted users, against an in-memory repository. The flush
+ * scheduler is effectively off; tests call {@link UserService#flush()} themselves.
+ */
+class UserServiceTest {
+    private static final long NO_AUTO_FLUSH = 3_600_000;
+
+    private final RecordingRepository repository = new RecordingRepository();
+    private UserService service;
+
+    /**
+     * Hands out a fresh copy on every load, like the database does, and records the deltas it
+     * is asked to write in the order they arrive.
+     */
+    private static final class RecordingRepository implements UserRepository {
+        final List<UserDelta> written = new ArrayList<>();
+        int failuresLeft = 0;
+
+        @Override
+        public Optional<User> findById(String userId) {
+            User user = new User(userId);
+            user.drainChanges();
+            return Optional.of(user);
+        }
+
+        @Override
+        public User save(User user) {
+            return user;
+        }
+
+        @Override
+        public void applyDelta(User user) {
+            applyDeltas(List.of(user));
+        }
+
+        @Override
+        public void applyDeltas(Collection<User> users) {
+            List<UserDelta> batch = new ArrayList<>();
+            for (User user : users) {
+                batch.add(user.drainChanges());
+            }
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                throw new IllegalStateException("write failed");
+            }
+            written.addAll(batch);
+        }
+
+        @Override
+        public boolean exists(String userId) {
+            return false;
+        }
+
+        @Override
+        public long getTotalUsers() {
+            return 0;
+        }
+
+        @Override
+        public long getTotalImagesGenerated() {
+            return 0;
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void repeatedUpdatesCollapseIntoOneWrite() {
+        service = new UserService(repository, 100, 60_000, NO_AUTO_FLUSH);
+        service.incrementImagesGenerated("a");
+        service.incrementImagesGenerated("a");
+        service.incrementImagesGenerated("a");
+
+        service.flush();
+        assertEquals(1, repository.written.size());
+        assertEquals(Map.of("imagesGenerated", 3L), repository.written.get(0).getIncrements());
+        assertTrue(repository.written.get(0).getDirtyFields().isEmpty());
+
+        service.flush();
+        assertEquals(1, repository.written.size());
+    }
+
+    @Test
+    void evictedDirtyUserIsWrittenBackAndServedUntilThen() {
+        service = new UserService(repository, 1, 60_000, NO_AUTO_FLUSH);
+        User a = service.getOrCreateUser("a");
+        service.incrementImagesGenerated("a");
+        // Loading b pushes a out of a cache that fits one user
+        service.getOrCreateUser("b");
+
+        assertSame(a, service.getOrCreateUser("a"), "the unsaved copy must win over the stored one");
+        service.flush();
+        assertEquals(1, repository.written.size());
+        assertEquals(Map.of("imagesGenerated", 1L), repository.written.get(0).getIncrements());
+        assertEquals(0, service.getCacheStats().get("pendingWriteBack"));
+    }
+
+    @Test
+    void staleCopyPutBackDoesNotLoseTheFreshCopysChanges() {
+        service = new UserService(repository, 1, 60_000, NO_AUTO_FLUSH);
+        User stale = service.getOrCreateUser("a");
+        // a is evicted clean while a command still holds it
+        service.getOrCreateUser("b");
+        User fresh = service.getOrCreateUser("a");
+        assertNotSame(stale, fresh);
+
+        fresh.incrementImagesGenerated();
+        service.updateUser(fresh);
+        stale.incrementSourceUsage("reddit");
+        service.updateUser(stale);
+
+        service.flush();
+        List<Map<String, Long>> increments = repository.written.stream().map(UserDelta::getIncrements).toList();
+        assertEquals(List.of(Map.of("imagesGenerated", 1L), Map.of("sourceUsageCount.reddit", 1L)), increments);
+        assertFalse(fresh.hasChanges());
+        assertFalse(stale.hasChanges());
+    }
+
+    @Test
+    void failedFlushRewritesTheWholeDocumentNextTime() {
+        service = new UserService(repository, 100, 60_000, NO_AUTO_FLUSH);
+        service.incrementImagesGenerated("a");
+        repository.failuresLeft = 1;
+
+        service.flush();
+        assertTrue(repository.written.isEmpty());
+        assertEquals(1L, service.getWriteBehindStats().get("flushFailures"));
+
+        service.flush();
+        assertEquals(1, repository.written.size());
+        assertTrue(repository.written.get(0).isFullReplace());
+    }
+
+    @Test
+    void existenceChecksDoNotCountAsCacheHits() {
+        service = new UserService(repository, 100, 60_000, NO_AUTO_FLUSH);
+        service.getOrCreateUser("a");
+        assertTrue(service.userExists("a"));
+        assertEquals(0L, service.getCacheStats().get("hits"));
+    }
+}